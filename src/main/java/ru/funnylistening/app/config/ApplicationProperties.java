@@ -1,5 +1,9 @@
 package ru.funnylistening.app.config;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -10,7 +14,719 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final Audio audio = new Audio();
+
+    private final Story story = new Story();
+
+    private final Id id = new Id();
+
+    private final Search search = new Search();
+
+    private final Typeahead typeahead = new Typeahead();
+
+    private final Security security = new Security();
+
+    private final Mail mail = new Mail();
+
     // jhipster-needle-application-properties-property
+
+    public Audio getAudio() {
+        return audio;
+    }
+
+    public Story getStory() {
+        return story;
+    }
+
+    public Id getId() {
+        return id;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public Typeahead getTypeahead() {
+        return typeahead;
+    }
+
+    public Security getSecurity() {
+        return security;
+    }
+
+    public Mail getMail() {
+        return mail;
+    }
+
     // jhipster-needle-application-properties-property-getter
+
+    public static class Audio {
+
+        /**
+         * Which {@code AudioStore} implementation serves element audio.
+         */
+        private String store = "local";
+
+        /**
+         * Root directory of the local audio store; {@code Element.elementAudioPath} is resolved against it.
+         */
+        private String storagePath = "audio";
+
+        private final Upload upload = new Upload();
+
+        private final Transcoding transcoding = new Transcoding();
+
+        private final Hls hls = new Hls();
+
+        private final Peaks peaks = new Peaks();
+
+        private final MappedCache mappedCache = new MappedCache();
+
+        public String getStore() {
+            return store;
+        }
+
+        public void setStore(String store) {
+            this.store = store;
+        }
+
+        public String getStoragePath() {
+            return storagePath;
+        }
+
+        public void setStoragePath(String storagePath) {
+            this.storagePath = storagePath;
+        }
+
+        public Upload getUpload() {
+            return upload;
+        }
+
+        public Transcoding getTranscoding() {
+            return transcoding;
+        }
+
+        public Hls getHls() {
+            return hls;
+        }
+
+        public Peaks getPeaks() {
+            return peaks;
+        }
+
+        public MappedCache getMappedCache() {
+            return mappedCache;
+        }
+
+        public static class Upload {
+
+            /**
+             * Directory where partially received uploads are kept; best on the same file system as the store.
+             */
+            private String path = "audio-uploads";
+
+            private long maxSize = 2L * 1024 * 1024 * 1024;
+
+            /**
+             * Uploads without activity for longer than this are discarded.
+             */
+            private long expirationHours = 24;
+
+            public String getPath() {
+                return path;
+            }
+
+            public void setPath(String path) {
+                this.path = path;
+            }
+
+            public long getMaxSize() {
+                return maxSize;
+            }
+
+            public void setMaxSize(long maxSize) {
+                this.maxSize = maxSize;
+            }
+
+            public long getExpirationHours() {
+                return expirationHours;
+            }
+
+            public void setExpirationHours(long expirationHours) {
+                this.expirationHours = expirationHours;
+            }
+        }
+
+        public static class Transcoding {
+
+            /**
+             * Which {@code AudioTranscoder} produces the renditions: {@code java} needs no native binary,
+             * {@code command} runs an external encoder.
+             */
+            private String encoder = "java";
+
+            /**
+             * Encoder command line for the {@code command} encoder; {@code {input}}, {@code {output}} and
+             * {@code {bitrate}} (in kbit/s) are replaced in every argument.
+             */
+            private List<String> command = new ArrayList<>(
+                List.of("ffmpeg", "-nostdin", "-y", "-i", "{input}", "-vn", "-b:a", "{bitrate}k", "{output}")
+            );
+
+            /**
+             * File extension of the renditions produced by the {@code command} encoder.
+             */
+            private String extension = "mp3";
+
+            private int lowBitrate = 48;
+
+            private int mediumBitrate = 96;
+
+            private int highBitrate = 192;
+
+            /**
+             * Renditions transcoded at the same time by this instance.
+             */
+            private int concurrency = 2;
+
+            private int maxAttempts = 3;
+
+            /**
+             * A rendition still running after this long is considered abandoned and queued again.
+             */
+            private long timeoutMinutes = 30;
+
+            public String getEncoder() {
+                return encoder;
+            }
+
+            public void setEncoder(String encoder) {
+                this.encoder = encoder;
+            }
+
+            public List<String> getCommand() {
+                return command;
+            }
+
+            public void setCommand(List<String> command) {
+                this.command = command;
+            }
+
+            public String getExtension() {
+                return extension;
+            }
+
+            public void setExtension(String extension) {
+                this.extension = extension;
+            }
+
+            public int getLowBitrate() {
+                return lowBitrate;
+            }
+
+            public void setLowBitrate(int lowBitrate) {
+                this.lowBitrate = lowBitrate;
+            }
+
+            public int getMediumBitrate() {
+                return mediumBitrate;
+            }
+
+            public void setMediumBitrate(int mediumBitrate) {
+                this.mediumBitrate = mediumBitrate;
+            }
+
+            public int getHighBitrate() {
+                return highBitrate;
+            }
+
+            public void setHighBitrate(int highBitrate) {
+                this.highBitrate = highBitrate;
+            }
+
+            public int getConcurrency() {
+                return concurrency;
+            }
+
+            public void setConcurrency(int concurrency) {
+                this.concurrency = concurrency;
+            }
+
+            public int getMaxAttempts() {
+                return maxAttempts;
+            }
+
+            public void setMaxAttempts(int maxAttempts) {
+                this.maxAttempts = maxAttempts;
+            }
+
+            public long getTimeoutMinutes() {
+                return timeoutMinutes;
+            }
+
+            public void setTimeoutMinutes(long timeoutMinutes) {
+                this.timeoutMinutes = timeoutMinutes;
+            }
+        }
+
+        public static class Hls {
+
+            /**
+             * Directory where the generated story playlist segments are cached.
+             */
+            private String cachePath = "hls-cache";
+
+            /**
+             * Least recently used segments are evicted once the cache grows beyond this size in bytes.
+             */
+            private long maxCacheSize = 1024L * 1024 * 1024;
+
+            /**
+             * Target duration of a segment in seconds.
+             */
+            private int segmentDuration = 10;
+
+            /**
+             * Bitrate in kbit/s assumed for element audio whose duration can't be probed.
+             */
+            private int assumedBitrate = 128;
+
+            public String getCachePath() {
+                return cachePath;
+            }
+
+            public void setCachePath(String cachePath) {
+                this.cachePath = cachePath;
+            }
+
+            public long getMaxCacheSize() {
+                return maxCacheSize;
+            }
+
+            public void setMaxCacheSize(long maxCacheSize) {
+                this.maxCacheSize = maxCacheSize;
+            }
+
+            public int getSegmentDuration() {
+                return segmentDuration;
+            }
+
+            public void setSegmentDuration(int segmentDuration) {
+                this.segmentDuration = segmentDuration;
+            }
+
+            public int getAssumedBitrate() {
+                return assumedBitrate;
+            }
+
+            public void setAssumedBitrate(int assumedBitrate) {
+                this.assumedBitrate = assumedBitrate;
+            }
+        }
+
+        public static class Peaks {
+
+            /**
+             * Number of min/max pairs computed for audio of known length.
+             */
+            private int width = 2048;
+
+            /**
+             * Peaks computed at the same time by this instance.
+             */
+            private int concurrency = 2;
+
+            /**
+             * Peaks waiting for a free worker; requests beyond it are retried by the client.
+             */
+            private int queueCapacity = 100;
+
+            public int getWidth() {
+                return width;
+            }
+
+            public void setWidth(int width) {
+                this.width = width;
+            }
+
+            public int getConcurrency() {
+                return concurrency;
+            }
+
+            public void setConcurrency(int concurrency) {
+                this.concurrency = concurrency;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+        }
+
+        public static class MappedCache {
+
+            /**
+             * Total bytes of audio kept memory-mapped; {@code 0} disables the cache.
+             */
+            private long maxSize = 512L * 1024 * 1024;
+
+            /**
+             * Larger audio files are always streamed from disk.
+             */
+            private long maxFileSize = 64L * 1024 * 1024;
+
+            /**
+             * Requests for a file before it is mapped, so that one-off listens don't evict popular audio.
+             */
+            private int admissionRequests = 2;
+
+            public long getMaxSize() {
+                return maxSize;
+            }
+
+            public void setMaxSize(long maxSize) {
+                this.maxSize = maxSize;
+            }
+
+            public long getMaxFileSize() {
+                return maxFileSize;
+            }
+
+            public void setMaxFileSize(long maxFileSize) {
+                this.maxFileSize = maxFileSize;
+            }
+
+            public int getAdmissionRequests() {
+                return admissionRequests;
+            }
+
+            public void setAdmissionRequests(int admissionRequests) {
+                this.admissionRequests = admissionRequests;
+            }
+        }
+    }
+
+    public static class Story {
+
+        /**
+         * Total bytes of serialized story JSON kept in memory; {@code 0} disables the cache.
+         */
+        private long jsonCacheMaxSize = 32L * 1024 * 1024;
+
+        public long getJsonCacheMaxSize() {
+            return jsonCacheMaxSize;
+        }
+
+        public void setJsonCacheMaxSize(long jsonCacheMaxSize) {
+            this.jsonCacheMaxSize = jsonCacheMaxSize;
+        }
+    }
+
+    public static class Id {
+
+        /**
+         * Ids taken from an entity sequence at once; the sequences are altered to increment by it on startup.
+         */
+        private int allocationSize = 50;
+
+        public int getAllocationSize() {
+            return allocationSize;
+        }
+
+        public void setAllocationSize(int allocationSize) {
+            this.allocationSize = allocationSize;
+        }
+    }
+
+    public static class Search {
+
+        /**
+         * Engine of the story search: {@code postgres} for the full-text search of the database, or {@code memory}
+         * for an index held by this instance, rebuilt whenever a story or an element changed.
+         */
+        private String engine = "postgres";
+
+        /**
+         * Least trigram similarity of the words of a text to those of a query for the text to match it, from 0 to 1.
+         */
+        private double similarityThreshold = 0.5;
+
+        public String getEngine() {
+            return engine;
+        }
+
+        public void setEngine(String engine) {
+            this.engine = engine;
+        }
+
+        public double getSimilarityThreshold() {
+            return similarityThreshold;
+        }
+
+        public void setSimilarityThreshold(double similarityThreshold) {
+            this.similarityThreshold = similarityThreshold;
+        }
+    }
+
+    public static class Typeahead {
+
+        /**
+         * Estimated bytes of the words of the typeahead index; the rarest words are left out beyond it.
+         */
+        private long maxSize = 32L * 1024 * 1024;
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    public static class Security {
+
+        /**
+         * Validated tokens whose principal is kept until they expire; {@code 0} disables the cache.
+         */
+        private int tokenCacheSize = 10_000;
+
+        private final Password password = new Password();
+
+        private final RateLimit rateLimit = new RateLimit();
+
+        public int getTokenCacheSize() {
+            return tokenCacheSize;
+        }
+
+        public void setTokenCacheSize(int tokenCacheSize) {
+            this.tokenCacheSize = tokenCacheSize;
+        }
+
+        public Password getPassword() {
+            return password;
+        }
+
+        public RateLimit getRateLimit() {
+            return rateLimit;
+        }
+
+        public static class Password {
+
+            /**
+             * Log rounds of the BCrypt hashes; the hashes of a lower strength are upgraded on login.
+             */
+            private int strength = 10;
+
+            /**
+             * Passwords hashed or verified at the same time by this instance.
+             */
+            private int concurrency = 2;
+
+            /**
+             * Passwords waiting for a free worker; requests beyond it are refused with {@code 503 (Service Unavailable)}.
+             */
+            private int queueCapacity = 32;
+
+            public int getStrength() {
+                return strength;
+            }
+
+            public void setStrength(int strength) {
+                this.strength = strength;
+            }
+
+            public int getConcurrency() {
+                return concurrency;
+            }
+
+            public void setConcurrency(int concurrency) {
+                this.concurrency = concurrency;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+        }
+
+        public static class RateLimit {
+
+            private boolean enabled = true;
+
+            /**
+             * Buckets of clients and logins kept at once; beyond, a new bucket takes the place of the one closest to full.
+             */
+            private int maxBuckets = 100_000;
+
+            /**
+             * Limited endpoints, by name.
+             */
+            private Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMaxBuckets() {
+                return maxBuckets;
+            }
+
+            public void setMaxBuckets(int maxBuckets) {
+                this.maxBuckets = maxBuckets;
+            }
+
+            public Map<String, Endpoint> getEndpoints() {
+                return endpoints;
+            }
+
+            public void setEndpoints(Map<String, Endpoint> endpoints) {
+                this.endpoints = endpoints;
+            }
+
+            public static class Endpoint {
+
+                /**
+                 * Path of the endpoint, whose {@code POST} requests are limited.
+                 */
+                private String path;
+
+                /**
+                 * Field of the JSON body holding the login, or empty if the whole body is the login.
+                 */
+                private String loginField = "";
+
+                private final Limit perIp = new Limit();
+
+                private final Limit perLogin = new Limit();
+
+                public String getPath() {
+                    return path;
+                }
+
+                public void setPath(String path) {
+                    this.path = path;
+                }
+
+                public String getLoginField() {
+                    return loginField;
+                }
+
+                public void setLoginField(String loginField) {
+                    this.loginField = loginField;
+                }
+
+                public Limit getPerIp() {
+                    return perIp;
+                }
+
+                public Limit getPerLogin() {
+                    return perLogin;
+                }
+            }
+
+            public static class Limit {
+
+                /**
+                 * Requests allowed in a burst; {@code 0} disables the limit.
+                 */
+                private int capacity;
+
+                /**
+                 * Requests allowed again per minute after a burst.
+                 */
+                private int refillPerMinute;
+
+                public int getCapacity() {
+                    return capacity;
+                }
+
+                public void setCapacity(int capacity) {
+                    this.capacity = capacity;
+                }
+
+                public int getRefillPerMinute() {
+                    return refillPerMinute;
+                }
+
+                public void setRefillPerMinute(int refillPerMinute) {
+                    this.refillPerMinute = refillPerMinute;
+                }
+            }
+        }
+    }
+
+    public static class Mail {
+
+        /**
+         * Mails sent over one connection to the SMTP server; the outbox is drained batch after batch.
+         */
+        private int batchSize = 50;
+
+        private int maxAttempts = 5;
+
+        /**
+         * Delay before sending again a mail that couldn't be sent, doubled after each further attempt.
+         */
+        private long retryDelaySeconds = 30;
+
+        private long maxRetryDelaySeconds = 3600;
+
+        /**
+         * A mail still sending after this long is considered abandoned and queued again.
+         */
+        private long timeoutMinutes = 10;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getRetryDelaySeconds() {
+            return retryDelaySeconds;
+        }
+
+        public void setRetryDelaySeconds(long retryDelaySeconds) {
+            this.retryDelaySeconds = retryDelaySeconds;
+        }
+
+        public long getMaxRetryDelaySeconds() {
+            return maxRetryDelaySeconds;
+        }
+
+        public void setMaxRetryDelaySeconds(long maxRetryDelaySeconds) {
+            this.maxRetryDelaySeconds = maxRetryDelaySeconds;
+        }
+
+        public long getTimeoutMinutes() {
+            return timeoutMinutes;
+        }
+
+        public void setTimeoutMinutes(long timeoutMinutes) {
+            this.timeoutMinutes = timeoutMinutes;
+        }
+    }
     // jhipster-needle-application-properties-property-class
 }
@@ -25,8 +25,11 @@ public class AsyncConfiguration implements AsyncConfigurer {
 
     private final TaskExecutionProperties taskExecutionProperties;
 
-    public AsyncConfiguration(TaskExecutionProperties taskExecutionProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    public AsyncConfiguration(TaskExecutionProperties taskExecutionProperties, ApplicationProperties applicationProperties) {
         this.taskExecutionProperties = taskExecutionProperties;
+        this.applicationProperties = applicationProperties;
     }
 
     @Override
@@ -41,6 +44,53 @@ public class AsyncConfiguration implements AsyncConfigurer {
         return new ExceptionHandlingAsyncTaskExecutor(executor);
     }
 
+    @Bean(name = "transcodingExecutor")
+    public Executor getTranscodingExecutor() {
+        log.debug("Creating Transcoding Task Executor");
+        int concurrency = applicationProperties.getAudio().getTranscoding().getConcurrency();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(concurrency);
+        executor.setThreadNamePrefix("funny-listening-transcoding-");
+        return new ExceptionHandlingAsyncTaskExecutor(executor);
+    }
+
+    @Bean(name = "peaksExecutor")
+    public Executor getPeaksExecutor() {
+        log.debug("Creating Peaks Task Executor");
+        ApplicationProperties.Audio.Peaks peaks = applicationProperties.getAudio().getPeaks();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(peaks.getConcurrency());
+        executor.setMaxPoolSize(peaks.getConcurrency());
+        executor.setQueueCapacity(peaks.getQueueCapacity());
+        executor.setThreadNamePrefix("funny-listening-peaks-");
+        return new ExceptionHandlingAsyncTaskExecutor(executor);
+    }
+
+    @Bean(name = "passwordHashingExecutor")
+    public Executor getPasswordHashingExecutor() {
+        log.debug("Creating Password Hashing Task Executor");
+        ApplicationProperties.Security.Password password = applicationProperties.getSecurity().getPassword();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(password.getConcurrency());
+        executor.setMaxPoolSize(password.getConcurrency());
+        executor.setQueueCapacity(password.getQueueCapacity());
+        executor.setThreadNamePrefix("funny-listening-password-");
+        return new ExceptionHandlingAsyncTaskExecutor(executor);
+    }
+
+    @Bean(name = "mailExecutor")
+    public Executor getMailExecutor() {
+        log.debug("Creating Mail Task Executor");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("funny-listening-mail-");
+        return new ExceptionHandlingAsyncTaskExecutor(executor);
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return new SimpleAsyncUncaughtExceptionHandler();
@@ -2,15 +2,26 @@ package ru.funnylistening.app.config;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import ru.funnylistening.app.domain.PooledLoSequenceGenerator;
 import tech.jhipster.config.JHipsterConstants;
 
 @Configuration
 @EnableJpaRepositories({ "ru.funnylistening.app.repository" })
 @EnableJpaAuditing(auditorAwareRef = "springSecurityAuditorAware")
 @EnableTransactionManagement
-public class DatabaseConfiguration {}
+public class DatabaseConfiguration {
+
+    /**
+     * Hands the configured id allocation size to the {@link PooledLoSequenceGenerator} of the entities.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer idAllocationSizeCustomizer(ApplicationProperties applicationProperties) {
+        return properties -> properties.put(PooledLoSequenceGenerator.ALLOCATION_SIZE_SETTING, applicationProperties.getId().getAllocationSize());
+    }
+}
@@ -1,5 +1,7 @@
 package ru.funnylistening.app.config;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import javax.sql.DataSource;
 import liquibase.integration.spring.SpringLiquibase;
@@ -34,7 +36,8 @@ public class LiquibaseConfiguration {
         @LiquibaseDataSource ObjectProvider<DataSource> liquibaseDataSource,
         LiquibaseProperties liquibaseProperties,
         ObjectProvider<DataSource> dataSource,
-        DataSourceProperties dataSourceProperties
+        DataSourceProperties dataSourceProperties,
+        ApplicationProperties applicationProperties
     ) {
         // If you don't want Liquibase to start asynchronously, substitute by this:
         // SpringLiquibase liquibase = SpringLiquibaseUtil.createSpringLiquibase(liquibaseDataSource.getIfAvailable(), liquibaseProperties, dataSource.getIfUnique(), dataSourceProperties);
@@ -55,7 +58,12 @@ public class LiquibaseConfiguration {
         liquibase.setDatabaseChangeLogTable(liquibaseProperties.getDatabaseChangeLogTable());
         liquibase.setDropFirst(liquibaseProperties.isDropFirst());
         liquibase.setLabels(liquibaseProperties.getLabels());
-        liquibase.setChangeLogParameters(liquibaseProperties.getParameters());
+        Map<String, String> parameters = new HashMap<>();
+        if (liquibaseProperties.getParameters() != null) {
+            parameters.putAll(liquibaseProperties.getParameters());
+        }
+        parameters.put("idAllocationSize", Integer.toString(applicationProperties.getId().getAllocationSize()));
+        liquibase.setChangeLogParameters(parameters);
         liquibase.setRollbackFile(liquibaseProperties.getRollbackFile());
         liquibase.setTestRollbackOnUpdate(liquibaseProperties.isTestRollbackOnUpdate());
         if (env.acceptsProfiles(Profiles.of(JHipsterConstants.SPRING_PROFILE_NO_LIQUIBASE))) {
@@ -1,5 +1,8 @@
 package ru.funnylistening.app.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.Executor;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpMethod;
@@ -16,6 +19,8 @@ import org.springframework.web.filter.CorsFilter;
 import org.zalando.problem.spring.web.advice.security.SecurityProblemSupport;
 import ru.funnylistening.app.security.*;
 import ru.funnylistening.app.security.jwt.*;
+import ru.funnylistening.app.security.ratelimit.RateLimitFilter;
+import ru.funnylistening.app.security.ratelimit.RateLimiter;
 import tech.jhipster.config.JHipsterProperties;
 
 @EnableWebSecurity
@@ -27,24 +32,33 @@ public class SecurityConfiguration {
 
     private final TokenProvider tokenProvider;
 
+    private final RateLimiter rateLimiter;
+
     private final CorsFilter corsFilter;
     private final SecurityProblemSupport problemSupport;
 
     public SecurityConfiguration(
         TokenProvider tokenProvider,
+        RateLimiter rateLimiter,
         CorsFilter corsFilter,
         JHipsterProperties jHipsterProperties,
         SecurityProblemSupport problemSupport
     ) {
         this.tokenProvider = tokenProvider;
+        this.rateLimiter = rateLimiter;
         this.corsFilter = corsFilter;
         this.problemSupport = problemSupport;
         this.jHipsterProperties = jHipsterProperties;
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+        ApplicationProperties applicationProperties,
+        @Qualifier("passwordHashingExecutor") Executor passwordHashingExecutor,
+        MeterRegistry meterRegistry
+    ) {
+        int strength = applicationProperties.getSecurity().getPassword().getStrength();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), passwordHashingExecutor, meterRegistry);
     }
 
     @Bean
@@ -54,6 +68,8 @@ public class SecurityConfiguration {
             .csrf()
             .disable()
             .addFilterBefore(corsFilter, UsernamePasswordAuthenticationFilter.class)
+            // before the JWT filter, added with the same order when the configurer is applied
+            .addFilterBefore(new RateLimitFilter(rateLimiter), UsernamePasswordAuthenticationFilter.class)
             .exceptionHandling()
                 .authenticationEntryPoint(problemSupport)
                 .accessDeniedHandler(problemSupport)
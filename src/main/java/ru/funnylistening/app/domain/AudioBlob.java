@@ -0,0 +1,137 @@
+package ru.funnylistening.app.domain;
+
+import java.io.Serializable;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+/**
+ * A AudioBlob: one stored audio content, shared by every element whose audio has the same SHA-256.
+ */
+@Entity
+@Table(name = "audio_blob")
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class AudioBlob implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    @Column(name = "id")
+    private Long id;
+
+    @NotNull
+    @Size(min = 64, max = 64)
+    @Column(name = "sha_256", length = 64, nullable = false, unique = true)
+    private String sha256;
+
+    @NotNull
+    @Column(name = "location", nullable = false, unique = true)
+    private String location;
+
+    @NotNull
+    @Column(name = "byte_size", nullable = false)
+    private Long byteSize;
+
+    @NotNull
+    @Column(name = "reference_count", nullable = false)
+    private Integer referenceCount;
+
+    // jhipster-needle-entity-add-field - JHipster will add fields here
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public AudioBlob id(Long id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getSha256() {
+        return this.sha256;
+    }
+
+    public AudioBlob sha256(String sha256) {
+        this.setSha256(sha256);
+        return this;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public String getLocation() {
+        return this.location;
+    }
+
+    public AudioBlob location(String location) {
+        this.setLocation(location);
+        return this;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public Long getByteSize() {
+        return this.byteSize;
+    }
+
+    public AudioBlob byteSize(Long byteSize) {
+        this.setByteSize(byteSize);
+        return this;
+    }
+
+    public void setByteSize(Long byteSize) {
+        this.byteSize = byteSize;
+    }
+
+    public Integer getReferenceCount() {
+        return this.referenceCount;
+    }
+
+    public AudioBlob referenceCount(Integer referenceCount) {
+        this.setReferenceCount(referenceCount);
+        return this;
+    }
+
+    public void setReferenceCount(Integer referenceCount) {
+        this.referenceCount = referenceCount;
+    }
+
+    // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AudioBlob)) {
+            return false;
+        }
+        return id != null && id.equals(((AudioBlob) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "AudioBlob{" +
+            "id=" + getId() +
+            ", sha256='" + getSha256() + "'" +
+            ", location='" + getLocation() + "'" +
+            ", byteSize=" + getByteSize() +
+            ", referenceCount=" + getReferenceCount() +
+            "}";
+    }
+}
@@ -0,0 +1,194 @@
+package ru.funnylistening.app.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+import ru.funnylistening.app.domain.enumeration.AudioQuality;
+import ru.funnylistening.app.domain.enumeration.TranscodingStatus;
+
+/**
+ * A AudioRendition: one transcoded quality of an {@link AudioBlob}, which is also its entry in the transcoding queue.
+ */
+@Entity
+@Table(name = "audio_rendition")
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class AudioRendition implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    @Column(name = "id")
+    private Long id;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "quality", nullable = false)
+    private AudioQuality quality;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private TranscodingStatus status;
+
+    @Column(name = "location")
+    private String location;
+
+    @Column(name = "byte_size")
+    private Long byteSize;
+
+    @NotNull
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts;
+
+    @NotNull
+    @Column(name = "updated_date", nullable = false)
+    private Instant updatedDate;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @NotNull
+    @JsonIgnore
+    private AudioBlob blob;
+
+    // jhipster-needle-entity-add-field - JHipster will add fields here
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public AudioRendition id(Long id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public AudioQuality getQuality() {
+        return this.quality;
+    }
+
+    public AudioRendition quality(AudioQuality quality) {
+        this.setQuality(quality);
+        return this;
+    }
+
+    public void setQuality(AudioQuality quality) {
+        this.quality = quality;
+    }
+
+    public TranscodingStatus getStatus() {
+        return this.status;
+    }
+
+    public AudioRendition status(TranscodingStatus status) {
+        this.setStatus(status);
+        return this;
+    }
+
+    public void setStatus(TranscodingStatus status) {
+        this.status = status;
+    }
+
+    public String getLocation() {
+        return this.location;
+    }
+
+    public AudioRendition location(String location) {
+        this.setLocation(location);
+        return this;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public Long getByteSize() {
+        return this.byteSize;
+    }
+
+    public AudioRendition byteSize(Long byteSize) {
+        this.setByteSize(byteSize);
+        return this;
+    }
+
+    public void setByteSize(Long byteSize) {
+        this.byteSize = byteSize;
+    }
+
+    public Integer getAttempts() {
+        return this.attempts;
+    }
+
+    public AudioRendition attempts(Integer attempts) {
+        this.setAttempts(attempts);
+        return this;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public Instant getUpdatedDate() {
+        return this.updatedDate;
+    }
+
+    public AudioRendition updatedDate(Instant updatedDate) {
+        this.setUpdatedDate(updatedDate);
+        return this;
+    }
+
+    public void setUpdatedDate(Instant updatedDate) {
+        this.updatedDate = updatedDate;
+    }
+
+    public AudioBlob getBlob() {
+        return this.blob;
+    }
+
+    public void setBlob(AudioBlob audioBlob) {
+        this.blob = audioBlob;
+    }
+
+    public AudioRendition blob(AudioBlob audioBlob) {
+        this.setBlob(audioBlob);
+        return this;
+    }
+
+    // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AudioRendition)) {
+            return false;
+        }
+        return id != null && id.equals(((AudioRendition) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "AudioRendition{" +
+            "id=" + getId() +
+            ", quality='" + getQuality() + "'" +
+            ", status='" + getStatus() + "'" +
+            ", location='" + getLocation() + "'" +
+            ", byteSize=" + getByteSize() +
+            ", attempts=" + getAttempts() +
+            ", updatedDate='" + getUpdatedDate() + "'" +
+            "}";
+    }
+}
@@ -2,12 +2,17 @@ package ru.funnylistening.app.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 import javax.persistence.*;
 import javax.validation.constraints.*;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 /**
  * A Element.
@@ -15,14 +20,20 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
 @Entity
 @Table(name = "element")
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(AuditingEntityListener.class)
+@JsonIgnoreProperties(value = { "lastModifiedDate" }, allowGetters = true)
 @SuppressWarnings("common-java:DuplicatedBlocks")
 public class Element implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
-    @SequenceGenerator(name = "sequenceGenerator")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "elementSequenceGenerator")
+    @GenericGenerator(
+        name = "elementSequenceGenerator",
+        strategy = "ru.funnylistening.app.domain.PooledLoSequenceGenerator",
+        parameters = @Parameter(name = "sequence_name", value = "element_sequence")
+    )
     @Column(name = "id")
     private Long id;
 
@@ -42,6 +53,14 @@ public class Element implements Serializable {
     @JsonIgnoreProperties(value = { "entireStoryElements", "elements" }, allowSetters = true)
     private Set<Story> stories = new HashSet<>();
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @LastModifiedDate
+    @Column(name = "last_modified_date", nullable = false)
+    private Instant lastModifiedDate = Instant.now();
+
     // jhipster-needle-entity-add-field - JHipster will add fields here
 
     public Long getId() {
@@ -117,7 +136,9 @@ public class Element implements Serializable {
 
     public Element addStory(Story story) {
         this.stories.add(story);
-        story.getElements().add(this);
+        if (!story.getElements().contains(this)) {
+            story.getElements().add(this);
+        }
         return this;
     }
 
@@ -127,6 +148,22 @@ public class Element implements Serializable {
         return this;
     }
 
+    public Long getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getLastModifiedDate() {
+        return this.lastModifiedDate;
+    }
+
+    public void setLastModifiedDate(Instant lastModifiedDate) {
+        this.lastModifiedDate = lastModifiedDate;
+    }
+
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
 
     @Override
@@ -1,10 +1,16 @@
 package ru.funnylistening.app.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.io.Serializable;
+import java.time.Instant;
 import javax.persistence.*;
 import javax.validation.constraints.*;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 /**
  * A Link.
@@ -12,14 +18,20 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
 @Entity
 @Table(name = "link")
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(AuditingEntityListener.class)
+@JsonIgnoreProperties(value = { "lastModifiedDate" }, allowGetters = true)
 @SuppressWarnings("common-java:DuplicatedBlocks")
 public class Link implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
-    @SequenceGenerator(name = "sequenceGenerator")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "linkSequenceGenerator")
+    @GenericGenerator(
+        name = "linkSequenceGenerator",
+        strategy = "ru.funnylistening.app.domain.PooledLoSequenceGenerator",
+        parameters = @Parameter(name = "sequence_name", value = "link_sequence")
+    )
     @Column(name = "id")
     private Long id;
 
@@ -27,6 +39,14 @@ public class Link implements Serializable {
     @Column(name = "link_text", nullable = false)
     private String linkText;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @LastModifiedDate
+    @Column(name = "last_modified_date", nullable = false)
+    private Instant lastModifiedDate = Instant.now();
+
     // jhipster-needle-entity-add-field - JHipster will add fields here
 
     public Long getId() {
@@ -55,6 +75,22 @@ public class Link implements Serializable {
         this.linkText = linkText;
     }
 
+    public Long getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getLastModifiedDate() {
+        return this.lastModifiedDate;
+    }
+
+    public void setLastModifiedDate(Instant lastModifiedDate) {
+        this.lastModifiedDate = lastModifiedDate;
+    }
+
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
 
     @Override
@@ -0,0 +1,250 @@
+package ru.funnylistening.app.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+import org.hibernate.annotations.Type;
+import ru.funnylistening.app.domain.enumeration.MailStatus;
+
+/**
+ * A OutgoingMail: a mail in the outbox, kept until it is sent.
+ */
+@Entity
+@Table(name = "outgoing_mail")
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class OutgoingMail implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    @Column(name = "id")
+    private Long id;
+
+    @NotNull
+    @Size(max = 254)
+    @Column(name = "recipient", length = 254, nullable = false)
+    private String recipient;
+
+    @NotNull
+    @Column(name = "subject", nullable = false)
+    private String subject;
+
+    @NotNull
+    @Lob
+    @Type(type = "org.hibernate.type.TextType")
+    @Column(name = "content", nullable = false)
+    private String content;
+
+    @NotNull
+    @Column(name = "multipart", nullable = false)
+    private Boolean multipart;
+
+    @NotNull
+    @Column(name = "html", nullable = false)
+    private Boolean html;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private MailStatus status;
+
+    @NotNull
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    private Instant createdDate;
+
+    @NotNull
+    @Column(name = "next_attempt_date", nullable = false)
+    private Instant nextAttemptDate;
+
+    @NotNull
+    @Column(name = "updated_date", nullable = false)
+    private Instant updatedDate;
+
+    // jhipster-needle-entity-add-field - JHipster will add fields here
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public OutgoingMail id(Long id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getRecipient() {
+        return this.recipient;
+    }
+
+    public OutgoingMail recipient(String recipient) {
+        this.setRecipient(recipient);
+        return this;
+    }
+
+    public void setRecipient(String recipient) {
+        this.recipient = recipient;
+    }
+
+    public String getSubject() {
+        return this.subject;
+    }
+
+    public OutgoingMail subject(String subject) {
+        this.setSubject(subject);
+        return this;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getContent() {
+        return this.content;
+    }
+
+    public OutgoingMail content(String content) {
+        this.setContent(content);
+        return this;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public Boolean getMultipart() {
+        return this.multipart;
+    }
+
+    public OutgoingMail multipart(Boolean multipart) {
+        this.setMultipart(multipart);
+        return this;
+    }
+
+    public void setMultipart(Boolean multipart) {
+        this.multipart = multipart;
+    }
+
+    public Boolean getHtml() {
+        return this.html;
+    }
+
+    public OutgoingMail html(Boolean html) {
+        this.setHtml(html);
+        return this;
+    }
+
+    public void setHtml(Boolean html) {
+        this.html = html;
+    }
+
+    public MailStatus getStatus() {
+        return this.status;
+    }
+
+    public OutgoingMail status(MailStatus status) {
+        this.setStatus(status);
+        return this;
+    }
+
+    public void setStatus(MailStatus status) {
+        this.status = status;
+    }
+
+    public Integer getAttempts() {
+        return this.attempts;
+    }
+
+    public OutgoingMail attempts(Integer attempts) {
+        this.setAttempts(attempts);
+        return this;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public Instant getCreatedDate() {
+        return this.createdDate;
+    }
+
+    public OutgoingMail createdDate(Instant createdDate) {
+        this.setCreatedDate(createdDate);
+        return this;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Instant getNextAttemptDate() {
+        return this.nextAttemptDate;
+    }
+
+    public OutgoingMail nextAttemptDate(Instant nextAttemptDate) {
+        this.setNextAttemptDate(nextAttemptDate);
+        return this;
+    }
+
+    public void setNextAttemptDate(Instant nextAttemptDate) {
+        this.nextAttemptDate = nextAttemptDate;
+    }
+
+    public Instant getUpdatedDate() {
+        return this.updatedDate;
+    }
+
+    public OutgoingMail updatedDate(Instant updatedDate) {
+        this.setUpdatedDate(updatedDate);
+        return this;
+    }
+
+    public void setUpdatedDate(Instant updatedDate) {
+        this.updatedDate = updatedDate;
+    }
+
+    // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OutgoingMail)) {
+            return false;
+        }
+        return id != null && id.equals(((OutgoingMail) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "OutgoingMail{" +
+            "id=" + getId() +
+            ", recipient='" + getRecipient() + "'" +
+            ", subject='" + getSubject() + "'" +
+            ", multipart='" + getMultipart() + "'" +
+            ", html='" + getHtml() + "'" +
+            ", status='" + getStatus() + "'" +
+            ", attempts=" + getAttempts() +
+            ", createdDate='" + getCreatedDate() + "'" +
+            ", nextAttemptDate='" + getNextAttemptDate() + "'" +
+            ", updatedDate='" + getUpdatedDate() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,35 @@
+package ru.funnylistening.app.domain;
+
+import java.util.Properties;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Id generator of the entities with a sequence of their own, taking ids from it a range at a time with the
+ * {@code pooled-lo} optimizer: every value fetched is the first id of a range as long as the allocation size, so
+ * that only one insert in that many costs a sequence round trip.
+ *
+ * The allocation size is a Hibernate setting rather than a mapping attribute, so that it can be configured;
+ * the sequences must increment by the same size.
+ */
+public class PooledLoSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String ALLOCATION_SIZE_SETTING = "application.id.allocation-size";
+
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        int allocationSize = serviceRegistry
+            .getService(ConfigurationService.class)
+            .getSetting(ALLOCATION_SIZE_SETTING, StandardConverters.INTEGER, DEFAULT_ALLOCATION_SIZE);
+        params.setProperty(INCREMENT_PARAM, Integer.toString(allocationSize));
+        params.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        super.configure(type, params, serviceRegistry);
+    }
+}
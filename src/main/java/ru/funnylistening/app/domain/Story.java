@@ -2,12 +2,20 @@ package ru.funnylistening.app.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import javax.persistence.*;
 import javax.validation.constraints.*;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 /**
  * A Story.
@@ -15,14 +23,20 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
 @Entity
 @Table(name = "story")
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(AuditingEntityListener.class)
+@JsonIgnoreProperties(value = { "lastModifiedDate" }, allowGetters = true)
 @SuppressWarnings("common-java:DuplicatedBlocks")
 public class Story implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
-    @SequenceGenerator(name = "sequenceGenerator")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "storySequenceGenerator")
+    @GenericGenerator(
+        name = "storySequenceGenerator",
+        strategy = "ru.funnylistening.app.domain.PooledLoSequenceGenerator",
+        parameters = @Parameter(name = "sequence_name", value = "story_sequence")
+    )
     @Column(name = "id")
     private Long id;
 
@@ -31,6 +45,7 @@ public class Story implements Serializable {
     private String storyName;
 
     @OneToMany(mappedBy = "entireStory")
+    @BatchSize(size = 500)
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JsonIgnoreProperties(value = { "entireStory", "stories" }, allowSetters = true)
     private Set<Element> entireStoryElements = new HashSet<>();
@@ -41,9 +56,19 @@ public class Story implements Serializable {
         joinColumns = @JoinColumn(name = "story_id"),
         inverseJoinColumns = @JoinColumn(name = "elements_id")
     )
+    @OrderColumn(name = "elements_order")
+    @BatchSize(size = 500)
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JsonIgnoreProperties(value = { "entireStory", "stories" }, allowSetters = true)
-    private Set<Element> elements = new HashSet<>();
+    private List<Element> elements = new ArrayList<>();
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @LastModifiedDate
+    @Column(name = "last_modified_date", nullable = false)
+    private Instant lastModifiedDate = Instant.now();
 
     // jhipster-needle-entity-add-field - JHipster will add fields here
 
@@ -104,21 +129,26 @@ public class Story implements Serializable {
         return this;
     }
 
-    public Set<Element> getElements() {
+    /**
+     * @return the elements in story order, each at most once.
+     */
+    public List<Element> getElements() {
         return this.elements;
     }
 
-    public void setElements(Set<Element> elements) {
+    public void setElements(List<Element> elements) {
         this.elements = elements;
     }
 
-    public Story elements(Set<Element> elements) {
+    public Story elements(List<Element> elements) {
         this.setElements(elements);
         return this;
     }
 
     public Story addElements(Element element) {
-        this.elements.add(element);
+        if (!this.elements.contains(element)) {
+            this.elements.add(element);
+        }
         element.getStories().add(this);
         return this;
     }
@@ -129,6 +159,22 @@ public class Story implements Serializable {
         return this;
     }
 
+    public Long getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getLastModifiedDate() {
+        return this.lastModifiedDate;
+    }
+
+    public void setLastModifiedDate(Instant lastModifiedDate) {
+        this.lastModifiedDate = lastModifiedDate;
+    }
+
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
 
     @Override
@@ -0,0 +1,207 @@
+package ru.funnylistening.app.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.io.Serializable;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+/**
+ * A StoryAudioSegment: the place of one element's audio in the stitched audio of a {@link Story}.
+ */
+@Entity
+@Table(name = "story_audio_segment")
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class StoryAudioSegment implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    @Column(name = "id")
+    private Long id;
+
+    @NotNull
+    @Column(name = "segment_position", nullable = false)
+    private Integer position;
+
+    @NotNull
+    @Column(name = "element_id", nullable = false)
+    private Long elementId;
+
+    @NotNull
+    @Column(name = "audio_path", nullable = false)
+    private String audioPath;
+
+    @NotNull
+    @Column(name = "audio_etag", nullable = false)
+    private String audioEtag;
+
+    @NotNull
+    @Column(name = "byte_offset", nullable = false)
+    private Long byteOffset;
+
+    @NotNull
+    @Column(name = "byte_length", nullable = false)
+    private Long byteLength;
+
+    @Column(name = "duration_millis")
+    private Long durationMillis;
+
+    @JsonIgnore
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @NotNull
+    private Story story;
+
+    // jhipster-needle-entity-add-field - JHipster will add fields here
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public StoryAudioSegment id(Long id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Integer getPosition() {
+        return this.position;
+    }
+
+    public StoryAudioSegment position(Integer position) {
+        this.setPosition(position);
+        return this;
+    }
+
+    public void setPosition(Integer position) {
+        this.position = position;
+    }
+
+    public Long getElementId() {
+        return this.elementId;
+    }
+
+    public StoryAudioSegment elementId(Long elementId) {
+        this.setElementId(elementId);
+        return this;
+    }
+
+    public void setElementId(Long elementId) {
+        this.elementId = elementId;
+    }
+
+    public String getAudioPath() {
+        return this.audioPath;
+    }
+
+    public StoryAudioSegment audioPath(String audioPath) {
+        this.setAudioPath(audioPath);
+        return this;
+    }
+
+    public void setAudioPath(String audioPath) {
+        this.audioPath = audioPath;
+    }
+
+    public String getAudioEtag() {
+        return this.audioEtag;
+    }
+
+    public StoryAudioSegment audioEtag(String audioEtag) {
+        this.setAudioEtag(audioEtag);
+        return this;
+    }
+
+    public void setAudioEtag(String audioEtag) {
+        this.audioEtag = audioEtag;
+    }
+
+    public Long getByteOffset() {
+        return this.byteOffset;
+    }
+
+    public StoryAudioSegment byteOffset(Long byteOffset) {
+        this.setByteOffset(byteOffset);
+        return this;
+    }
+
+    public void setByteOffset(Long byteOffset) {
+        this.byteOffset = byteOffset;
+    }
+
+    public Long getByteLength() {
+        return this.byteLength;
+    }
+
+    public StoryAudioSegment byteLength(Long byteLength) {
+        this.setByteLength(byteLength);
+        return this;
+    }
+
+    public void setByteLength(Long byteLength) {
+        this.byteLength = byteLength;
+    }
+
+    public Long getDurationMillis() {
+        return this.durationMillis;
+    }
+
+    public StoryAudioSegment durationMillis(Long durationMillis) {
+        this.setDurationMillis(durationMillis);
+        return this;
+    }
+
+    public void setDurationMillis(Long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public Story getStory() {
+        return this.story;
+    }
+
+    public void setStory(Story story) {
+        this.story = story;
+    }
+
+    public StoryAudioSegment story(Story story) {
+        this.setStory(story);
+        return this;
+    }
+
+    // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StoryAudioSegment)) {
+            return false;
+        }
+        return id != null && id.equals(((StoryAudioSegment) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StoryAudioSegment{" +
+            "id=" + getId() +
+            ", position=" + getPosition() +
+            ", elementId=" + getElementId() +
+            ", audioPath='" + getAudioPath() + "'" +
+            ", byteOffset=" + getByteOffset() +
+            ", byteLength=" + getByteLength() +
+            ", durationMillis=" + getDurationMillis() +
+            "}";
+    }
+}
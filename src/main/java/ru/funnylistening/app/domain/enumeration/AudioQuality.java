@@ -0,0 +1,10 @@
+package ru.funnylistening.app.domain.enumeration;
+
+/**
+ * The AudioQuality enumeration: the renditions produced for every element audio.
+ */
+public enum AudioQuality {
+    LOW,
+    MEDIUM,
+    HIGH,
+}
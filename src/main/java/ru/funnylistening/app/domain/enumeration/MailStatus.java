@@ -0,0 +1,10 @@
+package ru.funnylistening.app.domain.enumeration;
+
+/**
+ * The MailStatus enumeration: the states of a mail in the outbox, which it leaves once sent.
+ */
+public enum MailStatus {
+    PENDING,
+    SENDING,
+    FAILED,
+}
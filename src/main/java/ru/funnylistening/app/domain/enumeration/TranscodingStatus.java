@@ -0,0 +1,15 @@
+package ru.funnylistening.app.domain.enumeration;
+
+/**
+ * The TranscodingStatus enumeration.
+ */
+public enum TranscodingStatus {
+    PENDING,
+    RUNNING,
+    DONE,
+    /**
+     * The encoder can't read the source, or the rendition wouldn't be smaller than it: the original is served instead.
+     */
+    SKIPPED,
+    FAILED,
+}
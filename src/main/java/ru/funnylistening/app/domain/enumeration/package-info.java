@@ -0,0 +1,4 @@
+/**
+ * JPA domain enumerations.
+ */
+package ru.funnylistening.app.domain.enumeration;
@@ -13,16 +13,24 @@ public class SecurityMetersService {
     public static final String INVALID_TOKENS_METER_BASE_UNIT = "errors";
     public static final String INVALID_TOKENS_METER_CAUSE_DIMENSION = "cause";
 
+    public static final String TOKEN_CACHE_METER_NAME = "security.authentication.token-cache.requests";
+    public static final String TOKEN_CACHE_METER_DESCRIPTION = "Tokens authenticated from the cache of validated tokens, or not.";
+    public static final String TOKEN_CACHE_METER_RESULT_DIMENSION = "result";
+
     private final Counter tokenInvalidSignatureCounter;
     private final Counter tokenExpiredCounter;
     private final Counter tokenUnsupportedCounter;
     private final Counter tokenMalformedCounter;
+    private final Counter tokenCacheHitCounter;
+    private final Counter tokenCacheMissCounter;
 
     public SecurityMetersService(MeterRegistry registry) {
         this.tokenInvalidSignatureCounter = invalidTokensCounterForCauseBuilder("invalid-signature").register(registry);
         this.tokenExpiredCounter = invalidTokensCounterForCauseBuilder("expired").register(registry);
         this.tokenUnsupportedCounter = invalidTokensCounterForCauseBuilder("unsupported").register(registry);
         this.tokenMalformedCounter = invalidTokensCounterForCauseBuilder("malformed").register(registry);
+        this.tokenCacheHitCounter = tokenCacheCounterForResultBuilder("hit").register(registry);
+        this.tokenCacheMissCounter = tokenCacheCounterForResultBuilder("miss").register(registry);
     }
 
     private Counter.Builder invalidTokensCounterForCauseBuilder(String cause) {
@@ -33,6 +41,10 @@ public class SecurityMetersService {
             .tag(INVALID_TOKENS_METER_CAUSE_DIMENSION, cause);
     }
 
+    private Counter.Builder tokenCacheCounterForResultBuilder(String result) {
+        return Counter.builder(TOKEN_CACHE_METER_NAME).description(TOKEN_CACHE_METER_DESCRIPTION).tag(TOKEN_CACHE_METER_RESULT_DIMENSION, result);
+    }
+
     public void trackTokenInvalidSignature() {
         this.tokenInvalidSignatureCounter.increment();
     }
@@ -48,4 +60,12 @@ public class SecurityMetersService {
     public void trackTokenMalformed() {
         this.tokenMalformedCounter.increment();
     }
+
+    public void trackTokenCacheHit() {
+        this.tokenCacheHitCounter.increment();
+    }
+
+    public void trackTokenCacheMiss() {
+        this.tokenCacheMissCounter.increment();
+    }
 }
@@ -0,0 +1,37 @@
+package ru.funnylistening.app.repository;
+
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.funnylistening.app.domain.AudioBlob;
+
+/**
+ * Spring Data JPA repository for the AudioBlob entity.
+ *
+ * Blobs are locked while their reference count changes, so concurrent element writes can't lose a reference.
+ * The content of a blob is locked before it is stored or its files are deleted, so a content is stored by one
+ * transaction at a time and its files are never deleted while a transaction is storing it.
+ */
+@Repository
+public interface AudioBlobRepository extends JpaRepository<AudioBlob, Long> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<AudioBlob> findOneBySha256(String sha256);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<AudioBlob> findOneByLocation(String location);
+
+    boolean existsBySha256(String sha256);
+
+    boolean existsByLocation(String location);
+
+    /**
+     * Lock a content until the end of the current transaction, whether or not a blob stores it yet.
+     */
+    @Query(value = "select 1 from pg_advisory_xact_lock(hashtext(:sha256))", nativeQuery = true)
+    Integer lockContent(@Param("sha256") String sha256);
+
+    @Query("select blob.sha256 from AudioBlob blob where blob.location = :location")
+    Optional<String> findSha256ByLocation(@Param("location") String location);
+}
@@ -0,0 +1,43 @@
+package ru.funnylistening.app.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.funnylistening.app.domain.AudioBlob;
+import ru.funnylistening.app.domain.AudioRendition;
+import ru.funnylistening.app.domain.enumeration.AudioQuality;
+import ru.funnylistening.app.domain.enumeration.TranscodingStatus;
+
+/**
+ * Spring Data JPA repository for the AudioRendition entity.
+ *
+ * Pending renditions are claimed with {@code SKIP LOCKED}, so several instances can share the transcoding queue.
+ */
+@Repository
+public interface AudioRenditionRepository extends JpaRepository<AudioRendition, Long> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query("select rendition from AudioRendition rendition where rendition.status = :status order by rendition.id")
+    List<AudioRendition> findAllForUpdateByStatus(@Param("status") TranscodingStatus status, Pageable pageable);
+
+    List<AudioRendition> findAllByBlob(AudioBlob blob);
+
+    @Query(
+        "select rendition from AudioRendition rendition where rendition.blob.location = :location" +
+        " and rendition.quality = :quality and rendition.status = ru.funnylistening.app.domain.enumeration.TranscodingStatus.DONE"
+    )
+    Optional<AudioRendition> findDoneByBlobLocationAndQuality(@Param("location") String location, @Param("quality") AudioQuality quality);
+
+    @Modifying
+    @Query(
+        "update AudioRendition rendition set rendition.status = ru.funnylistening.app.domain.enumeration.TranscodingStatus.PENDING" +
+        " where rendition.status = ru.funnylistening.app.domain.enumeration.TranscodingStatus.RUNNING and rendition.updatedDate < :before"
+    )
+    int requeueRunningBefore(@Param("before") Instant before);
+}
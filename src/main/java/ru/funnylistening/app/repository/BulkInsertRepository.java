@@ -0,0 +1,165 @@
+package ru.funnylistening.app.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.Story;
+
+/**
+ * Inserts stories, elements and their links with JDBC batches, for imports too large to go through the entities.
+ *
+ * Ids are taken from the sequence of each entity a whole range at a time, the way the pooled-lo optimizer of the
+ * entities does: every value fetched is the first of as many ids as the allocation size, so ids allocated here never
+ * collide with those allocated by Hibernate. Version and last modification date columns are left to their database
+ * defaults.
+ *
+ * Nothing inserted here goes through the persistence context or the second-level cache: the cached {@code elements}
+ * of the stories that get new elements are evicted.
+ */
+@Repository
+public class BulkInsertRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EntityManager entityManager;
+
+    private final int allocationSize;
+
+    public BulkInsertRepository(JdbcTemplate jdbcTemplate, EntityManager entityManager, ApplicationProperties applicationProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.allocationSize = applicationProperties.getId().getAllocationSize();
+    }
+
+    /**
+     * Allocate new story ids.
+     *
+     * @param count the number of ids.
+     * @return the ids, in increasing order within each allocated range.
+     */
+    public List<Long> allocateStoryIds(int count) {
+        return allocateIds("story_sequence", count);
+    }
+
+    /**
+     * Allocate new element ids.
+     *
+     * @param count the number of ids.
+     * @return the ids, in increasing order within each allocated range.
+     */
+    public List<Long> allocateElementIds(int count) {
+        return allocateIds("element_sequence", count);
+    }
+
+    private List<Long> allocateIds(String sequence, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        if (count == 0) {
+            return ids;
+        }
+        int ranges = (count + allocationSize - 1) / allocationSize;
+        List<Long> lows = jdbcTemplate.queryForList("select nextval(?::regclass) from generate_series(1, ?)", Long.class, sequence, ranges);
+        for (Long low : lows) {
+            for (long id = low; id < low + allocationSize && ids.size() < count; id++) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Insert stories in a single batch.
+     *
+     * @param ids the ids of the stories, allocated with {@link #allocateStoryIds(int)}.
+     * @param storyNames their names, in the same order.
+     */
+    public void insertStories(List<Long> ids, List<String> storyNames) {
+        batchUpdate(
+            "insert into story (id, story_name) values (?, ?)",
+            ids.size(),
+            (statement, index) -> {
+                statement.setLong(1, ids.get(index));
+                statement.setString(2, storyNames.get(index));
+            }
+        );
+    }
+
+    /**
+     * Insert elements in a single batch.
+     *
+     * @param ids the ids of the elements, allocated with {@link #allocateElementIds(int)}.
+     * @param elementTexts their texts, in the same order.
+     * @param elementAudioPaths their audio locations, in the same order.
+     */
+    public void insertElements(List<Long> ids, List<String> elementTexts, List<String> elementAudioPaths) {
+        batchUpdate(
+            "insert into element (id, element_text, element_audio_path) values (?, ?, ?)",
+            ids.size(),
+            (statement, index) -> {
+                statement.setLong(1, ids.get(index));
+                statement.setString(2, elementTexts.get(index));
+                statement.setString(3, elementAudioPaths.get(index));
+            }
+        );
+    }
+
+    /**
+     * Add elements to stories in a single batch, each after the last element of its story.
+     *
+     * @param storyIds the ids of the stories.
+     * @param elementIds the ids of the elements added to them, in the same order.
+     */
+    public void insertStoryElements(List<Long> storyIds, List<Long> elementIds) {
+        batchUpdate(
+            "insert into rel_story__elements (story_id, elements_id, elements_order)" +
+            " select ?, ?, coalesce(max(elements_order) + 1, 0) from rel_story__elements where story_id = ?",
+            storyIds.size(),
+            (statement, index) -> {
+                statement.setLong(1, storyIds.get(index));
+                statement.setLong(2, elementIds.get(index));
+                statement.setLong(3, storyIds.get(index));
+            }
+        );
+        evictElements(new HashSet<>(storyIds));
+    }
+
+    private void batchUpdate(String sql, int size, RowSetter rowSetter) {
+        if (size == 0) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+            sql,
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement statement, int index) throws SQLException {
+                    rowSetter.setValues(statement, index);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            }
+        );
+    }
+
+    private void evictElements(Collection<Long> storyIds) {
+        org.hibernate.Cache cache = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+        for (Long storyId : storyIds) {
+            cache.evictCollectionData(Story.class.getName() + ".elements", storyId);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowSetter {
+        void setValues(PreparedStatement statement, int index) throws SQLException;
+    }
+}
@@ -1,6 +1,17 @@
 package ru.funnylistening.app.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
+import javax.persistence.Tuple;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.funnylistening.app.domain.Element;
 
@@ -9,4 +20,75 @@ import ru.funnylistening.app.domain.Element;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface ElementRepository extends JpaRepository<Element, Long> {}
+public interface ElementRepository extends JpaRepository<Element, Long> {
+    /**
+     * The elements of a story in story order.
+     */
+    @Query("select element from Story story join story.elements element where story.id = :storyId order by index(element)")
+    List<Element> findAllByStoryId(@Param("storyId") Long storyId);
+
+    @Query("select element.elementAudioPath from Element element where element.id = :id")
+    Optional<String> findAudioPathById(@Param("id") Long id);
+
+    @Query("select element.elementText from Element element where element.id = :id")
+    Optional<String> findElementTextById(@Param("id") Long id);
+
+    /**
+     * The texts of all the elements, read forward only {@value StoryRepository#EXPORT_FETCH_SIZE} at a time; the
+     * stream must be consumed and closed within a transaction.
+     */
+    @Query("select element.elementText from Element element")
+    @QueryHints(
+        {
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + StoryRepository.EXPORT_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false"),
+        }
+    )
+    Stream<String> streamElementTexts();
+
+    /**
+     * The columns of the element views, aliased {@code id}, {@code elementText}, {@code elementAudioPath},
+     * {@code entireStoryId} and {@code version}.
+     */
+    @Query(
+        "select element.id as id, element.elementText as elementText, element.elementAudioPath as elementAudioPath," +
+        " entireStory.id as entireStoryId, element.version as version from Element element left join element.entireStory entireStory"
+    )
+    List<Tuple> findAllViewRows();
+
+    @Query(
+        "select element.id as id, element.elementText as elementText, element.elementAudioPath as elementAudioPath," +
+        " entireStory.id as entireStoryId, element.version as version" +
+        " from Element element left join element.entireStory entireStory where element.id = :id"
+    )
+    Optional<Tuple> findViewRowById(@Param("id") Long id);
+
+    /**
+     * The element view columns of the elements following an id, in id order, sought through the primary key index;
+     * the pageable only limits their number.
+     */
+    @Query(
+        "select element.id as id, element.elementText as elementText, element.elementAudioPath as elementAudioPath," +
+        " entireStory.id as entireStoryId, element.version as version from Element element left join element.entireStory entireStory" +
+        " where element.id > :after order by element.id"
+    )
+    List<Tuple> findViewRowsAfter(@Param("after") Long after, Pageable pageable);
+
+    /**
+     * The validators of an element, aliased {@code version} and {@code lastModifiedDate}.
+     */
+    @Query("select element.version as version, element.lastModifiedDate as lastModifiedDate from Element element where element.id = :id")
+    Optional<Tuple> findTagRowById(@Param("id") Long id);
+
+    /**
+     * What changes whenever an element is created, updated or deleted, aliased {@code rowCount}, {@code maxId}
+     * and {@code versionSum}.
+     */
+    @Query("select count(element) as rowCount, max(element.id) as maxId, sum(element.version) as versionSum from Element element")
+    Tuple findVersionSummary();
+
+    long countByElementAudioPath(String elementAudioPath);
+
+    long countByElementAudioPathAndIdNot(String elementAudioPath, Long id);
+}
@@ -1,6 +1,9 @@
 package ru.funnylistening.app.repository;
 
+import java.util.Optional;
+import javax.persistence.Tuple;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.funnylistening.app.domain.Link;
 
@@ -9,4 +12,17 @@ import ru.funnylistening.app.domain.Link;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface LinkRepository extends JpaRepository<Link, Long> {}
+public interface LinkRepository extends JpaRepository<Link, Long> {
+    /**
+     * The validators of a link, aliased {@code version} and {@code lastModifiedDate}.
+     */
+    @Query("select link.version as version, link.lastModifiedDate as lastModifiedDate from Link link where link.id = :id")
+    Optional<Tuple> findTagRowById(@Param("id") Long id);
+
+    /**
+     * What changes whenever a link is created, updated or deleted, aliased {@code rowCount}, {@code maxId}
+     * and {@code versionSum}.
+     */
+    @Query("select count(link) as rowCount, max(link.id) as maxId, sum(link.version) as versionSum from Link link")
+    Tuple findVersionSummary();
+}
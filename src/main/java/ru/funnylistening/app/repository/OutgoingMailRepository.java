@@ -0,0 +1,37 @@
+package ru.funnylistening.app.repository;
+
+import java.time.Instant;
+import java.util.List;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.funnylistening.app.domain.OutgoingMail;
+import ru.funnylistening.app.domain.enumeration.MailStatus;
+
+/**
+ * Spring Data JPA repository for the OutgoingMail entity.
+ *
+ * Pending mails are claimed with {@code SKIP LOCKED}, so several instances can share the outbox.
+ */
+@Repository
+public interface OutgoingMailRepository extends JpaRepository<OutgoingMail, Long> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query(
+        "select mail from OutgoingMail mail where mail.status = ru.funnylistening.app.domain.enumeration.MailStatus.PENDING" +
+        " and mail.nextAttemptDate <= :now order by mail.id"
+    )
+    List<OutgoingMail> findAllForUpdateDue(@Param("now") Instant now, Pageable pageable);
+
+    long countByStatus(MailStatus status);
+
+    @Modifying
+    @Query(
+        "update OutgoingMail mail set mail.status = ru.funnylistening.app.domain.enumeration.MailStatus.PENDING" +
+        " where mail.status = ru.funnylistening.app.domain.enumeration.MailStatus.SENDING and mail.updatedDate < :before"
+    )
+    int requeueSendingBefore(@Param("before") Instant before);
+}
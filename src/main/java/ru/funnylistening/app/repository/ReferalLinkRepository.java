@@ -1,6 +1,9 @@
 package ru.funnylistening.app.repository;
 
+import java.util.Optional;
+import javax.persistence.Tuple;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.funnylistening.app.domain.ReferalLink;
 
@@ -9,4 +12,20 @@ import ru.funnylistening.app.domain.ReferalLink;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface ReferalLinkRepository extends JpaRepository<ReferalLink, Long> {}
+public interface ReferalLinkRepository extends JpaRepository<ReferalLink, Long> {
+    /**
+     * The validators of a referal link, aliased {@code version} and {@code lastModifiedDate}.
+     */
+    @Query(
+        "select referalLink.version as version, referalLink.lastModifiedDate as lastModifiedDate from ReferalLink referalLink" +
+        " where referalLink.id = :id"
+    )
+    Optional<Tuple> findTagRowById(@Param("id") Long id);
+
+    /**
+     * What changes whenever a referal link is created, updated or deleted, aliased {@code rowCount}, {@code maxId}
+     * and {@code versionSum}.
+     */
+    @Query("select count(referalLink) as rowCount, max(referalLink.id) as maxId, sum(referalLink.version) as versionSum from ReferalLink referalLink")
+    Tuple findVersionSummary();
+}
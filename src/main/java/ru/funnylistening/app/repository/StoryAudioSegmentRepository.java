@@ -0,0 +1,20 @@
+package ru.funnylistening.app.repository;
+
+import java.util.List;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.funnylistening.app.domain.StoryAudioSegment;
+
+/**
+ * Spring Data JPA repository for the StoryAudioSegment entity.
+ */
+@Repository
+public interface StoryAudioSegmentRepository extends JpaRepository<StoryAudioSegment, Long> {
+    @Query("select segment from StoryAudioSegment segment where segment.story.id = :storyId order by segment.position")
+    List<StoryAudioSegment> findAllByStoryId(@Param("storyId") Long storyId);
+
+    @Modifying
+    @Query("delete from StoryAudioSegment segment where segment.story.id = :storyId")
+    void deleteAllByStoryId(@Param("storyId") Long storyId);
+}
@@ -0,0 +1,35 @@
+package ru.funnylistening.app.repository;
+
+import java.util.List;
+import org.hibernate.Hibernate;
+import ru.funnylistening.app.domain.Story;
+
+/**
+ * Loads the {@code elements} and {@code entireStoryElements} collections of a batch of stories.
+ *
+ * Both are batch-fetched collections of {@link Story}: initializing the collection of one story loads the same
+ * collection of up to {@link #IN_CLAUSE_CHUNK_SIZE} stories of the persistence context with one query,
+ * {@code rel_story__elements} joined to its element rows for the ordered {@code elements}, and the elements by
+ * {@code entire_story_id} for {@code entireStoryElements}. No row is ever multiplied by a join fetch, and the
+ * collections are initialized in place on the managed stories, so the stories stay managed and a later change to them
+ * is flushed as usual.
+ */
+final class StoryBagRelationshipLoader {
+
+    /**
+     * Ids per IN clause, the batch size of the bags of {@link Story}.
+     */
+    static final int IN_CLAUSE_CHUNK_SIZE = 500;
+
+    /**
+     * Load the bag relationships of the given managed stories, keeping their order.
+     */
+    List<Story> load(List<Story> stories) {
+        for (Story story : stories) {
+            // a no-op once the bag was loaded along with the one of a previous story
+            Hibernate.initialize(story.getElements());
+            Hibernate.initialize(story.getEntireStoryElements());
+        }
+        return stories;
+    }
+}
@@ -1,7 +1,15 @@
 package ru.funnylistening.app.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
+import javax.persistence.Tuple;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
@@ -17,6 +25,27 @@ import ru.funnylistening.app.domain.Story;
  */
 @Repository
 public interface StoryRepository extends StoryRepositoryWithBagRelationships, JpaRepository<Story, Long> {
+    /**
+     * The number of rows fetched at once by {@link #streamExportRows()}.
+     */
+    int EXPORT_FETCH_SIZE = 500;
+
+    /**
+     * The texts matching the web search query {@code :query}: the names of the stories and the texts of their
+     * elements, each with the story it belongs to, the element id or {@code null} for a name, and its rank.
+     */
+    String SEARCH_HITS =
+        "with search as (select websearch_to_tsquery('simple', :query) as query)," +
+        " hit as (" +
+        "select story.id as story_id, cast(null as bigint) as element_id, story.story_name as text," +
+        " ts_rank(story.search_vector, search.query) as score" +
+        " from story cross join search where story.search_vector @@ search.query" +
+        " union all " +
+        "select rel.story_id, element.id, element.element_text, ts_rank(element.search_vector, search.query)" +
+        " from element join rel_story__elements rel on rel.elements_id = element.id cross join search" +
+        " where element.search_vector @@ search.query" +
+        ") ";
+
     default Optional<Story> findOneWithEagerRelationships(Long id) {
         return this.fetchBagRelationships(this.findById(id));
     }
@@ -25,7 +54,155 @@ public interface StoryRepository extends StoryRepositoryWithBagRelationships, Jp
         return this.fetchBagRelationships(this.findAll());
     }
 
-    default Page<Story> findAllWithEagerRelationships(Pageable pageable) {
-        return this.fetchBagRelationships(this.findAll(pageable));
-    }
+    @Query("select story.id from Story story where story.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select story.id from Story story join story.elements element where element.id = :elementId")
+    List<Long> findAllIdsByElementId(@Param("elementId") Long elementId);
+
+    /**
+     * Page over the columns of the story view only, aliased {@code id}, {@code storyName}, {@code version} and
+     * {@code lastModifiedDate}.
+     */
+    @Query(
+        value = "select story.id as id, story.storyName as storyName, story.version as version," +
+        " story.lastModifiedDate as lastModifiedDate from Story story",
+        countQuery = "select count(story) from Story story"
+    )
+    Page<Tuple> findAllViewRows(Pageable pageable);
+
+    @Query(
+        "select story.id as id, story.storyName as storyName, story.version as version, story.lastModifiedDate as lastModifiedDate" +
+        " from Story story where story.id = :id"
+    )
+    Optional<Tuple> findViewRowById(@Param("id") Long id);
+
+    /**
+     * The story view columns of the stories following an id, in id order, aliased as in {@link #findAllViewRows(Pageable)}.
+     *
+     * The rows are sought through the primary key index rather than skipped, so every slice costs the same however
+     * deep it is; the pageable only limits their number, and nothing is counted.
+     */
+    @Query(
+        "select story.id as id, story.storyName as storyName, story.version as version, story.lastModifiedDate as lastModifiedDate" +
+        " from Story story where story.id > :after order by story.id"
+    )
+    List<Tuple> findViewRowsAfter(@Param("after") Long after, Pageable pageable);
+
+    /**
+     * The columns of the element views of several stories in one query, aliased {@code storyId}, {@code id},
+     * {@code elementText}, {@code elementAudioPath}, {@code entireStoryId}, {@code version} and {@code lastModifiedDate},
+     * in story order.
+     */
+    @Query(
+        "select story.id as storyId, element.id as id, element.elementText as elementText, element.elementAudioPath as elementAudioPath," +
+        " entireStory.id as entireStoryId, element.version as version, element.lastModifiedDate as lastModifiedDate" +
+        " from Story story join story.elements element left join element.entireStory entireStory" +
+        " where story.id in :storyIds order by story.id, index(element)"
+    )
+    List<Tuple> findElementViewRowsByStoryIds(@Param("storyIds") Collection<Long> storyIds);
+
+    /**
+     * The columns of the views of all the stories with their elements, one row per element, or a single row with null
+     * element columns for a story without elements, in story then element order.
+     *
+     * The rows are read forward only, {@value #EXPORT_FETCH_SIZE} at a time, so that they never are all held in memory;
+     * the stream must be consumed and closed within a transaction. The story columns are aliased {@code id},
+     * {@code storyName}, {@code version} and {@code lastModifiedDate}, the element ones {@code elementId},
+     * {@code elementText}, {@code elementAudioPath}, {@code entireStoryId}, {@code elementVersion} and
+     * {@code elementLastModifiedDate}.
+     */
+    @Query(
+        "select story.id as id, story.storyName as storyName, story.version as version, story.lastModifiedDate as lastModifiedDate," +
+        " element.id as elementId, element.elementText as elementText, element.elementAudioPath as elementAudioPath," +
+        " entireStory.id as entireStoryId, element.version as elementVersion, element.lastModifiedDate as elementLastModifiedDate" +
+        " from Story story left join story.elements element left join element.entireStory entireStory" +
+        " order by story.id, index(element)"
+    )
+    @QueryHints(
+        {
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false"),
+        }
+    )
+    Stream<Tuple> streamExportRows();
+
+    /**
+     * One page of the stories matching a web search query, by name or by the text of one of their elements, best ranked
+     * first. Each story is ranked by its best matching text, which is highlighted with the given {@code ts_headline}
+     * options for the page only. The columns are aliased {@code story_id}, {@code story_name}, {@code element_id},
+     * {@code null} when the best text is the name, {@code score} and {@code snippet}.
+     *
+     * The texts are looked up through the GIN indexes of their search vectors; the pageable must not be sorted.
+     */
+    @Query(
+        value = SEARCH_HITS +
+        "select best.story_id as story_id, story.story_name as story_name, best.element_id as element_id, best.score as score," +
+        " ts_headline('simple', best.text, search.query, :headlineOptions) as snippet" +
+        " from (select distinct on (hit.story_id) hit.* from hit order by hit.story_id, hit.score desc, hit.element_id nulls first) best" +
+        " join story on story.id = best.story_id cross join search" +
+        " order by best.score desc, best.story_id",
+        countQuery = SEARCH_HITS + "select count(distinct hit.story_id) from hit",
+        nativeQuery = true
+    )
+    Page<Tuple> searchRows(@Param("query") String query, @Param("headlineOptions") String headlineOptions, Pageable pageable);
+
+    /**
+     * Set the least word similarity of the pg_trgm {@code <%} operator until the end of the current transaction.
+     */
+    @Query(value = "select set_config('pg_trgm.word_similarity_threshold', :threshold, true)", nativeQuery = true)
+    String setWordSimilarityThreshold(@Param("threshold") String threshold);
+
+    /**
+     * The stories with a name, or an element text, with words similar to those of a query, the most similar first,
+     * as told by {@code word_similarity}. Each story is ranked by its most similar text. The columns are aliased
+     * {@code story_id}, {@code story_name}, {@code element_id}, {@code null} when the most similar text is the name,
+     * {@code score} and {@code text}.
+     *
+     * The texts are looked up through their trigram indexes with the {@code <%} operator, whose threshold must be set
+     * first; at most {@code :candidates} names and as many element texts are ranked.
+     */
+    @Query(
+        value = "with hit as (" +
+        "(select story.id as story_id, cast(null as bigint) as element_id, story.story_name as text," +
+        " word_similarity(:query, story.story_name) as score" +
+        " from story where :query <% story.story_name order by score desc limit :candidates)" +
+        " union all " +
+        "(select rel.story_id, element.id, element.element_text, word_similarity(:query, element.element_text) as score" +
+        " from element join rel_story__elements rel on rel.elements_id = element.id" +
+        " where :query <% element.element_text order by score desc limit :candidates)" +
+        ") " +
+        "select best.story_id as story_id, story.story_name as story_name, best.element_id as element_id, best.score as score," +
+        " best.text as text" +
+        " from (select distinct on (hit.story_id) hit.* from hit order by hit.story_id, hit.score desc, hit.element_id nulls first) best" +
+        " join story on story.id = best.story_id" +
+        " order by best.score desc, best.story_id limit :limit",
+        nativeQuery = true
+    )
+    List<Tuple> findSimilarRows(@Param("query") String query, @Param("candidates") int candidates, @Param("limit") int limit);
+
+    @Query("select story.storyName from Story story where story.id = :id")
+    Optional<String> findStoryNameById(@Param("id") Long id);
+
+    /**
+     * The names of all the stories, read forward only {@value #EXPORT_FETCH_SIZE} at a time; the stream must be
+     * consumed and closed within a transaction.
+     */
+    @Query("select story.storyName from Story story")
+    @QueryHints(
+        {
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false"),
+        }
+    )
+    Stream<String> streamStoryNames();
+
+    /**
+     * What changes whenever a story is created, updated or deleted, aliased {@code rowCount}, {@code maxId}
+     * and {@code versionSum}.
+     */
+    @Query("select count(story) as rowCount, max(story.id) as maxId, sum(story.version) as versionSum from Story story")
+    Tuple findVersionSummary();
 }
@@ -0,0 +1,114 @@
+package ru.funnylistening.app.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * {@link PasswordEncoder} hashing and verifying passwords on a dedicated executor, so that a burst of logins takes no
+ * more CPU than its workers and leaves the request threads to the other endpoints.
+ *
+ * The caller waits for its password; once the queue of the executor is full, more are refused at once with
+ * {@link PasswordHashingRejectedException} rather than piling up request threads.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    public static final String HASH_METER_NAME = "security.password.hash";
+    public static final String QUEUE_WAIT_METER_NAME = "security.password.queue-wait";
+    public static final String QUEUED_METER_NAME = "security.password.queued";
+    public static final String REJECTED_METER_NAME = "security.password.rejected";
+    public static final String OPERATION_DIMENSION = "operation";
+
+    private final PasswordEncoder delegate;
+
+    private final Executor executor;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    private final Timer queueWaitTimer;
+
+    private final Counter rejectedCounter;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, Executor executor, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.encodeTimer = hashTimerForOperationBuilder("encode").register(registry);
+        this.matchesTimer = hashTimerForOperationBuilder("matches").register(registry);
+        this.queueWaitTimer =
+            Timer.builder(QUEUE_WAIT_METER_NAME).description("Time passwords waited for a free hashing worker.").register(registry);
+        this.rejectedCounter =
+            Counter.builder(REJECTED_METER_NAME).description("Passwords refused because too many were waiting.").register(registry);
+        Gauge
+            .builder(QUEUED_METER_NAME, queued, AtomicInteger::get)
+            .description("Passwords waiting for a free hashing worker.")
+            .register(registry);
+    }
+
+    private Timer.Builder hashTimerForOperationBuilder(String operation) {
+        return Timer
+            .builder(HASH_METER_NAME)
+            .description("Time taken to hash or verify a password.")
+            .tag(OPERATION_DIMENSION, operation);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return hash(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return hash(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T hash(Timer timer, Supplier<T> hashing) {
+        long queuedAt = System.nanoTime();
+        FutureTask<T> task = new FutureTask<>(() -> {
+            long startedAt = System.nanoTime();
+            queued.decrementAndGet();
+            queueWaitTimer.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+            try {
+                return hashing.get();
+            } finally {
+                timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+        });
+        queued.incrementAndGet();
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejectedCounter.increment();
+            throw new PasswordHashingRejectedException(e);
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a password to be hashed", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
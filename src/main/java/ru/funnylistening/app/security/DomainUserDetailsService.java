@@ -5,9 +5,11 @@ import java.util.stream.Collectors;
 import org.hibernate.validator.internal.constraintvalidators.hv.EmailValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.CacheManager;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
@@ -17,17 +19,21 @@ import ru.funnylistening.app.domain.User;
 import ru.funnylistening.app.repository.UserRepository;
 
 /**
- * Authenticate a user from the database.
+ * Authenticate a user from the database, and upgrade the hash of their password once it is verified if it is weaker
+ * than the configured one.
  */
 @Component("userDetailsService")
-public class DomainUserDetailsService implements UserDetailsService {
+public class DomainUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final Logger log = LoggerFactory.getLogger(DomainUserDetailsService.class);
 
     private final UserRepository userRepository;
 
-    public DomainUserDetailsService(UserRepository userRepository) {
+    private final CacheManager cacheManager;
+
+    public DomainUserDetailsService(UserRepository userRepository, CacheManager cacheManager) {
         this.userRepository = userRepository;
+        this.cacheManager = cacheManager;
     }
 
     @Override
@@ -49,6 +55,22 @@ public class DomainUserDetailsService implements UserDetailsService {
             .orElseThrow(() -> new UsernameNotFoundException("User " + lowercaseLogin + " was not found in the database"));
     }
 
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        log.debug("Upgrading the password hash of {}", userDetails.getUsername());
+        userRepository
+            .findOneByLogin(userDetails.getUsername())
+            .ifPresent(user -> {
+                user.setPassword(newPassword);
+                Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE)).evict(user.getLogin());
+                if (user.getEmail() != null) {
+                    Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE)).evict(user.getEmail());
+                }
+            });
+        return org.springframework.security.core.userdetails.User.withUserDetails(userDetails).password(newPassword).build();
+    }
+
     private org.springframework.security.core.userdetails.User createSpringSecurityUser(String lowercaseLogin, User user) {
         if (!user.isActivated()) {
             throw new UserNotActivatedException("User " + lowercaseLogin + " was not activated");
@@ -0,0 +1,13 @@
+package ru.funnylistening.app.security;
+
+/**
+ * This exception is thrown when a password can't be hashed or verified because too many are waiting already.
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingRejectedException(Throwable t) {
+        super("Too many passwords waiting to be hashed", t);
+    }
+}
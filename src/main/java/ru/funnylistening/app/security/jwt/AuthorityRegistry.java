@@ -0,0 +1,89 @@
+package ru.funnylistening.app.security.jwt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import ru.funnylistening.app.security.AuthoritiesConstants;
+
+/**
+ * Canonical authorities of the {@code auth} claims of tokens: a claim is parsed the first time it is seen only, into
+ * an immutable list of authorities shared by all the tokens with that claim.
+ *
+ * There are only a few distinct claims, one per combination of roles, so the registry keeps at most
+ * {@link #MAX_SIZE} of them, and as many authorities; the claims beyond are parsed every time.
+ */
+final class AuthorityRegistry {
+
+    static final int MAX_SIZE = 256;
+
+    private final ConcurrentMap<String, GrantedAuthority> authoritiesByName = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, List<GrantedAuthority>> authoritiesByClaim = new ConcurrentHashMap<>();
+
+    AuthorityRegistry() {
+        get(AuthoritiesConstants.USER);
+        get(AuthoritiesConstants.ADMIN);
+        get(AuthoritiesConstants.USER + "," + AuthoritiesConstants.ADMIN);
+        get(AuthoritiesConstants.ADMIN + "," + AuthoritiesConstants.USER);
+    }
+
+    int size() {
+        return authoritiesByClaim.size();
+    }
+
+    /**
+     * Get the authorities of a claim.
+     *
+     * @param claim the comma separated authorities.
+     * @return the immutable authorities, in the order of the claim.
+     */
+    List<GrantedAuthority> get(String claim) {
+        List<GrantedAuthority> authorities = authoritiesByClaim.get(claim);
+        if (authorities != null) {
+            return authorities;
+        }
+        authorities = parse(claim);
+        if (authoritiesByClaim.size() < MAX_SIZE) {
+            List<GrantedAuthority> previous = authoritiesByClaim.putIfAbsent(claim, authorities);
+            if (previous != null) {
+                return previous;
+            }
+        }
+        return authorities;
+    }
+
+    private List<GrantedAuthority> parse(String claim) {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        int start = 0;
+        while (start <= claim.length()) {
+            int end = claim.indexOf(',', start);
+            if (end < 0) {
+                end = claim.length();
+            }
+            String name = claim.substring(start, end).trim();
+            if (!name.isEmpty()) {
+                authorities.add(authority(name));
+            }
+            start = end + 1;
+        }
+        return List.copyOf(authorities);
+    }
+
+    private GrantedAuthority authority(String name) {
+        GrantedAuthority authority = authoritiesByName.get(name);
+        if (authority != null) {
+            return authority;
+        }
+        authority = new SimpleGrantedAuthority(name);
+        if (authoritiesByName.size() < MAX_SIZE) {
+            GrantedAuthority previous = authoritiesByName.putIfAbsent(name, authority);
+            if (previous != null) {
+                return previous;
+            }
+        }
+        return authority;
+    }
+}
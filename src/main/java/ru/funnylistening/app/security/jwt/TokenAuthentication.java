@@ -0,0 +1,49 @@
+package ru.funnylistening.app.security.jwt;
+
+import java.util.List;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * Authentication of a request by a validated token.
+ *
+ * It grants the authorities of its {@link TokenPrincipal} as they are, where a
+ * {@link org.springframework.security.authentication.UsernamePasswordAuthenticationToken} would copy them again.
+ */
+final class TokenAuthentication extends AbstractAuthenticationToken {
+
+    private static final long serialVersionUID = 1L;
+
+    private final TokenPrincipal principal;
+
+    private String token;
+
+    TokenAuthentication(TokenPrincipal principal, String token) {
+        // no authorities of its own: they are the ones of the principal
+        super(null);
+        this.principal = principal;
+        this.token = token;
+        setAuthenticated(true);
+    }
+
+    @Override
+    public List<GrantedAuthority> getAuthorities() {
+        return principal.getAuthorities();
+    }
+
+    @Override
+    public String getCredentials() {
+        return token;
+    }
+
+    @Override
+    public TokenPrincipal getPrincipal() {
+        return principal;
+    }
+
+    @Override
+    public void eraseCredentials() {
+        super.eraseCredentials();
+        token = null;
+    }
+}
@@ -0,0 +1,105 @@
+package ru.funnylistening.app.security.jwt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded cache of the principals of validated tokens, each kept until its token expires, so that a token presented
+ * again is neither verified nor parsed again.
+ *
+ * Entries are keyed by the SHA-256 digest of their token, so that no bearer token is kept in memory. Once the cache
+ * is full, the expired entries are purged, then arbitrary ones are evicted, a sixteenth of the size at once so that
+ * the purge is paid once every so many new tokens.
+ */
+final class TokenAuthenticationCache {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final ConcurrentMap<ByteBuffer, Entry> entries = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+
+    TokenAuthenticationCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the key of a token.
+     *
+     * @param token the token.
+     * @return the digest of the token.
+     */
+    static ByteBuffer key(String token) {
+        return ByteBuffer.wrap(SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Get the principal of a token that didn't expire yet.
+     *
+     * @param key the key of the token.
+     * @param now the current time, in milliseconds since the epoch.
+     * @return the principal, or {@code null} if the token isn't cached or has expired.
+     */
+    TokenPrincipal get(ByteBuffer key, long now) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (now >= entry.expiresAt) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.principal;
+    }
+
+    /**
+     * Cache the principal of a validated token.
+     *
+     * @param key the key of the token.
+     * @param principal the principal.
+     * @param expiresAt when the token expires, in milliseconds since the epoch.
+     * @param now the current time, in milliseconds since the epoch.
+     */
+    void put(ByteBuffer key, TokenPrincipal principal, long expiresAt, long now) {
+        if (entries.size() >= maxSize) {
+            int target = maxSize - Math.max(1, maxSize / 16);
+            entries.values().removeIf(entry -> now >= entry.expiresAt);
+            for (Iterator<ByteBuffer> keys = entries.keySet().iterator(); entries.size() > target && keys.hasNext();) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        entries.put(key, new Entry(principal, expiresAt));
+    }
+
+    private static final class Entry {
+
+        private final TokenPrincipal principal;
+
+        private final long expiresAt;
+
+        private Entry(TokenPrincipal principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.funnylistening.app.security.jwt;
+
+import java.util.List;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Principal of a validated token.
+ *
+ * Its authorities are the immutable ones of its {@code auth} claim in the {@link AuthorityRegistry}, shared with the
+ * principals of all the tokens with that claim, where a {@link org.springframework.security.core.userdetails.User}
+ * would copy them into a sorted set of its own. Like a {@code User}, it equals the principals with the same username.
+ */
+final class TokenPrincipal implements UserDetails {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String username;
+
+    private final List<GrantedAuthority> authorities;
+
+    TokenPrincipal(String username, List<GrantedAuthority> authorities) {
+        this.username = username;
+        this.authorities = authorities;
+    }
+
+    @Override
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return "";
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TokenPrincipal)) {
+            return false;
+        }
+        return username.equals(((TokenPrincipal) o).username);
+    }
+
+    @Override
+    public int hashCode() {
+        return username.hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "TokenPrincipal{" +
+            "username='" + username + "'" +
+            ", authorities=" + authorities +
+            "}";
+    }
+}
@@ -4,19 +4,18 @@ import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.util.*;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ObjectUtils;
+import ru.funnylistening.app.config.ApplicationProperties;
 import ru.funnylistening.app.management.SecurityMetersService;
 import tech.jhipster.config.JHipsterProperties;
 
@@ -39,7 +38,15 @@ public class TokenProvider {
 
     private final SecurityMetersService securityMetersService;
 
-    public TokenProvider(JHipsterProperties jHipsterProperties, SecurityMetersService securityMetersService) {
+    private final TokenAuthenticationCache tokenCache;
+
+    private final AuthorityRegistry authorityRegistry = new AuthorityRegistry();
+
+    public TokenProvider(
+        JHipsterProperties jHipsterProperties,
+        ApplicationProperties applicationProperties,
+        SecurityMetersService securityMetersService
+    ) {
         byte[] keyBytes;
         String secret = jHipsterProperties.getSecurity().getAuthentication().getJwt().getBase64Secret();
         if (!ObjectUtils.isEmpty(secret)) {
@@ -60,6 +67,7 @@ public class TokenProvider {
             1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSecondsForRememberMe();
 
         this.securityMetersService = securityMetersService;
+        this.tokenCache = new TokenAuthenticationCache(applicationProperties.getSecurity().getTokenCacheSize());
     }
 
     public String createToken(Authentication authentication, boolean rememberMe) {
@@ -83,24 +91,60 @@ public class TokenProvider {
     }
 
     public Authentication getAuthentication(String token) {
-        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        return getAuthentication(jwtParser.parseClaimsJws(token).getBody(), token);
+    }
 
-        Collection<? extends GrantedAuthority> authorities = Arrays
-            .stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-            .filter(auth -> !auth.trim().isEmpty())
-            .map(SimpleGrantedAuthority::new)
-            .collect(Collectors.toList());
+    /**
+     * Get the authentication of a token from its claims, sharing the authorities of the claims with the other tokens.
+     */
+    Authentication getAuthentication(Claims claims, String token) {
+        return new TokenAuthentication(toPrincipal(claims), token);
+    }
 
-        User principal = new User(claims.getSubject(), "", authorities);
+    public boolean validateToken(String authToken) {
+        return parseValidClaims(authToken) != null;
+    }
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    /**
+     * Validate a token and get its authentication in one go, parsing the token only the first time it is presented:
+     * its principal is then kept until it expires.
+     *
+     * @param token the token.
+     * @return the authentication, or empty if the token isn't valid.
+     */
+    public Optional<Authentication> authenticate(String token) {
+        long now = System.currentTimeMillis();
+        ByteBuffer key = tokenCache.isEnabled() ? TokenAuthenticationCache.key(token) : null;
+        TokenPrincipal principal = key == null ? null : tokenCache.get(key, now);
+        if (principal != null) {
+            this.securityMetersService.trackTokenCacheHit();
+        } else {
+            Claims claims = parseValidClaims(token);
+            if (claims == null) {
+                return Optional.empty();
+            }
+            principal = toPrincipal(claims);
+            if (key != null && claims.getExpiration() != null) {
+                this.securityMetersService.trackTokenCacheMiss();
+                tokenCache.put(key, principal, claims.getExpiration().getTime(), now);
+            }
+        }
+
+        return Optional.of(new TokenAuthentication(principal, token));
     }
 
-    public boolean validateToken(String authToken) {
-        try {
-            jwtParser.parseClaimsJws(authToken);
+    private TokenPrincipal toPrincipal(Claims claims) {
+        return new TokenPrincipal(claims.getSubject(), authorityRegistry.get(claims.get(AUTHORITIES_KEY).toString()));
+    }
 
-            return true;
+    /**
+     * Get the claims of a token, tracking why it isn't valid if it isn't.
+     *
+     * @return the claims, or {@code null} if the token isn't valid.
+     */
+    private Claims parseValidClaims(String authToken) {
+        try {
+            return jwtParser.parseClaimsJws(authToken).getBody();
         } catch (ExpiredJwtException e) {
             this.securityMetersService.trackTokenExpired();
 
@@ -121,6 +165,6 @@ public class TokenProvider {
             log.error("Token validation error {}", e.getMessage());
         }
 
-        return false;
+        return null;
     }
 }
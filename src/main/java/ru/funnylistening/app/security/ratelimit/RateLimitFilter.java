@@ -0,0 +1,200 @@
+package ru.funnylistening.app.security.ratelimit;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.GenericFilterBean;
+
+/**
+ * Filters the requests to the rate limited endpoints, refusing with status {@code 429 (Too Many Requests)} those
+ * beyond the limits of their client address or of their login.
+ *
+ * The login is read from the body, which is then replayed to the endpoint, whether its length is declared or it is
+ * chunked. On the endpoints limited per login, bodies larger than {@link #MAX_BODY_SIZE} are refused with status
+ * {@code 413 (Payload Too Large)}, and the bodies without a login are all limited as the one of {@link #UNKNOWN_LOGIN},
+ * so no request escapes the limit of its login. The client address is the remote address of the request, which is the
+ * one of the proxy, if any, unless the server is configured to use the forwarded headers.
+ */
+public class RateLimitFilter extends GenericFilterBean {
+
+    static final int MAX_BODY_SIZE = 8192;
+
+    /**
+     * The login of the requests whose body has none: never a login once trimmed.
+     */
+    static final String UNKNOWN_LOGIN = "";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
+        throws IOException, ServletException {
+        HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
+        RateLimiter.Endpoint endpoint = HttpMethod.POST.matches(httpServletRequest.getMethod())
+            ? rateLimiter.findEndpoint(httpServletRequest.getRequestURI())
+            : null;
+        if (endpoint == null) {
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+        String login = null;
+        if (endpoint.isLimitedPerLogin()) {
+            // a chunked body has no declared length: reading one byte beyond the limit tells whether it is larger
+            byte[] body = httpServletRequest.getContentLengthLong() <= MAX_BODY_SIZE
+                ? httpServletRequest.getInputStream().readNBytes(MAX_BODY_SIZE + 1)
+                : null;
+            if (body == null || body.length > MAX_BODY_SIZE) {
+                ((HttpServletResponse) servletResponse).setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+                return;
+            }
+            login = readLogin(body, endpoint.getLoginField());
+            if (login == null) {
+                login = UNKNOWN_LOGIN;
+            }
+            servletRequest = new BodyRequest(httpServletRequest, body);
+        }
+        long wait = rateLimiter.acquire(endpoint, httpServletRequest.getRemoteAddr(), login);
+        if (wait > 0) {
+            HttpServletResponse httpServletResponse = (HttpServletResponse) servletResponse;
+            httpServletResponse.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            long retryAfter = TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1);
+            httpServletResponse.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+            return;
+        }
+        filterChain.doFilter(servletRequest, servletResponse);
+    }
+
+    /**
+     * Read the login of a request.
+     *
+     * @param body the body of the request.
+     * @param field the field of the JSON body holding the login, or empty if the whole body is the login.
+     * @return the lowercased login, or {@code null} if there is none.
+     */
+    static String readLogin(byte[] body, String field) {
+        String login = null;
+        if (field.isEmpty()) {
+            login = new String(body, StandardCharsets.UTF_8);
+        } else {
+            try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        boolean isLogin = field.equals(parser.getCurrentName());
+                        JsonToken value = parser.nextToken();
+                        if (isLogin && value == JsonToken.VALUE_STRING) {
+                            login = parser.getText();
+                            break;
+                        }
+                        parser.skipChildren();
+                    }
+                }
+            } catch (IOException e) {
+                // not JSON: the endpoint rejects it
+            }
+        }
+        if (login == null || login.isBlank()) {
+            return null;
+        }
+        return login.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A request whose body was read already.
+     */
+    private static final class BodyRequest extends HttpServletRequestWrapper {
+
+        private final ServletInputStream input;
+
+        private BodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.input = new ReplayedInputStream(body);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return input;
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+
+    /**
+     * The bytes read from a body.
+     */
+    private static final class ReplayedInputStream extends ServletInputStream {
+
+        private final ByteArrayInputStream body;
+
+        private ReplayedInputStream(byte[] body) {
+            this.body = new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return body.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        /**
+         * Notify the listener right away, the data being always available.
+         */
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            try {
+                if (!isFinished()) {
+                    readListener.onDataAvailable();
+                }
+                if (isFinished()) {
+                    readListener.onAllDataRead();
+                }
+            } catch (IOException e) {
+                readListener.onError(e);
+            }
+        }
+
+        @Override
+        public int read() {
+            return body.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return body.read(b, off, len);
+        }
+    }
+}
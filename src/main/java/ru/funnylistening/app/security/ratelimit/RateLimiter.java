@@ -0,0 +1,326 @@
+package ru.funnylistening.app.security.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.funnylistening.app.config.ApplicationProperties;
+
+/**
+ * Token buckets of the clients and logins calling the endpoints open to anonymous users, refusing their requests
+ * beyond the configured limits.
+ *
+ * A bucket is a single timestamp updated with compare-and-set: the time at which it will be full again, each request
+ * pushing it back by the time a token takes to refill, and being refused if that would take it further than the
+ * capacity of the bucket ahead of now. A full bucket is the same as no bucket, so a bucket is dropped once it is
+ * full again. Buckets are found to be full by a timing wheel of one second slots: a bucket is placed in the slot of
+ * the time at which it would be full, and is either dropped or placed again when that slot comes round.
+ *
+ * Beyond the maximum number of buckets, each new bucket takes the place of the one closest to being full, found in the
+ * earliest slots of the wheel: dropping it forgets the fewest requests, and a flood of new clients or logins only
+ * evicts the buckets of its own single requests rather than the ones of the clients and logins being limited.
+ */
+@Component
+public class RateLimiter {
+
+    public static final String REQUESTS_METER_NAME = "security.rate-limit.requests";
+    public static final String CAPACITY_METER_NAME = "security.rate-limit.capacity";
+    public static final String REFILL_METER_NAME = "security.rate-limit.refill-per-minute";
+    public static final String BUCKETS_METER_NAME = "security.rate-limit.buckets";
+    public static final String ENDPOINT_DIMENSION = "endpoint";
+    public static final String KEY_DIMENSION = "key";
+    public static final String RESULT_DIMENSION = "result";
+
+    private static final int WHEEL_SLOTS = 64;
+
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Logger log = LoggerFactory.getLogger(RateLimiter.class);
+
+    private final Map<String, Endpoint> endpointsByPath = new HashMap<>();
+
+    private final List<ConcurrentLinkedQueue<Bucket>> wheel = new ArrayList<>(WHEEL_SLOTS);
+
+    private final AtomicInteger bucketCount = new AtomicInteger();
+
+    private final int maxBuckets;
+
+    private final LongSupplier nanoClock;
+
+    private volatile long sweptTick;
+
+    public RateLimiter(ApplicationProperties applicationProperties, MeterRegistry registry) {
+        this(applicationProperties.getSecurity().getRateLimit(), registry, System::nanoTime);
+    }
+
+    RateLimiter(ApplicationProperties.Security.RateLimit properties, MeterRegistry registry, LongSupplier nanoClock) {
+        this.maxBuckets = properties.getMaxBuckets();
+        this.nanoClock = nanoClock;
+        for (int slot = 0; slot < WHEEL_SLOTS; slot++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+        this.sweptTick = Math.floorDiv(nanoClock.getAsLong(), TICK_NANOS);
+        if (properties.isEnabled()) {
+            properties
+                .getEndpoints()
+                .forEach((name, endpoint) -> endpointsByPath.put(endpoint.getPath(), new Endpoint(name, endpoint, registry)));
+        }
+        Gauge
+            .builder(BUCKETS_METER_NAME, bucketCount, AtomicInteger::get)
+            .description("Buckets of the clients and logins being rate limited.")
+            .register(registry);
+    }
+
+    /**
+     * Get the limits of an endpoint.
+     *
+     * @param path the path of the request.
+     * @return the limits of the endpoint, or {@code null} if it isn't limited.
+     */
+    public Endpoint findEndpoint(String path) {
+        return endpointsByPath.get(path);
+    }
+
+    /**
+     * Take a token from the buckets of a client and of a login for a request.
+     *
+     * @param endpoint the limits of the endpoint.
+     * @param ip the address of the client.
+     * @param login the login of the request, or {@code null} if there is none.
+     * @return {@code 0} if the request is allowed, or else the nanoseconds until it would be.
+     */
+    public long acquire(Endpoint endpoint, String ip, String login) {
+        long now = nanoClock.getAsLong();
+        long wait = acquire(endpoint.perIp, ip, now);
+        if (wait == 0 && login != null) {
+            wait = acquire(endpoint.perLogin, login, now);
+        }
+        (wait == 0 ? endpoint.allowedCounter : endpoint.rejectedCounter).increment();
+        return wait;
+    }
+
+    private long acquire(Limit limit, String key, long now) {
+        if (limit == null) {
+            return 0;
+        }
+        Bucket bucket = limit.buckets.get(key);
+        if (bucket == null) {
+            bucket = newBucket(limit, key, now);
+        }
+        return bucket.acquire(now);
+    }
+
+    private Bucket newBucket(Limit limit, String key, long now) {
+        Bucket bucket = new Bucket(limit, key, now);
+        Bucket previous = limit.buckets.putIfAbsent(key, bucket);
+        if (previous != null) {
+            return previous;
+        }
+        if (bucketCount.incrementAndGet() > maxBuckets) {
+            // before the new bucket is scheduled, so it isn't the one evicted
+            evictFullest(now);
+        }
+        schedule(bucket, now + limit.interval, now);
+        return bucket;
+    }
+
+    /**
+     * Drop the bucket closest to being full, from the earliest slot of the timing wheel holding a bucket due in it.
+     * The buckets pushed back beyond their slot are placed again on the way, as the sweep would.
+     */
+    private void evictFullest(long now) {
+        long from = sweptTick + 1;
+        for (long tick = from; tick < from + WHEEL_SLOTS; tick++) {
+            ConcurrentLinkedQueue<Bucket> slot = wheel.get((int) Math.floorMod(tick, (long) WHEEL_SLOTS));
+            List<Bucket> later = new ArrayList<>();
+            try {
+                for (Bucket bucket = slot.poll(); bucket != null; bucket = slot.poll()) {
+                    long fullAt = bucket.fullAt.get();
+                    if (Math.floorDiv(fullAt, TICK_NANOS) > tick) {
+                        later.add(bucket);
+                    } else if (bucket.limit.buckets.remove(bucket.key, bucket)) {
+                        bucketCount.decrementAndGet();
+                        return;
+                    }
+                }
+            } finally {
+                later.forEach(bucket -> schedule(bucket, bucket.fullAt.get(), now));
+            }
+        }
+    }
+
+    private void schedule(Bucket bucket, long fullAt, long now) {
+        // never in the slot of the current tick, which may have been swept already
+        long nextTick = Math.floorDiv(now, TICK_NANOS) + 1;
+        long tick = Math.min(Math.max(Math.floorDiv(fullAt, TICK_NANOS), nextTick), nextTick + WHEEL_SLOTS - 2);
+        wheel.get((int) Math.floorMod(tick, (long) WHEEL_SLOTS)).add(bucket);
+    }
+
+    /**
+     * Drop the buckets that are full again, from the slots of the timing wheel passed since the previous run.
+     * <p>
+     * This is scheduled to get fired every second.
+     */
+    @Scheduled(fixedRate = 1000)
+    public synchronized void expireBuckets() {
+        long now = nanoClock.getAsLong();
+        long tick = Math.floorDiv(now, TICK_NANOS);
+        int dropped = 0;
+        for (long sweeping = Math.max(sweptTick + 1, tick - WHEEL_SLOTS + 1); sweeping <= tick; sweeping++) {
+            ConcurrentLinkedQueue<Bucket> slot = wheel.get((int) Math.floorMod(sweeping, (long) WHEEL_SLOTS));
+            List<Bucket> due = new ArrayList<>();
+            for (Bucket bucket = slot.poll(); bucket != null; bucket = slot.poll()) {
+                due.add(bucket);
+            }
+            for (Bucket bucket : due) {
+                long fullAt = bucket.fullAt.get();
+                if (fullAt <= now && bucket.limit.buckets.remove(bucket.key, bucket)) {
+                    bucketCount.decrementAndGet();
+                    dropped++;
+                } else {
+                    schedule(bucket, fullAt, now);
+                }
+            }
+        }
+        sweptTick = tick;
+        if (dropped > 0) {
+            log.trace("Dropped {} full rate limit buckets", dropped);
+        }
+    }
+
+    int bucketCount() {
+        return bucketCount.get();
+    }
+
+    /**
+     * The limits of an endpoint, per client address and per login.
+     */
+    public static final class Endpoint {
+
+        private final String loginField;
+
+        private final Limit perIp;
+
+        private final Limit perLogin;
+
+        private final Counter allowedCounter;
+
+        private final Counter rejectedCounter;
+
+        private Endpoint(String name, ApplicationProperties.Security.RateLimit.Endpoint properties, MeterRegistry registry) {
+            this.loginField = properties.getLoginField();
+            this.perIp = Limit.of(name, "ip", properties.getPerIp(), registry);
+            this.perLogin = Limit.of(name, "login", properties.getPerLogin(), registry);
+            this.allowedCounter = requestsCounterBuilder(name, "allowed").register(registry);
+            this.rejectedCounter = requestsCounterBuilder(name, "rejected").register(registry);
+        }
+
+        private static Counter.Builder requestsCounterBuilder(String name, String result) {
+            return Counter
+                .builder(REQUESTS_METER_NAME)
+                .description("Requests to the rate limited endpoints.")
+                .tag(ENDPOINT_DIMENSION, name)
+                .tag(RESULT_DIMENSION, result);
+        }
+
+        /**
+         * @return whether the requests are limited per login.
+         */
+        public boolean isLimitedPerLogin() {
+            return perLogin != null;
+        }
+
+        /**
+         * @return the field of the JSON body holding the login, or empty if the whole body is the login.
+         */
+        public String getLoginField() {
+            return loginField;
+        }
+    }
+
+    /**
+     * A limit with its buckets.
+     */
+    private static final class Limit {
+
+        private final int capacity;
+
+        private final long interval;
+
+        private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+        private Limit(int capacity, int refillPerMinute) {
+            this.capacity = capacity;
+            this.interval = TimeUnit.MINUTES.toNanos(1) / refillPerMinute;
+        }
+
+        private static Limit of(
+            String name,
+            String key,
+            ApplicationProperties.Security.RateLimit.Limit properties,
+            MeterRegistry registry
+        ) {
+            if (properties.getCapacity() <= 0 || properties.getRefillPerMinute() <= 0) {
+                return null;
+            }
+            Gauge
+                .builder(CAPACITY_METER_NAME, properties, ApplicationProperties.Security.RateLimit.Limit::getCapacity)
+                .description("Requests allowed in a burst by the rate limit.")
+                .tags(ENDPOINT_DIMENSION, name, KEY_DIMENSION, key)
+                .register(registry);
+            Gauge
+                .builder(REFILL_METER_NAME, properties, ApplicationProperties.Security.RateLimit.Limit::getRefillPerMinute)
+                .description("Requests allowed again per minute by the rate limit.")
+                .tags(ENDPOINT_DIMENSION, name, KEY_DIMENSION, key)
+                .register(registry);
+            return new Limit(properties.getCapacity(), properties.getRefillPerMinute());
+        }
+    }
+
+    /**
+     * A token bucket, as the time at which it will be full again.
+     */
+    private static final class Bucket {
+
+        private final Limit limit;
+
+        private final String key;
+
+        private final AtomicLong fullAt;
+
+        private Bucket(Limit limit, String key, long now) {
+            this.limit = limit;
+            this.key = key;
+            this.fullAt = new AtomicLong(now);
+        }
+
+        private long acquire(long now) {
+            long burst = limit.interval * limit.capacity;
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current, now) + limit.interval;
+                long ahead = next - now;
+                if (ahead > burst) {
+                    return ahead - burst;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
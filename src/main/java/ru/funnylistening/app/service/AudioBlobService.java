@@ -0,0 +1,276 @@
+package ru.funnylistening.app.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.funnylistening.app.domain.AudioBlob;
+import ru.funnylistening.app.repository.AudioBlobRepository;
+import ru.funnylistening.app.repository.ElementRepository;
+
+/**
+ * Service for the content-addressed audio blobs referenced by elements.
+ *
+ * Every element audio is stored once per distinct content, and the blob counts the elements referencing it.
+ * A content is locked while it is stored, so concurrent uploads of the same content store it once and the later ones
+ * reference it. Files are only removed from the {@link AudioStore} once the transaction releasing their last reference
+ * commits, or the one storing them rolls back, and then only if no committed blob references them by then.
+ * Each new blob is queued for transcoding into its renditions, and its waveform peaks are computed once it commits.
+ */
+@Service
+@Transactional
+public class AudioBlobService {
+
+    private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(AudioBlobService.class);
+
+    private final AudioBlobRepository audioBlobRepository;
+
+    private final ElementRepository elementRepository;
+
+    private final AudioStore audioStore;
+
+    private final AudioRenditionService audioRenditionService;
+
+    private final AudioPeaksService audioPeaksService;
+
+    private final TransactionTemplate cleanupTransaction;
+
+    public AudioBlobService(
+        AudioBlobRepository audioBlobRepository,
+        ElementRepository elementRepository,
+        AudioStore audioStore,
+        AudioRenditionService audioRenditionService,
+        AudioPeaksService audioPeaksService,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.audioBlobRepository = audioBlobRepository;
+        this.elementRepository = elementRepository;
+        this.audioStore = audioStore;
+        this.audioRenditionService = audioRenditionService;
+        this.audioPeaksService = audioPeaksService;
+        this.cleanupTransaction = new TransactionTemplate(transactionManager);
+        // files are cleaned up once the transaction is over, so in a transaction of their own
+        this.cleanupTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Take a reference on the audio at a location, storing it as a blob first if it isn't one yet.
+     *
+     * @param location the audio location set on an element.
+     * @param elementId the id of the element, or {@code null} if it isn't persisted yet.
+     * @return the location the element should reference: the blob location, or the given location if there's no such audio.
+     * @throws UncheckedIOException if the audio can't be stored, leaving the transaction as it was, so that the caller
+     * may go on without it.
+     */
+    @Transactional(noRollbackFor = UncheckedIOException.class)
+    public String acquire(String location, Long elementId) {
+        if (location == null) {
+            return null;
+        }
+        Optional<AudioBlob> existing = audioBlobRepository.findOneByLocation(location);
+        if (existing.isPresent()) {
+            return reference(existing.get()).getLocation();
+        }
+        Optional<AudioFile> audio = audioStore.find(location);
+        if (audio.isEmpty()) {
+            log.debug("No audio to store as a blob at : {}", location);
+            return location;
+        }
+        Path source = audio.get().getPath();
+        // the source may only be consumed if no other element still plays it
+        boolean sourceShared = elementId == null
+            ? elementRepository.countByElementAudioPath(location) > 0
+            : elementRepository.countByElementAudioPathAndIdNot(location, elementId) > 0;
+        try {
+            String sha256 = sha256(source);
+            // copied rather than moved, so that a rollback leaves the element audio where it was
+            String blobLocation = store(source, sha256, extension(location), audio.get().getLength());
+            // the location may be the one of a blob released concurrently, whose file is cleaned up on its own
+            if (!sourceShared && !blobLocation.equals(location)) {
+                deleteAfterCommit(location);
+            }
+            return blobLocation;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't store audio " + location, e);
+        }
+    }
+
+    /**
+     * Take a reference on the content of a fully received upload, copying the file into the store if it is new.
+     *
+     * @param file the uploaded file, left for the caller to delete once the transaction commits.
+     * @param sha256 the hex encoded SHA-256 of the file, computed while receiving it.
+     * @param filename the name of the file on the uploader side, for its extension.
+     * @return the location of the blob.
+     */
+    public String acquireUpload(Path file, String sha256, String filename) {
+        try {
+            // copied rather than moved, so that a rollback leaves the upload in place to be completed again
+            return store(file, sha256, filename == null ? null : extension(filename), Files.size(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't store upload " + file, e);
+        }
+    }
+
+    /**
+     * Release a reference on a blob, deleting it when it was the last one.
+     *
+     * @param location the audio location an element referenced.
+     */
+    public void release(String location) {
+        if (location == null) {
+            return;
+        }
+        audioBlobRepository
+            .findOneByLocation(location)
+            .ifPresent(blob -> {
+                if (blob.getReferenceCount() > 1) {
+                    blob.setReferenceCount(blob.getReferenceCount() - 1);
+                } else {
+                    log.debug("Deleting unreferenced blob : {}", blob);
+                    String sha256 = blob.getSha256();
+                    audioRenditionService.delete(blob).forEach(rendition -> deleteUnreferencedAfterCommit(sha256, rendition, false));
+                    deleteUnreferencedAfterCommit(sha256, audioPeaksService.location(sha256), false);
+                    audioBlobRepository.delete(blob);
+                    deleteUnreferencedAfterCommit(sha256, blob.getLocation(), true);
+                }
+            });
+    }
+
+    private String store(Path source, String sha256, String extension, long size) throws IOException {
+        // held until the end of the transaction: a concurrent store of the same content waits for it, then references it
+        audioBlobRepository.lockContent(sha256);
+        Optional<AudioBlob> blob = audioBlobRepository.findOneBySha256(sha256);
+        if (blob.isPresent()) {
+            return reference(blob.get()).getLocation();
+        }
+        String blobLocation = audioStore.blobLocation(sha256, extension);
+        // staged under a name of its own by the store, then moved in place, so a reader never sees a partial blob
+        audioStore.putBlob(blobLocation, source, false);
+        deleteUnreferencedAfterCompletion(sha256, blobLocation, true, TransactionSynchronization.STATUS_ROLLED_BACK);
+        log.debug("Stored audio {} as blob : {}", source.getFileName(), blobLocation);
+        AudioBlob stored = audioBlobRepository.save(new AudioBlob().sha256(sha256).location(blobLocation).byteSize(size).referenceCount(1));
+        audioRenditionService.enqueue(stored);
+        computePeaksAfterCommit(blobLocation, sha256);
+        return stored.getLocation();
+    }
+
+    private AudioBlob reference(AudioBlob blob) {
+        blob.setReferenceCount(blob.getReferenceCount() + 1);
+        return blob;
+    }
+
+    private void computePeaksAfterCommit(String location, String sha256) {
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    audioPeaksService.compute(location, sha256);
+                }
+            }
+        );
+    }
+
+    private void deleteAfterCommit(String location) {
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    delete(location);
+                }
+            }
+        );
+    }
+
+    private void deleteUnreferencedAfterCommit(String sha256, String location, boolean blobFile) {
+        deleteUnreferencedAfterCompletion(sha256, location, blobFile, TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    /**
+     * Delete a file of a content once the transaction completes with the given status, unless a committed blob
+     * references it by then: the blob stored at its location for a blob file, any blob of the content for a file
+     * derived from the content. The content is locked meanwhile, so it can't be stored again concurrently.
+     */
+    private void deleteUnreferencedAfterCompletion(String sha256, String location, boolean blobFile, int expectedStatus) {
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != expectedStatus) {
+                        return;
+                    }
+                    cleanupTransaction.executeWithoutResult(cleanup -> {
+                        audioBlobRepository.lockContent(sha256);
+                        boolean referenced = blobFile
+                            ? audioBlobRepository.existsByLocation(location)
+                            : audioBlobRepository.existsBySha256(sha256);
+                        if (referenced) {
+                            log.debug("Keeping audio {} stored again meanwhile", location);
+                        } else {
+                            delete(location);
+                        }
+                    });
+                }
+            }
+        );
+    }
+
+    private void delete(String location) {
+        try {
+            audioStore.delete(location);
+        } catch (IOException e) {
+            log.warn("Can't delete audio {} : {}", location, e.getMessage());
+        }
+    }
+
+    static String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(DIGEST_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path)) {
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            hex[2 * i + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    private static String extension(String location) {
+        String filename = location.substring(location.lastIndexOf('/') + 1);
+        int dot = filename.lastIndexOf('.');
+        String extension = dot < 0 ? null : filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return extension != null && extension.matches("[a-z0-9]{1,10}") ? extension : null;
+    }
+}
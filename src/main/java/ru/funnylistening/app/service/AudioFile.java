@@ -0,0 +1,82 @@
+package ru.funnylistening.app.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A readable audio file resolved by an {@link AudioStore}, with the validators needed to serve it over HTTP.
+ */
+public final class AudioFile {
+
+    private final Path path;
+
+    private final long length;
+
+    private final long lastModified;
+
+    private final String eTag;
+
+    private final boolean immutable;
+
+    public AudioFile(Path path, long length, long lastModified, String eTag) {
+        this(path, length, lastModified, eTag, false);
+    }
+
+    /**
+     * @param immutable whether the file is never rewritten in place, as blobs and files derived from them.
+     */
+    public AudioFile(Path path, long length, long lastModified, String eTag, boolean immutable) {
+        this.path = path;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.eTag = eTag;
+        this.immutable = immutable;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getFilename() {
+        return path.getFileName().toString();
+    }
+
+    /**
+     * @return the size of the file in bytes.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return the last modification time in epoch milliseconds.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the quoted, strong entity tag of the current file content.
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * @return whether the file content never changes while it exists, so it can be memory-mapped safely.
+     */
+    public boolean isImmutable() {
+        return immutable;
+    }
+
+    public FileChannel open() throws IOException {
+        return FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    @Override
+    public String toString() {
+        return "AudioFile{" + "path=" + path + ", length=" + length + ", eTag=" + eTag + "}";
+    }
+}
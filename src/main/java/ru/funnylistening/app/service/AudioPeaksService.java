@@ -0,0 +1,311 @@
+package ru.funnylistening.app.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.enumeration.AudioQuality;
+import ru.funnylistening.app.repository.AudioBlobRepository;
+import ru.funnylistening.app.repository.ElementRepository;
+
+/**
+ * Service computing the waveform peaks of element audio, once per audio blob.
+ *
+ * Peaks are stored next to the blob renditions in the audiowaveform binary format, version 1: a little-endian header
+ * (version, flags, sample rate, samples per pixel, length) followed by one 8 bit min/max pair per pixel, which
+ * waveform players read directly. They are computed on the bounded {@code peaksExecutor}, and since they are keyed
+ * by the content hash, changing the element audio switches to other peaks.
+ *
+ * The formats the JDK can't decode, such as MP3, are first transcoded by the {@link AudioTranscoder} when its
+ * renditions are in a format the JDK reads, such as WAV. The {@code java} encoder can't read them either, and the
+ * renditions of a {@code command} encoder writing a compressed format can't be read: such audio has no peaks, and is
+ * remembered so that it isn't tried again on every request.
+ */
+@Service
+@Transactional(readOnly = true)
+public class AudioPeaksService {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int FLAG_8_BIT = 1;
+
+    private static final int DEFAULT_SAMPLES_PER_PIXEL = 256;
+
+    private static final int MAX_UNSUPPORTED = 10_000;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(AudioPeaksService.class);
+
+    private final Set<String> computing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Blobs whose format can't be decoded, so they aren't decoded again on every request, in access order; guarded by
+     * itself.
+     */
+    private final LinkedHashMap<String, Boolean> unsupported = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final ElementRepository elementRepository;
+
+    private final AudioBlobRepository audioBlobRepository;
+
+    private final AudioStore audioStore;
+
+    private final AudioTranscoder audioTranscoder;
+
+    private final Executor peaksExecutor;
+
+    private final int width;
+
+    public AudioPeaksService(
+        ElementRepository elementRepository,
+        AudioBlobRepository audioBlobRepository,
+        AudioStore audioStore,
+        AudioTranscoder audioTranscoder,
+        @Qualifier("peaksExecutor") Executor peaksExecutor,
+        ApplicationProperties applicationProperties
+    ) {
+        this.elementRepository = elementRepository;
+        this.audioBlobRepository = audioBlobRepository;
+        this.audioStore = audioStore;
+        this.audioTranscoder = audioTranscoder;
+        this.peaksExecutor = peaksExecutor;
+        this.width = applicationProperties.getAudio().getPeaks().getWidth();
+    }
+
+    /**
+     * Get the waveform peaks of the audio of an element, scheduling their computation if they aren't ready.
+     *
+     * @param elementId the id of the element.
+     * @return the peaks, or empty if the element has no stored audio, or audio in a format that can't be decoded.
+     * @throws PeaksNotReadyException if the peaks are being computed.
+     */
+    public Optional<AudioFile> findPeaks(Long elementId) {
+        log.debug("Request to get peaks of Element : {}", elementId);
+        Optional<String> location = elementRepository.findAudioPathById(elementId);
+        Optional<String> sha256 = location.flatMap(audioBlobRepository::findSha256ByLocation);
+        if (sha256.isEmpty() || isUnsupported(sha256.get())) {
+            return Optional.empty();
+        }
+        Optional<AudioFile> peaks = find(sha256.get());
+        if (peaks.isPresent()) {
+            return peaks;
+        }
+        compute(location.get(), sha256.get());
+        // computed already when the executor runs synchronously
+        peaks = find(sha256.get());
+        if (peaks.isPresent() || isUnsupported(sha256.get())) {
+            return peaks;
+        }
+        throw new PeaksNotReadyException();
+    }
+
+    /**
+     * Get the location of the peaks of a blob.
+     *
+     * @param sha256 the hex encoded SHA-256 of the blob.
+     * @return the location of the peaks, to delete with the blob.
+     */
+    public String location(String sha256) {
+        return audioStore.renditionLocation(sha256, "peaks", "dat");
+    }
+
+    /**
+     * Schedule the computation of the peaks of a blob, unless it is running already.
+     *
+     * @param blobLocation the location of the blob.
+     * @param sha256 the hex encoded SHA-256 of the blob.
+     */
+    public void compute(String blobLocation, String sha256) {
+        if (!computing.add(sha256)) {
+            return;
+        }
+        try {
+            peaksExecutor.execute(() -> {
+                try {
+                    store(blobLocation, sha256);
+                } finally {
+                    computing.remove(sha256);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            computing.remove(sha256);
+            log.debug("Peaks queue full, {} postponed", blobLocation);
+        }
+    }
+
+    private Optional<AudioFile> find(String sha256) {
+        // the peaks of a blob never change, so the blob hash is their strong entity tag
+        return audioStore
+            .find(location(sha256))
+            .map(file -> new AudioFile(file.getPath(), file.getLength(), file.getLastModified(), "\"" + sha256 + "-peaks\"", true));
+    }
+
+    private void store(String blobLocation, String sha256) {
+        Optional<AudioFile> audio = audioStore.find(blobLocation);
+        if (audio.isEmpty()) {
+            return;
+        }
+        Path output = null;
+        try {
+            Optional<byte[]> peaks = compute(audio.get().getPath());
+            if (peaks.isEmpty()) {
+                log.debug("Can't decode {}, no peaks", blobLocation);
+                markUnsupported(sha256);
+                return;
+            }
+            output = Files.createTempFile("peaks", ".dat");
+            Files.write(output, peaks.get());
+            audioStore.putBlob(location(sha256), output, true);
+            log.debug("Stored peaks of {}", blobLocation);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Computing the peaks of {} failed : {}", blobLocation, e.getMessage());
+        } finally {
+            if (output != null) {
+                try {
+                    Files.deleteIfExists(output);
+                } catch (IOException e) {
+                    log.debug("Can't delete {} : {}", output, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private boolean isUnsupported(String sha256) {
+        synchronized (unsupported) {
+            return unsupported.get(sha256) != null;
+        }
+    }
+
+    private void markUnsupported(String sha256) {
+        synchronized (unsupported) {
+            unsupported.put(sha256, Boolean.TRUE);
+            Iterator<String> eldest = unsupported.keySet().iterator();
+            while (unsupported.size() > MAX_UNSUPPORTED) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Compute the peaks of an audio file, transcoding it first if the JDK can't decode it.
+     *
+     * @param path the audio file.
+     * @return the peaks in the audiowaveform binary format, or empty if the audio can't be decoded.
+     * @throws IOException if the audio can't be read.
+     */
+    Optional<byte[]> compute(Path path) throws IOException {
+        Optional<byte[]> peaks = decode(path);
+        if (peaks.isPresent() || !isReadable(audioTranscoder.getExtension())) {
+            return peaks;
+        }
+        Path transcoded = Files.createTempFile("peaks", "." + audioTranscoder.getExtension());
+        try {
+            return audioTranscoder.transcode(path, AudioQuality.HIGH, transcoded) ? decode(transcoded) : Optional.empty();
+        } finally {
+            Files.deleteIfExists(transcoded);
+        }
+    }
+
+    /**
+     * Tell whether the JDK reads the audio files of an extension, as it reads those it writes.
+     */
+    private static boolean isReadable(String extension) {
+        for (AudioFileFormat.Type type : AudioSystem.getAudioFileTypes()) {
+            if (type.getExtension().equalsIgnoreCase(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Optional<byte[]> decode(Path path) throws IOException {
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(path.toFile())) {
+            AudioFormat source = in.getFormat();
+            AudioFormat pcm = new AudioFormat(
+                AudioFormat.Encoding.PCM_SIGNED,
+                source.getSampleRate(),
+                16,
+                source.getChannels(),
+                2 * source.getChannels(),
+                source.getSampleRate(),
+                false
+            );
+            if (!source.matches(pcm) && !AudioSystem.isConversionSupported(pcm, source)) {
+                return Optional.empty();
+            }
+            long frames = in.getFrameLength();
+            int samplesPerPixel = frames > 0 ? (int) Math.max(1, (frames + width - 1) / width) : DEFAULT_SAMPLES_PER_PIXEL;
+            try (InputStream decoded = source.matches(pcm) ? in : AudioSystem.getAudioInputStream(pcm, in)) {
+                return Optional.of(peaks(decoded, pcm.getChannels(), (int) pcm.getSampleRate(), samplesPerPixel));
+            }
+        } catch (UnsupportedAudioFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static byte[] peaks(InputStream pcm, int channels, int sampleRate, int samplesPerPixel) throws IOException {
+        ByteArrayOutputStream pairs = new ByteArrayOutputStream();
+        int frameSize = 2 * channels;
+        byte[] buffer = new byte[READ_BUFFER_SIZE - READ_BUFFER_SIZE % frameSize];
+        int min = Short.MAX_VALUE;
+        int max = Short.MIN_VALUE;
+        int framesInPixel = 0;
+        int buffered = 0;
+        int read;
+        while ((read = pcm.read(buffer, buffered, buffer.length - buffered)) != -1) {
+            buffered += read;
+            int whole = buffered - buffered % frameSize;
+            for (int frame = 0; frame < whole; frame += frameSize) {
+                for (int channel = 0; channel < channels; channel++) {
+                    int index = frame + 2 * channel;
+                    int sample = (short) ((buffer[index] & 0xFF) | (buffer[index + 1] << 8));
+                    min = Math.min(min, sample);
+                    max = Math.max(max, sample);
+                }
+                if (++framesInPixel == samplesPerPixel) {
+                    pairs.write(min >> 8);
+                    pairs.write(max >> 8);
+                    min = Short.MAX_VALUE;
+                    max = Short.MIN_VALUE;
+                    framesInPixel = 0;
+                }
+            }
+            // keep a partial frame for the next read
+            System.arraycopy(buffer, whole, buffer, 0, buffered - whole);
+            buffered -= whole;
+        }
+        if (framesInPixel > 0) {
+            pairs.write(min >> 8);
+            pairs.write(max >> 8);
+        }
+        ByteBuffer header = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(FORMAT_VERSION).putInt(FLAG_8_BIT).putInt(sampleRate).putInt(samplesPerPixel).putInt(pairs.size() / 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(header.capacity() + pairs.size());
+        out.write(header.array());
+        pairs.writeTo(out);
+        return out.toByteArray();
+    }
+}
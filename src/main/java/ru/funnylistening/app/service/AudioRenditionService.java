@@ -0,0 +1,196 @@
+package ru.funnylistening.app.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.AudioBlob;
+import ru.funnylistening.app.domain.AudioRendition;
+import ru.funnylistening.app.domain.enumeration.AudioQuality;
+import ru.funnylistening.app.domain.enumeration.TranscodingStatus;
+import ru.funnylistening.app.repository.AudioRenditionRepository;
+
+/**
+ * Service for the renditions of audio blobs.
+ *
+ * The rendition rows are the transcoding queue: they are created pending in the transaction storing their blob, so
+ * no audio is lost from the queue on a crash, and {@link AudioTranscodingService} claims and fills them.
+ */
+@Service
+@Transactional
+public class AudioRenditionService {
+
+    private final Logger log = LoggerFactory.getLogger(AudioRenditionService.class);
+
+    private final AudioRenditionRepository audioRenditionRepository;
+
+    private final AudioStore audioStore;
+
+    private final ApplicationProperties.Audio.Transcoding properties;
+
+    public AudioRenditionService(
+        AudioRenditionRepository audioRenditionRepository,
+        AudioStore audioStore,
+        ApplicationProperties applicationProperties
+    ) {
+        this.audioRenditionRepository = audioRenditionRepository;
+        this.audioStore = audioStore;
+        this.properties = applicationProperties.getAudio().getTranscoding();
+    }
+
+    /**
+     * Queue the transcoding of every quality of a newly stored blob.
+     *
+     * @param blob the blob.
+     */
+    public void enqueue(AudioBlob blob) {
+        log.debug("Request to queue the renditions of AudioBlob : {}", blob.getLocation());
+        Instant now = Instant.now();
+        for (AudioQuality quality : AudioQuality.values()) {
+            audioRenditionRepository.save(
+                new AudioRendition().blob(blob).quality(quality).status(TranscodingStatus.PENDING).attempts(0).updatedDate(now)
+            );
+        }
+    }
+
+    /**
+     * Delete the renditions of a blob.
+     *
+     * @param blob the blob about to be deleted.
+     * @return the locations of the rendition files, to delete once the transaction commits.
+     */
+    public List<String> delete(AudioBlob blob) {
+        List<String> locations = new ArrayList<>();
+        for (AudioRendition rendition : audioRenditionRepository.findAllByBlob(blob)) {
+            if (rendition.getLocation() != null) {
+                locations.add(rendition.getLocation());
+            }
+            audioRenditionRepository.delete(rendition);
+        }
+        return locations;
+    }
+
+    /**
+     * Get a transcoded rendition of an audio.
+     *
+     * @param location the location of the original audio.
+     * @param quality the quality of the rendition.
+     * @return the rendition file, or empty if it isn't transcoded.
+     */
+    @Transactional(readOnly = true)
+    public Optional<AudioFile> findRendition(String location, AudioQuality quality) {
+        return audioRenditionRepository
+            .findDoneByBlobLocationAndQuality(location, quality)
+            .map(AudioRendition::getLocation)
+            .flatMap(audioStore::find);
+    }
+
+    /**
+     * Claim pending renditions for transcoding, and queue again those abandoned by a stopped instance.
+     *
+     * @param limit the maximum number of renditions to claim.
+     * @return the claimed renditions.
+     */
+    public List<TranscodingJob> claim(int limit) {
+        Instant now = Instant.now();
+        int requeued = audioRenditionRepository.requeueRunningBefore(now.minus(properties.getTimeoutMinutes(), ChronoUnit.MINUTES));
+        if (requeued > 0) {
+            log.info("Queued again {} abandoned renditions", requeued);
+        }
+        List<TranscodingJob> jobs = new ArrayList<>();
+        for (AudioRendition rendition : audioRenditionRepository.findAllForUpdateByStatus(TranscodingStatus.PENDING, PageRequest.of(0, limit))) {
+            rendition.status(TranscodingStatus.RUNNING).attempts(rendition.getAttempts() + 1).updatedDate(now);
+            AudioBlob blob = rendition.getBlob();
+            jobs.add(new TranscodingJob(rendition.getId(), rendition.getQuality(), blob.getLocation(), blob.getSha256()));
+        }
+        return jobs;
+    }
+
+    /**
+     * Record a transcoded rendition.
+     *
+     * @param id the id of the rendition.
+     * @param location the location of the rendition file.
+     * @param byteSize the size of the rendition file.
+     * @return {@code false} if the rendition was deleted meanwhile, so the file should be deleted.
+     */
+    public boolean complete(Long id, String location, long byteSize) {
+        return audioRenditionRepository
+            .findById(id)
+            .map(rendition -> rendition.status(TranscodingStatus.DONE).location(location).byteSize(byteSize).updatedDate(Instant.now()))
+            .isPresent();
+    }
+
+    /**
+     * Record a rendition that won't be produced, so the original audio is served instead.
+     *
+     * @param id the id of the rendition.
+     */
+    public void skip(Long id) {
+        audioRenditionRepository.findById(id).ifPresent(rendition -> rendition.status(TranscodingStatus.SKIPPED).updatedDate(Instant.now()));
+    }
+
+    /**
+     * Record a failed transcoding, to try again until the maximum number of attempts is reached.
+     *
+     * @param id the id of the rendition.
+     */
+    public void fail(Long id) {
+        audioRenditionRepository
+            .findById(id)
+            .ifPresent(rendition ->
+                rendition
+                    .status(rendition.getAttempts() < properties.getMaxAttempts() ? TranscodingStatus.PENDING : TranscodingStatus.FAILED)
+                    .updatedDate(Instant.now())
+            );
+    }
+
+    /**
+     * A rendition claimed for transcoding.
+     */
+    public static final class TranscodingJob {
+
+        private final Long id;
+
+        private final AudioQuality quality;
+
+        private final String sourceLocation;
+
+        private final String sourceSha256;
+
+        TranscodingJob(Long id, AudioQuality quality, String sourceLocation, String sourceSha256) {
+            this.id = id;
+            this.quality = quality;
+            this.sourceLocation = sourceLocation;
+            this.sourceSha256 = sourceSha256;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public AudioQuality getQuality() {
+            return quality;
+        }
+
+        public String getSourceLocation() {
+            return sourceLocation;
+        }
+
+        public String getSourceSha256() {
+            return sourceSha256;
+        }
+
+        @Override
+        public String toString() {
+            return "TranscodingJob{id=" + id + ", quality=" + quality + ", sourceLocation='" + sourceLocation + "'}";
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package ru.funnylistening.app.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import ru.funnylistening.app.config.ApplicationProperties;
+
+/**
+ * Local disk cache of the story playlist segments, generated on their first request.
+ *
+ * The cache is bounded in bytes and evicts the least recently served segments first. Segment files never change
+ * once written, so their entity tag is their name. A segment is pinned while it is served, and the file of a pinned
+ * segment evicted meanwhile is only deleted once its last response completes.
+ */
+@Service
+public class AudioSegmentCache {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("^[0-9a-f]{32}(\\.[a-z0-9]{1,10})?$");
+
+    private final Logger log = LoggerFactory.getLogger(AudioSegmentCache.class);
+
+    /**
+     * Segment sizes by name, in access order; guarded by itself.
+     */
+    private final LinkedHashMap<String, Long> segments = new LinkedHashMap<>(256, 0.75f, true);
+
+    /**
+     * Responses serving each segment; guarded by the segments.
+     */
+    private final Map<String, Integer> pins = new HashMap<>();
+
+    /**
+     * Pinned segments evicted, whose files are deleted once unpinned; guarded by the segments.
+     */
+    private final Set<String> evictedWhilePinned = new HashSet<>();
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    private long size;
+
+    public AudioSegmentCache(ApplicationProperties applicationProperties) {
+        this.directory = Paths.get(applicationProperties.getAudio().getHls().getCachePath()).toAbsolutePath().normalize();
+        this.maxSize = applicationProperties.getAudio().getHls().getMaxCacheSize();
+    }
+
+    /**
+     * Index the segments left by a previous run, the oldest first.
+     */
+    @PostConstruct
+    public void loadCache() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (isSegmentName(entry.getFileName().toString())) {
+                    files.add(entry);
+                } else {
+                    // an interrupted write
+                    Files.deleteIfExists(entry);
+                }
+            }
+        }
+        files.sort(Comparator.comparingLong(AudioSegmentCache::lastModified));
+        synchronized (segments) {
+            for (Path file : files) {
+                long length = Files.size(file);
+                segments.put(file.getFileName().toString(), length);
+                size += length;
+            }
+        }
+        evict();
+        log.debug("Indexed {} cached segments, {} bytes", files.size(), size);
+    }
+
+    /**
+     * Serve a segment, cutting it from its source audio if it isn't cached. Its file isn't deleted while it is read,
+     * even if the segment is evicted meanwhile.
+     *
+     * @param segment the segment.
+     * @param reader reads the segment file.
+     * @throws IOException if the reader fails.
+     */
+    public void serve(StoryPlaylist.Segment segment, SegmentReader reader) throws IOException {
+        AudioFile file = find(segment.getName()).orElseGet(() -> write(segment));
+        try {
+            reader.read(file);
+        } finally {
+            unpin(segment.getName());
+        }
+    }
+
+    /**
+     * Find a cached segment, pinning it if it is.
+     */
+    private Optional<AudioFile> find(String name) {
+        if (!isSegmentName(name)) {
+            return Optional.empty();
+        }
+        synchronized (segments) {
+            if (segments.get(name) == null) {
+                return Optional.empty();
+            }
+            pins.merge(name, 1, Integer::sum);
+        }
+        Path path = directory.resolve(name);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return Optional.of(new AudioFile(path, attributes.size(), attributes.lastModifiedTime().toMillis(), eTag(name), true));
+        } catch (IOException e) {
+            log.debug("Cached segment vanished : {}", name);
+            unpin(name);
+            forget(name);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Cut a segment into the cache, pinning it.
+     */
+    private AudioFile write(StoryPlaylist.Segment segment) {
+        Path target = directory.resolve(segment.getName());
+        try {
+            Path temporary = Files.createTempFile(directory, "segment", ".tmp");
+            try {
+                try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                    for (StoryPlaylist.Part part : segment.getParts()) {
+                        try (FileChannel source = part.getSource().open()) {
+                            long position = part.getOffset();
+                            long remaining = part.getLength();
+                            while (remaining > 0) {
+                                long transferred = source.transferTo(position, remaining, out);
+                                if (transferred <= 0) {
+                                    throw new IOException("Audio file truncated at position " + position);
+                                }
+                                position += transferred;
+                                remaining -= transferred;
+                            }
+                        }
+                    }
+                }
+                try {
+                    Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't cache segment " + segment.getName(), e);
+        }
+        log.debug("Cached segment {} of {} files", segment.getName(), segment.getParts().size());
+        synchronized (segments) {
+            Long previous = segments.put(segment.getName(), segment.getLength());
+            size += segment.getLength() - (previous == null ? 0 : previous);
+            evictedWhilePinned.remove(segment.getName());
+            pins.merge(segment.getName(), 1, Integer::sum);
+        }
+        evict();
+        return new AudioFile(target, segment.getLength(), System.currentTimeMillis(), eTag(segment.getName()), true);
+    }
+
+    /**
+     * Evict the least recently served segments beyond the maximum size. Files are deleted holding the lock, so a
+     * segment cut again meanwhile isn't deleted under its new entry.
+     */
+    private void evict() {
+        synchronized (segments) {
+            Iterator<Map.Entry<String, Long>> eldest = segments.entrySet().iterator();
+            while (size > maxSize && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                size -= entry.getValue();
+                if (pins.containsKey(entry.getKey())) {
+                    evictedWhilePinned.add(entry.getKey());
+                } else {
+                    delete(entry.getKey());
+                }
+                eldest.remove();
+            }
+        }
+    }
+
+    private void unpin(String name) {
+        synchronized (segments) {
+            if (pins.merge(name, -1, Integer::sum) > 0) {
+                return;
+            }
+            pins.remove(name);
+            if (evictedWhilePinned.remove(name)) {
+                delete(name);
+            }
+        }
+    }
+
+    private void delete(String name) {
+        try {
+            Files.deleteIfExists(directory.resolve(name));
+        } catch (IOException e) {
+            log.warn("Can't evict segment {} : {}", name, e.getMessage());
+        }
+    }
+
+    private void forget(String name) {
+        synchronized (segments) {
+            Long length = segments.remove(name);
+            if (length != null) {
+                size -= length;
+            }
+        }
+    }
+
+    /**
+     * Reads a segment file while it is pinned.
+     */
+    @FunctionalInterface
+    public interface SegmentReader {
+        void read(AudioFile file) throws IOException;
+    }
+
+    private static boolean isSegmentName(String name) {
+        return SEGMENT_NAME.matcher(name).matches();
+    }
+
+    private static String eTag(String name) {
+        return "\"" + name + "\"";
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ru.funnylistening.app.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Storage backend for the audio referenced by {@link ru.funnylistening.app.domain.Element#getElementAudioPath()}.
+ *
+ * The implementation is selected with the {@code application.audio.store} property.
+ */
+public interface AudioStore {
+    /**
+     * Resolve a stored audio location.
+     *
+     * @param location the location as stored on the element.
+     * @return the audio file, or empty if the location is unknown or unreadable.
+     */
+    Optional<AudioFile> find(String location);
+
+    /**
+     * Get the location of the content-addressed blob with the given hash.
+     *
+     * @param hash the hex encoded SHA-256 of the content.
+     * @param extension the file extension of the content, without dot, or {@code null}.
+     * @return the location of the blob.
+     */
+    String blobLocation(String hash, String extension);
+
+    /**
+     * Get the location of a rendition of the blob with the given hash.
+     *
+     * @param hash the hex encoded SHA-256 of the source blob.
+     * @param rendition the name of the rendition.
+     * @param extension the file extension of the rendition, without dot, or {@code null}.
+     * @return the location of the rendition.
+     */
+    String renditionLocation(String hash, String rendition, String extension);
+
+    /**
+     * Store a file as a blob or a rendition, unless it already exists.
+     *
+     * @param location the location, as returned by {@link #blobLocation(String, String)} or {@link #renditionLocation(String, String, String)}.
+     * @param source the file holding the content.
+     * @param move whether the source file may be moved instead of copied.
+     * @throws IOException if the blob can't be written.
+     */
+    void putBlob(String location, Path source, boolean move) throws IOException;
+
+    /**
+     * Delete a stored file, if it exists.
+     *
+     * @param location the location of the file.
+     * @throws IOException if the file can't be deleted.
+     */
+    void delete(String location) throws IOException;
+}
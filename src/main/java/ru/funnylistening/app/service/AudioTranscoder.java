@@ -0,0 +1,30 @@
+package ru.funnylistening.app.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import ru.funnylistening.app.domain.enumeration.AudioQuality;
+
+/**
+ * Encoder producing the renditions of element audio.
+ *
+ * The implementation is selected with the {@code application.audio.transcoding.encoder} property.
+ */
+public interface AudioTranscoder {
+    /**
+     * Get the file extension of the renditions.
+     *
+     * @return the extension, without dot.
+     */
+    String getExtension();
+
+    /**
+     * Transcode an audio file.
+     *
+     * @param source the audio to transcode.
+     * @param quality the quality of the rendition.
+     * @param target the file to write the rendition to.
+     * @return {@code false} if the encoder can't read the source.
+     * @throws IOException if the transcoding fails.
+     */
+    boolean transcode(Path source, AudioQuality quality, Path target) throws IOException;
+}
@@ -0,0 +1,132 @@
+package ru.funnylistening.app.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.service.AudioRenditionService.TranscodingJob;
+
+/**
+ * Service transcoding the queued renditions in the background.
+ *
+ * Renditions run on the dedicated {@code transcodingExecutor}, never on the {@code taskExecutor} shared with other
+ * async work, and no more are claimed than this instance has free transcoding slots.
+ */
+@Service
+public class AudioTranscodingService {
+
+    private final Logger log = LoggerFactory.getLogger(AudioTranscodingService.class);
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AudioRenditionService audioRenditionService;
+
+    private final AudioStore audioStore;
+
+    private final AudioTranscoder audioTranscoder;
+
+    private final Executor transcodingExecutor;
+
+    private final int concurrency;
+
+    public AudioTranscodingService(
+        AudioRenditionService audioRenditionService,
+        AudioStore audioStore,
+        AudioTranscoder audioTranscoder,
+        @Qualifier("transcodingExecutor") Executor transcodingExecutor,
+        ApplicationProperties applicationProperties
+    ) {
+        this.audioRenditionService = audioRenditionService;
+        this.audioStore = audioStore;
+        this.audioTranscoder = audioTranscoder;
+        this.transcodingExecutor = transcodingExecutor;
+        this.concurrency = applicationProperties.getAudio().getTranscoding().getConcurrency();
+    }
+
+    /**
+     * Claim pending renditions up to the free transcoding slots, and transcode them.
+     * <p>
+     * This is scheduled to get fired every 5 seconds, after the previous run.
+     */
+    @Scheduled(fixedDelay = 5000)
+    public void transcodePending() {
+        int slots = concurrency - running.get();
+        if (slots <= 0) {
+            return;
+        }
+        List<TranscodingJob> jobs = audioRenditionService.claim(slots);
+        for (TranscodingJob job : jobs) {
+            running.incrementAndGet();
+            try {
+                transcodingExecutor.execute(() -> {
+                    try {
+                        transcode(job);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                running.decrementAndGet();
+                log.warn("Transcoding queue full, {} postponed", job);
+                audioRenditionService.fail(job.getId());
+            }
+        }
+    }
+
+    private void transcode(TranscodingJob job) {
+        log.debug("Transcoding {}", job);
+        Optional<AudioFile> source = audioStore.find(job.getSourceLocation());
+        if (source.isEmpty()) {
+            log.warn("Audio to transcode not found : {}", job.getSourceLocation());
+            audioRenditionService.fail(job.getId());
+            return;
+        }
+        Path output = null;
+        try {
+            output = Files.createTempFile("rendition", "." + audioTranscoder.getExtension());
+            if (!audioTranscoder.transcode(source.get().getPath(), job.getQuality(), output)) {
+                log.debug("Encoder can't read {}, skipping its renditions", job.getSourceLocation());
+                audioRenditionService.skip(job.getId());
+                return;
+            }
+            long size = Files.size(output);
+            if (size == 0 || size >= source.get().getLength()) {
+                // the original is already as small, so it is served instead
+                audioRenditionService.skip(job.getId());
+                return;
+            }
+            String location = audioStore.renditionLocation(
+                job.getSourceSha256(),
+                job.getQuality().name().toLowerCase(Locale.ROOT),
+                audioTranscoder.getExtension()
+            );
+            audioStore.putBlob(location, output, true);
+            if (!audioRenditionService.complete(job.getId(), location, size)) {
+                log.debug("Audio deleted while transcoding {}", job);
+                audioStore.delete(location);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Transcoding {} failed : {}", job, e.getMessage());
+            audioRenditionService.fail(job.getId());
+        } finally {
+            if (output != null) {
+                try {
+                    Files.deleteIfExists(output);
+                } catch (IOException e) {
+                    log.debug("Can't delete {} : {}", output, e.getMessage());
+                }
+            }
+        }
+    }
+}
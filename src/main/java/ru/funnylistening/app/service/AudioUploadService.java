@@ -0,0 +1,365 @@
+package ru.funnylistening.app.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.Element;
+import ru.funnylistening.app.repository.ElementRepository;
+import ru.funnylistening.app.service.dto.AudioUploadDTO;
+
+/**
+ * Service for resumable element audio uploads.
+ *
+ * Each upload is received in any number of chunks, appended in order to a partial file on disk while its SHA-256 is
+ * computed on the fly, so nothing larger than one copy buffer per worker thread is held in memory. The received
+ * offset is the size of the partial file, so an interrupted upload resumes where it stopped, even after a restart.
+ * Once the last byte is received, the file is attached to its element as a content-addressed blob.
+ *
+ * One chunk of an upload is received at a time, by the request holding the upload; no lock is held while reading the
+ * network, so the progress of an upload can be read at any time. If the audio can't be attached, the received file is
+ * kept, so the upload can be completed again by appending an empty chunk at its end.
+ */
+@Service
+public class AudioUploadService {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> COPY_BUFFER = ThreadLocal.withInitial(() -> new byte[COPY_BUFFER_SIZE]);
+
+    private static final Pattern UPLOAD_ID = Pattern.compile("^[0-9a-f-]{36}$");
+
+    private static final String PART_SUFFIX = ".part";
+
+    private static final String INFO_SUFFIX = ".upload";
+
+    private final Logger log = LoggerFactory.getLogger(AudioUploadService.class);
+
+    private final ConcurrentMap<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    private final ElementRepository elementRepository;
+
+    private final ElementService elementService;
+
+    private final Path directory;
+
+    private final ApplicationProperties.Audio.Upload properties;
+
+    public AudioUploadService(
+        ElementRepository elementRepository,
+        ElementService elementService,
+        ApplicationProperties applicationProperties
+    ) {
+        this.elementRepository = elementRepository;
+        this.elementService = elementService;
+        this.properties = applicationProperties.getAudio().getUpload();
+        this.directory = Paths.get(properties.getPath()).toAbsolutePath().normalize();
+    }
+
+    public long getMaxSize() {
+        return properties.getMaxSize();
+    }
+
+    /**
+     * Start an upload of audio for an element.
+     *
+     * @param elementId the id of the element.
+     * @param length the total size of the audio in bytes.
+     * @param filename the name of the file on the uploader side.
+     * @return the new upload, or empty if the element doesn't exist.
+     */
+    public Optional<AudioUploadDTO> create(Long elementId, long length, String filename) {
+        log.debug("Request to start an audio upload for Element : {}, {} bytes", elementId, length);
+        if (!elementRepository.existsById(elementId)) {
+            return Optional.empty();
+        }
+        String id = UUID.randomUUID().toString();
+        Upload upload = new Upload(id, elementId, length, filename);
+        try {
+            Files.createDirectories(directory);
+            Files.createFile(partFile(id));
+            Properties info = new Properties();
+            info.setProperty("elementId", elementId.toString());
+            info.setProperty("length", Long.toString(length));
+            if (filename != null) {
+                info.setProperty("filename", filename);
+            }
+            try (Writer writer = Files.newBufferedWriter(infoFile(id), StandardCharsets.UTF_8)) {
+                info.store(writer, null);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't start upload " + id, e);
+        }
+        uploads.put(id, upload);
+        return Optional.of(upload.toDTO());
+    }
+
+    /**
+     * Get the progress of an upload.
+     *
+     * @param id the id of the upload.
+     * @return the upload, or empty if it doesn't exist.
+     */
+    public Optional<AudioUploadDTO> find(String id) {
+        return load(id).map(Upload::toDTO);
+    }
+
+    /**
+     * Append a chunk to an upload, attaching the audio to its element when the last byte is received.
+     *
+     * @param id the id of the upload.
+     * @param offset the offset of the chunk, which must be the number of bytes received so far.
+     * @param body the chunk.
+     * @return the upload after the chunk, or empty if it doesn't exist.
+     * @throws UploadOffsetMismatchException if the offset isn't the number of bytes received so far, or if another chunk
+     * is being received.
+     * @throws IOException if the chunk can't be read or written; the bytes received before the failure are kept.
+     */
+    public Optional<AudioUploadDTO> append(String id, long offset, InputStream body) throws IOException {
+        Optional<Upload> found = load(id);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        Upload upload = found.get();
+        if (!upload.receiving.compareAndSet(false, true)) {
+            throw new UploadOffsetMismatchException(upload.offset);
+        }
+        try {
+            if (uploads.get(id) != upload) {
+                // completed or aborted meanwhile
+                return Optional.empty();
+            }
+            if (upload.offset != offset) {
+                throw new UploadOffsetMismatchException(upload.offset);
+            }
+            receive(upload, body);
+            if (upload.offset == upload.length) {
+                complete(upload);
+            }
+            return Optional.of(upload.toDTO());
+        } finally {
+            release(upload);
+        }
+    }
+
+    /**
+     * Abort an upload and delete what was received.
+     *
+     * @param id the id of the upload.
+     */
+    public void abort(String id) {
+        load(id).ifPresent(upload -> {
+            upload.aborted = true;
+            // otherwise discarded by the request receiving a chunk, once it is received
+            if (upload.receiving.compareAndSet(false, true)) {
+                discard(upload);
+            }
+        });
+    }
+
+    /**
+     * Discard uploads without activity for longer than the configured expiration.
+     * <p>
+     * This is scheduled to get fired every hour.
+     */
+    @Scheduled(cron = "0 0 * * * ?")
+    public void removeExpiredUploads() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Instant expiration = Instant.now().minus(properties.getExpirationHours(), ChronoUnit.HOURS);
+        try (DirectoryStream<Path> infoFiles = Files.newDirectoryStream(directory, "*" + INFO_SUFFIX)) {
+            for (Path infoFile : infoFiles) {
+                String filename = infoFile.getFileName().toString();
+                String id = filename.substring(0, filename.length() - INFO_SUFFIX.length());
+                Path part = partFile(id);
+                if (!Files.exists(part) || Files.getLastModifiedTime(part).toInstant().isBefore(expiration)) {
+                    log.debug("Removing expired upload {}", id);
+                    uploads.remove(id);
+                    Files.deleteIfExists(part);
+                    Files.deleteIfExists(infoFile);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Can't remove expired uploads : {}", e.getMessage());
+        }
+    }
+
+    private void receive(Upload upload, InputStream body) throws IOException {
+        byte[] buffer = COPY_BUFFER.get();
+        try (FileChannel channel = FileChannel.open(partFile(upload.id), StandardOpenOption.WRITE)) {
+            long offset = upload.offset;
+            channel.position(offset);
+            try {
+                long remaining = upload.length - offset;
+                int read;
+                while (remaining > 0 && (read = body.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    while (chunk.hasRemaining()) {
+                        channel.write(chunk);
+                    }
+                    upload.digest.update(buffer, 0, read);
+                    offset += read;
+                    upload.offset = offset;
+                    remaining -= read;
+                }
+            } finally {
+                // a failed write may have left bytes the digest doesn't cover
+                if (channel.size() > upload.offset) {
+                    channel.truncate(upload.offset);
+                }
+            }
+        }
+    }
+
+    private void complete(Upload upload) {
+        if (upload.sha256 == null) {
+            upload.sha256 = AudioBlobService.toHex(upload.digest.digest());
+        }
+        log.debug("Upload {} received, attaching audio {} to Element : {}", upload.id, upload.sha256, upload.elementId);
+        // the received file is only discarded once attached, so that a failed attempt can be made again
+        Optional<Element> element = elementService.attachAudio(upload.elementId, partFile(upload.id), upload.sha256, upload.filename);
+        if (element.isEmpty()) {
+            log.debug("Element {} deleted during upload {}", upload.elementId, upload.id);
+        }
+        discard(upload);
+    }
+
+    private void release(Upload upload) {
+        upload.receiving.set(false);
+        // aborted while receiving a chunk, and not discarded by the abort
+        if (upload.aborted && upload.receiving.compareAndSet(false, true)) {
+            discard(upload);
+        }
+    }
+
+    private void discard(Upload upload) {
+        uploads.remove(upload.id);
+        try {
+            Files.deleteIfExists(partFile(upload.id));
+            Files.deleteIfExists(infoFile(upload.id));
+        } catch (IOException e) {
+            log.warn("Can't delete upload {} : {}", upload.id, e.getMessage());
+        }
+    }
+
+    private Optional<Upload> load(String id) {
+        if (id == null || !UPLOAD_ID.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        Upload upload = uploads.get(id);
+        if (upload != null) {
+            return Optional.of(upload);
+        }
+        // resuming an upload started before a restart: its digest is rebuilt from what was received
+        try (Reader reader = Files.newBufferedReader(infoFile(id), StandardCharsets.UTF_8)) {
+            Properties info = new Properties();
+            info.load(reader);
+            Upload resumed = new Upload(
+                id,
+                Long.valueOf(info.getProperty("elementId")),
+                Long.parseLong(info.getProperty("length")),
+                info.getProperty("filename")
+            );
+            byte[] buffer = COPY_BUFFER.get();
+            long received = 0;
+            try (InputStream in = Files.newInputStream(partFile(id))) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    resumed.digest.update(buffer, 0, read);
+                    received += read;
+                }
+            }
+            resumed.offset = received;
+            Upload existing = uploads.putIfAbsent(id, resumed);
+            return Optional.of(existing != null ? existing : resumed);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't resume upload " + id, e);
+        }
+    }
+
+    private Path partFile(String id) {
+        return directory.resolve(id + PART_SUFFIX);
+    }
+
+    private Path infoFile(String id) {
+        return directory.resolve(id + INFO_SUFFIX);
+    }
+
+    private static final class Upload {
+
+        private final String id;
+
+        private final Long elementId;
+
+        private final long length;
+
+        private final String filename;
+
+        /**
+         * Only updated by the request receiving a chunk.
+         */
+        private final MessageDigest digest;
+
+        /**
+         * Held by the request receiving a chunk.
+         */
+        private final AtomicBoolean receiving = new AtomicBoolean();
+
+        /**
+         * Only updated by the request receiving a chunk, and read by anyone.
+         */
+        private volatile long offset;
+
+        private volatile boolean aborted;
+
+        /**
+         * The digest of the received file, once complete.
+         */
+        private String sha256;
+
+        private Upload(String id, Long elementId, long length, String filename) {
+            this.id = id;
+            this.elementId = elementId;
+            this.length = length;
+            this.filename = filename;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private AudioUploadDTO toDTO() {
+            return new AudioUploadDTO(id, elementId, filename, offset, length);
+        }
+    }
+}
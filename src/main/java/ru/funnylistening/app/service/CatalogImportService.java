@@ -0,0 +1,456 @@
+package ru.funnylistening.app.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.funnylistening.app.repository.BulkInsertRepository;
+import ru.funnylistening.app.repository.StoryRepository;
+import ru.funnylistening.app.service.dto.ImportReportDTO;
+
+/**
+ * Service for bulk imports of stories and elements.
+ *
+ * Rows are read and validated one at a time, in the shape of the Liquibase {@code fake-data} files: CSV separated by
+ * {@code ;} with a header line, or NDJSON with one object per line. A row that isn't valid is reported with its line
+ * number and skipped, without aborting the others, as is a row whose audio can't be stored. Valid rows are written {@value #BATCH_SIZE} at a time with the
+ * JDBC batches of {@link BulkInsertRepository}, so that neither the file nor the entities are ever held in memory
+ * as a whole.
+ */
+@Service
+@Transactional
+public class CatalogImportService {
+
+    /**
+     * The format of an import.
+     */
+    public enum Format {
+        CSV,
+        NDJSON,
+    }
+
+    static final int BATCH_SIZE = 1000;
+
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    private static final char CSV_SEPARATOR = ';';
+
+    private final Logger log = LoggerFactory.getLogger(CatalogImportService.class);
+
+    private final BulkInsertRepository bulkInsertRepository;
+
+    private final StoryRepository storyRepository;
+
+    private final AudioBlobService audioBlobService;
+
+    private final StoryAudioService storyAudioService;
+
+    private final StoryJsonCache storyJsonCache;
+
+    private final ObjectMapper objectMapper;
+
+    private final TypeaheadIndex typeaheadIndex;
+
+    public CatalogImportService(
+        BulkInsertRepository bulkInsertRepository,
+        StoryRepository storyRepository,
+        AudioBlobService audioBlobService,
+        StoryAudioService storyAudioService,
+        StoryJsonCache storyJsonCache,
+        ObjectMapper objectMapper,
+        TypeaheadIndex typeaheadIndex
+    ) {
+        this.bulkInsertRepository = bulkInsertRepository;
+        this.storyRepository = storyRepository;
+        this.audioBlobService = audioBlobService;
+        this.storyAudioService = storyAudioService;
+        this.storyJsonCache = storyJsonCache;
+        this.objectMapper = objectMapper;
+        this.typeaheadIndex = typeaheadIndex;
+    }
+
+    /**
+     * Import stories: {@code story_name} CSV columns, or NDJSON objects with a {@code storyName} and optionally
+     * {@code elements}, each with an {@code elementText} and an {@code elementAudioPath}, as exported.
+     *
+     * @param in the UTF-8 content to import.
+     * @param format its format.
+     * @return the import report.
+     * @throws IOException if the content can't be read.
+     */
+    public ImportReportDTO importStories(InputStream in, Format format) throws IOException {
+        log.debug("Request to import Stories from {}", format);
+        ImportReportDTO report = new ImportReportDTO();
+        List<StoryRow> batch = new ArrayList<>();
+        readRows(
+            in,
+            format,
+            report,
+            row -> {
+                batch.add(toStoryRow(row));
+                if (batch.size() == BATCH_SIZE) {
+                    insertStories(batch, report);
+                    batch.clear();
+                }
+            }
+        );
+        insertStories(batch, report);
+        return report;
+    }
+
+    /**
+     * Import elements: {@code element_text}, {@code element_audio_path} and {@code story_id} CSV columns, or NDJSON
+     * objects with an {@code elementText}, an {@code elementAudioPath} and a {@code storyId}. An element with a story
+     * id is added to the elements of that existing story.
+     *
+     * @param in the UTF-8 content to import.
+     * @param format its format.
+     * @return the import report.
+     * @throws IOException if the content can't be read.
+     */
+    public ImportReportDTO importElements(InputStream in, Format format) throws IOException {
+        log.debug("Request to import Elements from {}", format);
+        ImportReportDTO report = new ImportReportDTO();
+        List<ElementRow> batch = new ArrayList<>();
+        Set<Long> storyIds = new LinkedHashSet<>();
+        readRows(
+            in,
+            format,
+            report,
+            row -> {
+                batch.add(toElementRow(row, row.line));
+                if (batch.size() == BATCH_SIZE) {
+                    insertElements(batch, report, storyIds);
+                    batch.clear();
+                }
+            }
+        );
+        insertElements(batch, report, storyIds);
+        for (Long storyId : storyIds) {
+            storyJsonCache.evict(storyId);
+            storyAudioService.rebuild(storyId);
+        }
+        return report;
+    }
+
+    private void insertStories(List<StoryRow> stories, ImportReportDTO report) {
+        if (stories.isEmpty()) {
+            return;
+        }
+        List<ElementRow> elements = new ArrayList<>();
+        for (StoryRow story : stories) {
+            // the audio of the other elements may be stored already, so only the element is left out of its story
+            story.elements.removeIf(element -> !storeAudio(element, report));
+            elements.addAll(story.elements);
+        }
+        List<Long> storyIds = bulkInsertRepository.allocateStoryIds(stories.size());
+        List<String> storyNames = new ArrayList<>(stories.size());
+        stories.forEach(story -> storyNames.add(story.storyName));
+        bulkInsertRepository.insertStories(storyIds, storyNames);
+        typeaheadIndex.addAll(storyNames);
+
+        List<Long> elementIds = bulkInsertRepository.allocateElementIds(elements.size());
+        insertElementRows(elementIds, elements);
+        List<Long> linkStoryIds = new ArrayList<>(elements.size());
+        for (int i = 0; i < stories.size(); i++) {
+            for (int j = 0; j < stories.get(i).elements.size(); j++) {
+                linkStoryIds.add(storyIds.get(i));
+            }
+        }
+        bulkInsertRepository.insertStoryElements(linkStoryIds, elementIds);
+        report.addImported(stories.size());
+    }
+
+    private void insertElements(List<ElementRow> rows, ImportReportDTO report, Set<Long> touchedStoryIds) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Set<Long> referencedStoryIds = new HashSet<>();
+        rows.stream().filter(row -> row.storyId != null).forEach(row -> referencedStoryIds.add(row.storyId));
+        Set<Long> existingStoryIds = referencedStoryIds.isEmpty()
+            ? Set.of()
+            : new HashSet<>(storyRepository.findExistingIds(referencedStoryIds));
+        List<ElementRow> elements = new ArrayList<>(rows.size());
+        for (ElementRow row : rows) {
+            if (row.storyId != null && !existingStoryIds.contains(row.storyId)) {
+                report.addError(row.line, "Story " + row.storyId + " doesn't exist");
+            } else if (storeAudio(row, report)) {
+                elements.add(row);
+            }
+        }
+        List<Long> elementIds = bulkInsertRepository.allocateElementIds(elements.size());
+        insertElementRows(elementIds, elements);
+        List<Long> linkStoryIds = new ArrayList<>();
+        List<Long> linkElementIds = new ArrayList<>();
+        for (int i = 0; i < elements.size(); i++) {
+            if (elements.get(i).storyId != null) {
+                linkStoryIds.add(elements.get(i).storyId);
+                linkElementIds.add(elementIds.get(i));
+            }
+        }
+        bulkInsertRepository.insertStoryElements(linkStoryIds, linkElementIds);
+        touchedStoryIds.addAll(linkStoryIds);
+        report.addImported(elements.size());
+    }
+
+    private void insertElementRows(List<Long> ids, List<ElementRow> elements) {
+        List<String> elementTexts = new ArrayList<>(elements.size());
+        List<String> elementAudioPaths = new ArrayList<>(elements.size());
+        for (ElementRow element : elements) {
+            elementTexts.add(element.elementText);
+            elementAudioPaths.add(element.storedAudioPath);
+        }
+        bulkInsertRepository.insertElements(ids, elementTexts, elementAudioPaths);
+        typeaheadIndex.addAll(elementTexts);
+    }
+
+    /**
+     * Store the audio of a row as a blob, as when an element is saved, reporting the row if it can't be.
+     *
+     * @return whether the audio was stored.
+     */
+    private boolean storeAudio(ElementRow row, ImportReportDTO report) {
+        try {
+            row.storedAudioPath = audioBlobService.acquire(row.elementAudioPath, null);
+            return true;
+        } catch (UncheckedIOException e) {
+            log.warn("{} of line {} : {}", e.getMessage(), row.line, e.getCause().getMessage());
+            report.addError(row.line, e.getMessage());
+            return false;
+        }
+    }
+
+    private void readRows(InputStream in, Format format, ImportReportDTO report, RowHandler handler) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<String> header = null;
+        long lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                if (format == Format.NDJSON) {
+                    handler.handle(Row.of(lineNumber, readJson(line)));
+                } else if (header == null) {
+                    header = new ArrayList<>();
+                    for (String column : splitCsv(line)) {
+                        header.add(column == null ? "" : column.trim().toLowerCase(Locale.ROOT));
+                    }
+                } else {
+                    handler.handle(Row.of(lineNumber, header, splitCsv(line)));
+                }
+            } catch (InvalidRowException e) {
+                report.addError(lineNumber, e.getMessage());
+            }
+        }
+    }
+
+    private JsonNode readJson(String line) throws InvalidRowException {
+        try {
+            JsonNode node = objectMapper.readTree(line);
+            if (!node.isObject()) {
+                throw new InvalidRowException("Not a JSON object");
+            }
+            return node;
+        } catch (JsonProcessingException e) {
+            throw new InvalidRowException("Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private static StoryRow toStoryRow(Row row) throws InvalidRowException {
+        StoryRow story = new StoryRow(requiredText(row.text("story_name", "storyName"), "story_name"));
+        JsonNode elements = row.json == null ? null : row.json.get("elements");
+        if (elements != null && !elements.isNull()) {
+            if (!elements.isArray()) {
+                throw new InvalidRowException("elements must be an array");
+            }
+            for (int i = 0; i < elements.size(); i++) {
+                if (!elements.get(i).isObject()) {
+                    throw new InvalidRowException("elements[" + i + "]: not a JSON object");
+                }
+                try {
+                    ElementRow element = toElementRow(Row.of(row.line, elements.get(i)), row.line);
+                    story.elements.add(element);
+                } catch (InvalidRowException e) {
+                    throw new InvalidRowException("elements[" + i + "]: " + e.getMessage());
+                }
+            }
+        }
+        return story;
+    }
+
+    private static ElementRow toElementRow(Row row, long line) throws InvalidRowException {
+        String elementText = requiredText(row.text("element_text", "elementText"), "element_text");
+        String elementAudioPath = optionalText(row.text("element_audio_path", "elementAudioPath"), "element_audio_path");
+        String storyId = row.text("story_id", "storyId");
+        try {
+            return new ElementRow(line, elementText, elementAudioPath, storyId == null ? null : Long.valueOf(storyId.trim()));
+        } catch (NumberFormatException e) {
+            throw new InvalidRowException("story_id must be a number");
+        }
+    }
+
+    private static String requiredText(String value, String column) throws InvalidRowException {
+        if (value == null || value.isBlank()) {
+            throw new InvalidRowException(column + " is required");
+        }
+        return optionalText(value, column);
+    }
+
+    private static String optionalText(String value, String column) throws InvalidRowException {
+        if (value != null && value.length() > MAX_TEXT_LENGTH) {
+            throw new InvalidRowException(column + " is longer than " + MAX_TEXT_LENGTH + " characters");
+        }
+        return value;
+    }
+
+    /**
+     * Split a CSV line into its values, unquoting {@code "}-quoted ones; an empty value is {@code null}.
+     */
+    static List<String> splitCsv(String line) throws InvalidRowException {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == CSV_SEPARATOR) {
+                values.add(value.length() == 0 && !wasQuoted ? null : value.toString());
+                value.setLength(0);
+                wasQuoted = false;
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new InvalidRowException("Unterminated quoted value");
+        }
+        values.add(value.length() == 0 && !wasQuoted ? null : value.toString());
+        return values;
+    }
+
+    @FunctionalInterface
+    private interface RowHandler {
+        void handle(Row row) throws InvalidRowException;
+    }
+
+    /**
+     * A row read from either format, whose values are looked up by CSV column or JSON field name.
+     */
+    private static final class Row {
+
+        private final long line;
+
+        private final Map<String, String> values;
+
+        private final JsonNode json;
+
+        private Row(long line, Map<String, String> values, JsonNode json) {
+            this.line = line;
+            this.values = values;
+            this.json = json;
+        }
+
+        static Row of(long line, List<String> header, List<String> values) throws InvalidRowException {
+            if (values.size() > header.size()) {
+                throw new InvalidRowException("More values than columns");
+            }
+            Map<String, String> byColumn = new HashMap<>();
+            for (int i = 0; i < values.size(); i++) {
+                byColumn.put(header.get(i), values.get(i));
+            }
+            return new Row(line, byColumn, null);
+        }
+
+        static Row of(long line, JsonNode json) {
+            return new Row(line, null, json);
+        }
+
+        String text(String column, String field) throws InvalidRowException {
+            if (json == null) {
+                return values.get(column);
+            }
+            JsonNode value = json.get(field);
+            if (value == null || value.isNull()) {
+                return null;
+            }
+            if (!value.isValueNode()) {
+                throw new InvalidRowException(field + " must be a value");
+            }
+            return value.asText();
+        }
+    }
+
+    private static final class StoryRow {
+
+        private final String storyName;
+
+        private final List<ElementRow> elements = new ArrayList<>();
+
+        private StoryRow(String storyName) {
+            this.storyName = storyName;
+        }
+    }
+
+    private static final class ElementRow {
+
+        private final long line;
+
+        private final String elementText;
+
+        private final String elementAudioPath;
+
+        private final Long storyId;
+
+        /**
+         * The location of the audio once stored as a blob.
+         */
+        private String storedAudioPath;
+
+        private ElementRow(long line, String elementText, String elementAudioPath, Long storyId) {
+            this.line = line;
+            this.elementText = elementText;
+            this.elementAudioPath = elementAudioPath;
+            this.storyId = storyId;
+        }
+    }
+
+    static final class InvalidRowException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        InvalidRowException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package ru.funnylistening.app.service;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Slice;
 import ru.funnylistening.app.domain.Element;
+import ru.funnylistening.app.domain.enumeration.AudioQuality;
+import ru.funnylistening.app.service.dto.ElementView;
 
 /**
  * Service Interface for managing {@link Element}.
@@ -39,6 +43,31 @@ public interface ElementService {
      */
     List<Element> findAll();
 
+    /**
+     * Get the views of all the elements, projected without loading the entities.
+     *
+     * @return the list of views.
+     */
+    List<ElementView> findAllViews();
+
+    /**
+     * Get the slice of element views following the "afterId" element in id order, sought without skipping or counting
+     * the elements before it.
+     *
+     * @param afterId the id of the last element of the previous slice.
+     * @param size the maximum number of views.
+     * @return the slice of views.
+     */
+    Slice<ElementView> findViewsAfter(Long afterId, int size);
+
+    /**
+     * Get the view of the "id" element.
+     *
+     * @param id the id of the element.
+     * @return the view.
+     */
+    Optional<ElementView> findView(Long id);
+
     /**
      * Get the "id" element.
      *
@@ -47,6 +76,49 @@ public interface ElementService {
      */
     Optional<Element> findOne(Long id);
 
+    /**
+     * Get the audio file of the "id" element.
+     *
+     * @param id the id of the entity.
+     * @return the audio file, or empty if the element or its audio doesn't exist.
+     */
+    Optional<AudioFile> findAudio(Long id);
+
+    /**
+     * Get a rendition of the audio of the "id" element, falling back to the original audio until it is transcoded.
+     *
+     * @param id the id of the entity.
+     * @param quality the quality of the rendition, or {@code null} for the original audio.
+     * @return the audio file, or empty if the element or its audio doesn't exist.
+     */
+    Optional<AudioFile> findAudio(Long id, AudioQuality quality);
+
+    /**
+     * Replace the audio of the "id" element by a fully received upload.
+     *
+     * @param id the id of the entity.
+     * @param file the uploaded file.
+     * @param sha256 the hex encoded SHA-256 of the file.
+     * @param filename the name of the file on the uploader side.
+     * @return the updated entity, or empty if the element doesn't exist.
+     */
+    Optional<Element> attachAudio(Long id, Path file, String sha256, String filename);
+
+    /**
+     * Get the validators of the "id" element, projected without loading the entity.
+     *
+     * @param id the id of the entity.
+     * @return the validators of the entity.
+     */
+    Optional<EntityTag> findTag(Long id);
+
+    /**
+     * Get the validators of the list of elements, which change whenever any element changes.
+     *
+     * @return the validators.
+     */
+    EntityTag findAllTag();
+
     /**
      * Delete the "id" element.
      *
@@ -0,0 +1,79 @@
+package ru.funnylistening.app.service;
+
+import java.time.Instant;
+import javax.persistence.Tuple;
+
+/**
+ * The HTTP validators of an entity or of a collection of entities: an entity tag derived from their versions, and
+ * the last modification date of an entity.
+ */
+public final class EntityTag {
+
+    private final String eTag;
+
+    private final long lastModified;
+
+    private EntityTag(String eTag, long lastModified) {
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * The validators of one entity.
+     *
+     * @param version the version of the entity, incremented by every update.
+     * @param lastModified when the entity was last modified.
+     */
+    public static EntityTag of(Long version, Instant lastModified) {
+        return new EntityTag("\"" + version + "\"", toMillis(lastModified));
+    }
+
+    /**
+     * The validators of one entity, from its version and last modification date aliased {@code version} and
+     * {@code lastModifiedDate}, as projected without loading the entity.
+     */
+    public static EntityTag ofRow(Tuple row) {
+        return of(row.get("version", Long.class), row.get("lastModifiedDate", Instant.class));
+    }
+
+    /**
+     * The validators of all the entities of a type, from the row count, greatest id and sum of versions of the table,
+     * aliased {@code rowCount}, {@code maxId} and {@code versionSum}. An insert raises the greatest id, a delete lowers
+     * the count and an update raises the sum of versions, so no change goes unnoticed. There is no last modification
+     * date, since a delete doesn't move the latest one.
+     */
+    public static EntityTag ofSummary(Tuple summary) {
+        Long rowCount = summary.get("rowCount", Long.class);
+        Long maxId = summary.get("maxId", Long.class);
+        Long versionSum = summary.get("versionSum", Long.class);
+        return new EntityTag("\"" + rowCount + "-" + (maxId == null ? 0 : maxId) + "-" + (versionSum == null ? 0 : versionSum) + "\"", -1);
+    }
+
+    /**
+     * The validators of a representation built from both this and another set of entities.
+     */
+    public EntityTag and(EntityTag other) {
+        return new EntityTag(
+            eTag.substring(0, eTag.length() - 1) + "." + other.eTag.substring(1),
+            Math.max(lastModified, other.lastModified)
+        );
+    }
+
+    /**
+     * @return the quoted entity tag.
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * @return the last modification date, in milliseconds since the epoch, or {@code -1} if unknown.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    private static long toMillis(Instant instant) {
+        return instant == null ? -1 : instant.toEpochMilli();
+    }
+}
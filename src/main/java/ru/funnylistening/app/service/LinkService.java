@@ -47,6 +47,21 @@ public interface LinkService {
      */
     Optional<Link> findOne(Long id);
 
+    /**
+     * Get the validators of the "id" link, projected without loading the entity.
+     *
+     * @param id the id of the entity.
+     * @return the validators of the entity.
+     */
+    Optional<EntityTag> findTag(Long id);
+
+    /**
+     * Get the validators of the list of links, which change whenever any link changes.
+     *
+     * @return the validators.
+     */
+    EntityTag findAllTag();
+
     /**
      * Delete the "id" link.
      *
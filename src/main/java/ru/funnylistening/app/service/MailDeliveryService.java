@@ -0,0 +1,202 @@
+package ru.funnylistening.app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.service.OutgoingMailService.MailJob;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * Service sending the mails of the outbox in the background.
+ *
+ * Mails are sent on the dedicated single-threaded {@code mailExecutor}, by batches sent over one connection to the SMTP
+ * server, rather than one connection per mail on the {@code taskExecutor} shared with other async work. A mail is sent
+ * at least once: one whose sending failed, or whose batch failed, is tried again later.
+ */
+@Service
+public class MailDeliveryService {
+
+    public static final String QUEUED_METER_NAME = "mail.outbox.queued";
+    public static final String SEND_METER_NAME = "mail.outbox.send";
+    public static final String DELIVERY_METER_NAME = "mail.outbox.delivery";
+    public static final String MAILS_METER_NAME = "mail.outbox.mails";
+    public static final String RESULT_DIMENSION = "result";
+
+    private final Logger log = LoggerFactory.getLogger(MailDeliveryService.class);
+
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    private final OutgoingMailService outgoingMailService;
+
+    private final JavaMailSender javaMailSender;
+
+    private final Executor mailExecutor;
+
+    private final String from;
+
+    private final int batchSize;
+
+    private final Timer sendTimer;
+
+    private final Timer deliveryTimer;
+
+    private final Counter sentCounter;
+
+    private final Counter retriedCounter;
+
+    private final Counter failedCounter;
+
+    public MailDeliveryService(
+        OutgoingMailService outgoingMailService,
+        JavaMailSender javaMailSender,
+        @Qualifier("mailExecutor") Executor mailExecutor,
+        JHipsterProperties jHipsterProperties,
+        ApplicationProperties applicationProperties,
+        MeterRegistry registry
+    ) {
+        this.outgoingMailService = outgoingMailService;
+        this.javaMailSender = javaMailSender;
+        this.mailExecutor = mailExecutor;
+        this.from = jHipsterProperties.getMail().getFrom();
+        this.batchSize = applicationProperties.getMail().getBatchSize();
+        this.sendTimer = Timer.builder(SEND_METER_NAME).description("Time taken to send a batch of mails.").register(registry);
+        this.deliveryTimer =
+            Timer.builder(DELIVERY_METER_NAME).description("Time from queueing a mail to sending it.").register(registry);
+        this.sentCounter = mailsCounterBuilder("sent").register(registry);
+        this.retriedCounter = mailsCounterBuilder("retried").register(registry);
+        this.failedCounter = mailsCounterBuilder("failed").register(registry);
+        // counted when read rather than after each run, so that mails queued since, or by other instances, are seen
+        Gauge
+            .builder(QUEUED_METER_NAME, outgoingMailService, OutgoingMailService::countPending)
+            .description("Mails waiting in the outbox.")
+            .register(registry);
+    }
+
+    private static Counter.Builder mailsCounterBuilder(String result) {
+        return Counter.builder(MAILS_METER_NAME).description("Mails taken from the outbox.").tag(RESULT_DIMENSION, result);
+    }
+
+    /**
+     * Send the pending mails, unless they are being sent already.
+     * <p>
+     * This is scheduled to get fired every 5 seconds, after the previous run.
+     */
+    @Scheduled(fixedDelay = 5000)
+    public void sendPending() {
+        if (!sending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            mailExecutor.execute(() -> {
+                try {
+                    drain();
+                } finally {
+                    sending.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            sending.set(false);
+            log.warn("Mail executor busy, sending postponed");
+        }
+    }
+
+    private void drain() {
+        List<MailJob> batch;
+        int sent;
+        do {
+            batch = outgoingMailService.claim(batchSize);
+            sent = batch.isEmpty() ? 0 : send(batch);
+            // nothing sent from a whole batch most likely means the SMTP server is down: the rest waits for the next run
+        } while (batch.size() == batchSize && sent > 0);
+    }
+
+    private int send(List<MailJob> batch) {
+        Map<MimeMessage, MailJob> jobsByMessage = new LinkedHashMap<>();
+        List<MailJob> failed = new ArrayList<>();
+        for (MailJob job : batch) {
+            try {
+                jobsByMessage.put(createMessage(job), job);
+            } catch (MessagingException e) {
+                log.warn("Email could not be prepared for '{}'", job.getTo(), e);
+                failed.add(job);
+            }
+        }
+        List<MailJob> sent = new ArrayList<>(jobsByMessage.values());
+        if (!jobsByMessage.isEmpty()) {
+            long start = System.nanoTime();
+            try {
+                javaMailSender.send(jobsByMessage.keySet().toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                if (e.getFailedMessages().isEmpty()) {
+                    log.warn("Emails could not be sent", e);
+                    failed.addAll(sent);
+                    sent.clear();
+                } else {
+                    e
+                        .getFailedMessages()
+                        .forEach((message, cause) -> {
+                            MailJob job = jobsByMessage.get(message);
+                            log.warn("Email could not be sent to user '{}' : {}", job.getTo(), cause.getMessage());
+                            sent.remove(job);
+                            failed.add(job);
+                        });
+                }
+            } catch (MailException e) {
+                log.warn("Emails could not be sent", e);
+                failed.addAll(sent);
+                sent.clear();
+            } finally {
+                sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (!sent.isEmpty()) {
+            List<Long> ids = new ArrayList<>();
+            Instant now = Instant.now();
+            for (MailJob job : sent) {
+                ids.add(job.getId());
+                deliveryTimer.record(Duration.between(job.getCreatedDate(), now));
+            }
+            outgoingMailService.complete(ids);
+            sentCounter.increment(sent.size());
+            log.debug("Sent {} emails", sent.size());
+        }
+        for (MailJob job : failed) {
+            (outgoingMailService.fail(job.getId()) ? retriedCounter : failedCounter).increment();
+        }
+        return sent.size();
+    }
+
+    private MimeMessage createMessage(MailJob job) throws MessagingException {
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        MimeMessageHelper message = new MimeMessageHelper(mimeMessage, job.isMultipart(), StandardCharsets.UTF_8.name());
+        message.setTo(job.getTo());
+        message.setFrom(from);
+        message.setSubject(job.getSubject());
+        message.setText(job.getContent(), job.isHtml());
+        return mimeMessage;
+    }
+}
@@ -0,0 +1,150 @@
+package ru.funnylistening.app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import ru.funnylistening.app.config.ApplicationProperties;
+
+/**
+ * In-process cache of the most requested audio files, memory-mapped so that they are served without opening the
+ * file or issuing a read per chunk.
+ *
+ * A file is only mapped once it has been requested a few times, and the least recently served mappings are evicted
+ * to keep the total mapped bytes under the configured size. Only immutable files are mapped, since a file truncated
+ * under a mapping faults on access. The mappings are kept in access order, so a lookup holds the lock for a map access
+ * only and an eviction drops the eldest mappings without sorting them. Evicted regions are unmapped by the garbage
+ * collector once the last response using them completes.
+ */
+@Service
+public class MappedAudioCache {
+
+    public static final String REQUESTS_METER_NAME = "audio.mapped-cache.requests";
+    public static final String REQUESTS_METER_DESCRIPTION = "Audio requests served from a memory-mapped file, or not.";
+    public static final String REQUESTS_METER_RESULT_DIMENSION = "result";
+    public static final String EVICTIONS_METER_NAME = "audio.mapped-cache.evictions";
+    public static final String SIZE_METER_NAME = "audio.mapped-cache.size";
+
+    /**
+     * Request counts of files not mapped yet are forgotten past this many files.
+     */
+    private static final int MAX_CANDIDATES = 10_000;
+
+    private final Logger log = LoggerFactory.getLogger(MappedAudioCache.class);
+
+    /**
+     * Read-only buffers over the mapped files, by path and entity tag, in access order; guarded by itself.
+     */
+    private final LinkedHashMap<String, ByteBuffer> mappings = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final ConcurrentMap<String, AtomicInteger> candidates = new ConcurrentHashMap<>();
+
+    private final AtomicLong size = new AtomicLong();
+
+    private final long maxSize;
+
+    private final long maxFileSize;
+
+    private final int admissionRequests;
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    private final Counter evictionCounter;
+
+    public MappedAudioCache(ApplicationProperties applicationProperties, MeterRegistry registry) {
+        ApplicationProperties.Audio.MappedCache properties = applicationProperties.getAudio().getMappedCache();
+        this.maxSize = properties.getMaxSize();
+        this.maxFileSize = Math.min(properties.getMaxFileSize(), Integer.MAX_VALUE);
+        this.admissionRequests = properties.getAdmissionRequests();
+        this.hitCounter = requestsCounterBuilder("hit").register(registry);
+        this.missCounter = requestsCounterBuilder("miss").register(registry);
+        this.evictionCounter =
+            Counter.builder(EVICTIONS_METER_NAME).description("Memory-mapped audio files evicted from the cache.").register(registry);
+        Gauge.builder(SIZE_METER_NAME, size, AtomicLong::get).baseUnit("bytes").description("Bytes of audio memory-mapped.").register(registry);
+    }
+
+    private Counter.Builder requestsCounterBuilder(String result) {
+        return Counter.builder(REQUESTS_METER_NAME).description(REQUESTS_METER_DESCRIPTION).tag(REQUESTS_METER_RESULT_DIMENSION, result);
+    }
+
+    /**
+     * Get the content of an audio file from memory, mapping it if it is requested often enough.
+     *
+     * @param audio the audio file.
+     * @return a read-only buffer over the whole file, or empty if the file should be read from disk.
+     */
+    public Optional<ByteBuffer> get(AudioFile audio) {
+        if (maxSize <= 0 || !audio.isImmutable() || audio.getLength() == 0 || audio.getLength() > maxFileSize || audio.getLength() > maxSize) {
+            return Optional.empty();
+        }
+        String key = audio.getPath() + audio.getETag();
+        ByteBuffer mapping;
+        synchronized (mappings) {
+            mapping = mappings.get(key);
+        }
+        if (mapping != null) {
+            hitCounter.increment();
+            return Optional.of(mapping.duplicate());
+        }
+        missCounter.increment();
+        if (!admit(key)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = audio.open()) {
+            if (channel.size() != audio.getLength()) {
+                // changed since it was resolved
+                return Optional.empty();
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, audio.getLength());
+            mapping = buffer.asReadOnlyBuffer();
+        } catch (IOException e) {
+            log.debug("Can't map {} : {}", audio.getPath(), e.getMessage());
+            return Optional.empty();
+        }
+        candidates.remove(key);
+        synchronized (mappings) {
+            ByteBuffer existing = mappings.putIfAbsent(key, mapping);
+            if (existing != null) {
+                return Optional.of(existing.duplicate());
+            }
+            size.addAndGet(audio.getLength());
+            evictEldest();
+        }
+        return Optional.of(mapping.duplicate());
+    }
+
+    private boolean admit(String key) {
+        if (candidates.size() >= MAX_CANDIDATES) {
+            candidates.clear();
+        }
+        return candidates.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet() >= admissionRequests;
+    }
+
+    /**
+     * Drop the least recently served mappings beyond the maximum size; called holding the lock of the mappings.
+     */
+    private void evictEldest() {
+        Iterator<Map.Entry<String, ByteBuffer>> eldest = mappings.entrySet().iterator();
+        while (size.get() > maxSize && eldest.hasNext()) {
+            size.addAndGet(-eldest.next().getValue().capacity());
+            eldest.remove();
+            evictionCounter.increment();
+        }
+    }
+}
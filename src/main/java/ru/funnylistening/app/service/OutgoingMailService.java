@@ -0,0 +1,202 @@
+package ru.funnylistening.app.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.OutgoingMail;
+import ru.funnylistening.app.domain.enumeration.MailStatus;
+import ru.funnylistening.app.repository.OutgoingMailRepository;
+
+/**
+ * Service for the mail outbox.
+ *
+ * Mails are queued in the transaction of the change they tell about, so no mail is lost on a crash or an SMTP failure,
+ * nor sent for a change rolled back, and {@link MailDeliveryService} claims and sends them. A mail is deleted once
+ * sent; one that couldn't be is tried again later, with a delay doubled after each attempt.
+ */
+@Service
+@Transactional
+public class OutgoingMailService {
+
+    private final Logger log = LoggerFactory.getLogger(OutgoingMailService.class);
+
+    private final OutgoingMailRepository outgoingMailRepository;
+
+    private final ApplicationProperties.Mail properties;
+
+    public OutgoingMailService(OutgoingMailRepository outgoingMailRepository, ApplicationProperties applicationProperties) {
+        this.outgoingMailRepository = outgoingMailRepository;
+        this.properties = applicationProperties.getMail();
+    }
+
+    /**
+     * Queue a mail.
+     *
+     * @param to the recipient.
+     * @param subject the subject.
+     * @param content the content.
+     * @param isMultipart whether the mail is multipart.
+     * @param isHtml whether the content is HTML.
+     */
+    public void enqueue(String to, String subject, String content, boolean isMultipart, boolean isHtml) {
+        log.debug("Request to queue a mail to '{}' with subject '{}'", to, subject);
+        Instant now = Instant.now();
+        outgoingMailRepository.save(
+            new OutgoingMail()
+                .recipient(to)
+                .subject(subject)
+                .content(content)
+                .multipart(isMultipart)
+                .html(isHtml)
+                .status(MailStatus.PENDING)
+                .attempts(0)
+                .createdDate(now)
+                .nextAttemptDate(now)
+                .updatedDate(now)
+        );
+    }
+
+    /**
+     * Claim the pending mails due for sending, and queue again those abandoned by a stopped instance.
+     *
+     * @param limit the maximum number of mails to claim.
+     * @return the claimed mails.
+     */
+    public List<MailJob> claim(int limit) {
+        Instant now = Instant.now();
+        int requeued = outgoingMailRepository.requeueSendingBefore(now.minus(properties.getTimeoutMinutes(), ChronoUnit.MINUTES));
+        if (requeued > 0) {
+            log.info("Queued again {} abandoned mails", requeued);
+        }
+        List<MailJob> jobs = new ArrayList<>();
+        for (OutgoingMail mail : outgoingMailRepository.findAllForUpdateDue(now, PageRequest.of(0, limit))) {
+            mail.status(MailStatus.SENDING).attempts(mail.getAttempts() + 1).updatedDate(now);
+            jobs.add(
+                new MailJob(
+                    mail.getId(),
+                    mail.getRecipient(),
+                    mail.getSubject(),
+                    mail.getContent(),
+                    mail.getMultipart(),
+                    mail.getHtml(),
+                    mail.getCreatedDate()
+                )
+            );
+        }
+        return jobs;
+    }
+
+    /**
+     * Remove sent mails from the outbox.
+     *
+     * @param ids the ids of the mails.
+     */
+    public void complete(List<Long> ids) {
+        outgoingMailRepository.deleteAllByIdInBatch(ids);
+    }
+
+    /**
+     * Record a mail that couldn't be sent, to try again until the maximum number of attempts is reached.
+     *
+     * @param id the id of the mail.
+     * @return {@code true} if the mail will be tried again.
+     */
+    public boolean fail(Long id) {
+        return outgoingMailRepository
+            .findById(id)
+            .map(mail -> {
+                Instant now = Instant.now();
+                if (mail.getAttempts() >= properties.getMaxAttempts()) {
+                    mail.status(MailStatus.FAILED).updatedDate(now);
+                    return false;
+                }
+                long delay = Math.min(
+                    properties.getRetryDelaySeconds() << Math.min(mail.getAttempts() - 1, 30),
+                    properties.getMaxRetryDelaySeconds()
+                );
+                mail.status(MailStatus.PENDING).nextAttemptDate(now.plusSeconds(delay)).updatedDate(now);
+                return true;
+            })
+            .orElse(false);
+    }
+
+    /**
+     * Count the mails waiting to be sent.
+     *
+     * @return the number of pending mails.
+     */
+    @Transactional(readOnly = true)
+    public long countPending() {
+        return outgoingMailRepository.countByStatus(MailStatus.PENDING);
+    }
+
+    /**
+     * A mail claimed for sending.
+     */
+    public static final class MailJob {
+
+        private final Long id;
+
+        private final String to;
+
+        private final String subject;
+
+        private final String content;
+
+        private final boolean multipart;
+
+        private final boolean html;
+
+        private final Instant createdDate;
+
+        MailJob(Long id, String to, String subject, String content, boolean multipart, boolean html, Instant createdDate) {
+            this.id = id;
+            this.to = to;
+            this.subject = subject;
+            this.content = content;
+            this.multipart = multipart;
+            this.html = html;
+            this.createdDate = createdDate;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public boolean isMultipart() {
+            return multipart;
+        }
+
+        public boolean isHtml() {
+            return html;
+        }
+
+        public Instant getCreatedDate() {
+            return createdDate;
+        }
+
+        @Override
+        public String toString() {
+            return "MailJob{id=" + id + ", to='" + to + "', subject='" + subject + "'}";
+        }
+    }
+}
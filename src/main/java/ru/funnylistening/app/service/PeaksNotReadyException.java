@@ -0,0 +1,10 @@
+package ru.funnylistening.app.service;
+
+public class PeaksNotReadyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PeaksNotReadyException() {
+        super("Peaks are being computed");
+    }
+}
@@ -47,6 +47,21 @@ public interface ReferalLinkService {
      */
     Optional<ReferalLink> findOne(Long id);
 
+    /**
+     * Get the validators of the "id" referalLink, projected without loading the entity.
+     *
+     * @param id the id of the entity.
+     * @return the validators of the entity.
+     */
+    Optional<EntityTag> findTag(Long id);
+
+    /**
+     * Get the validators of the list of referal links, which change whenever any referal link changes.
+     *
+     * @return the validators.
+     */
+    EntityTag findAllTag();
+
     /**
      * Delete the "id" referalLink.
      *
@@ -0,0 +1,95 @@
+package ru.funnylistening.app.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.util.DigestUtils;
+
+/**
+ * The stitched audio of a story: the audio files of its elements, played back to back as one byte stream.
+ */
+public final class StoryAudio {
+
+    private final List<AudioFile> files;
+
+    private final long[] offsets;
+
+    private final long[] durationsMillis;
+
+    private final long length;
+
+    private final long lastModified;
+
+    private final String eTag;
+
+    public StoryAudio(List<AudioFile> files, long[] offsets) {
+        this(files, offsets, new long[files.size()]);
+    }
+
+    /**
+     * @param files the audio files in playback order.
+     * @param offsets the offset of each file in the stitched stream, in ascending order.
+     * @param durationsMillis the probed duration of each file in milliseconds, or 0 when it couldn't be probed.
+     */
+    public StoryAudio(List<AudioFile> files, long[] offsets, long[] durationsMillis) {
+        this.files = List.copyOf(files);
+        this.offsets = offsets.clone();
+        this.durationsMillis = durationsMillis.clone();
+        long total = 0;
+        long latest = 0;
+        StringBuilder validators = new StringBuilder();
+        for (AudioFile file : files) {
+            total += file.getLength();
+            latest = Math.max(latest, file.getLastModified());
+            validators.append(file.getETag());
+        }
+        this.length = total;
+        this.lastModified = latest;
+        this.eTag = "\"" + DigestUtils.md5DigestAsHex(validators.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    public List<AudioFile> getFiles() {
+        return files;
+    }
+
+    public long getOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * @return the probed duration of a file in milliseconds, or 0 when it couldn't be probed.
+     */
+    public long getDurationMillis(int index) {
+        return durationsMillis[index];
+    }
+
+    /**
+     * Find the file containing a byte of the stitched stream.
+     *
+     * @param position the position in the stitched stream, lower than {@link #getLength()}.
+     * @return the index of the file containing it.
+     */
+    public int indexOf(long position) {
+        int index = Arrays.binarySearch(offsets, position);
+        if (index < 0) {
+            return -index - 2;
+        }
+        // skip empty files starting at the same offset
+        while (index + 1 < offsets.length && offsets[index + 1] == position) {
+            index++;
+        }
+        return index;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+}
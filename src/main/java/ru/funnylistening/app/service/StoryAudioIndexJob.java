@@ -0,0 +1,46 @@
+package ru.funnylistening.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.funnylistening.app.repository.StoryRepository;
+
+/**
+ * Job rebuilding in the background the segment indexes that story audio reads found missing or stale.
+ *
+ * Each index is rebuilt in a transaction of its own, so a story deleted meanwhile doesn't fail the others.
+ */
+@Service
+public class StoryAudioIndexJob {
+
+    private final Logger log = LoggerFactory.getLogger(StoryAudioIndexJob.class);
+
+    private final StoryAudioService storyAudioService;
+
+    private final StoryRepository storyRepository;
+
+    public StoryAudioIndexJob(StoryAudioService storyAudioService, StoryRepository storyRepository) {
+        this.storyAudioService = storyAudioService;
+        this.storyRepository = storyRepository;
+    }
+
+    /**
+     * Rebuild the segment indexes found missing or stale.
+     * <p>
+     * This is scheduled to get fired every 5 seconds, after the previous run.
+     */
+    @Scheduled(fixedDelay = 5000)
+    public void rebuildStale() {
+        for (Long storyId : storyAudioService.takeStaleStoryIds()) {
+            if (!storyRepository.existsById(storyId)) {
+                continue;
+            }
+            try {
+                storyAudioService.rebuild(storyId);
+            } catch (RuntimeException e) {
+                log.warn("Can't rebuild the audio index of Story {} : {}", storyId, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package ru.funnylistening.app.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.funnylistening.app.domain.Element;
+import ru.funnylistening.app.domain.Story;
+import ru.funnylistening.app.domain.StoryAudioSegment;
+import ru.funnylistening.app.repository.ElementRepository;
+import ru.funnylistening.app.repository.StoryAudioSegmentRepository;
+import ru.funnylistening.app.repository.StoryRepository;
+
+/**
+ * Service maintaining the segment index of the stitched story audio, and resolving it for streaming.
+ *
+ * The index is rebuilt on the write path, whenever a story or the audio of one of its elements changes. A rebuild is
+ * incremental: segments whose element audio didn't change keep their probed duration, only their position and offset
+ * are recomputed. Reads never write: the audio of a story whose index is missing or behind the files on disk is
+ * resolved from its current elements without probing them, and its index is left to {@link StoryAudioIndexJob} to
+ * rebuild in the background.
+ */
+@Service
+@Transactional
+public class StoryAudioService {
+
+    private final Logger log = LoggerFactory.getLogger(StoryAudioService.class);
+
+    private final Set<Long> staleStoryIds = ConcurrentHashMap.newKeySet();
+
+    private final StoryAudioSegmentRepository storyAudioSegmentRepository;
+
+    private final StoryRepository storyRepository;
+
+    private final ElementRepository elementRepository;
+
+    private final AudioStore audioStore;
+
+    public StoryAudioService(
+        StoryAudioSegmentRepository storyAudioSegmentRepository,
+        StoryRepository storyRepository,
+        ElementRepository elementRepository,
+        AudioStore audioStore
+    ) {
+        this.storyAudioSegmentRepository = storyAudioSegmentRepository;
+        this.storyRepository = storyRepository;
+        this.elementRepository = elementRepository;
+        this.audioStore = audioStore;
+    }
+
+    /**
+     * Get the segment index of a story, computed from its current elements without being saved if it is missing or
+     * stale.
+     *
+     * @param storyId the id of the story.
+     * @return the segments in playback order, or empty if the story doesn't exist.
+     */
+    @Transactional(readOnly = true)
+    public Optional<List<StoryAudioSegment>> getIndex(Long storyId) {
+        if (!storyRepository.existsById(storyId)) {
+            return Optional.empty();
+        }
+        List<StoryAudioSegment> index = storyAudioSegmentRepository.findAllByStoryId(storyId);
+        if (index.isEmpty() || resolve(index).isEmpty()) {
+            return Optional.of(currentIndex(storyId, index));
+        }
+        return Optional.of(index);
+    }
+
+    /**
+     * Get the stitched audio of a story, resolved from its current elements if its segment index is missing or stale.
+     *
+     * @param storyId the id of the story.
+     * @return the stitched audio, or empty if the story doesn't exist or has no audio.
+     */
+    @Transactional(readOnly = true)
+    public Optional<StoryAudio> findStoryAudio(Long storyId) {
+        log.debug("Request to get audio of Story : {}", storyId);
+        if (!storyRepository.existsById(storyId)) {
+            return Optional.empty();
+        }
+        List<StoryAudioSegment> index = storyAudioSegmentRepository.findAllByStoryId(storyId);
+        Optional<StoryAudio> audio = index.isEmpty() ? Optional.empty() : resolve(index);
+        if (audio.isEmpty()) {
+            audio = resolve(currentIndex(storyId, index));
+        }
+        return audio.filter(storyAudio -> !storyAudio.getFiles().isEmpty());
+    }
+
+    /**
+     * Rebuild the segment index of a story from its current elements.
+     *
+     * @param storyId the id of the story.
+     * @return the segments in playback order.
+     */
+    public List<StoryAudioSegment> rebuild(Long storyId) {
+        log.debug("Request to rebuild the audio index of Story : {}", storyId);
+        staleStoryIds.remove(storyId);
+        List<StoryAudioSegment> index = storyAudioSegmentRepository.findAllByStoryId(storyId);
+        Map<Long, StoryAudioSegment> previous = new HashMap<>();
+        for (StoryAudioSegment segment : index) {
+            previous.put(segment.getElementId(), segment);
+        }
+        Story story = storyRepository.getReferenceById(storyId);
+        List<StoryAudioSegment> segments = new ArrayList<>();
+        for (StoryAudioSegment current : index(storyId, index)) {
+            StoryAudioSegment segment = previous.remove(current.getElementId());
+            if (segment == null) {
+                segment = new StoryAudioSegment().story(story).elementId(current.getElementId());
+            }
+            Long durationMillis = current.getDurationMillis();
+            if (
+                !Objects.equals(segment.getAudioPath(), current.getAudioPath()) ||
+                !Objects.equals(segment.getAudioEtag(), current.getAudioEtag())
+            ) {
+                durationMillis = audioStore.find(current.getAudioPath()).map(this::probeDuration).orElse(null);
+            }
+            segments.add(
+                segment
+                    .position(current.getPosition())
+                    .audioPath(current.getAudioPath())
+                    .audioEtag(current.getAudioEtag())
+                    .byteOffset(current.getByteOffset())
+                    .byteLength(current.getByteLength())
+                    .durationMillis(durationMillis)
+            );
+        }
+        storyAudioSegmentRepository.deleteAll(previous.values());
+        return storyAudioSegmentRepository.saveAll(segments);
+    }
+
+    /**
+     * Rebuild the segment index of every story containing an element whose audio may have changed.
+     *
+     * @param elementId the id of the element.
+     */
+    public void rebuildForElement(Long elementId) {
+        storyRepository.findAllIdsByElementId(elementId).forEach(this::rebuild);
+    }
+
+    /**
+     * Take the ids of the stories whose index was found missing or stale since the previous call.
+     *
+     * @return the ids of the stories.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<Long> takeStaleStoryIds() {
+        List<Long> storyIds = new ArrayList<>(staleStoryIds);
+        staleStoryIds.removeAll(storyIds);
+        return storyIds;
+    }
+
+    /**
+     * Delete the segment index of a story.
+     *
+     * @param storyId the id of the story.
+     */
+    public void delete(Long storyId) {
+        staleStoryIds.remove(storyId);
+        storyAudioSegmentRepository.deleteAllByStoryId(storyId);
+    }
+
+    /**
+     * The segment index of a story from its current elements, not saved, marking the story stale unless both the
+     * current and the saved index are empty.
+     */
+    private List<StoryAudioSegment> currentIndex(Long storyId, List<StoryAudioSegment> index) {
+        List<StoryAudioSegment> current = index(storyId, index);
+        if (!current.isEmpty() || !index.isEmpty()) {
+            staleStoryIds.add(storyId);
+        }
+        return current;
+    }
+
+    /**
+     * The segment index of a story from its current elements, as new segments. Their duration is the one of the given
+     * index for the elements whose audio didn't change, and null for the others.
+     */
+    private List<StoryAudioSegment> index(Long storyId, List<StoryAudioSegment> index) {
+        Map<Long, StoryAudioSegment> previous = new HashMap<>();
+        for (StoryAudioSegment segment : index) {
+            previous.put(segment.getElementId(), segment);
+        }
+        List<StoryAudioSegment> segments = new ArrayList<>();
+        long offset = 0;
+        for (Element element : elementRepository.findAllByStoryId(storyId)) {
+            Optional<AudioFile> audio = audioStore.find(element.getElementAudioPath());
+            if (audio.isEmpty()) {
+                continue;
+            }
+            AudioFile file = audio.get();
+            StoryAudioSegment indexed = previous.get(element.getId());
+            boolean unchanged =
+                indexed != null &&
+                Objects.equals(indexed.getAudioPath(), element.getElementAudioPath()) &&
+                Objects.equals(indexed.getAudioEtag(), file.getETag());
+            segments.add(
+                new StoryAudioSegment()
+                    .position(segments.size())
+                    .elementId(element.getId())
+                    .audioPath(element.getElementAudioPath())
+                    .audioEtag(file.getETag())
+                    .byteOffset(offset)
+                    .byteLength(file.getLength())
+                    .durationMillis(unchanged ? indexed.getDurationMillis() : null)
+            );
+            offset += file.getLength();
+        }
+        return segments;
+    }
+
+    private Optional<StoryAudio> resolve(List<StoryAudioSegment> segments) {
+        List<AudioFile> files = new ArrayList<>(segments.size());
+        long[] offsets = new long[segments.size()];
+        long[] durationsMillis = new long[segments.size()];
+        for (StoryAudioSegment segment : segments) {
+            Optional<AudioFile> file = audioStore.find(segment.getAudioPath());
+            if (file.isEmpty() || !file.get().getETag().equals(segment.getAudioEtag())) {
+                return Optional.empty();
+            }
+            offsets[files.size()] = segment.getByteOffset();
+            durationsMillis[files.size()] = segment.getDurationMillis() == null ? 0 : segment.getDurationMillis();
+            files.add(file.get());
+        }
+        return Optional.of(new StoryAudio(files, offsets, durationsMillis));
+    }
+
+    private Long probeDuration(AudioFile file) {
+        try {
+            AudioFileFormat format = AudioSystem.getAudioFileFormat(file.getPath().toFile());
+            float frameRate = format.getFormat().getFrameRate();
+            if (format.getFrameLength() > 0 && frameRate > 0) {
+                return (long) (format.getFrameLength() * 1000L / frameRate);
+            }
+        } catch (UnsupportedAudioFileException | IOException e) {
+            log.debug("Can't probe the duration of {} : {}", file.getPath(), e.getMessage());
+        }
+        return null;
+    }
+}
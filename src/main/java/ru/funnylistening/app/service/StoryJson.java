@@ -0,0 +1,40 @@
+package ru.funnylistening.app.service;
+
+import org.springframework.util.DigestUtils;
+
+/**
+ * The serialized view of a story, with its validators: the hash of the JSON and the latest modification of the story
+ * or of one of its elements.
+ */
+public final class StoryJson {
+
+    private final byte[] bytes;
+
+    private final String eTag;
+
+    private final long lastModified;
+
+    public StoryJson(byte[] bytes, long lastModified) {
+        this.bytes = bytes;
+        this.eTag = "\"" + DigestUtils.md5DigestAsHex(bytes) + "\"";
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return the UTF-8 JSON, which must not be modified.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * @return the last modification date, in milliseconds since the epoch, or {@code -1} if unknown.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,235 @@
+package ru.funnylistening.app.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.repository.StoryRepository;
+import ru.funnylistening.app.service.dto.StoryView;
+
+/**
+ * In-process cache of the serialized JSON of story views, keyed by story id and version, so that a story is sent as
+ * the same UTF-8 bytes until it changes, without going through Jackson again.
+ *
+ * Every change to a story, or to one of its elements, bumps the version of the story both when it is made and when
+ * its transaction completes. A snapshot is only kept if the version didn't change while it was being built, so a
+ * reader racing with a writer never caches what the writer replaced, nor what it rolled back. The least recently
+ * read snapshots are evicted to keep the total bytes under the configured size.
+ *
+ * The versions are counted in a fixed number of stripes shared by the stories with the same id modulo their number,
+ * so they take the same memory however many stories were ever changed or deleted. A change to a story only costs
+ * the stories of its stripe a miss, never a stale hit.
+ */
+@Service
+public class StoryJsonCache {
+
+    public static final String REQUESTS_METER_NAME = "story.json-cache.requests";
+    public static final String REQUESTS_METER_DESCRIPTION = "Story requests served from serialized JSON, or not.";
+    public static final String REQUESTS_METER_RESULT_DIMENSION = "result";
+    public static final String SIZE_METER_NAME = "story.json-cache.size";
+
+    private final Logger log = LoggerFactory.getLogger(StoryJsonCache.class);
+
+    private final ConcurrentMap<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    private static final int VERSION_STRIPES = 1 << 12;
+
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong size = new AtomicLong();
+
+    private final StoryRepository storyRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final long maxSize;
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    public StoryJsonCache(
+        StoryRepository storyRepository,
+        ObjectMapper objectMapper,
+        ApplicationProperties applicationProperties,
+        MeterRegistry registry
+    ) {
+        this.storyRepository = storyRepository;
+        this.objectMapper = objectMapper;
+        this.maxSize = applicationProperties.getStory().getJsonCacheMaxSize();
+        this.hitCounter = requestsCounterBuilder("hit").register(registry);
+        this.missCounter = requestsCounterBuilder("miss").register(registry);
+        Gauge.builder(SIZE_METER_NAME, size, AtomicLong::get).baseUnit("bytes").description("Bytes of story JSON cached.").register(registry);
+    }
+
+    private Counter.Builder requestsCounterBuilder(String result) {
+        return Counter.builder(REQUESTS_METER_NAME).description(REQUESTS_METER_DESCRIPTION).tag(REQUESTS_METER_RESULT_DIMENSION, result);
+    }
+
+    /**
+     * Get the serialized view of a story, building and caching it on a miss.
+     *
+     * @param storyId the id of the story.
+     * @param loader loads the view of the story on a miss.
+     * @return the serialized view, or empty if the story doesn't exist.
+     */
+    public Optional<StoryJson> get(Long storyId, Supplier<Optional<StoryView>> loader) {
+        long version = version(storyId);
+        Snapshot snapshot = snapshots.get(storyId);
+        if (snapshot != null && snapshot.version == version) {
+            snapshot.lastAccess = clock.incrementAndGet();
+            hitCounter.increment();
+            return Optional.of(snapshot.json);
+        }
+        missCounter.increment();
+        Optional<StoryView> view = loader.get();
+        if (view.isEmpty()) {
+            return Optional.empty();
+        }
+        StoryJson json;
+        try {
+            Instant lastModified = view.get().getLastModifiedDate();
+            json = new StoryJson(objectMapper.writeValueAsBytes(view.get()), lastModified == null ? -1 : lastModified.toEpochMilli());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Can't serialize Story " + storyId, e);
+        }
+        if (maxSize > 0 && json.getBytes().length <= maxSize) {
+            put(storyId, new Snapshot(version, json, clock.incrementAndGet()));
+        }
+        return Optional.of(json);
+    }
+
+    /**
+     * Invalidate the cached JSON of a story, now and again once the current transaction completes.
+     *
+     * @param storyId the id of the story.
+     */
+    public void evict(Long storyId) {
+        if (storyId == null) {
+            return;
+        }
+        invalidate(storyId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        invalidate(storyId);
+                    }
+                }
+            );
+        }
+    }
+
+    /**
+     * Invalidate the cached JSON of several stories.
+     *
+     * @param storyIds the ids of the stories.
+     */
+    public void evict(Collection<Long> storyIds) {
+        storyIds.forEach(this::evict);
+    }
+
+    /**
+     * Invalidate the cached JSON of the stories an element belongs to.
+     *
+     * @param elementId the id of the element.
+     */
+    public void evictForElement(Long elementId) {
+        if (elementId != null) {
+            evict(storyRepository.findAllIdsByElementId(elementId));
+        }
+    }
+
+    private void put(Long storyId, Snapshot snapshot) {
+        Snapshot[] replaced = new Snapshot[1];
+        Snapshot current = snapshots.compute(
+            storyId,
+            (id, existing) -> {
+                if (version(id) != snapshot.version) {
+                    // changed while it was being built
+                    return existing;
+                }
+                replaced[0] = existing;
+                return snapshot;
+            }
+        );
+        if (current != snapshot) {
+            return;
+        }
+        size.addAndGet(snapshot.json.getBytes().length - (replaced[0] == null ? 0 : replaced[0].json.getBytes().length));
+        if (size.get() > maxSize) {
+            evictLeastRecentlyRead();
+        }
+    }
+
+    private void invalidate(Long storyId) {
+        versions.incrementAndGet(stripe(storyId));
+        Snapshot removed = snapshots.remove(storyId);
+        if (removed != null) {
+            size.addAndGet(-removed.json.getBytes().length);
+        }
+    }
+
+    private long version(Long storyId) {
+        return versions.get(stripe(storyId));
+    }
+
+    private static int stripe(Long storyId) {
+        return Long.hashCode(storyId) & (VERSION_STRIPES - 1);
+    }
+
+    private synchronized void evictLeastRecentlyRead() {
+        if (size.get() <= maxSize) {
+            return;
+        }
+        List<Map.Entry<Long, Snapshot>> entries = new ArrayList<>(snapshots.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+        for (Map.Entry<Long, Snapshot> entry : entries) {
+            if (size.get() <= maxSize) {
+                break;
+            }
+            if (snapshots.remove(entry.getKey(), entry.getValue())) {
+                log.debug("Evicting JSON of Story : {}", entry.getKey());
+                size.addAndGet(-entry.getValue().json.getBytes().length);
+            }
+        }
+    }
+
+    private static final class Snapshot {
+
+        private final long version;
+
+        private final StoryJson json;
+
+        private volatile long lastAccess;
+
+        private Snapshot(long version, StoryJson json, long lastAccess) {
+            this.version = version;
+            this.json = json;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package ru.funnylistening.app.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The story audio cut into segments of the same duration, for HLS-style delivery.
+ *
+ * Segments are cut at every multiple of the segment duration in the story, across elements with the same file
+ * extension, and they are named after the content they hold, so a segment name always designates the same bytes and
+ * can be cached forever.
+ */
+public final class StoryPlaylist {
+
+    private final List<Segment> segments;
+
+    private final int targetDuration;
+
+    private final Map<String, Segment> segmentsByName = new HashMap<>();
+
+    private final String eTag;
+
+    public StoryPlaylist(List<Segment> segments, int targetDuration, String eTag) {
+        this.segments = List.copyOf(segments);
+        this.targetDuration = targetDuration;
+        this.eTag = eTag;
+        for (Segment segment : segments) {
+            segmentsByName.put(segment.getName(), segment);
+        }
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Find a segment the playlist lists.
+     *
+     * @param name the name of the segment.
+     * @return the segment, or empty if the playlist doesn't list it.
+     */
+    public Optional<Segment> findSegment(String name) {
+        return Optional.ofNullable(segmentsByName.get(name));
+    }
+
+    /**
+     * @return the duration of the longest segment, rounded up to whole seconds.
+     */
+    public int getTargetDuration() {
+        return targetDuration;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * The byte ranges of one or more element audio files, played back to back.
+     */
+    public static final class Segment {
+
+        private final String name;
+
+        private final List<Part> parts;
+
+        private final long length;
+
+        private final double duration;
+
+        private final boolean discontinuity;
+
+        public Segment(String name, List<Part> parts, double duration, boolean discontinuity) {
+            this.name = name;
+            this.parts = List.copyOf(parts);
+            this.length = parts.stream().mapToLong(Part::getLength).sum();
+            this.duration = duration;
+            this.discontinuity = discontinuity;
+        }
+
+        /**
+         * @return the file name of the segment: the hash of its content identity, and the extension of its source.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public List<Part> getParts() {
+            return parts;
+        }
+
+        /**
+         * @return the size of the segment in bytes.
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * @return the duration of the segment in seconds.
+         */
+        public double getDuration() {
+            return duration;
+        }
+
+        /**
+         * @return whether the segment starts an element whose file extension differs from the previous one.
+         */
+        public boolean isDiscontinuity() {
+            return discontinuity;
+        }
+    }
+
+    /**
+     * A byte range of an element audio file.
+     */
+    public static final class Part {
+
+        private final AudioFile source;
+
+        private final long offset;
+
+        private final long length;
+
+        public Part(AudioFile source, long offset, long length) {
+            this.source = source;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public AudioFile getSource() {
+            return source;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+    }
+}
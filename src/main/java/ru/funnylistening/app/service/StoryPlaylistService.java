@@ -0,0 +1,215 @@
+package ru.funnylistening.app.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.StoryAudioSegment;
+import ru.funnylistening.app.repository.StoryAudioSegmentRepository;
+
+/**
+ * Service cutting the story audio into a playlist of segments of the configured duration.
+ *
+ * The story is cut at every multiple of the segment duration, a segment spanning the end of an element and the start
+ * of the next one when they have the same file extension. Times are mapped to bytes using the durations probed into the
+ * story audio index, or the assumed bitrate when they couldn't be probed. Compressed audio is cut without re-encoding,
+ * so players resynchronize on the next frame at segment starts.
+ *
+ * Playlists are cached by story along with the index they were cut from, so a segment request only reads the index
+ * to check the cached playlist is still current.
+ */
+@Service
+@Transactional
+public class StoryPlaylistService {
+
+    private static final int MAX_CACHED_PLAYLISTS = 1024;
+
+    private final Logger log = LoggerFactory.getLogger(StoryPlaylistService.class);
+
+    /**
+     * Playlists by story id, in access order; guarded by itself.
+     */
+    private final LinkedHashMap<Long, CachedPlaylist> playlists = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final StoryAudioService storyAudioService;
+
+    private final StoryAudioSegmentRepository storyAudioSegmentRepository;
+
+    private final ApplicationProperties.Audio.Hls properties;
+
+    public StoryPlaylistService(
+        StoryAudioService storyAudioService,
+        StoryAudioSegmentRepository storyAudioSegmentRepository,
+        ApplicationProperties applicationProperties
+    ) {
+        this.storyAudioService = storyAudioService;
+        this.storyAudioSegmentRepository = storyAudioSegmentRepository;
+        this.properties = applicationProperties.getAudio().getHls();
+    }
+
+    /**
+     * Get the playlist of a story.
+     *
+     * @param storyId the id of the story.
+     * @return the playlist, or empty if the story doesn't exist or has no audio.
+     */
+    @Transactional(readOnly = true)
+    public Optional<StoryPlaylist> findPlaylist(Long storyId) {
+        log.debug("Request to get the playlist of Story : {}", storyId);
+        String indexKey = indexKey(storyAudioSegmentRepository.findAllByStoryId(storyId));
+        synchronized (playlists) {
+            CachedPlaylist cached = playlists.get(storyId);
+            if (cached != null && cached.indexKey.equals(indexKey)) {
+                return Optional.of(cached.playlist);
+            }
+        }
+        Optional<StoryAudio> audio = storyAudioService.findStoryAudio(storyId);
+        if (audio.isEmpty()) {
+            synchronized (playlists) {
+                playlists.remove(storyId);
+            }
+            return Optional.empty();
+        }
+        StoryPlaylist playlist = cut(audio.get());
+        synchronized (playlists) {
+            playlists.put(storyId, new CachedPlaylist(indexKey, playlist));
+            Iterator<Long> eldest = playlists.keySet().iterator();
+            while (playlists.size() > MAX_CACHED_PLAYLISTS) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return Optional.of(playlist);
+    }
+
+    /**
+     * Get a segment of the playlist of a story.
+     *
+     * @param storyId the id of the story.
+     * @param name the name of the segment.
+     * @return the segment, or empty if the story has no such segment.
+     */
+    @Transactional(readOnly = true)
+    public Optional<StoryPlaylist.Segment> findSegment(Long storyId, String name) {
+        log.debug("Request to get segment {} of Story : {}", name, storyId);
+        // a cached segment is only served when the story lists it, its file then being reused whatever story cut it
+        return findPlaylist(storyId).flatMap(playlist -> playlist.findSegment(name));
+    }
+
+    private StoryPlaylist cut(StoryAudio audio) {
+        long targetMillis = properties.getSegmentDuration() * 1000L;
+        List<StoryPlaylist.Segment> segments = new ArrayList<>();
+        Segmenter segmenter = new Segmenter();
+        // start of the current element and end of the current segment in the story
+        double start = 0;
+        long boundary = targetMillis;
+        for (int i = 0; i < audio.getFiles().size(); i++) {
+            AudioFile file = audio.getFiles().get(i);
+            if (file.getLength() == 0) {
+                continue;
+            }
+            long probed = audio.getDurationMillis(i);
+            long durationMillis = probed > 0 ? probed : file.getLength() * 8 / properties.getAssumedBitrate();
+            String extension = extension(file.getFilename());
+            if (segmenter.started && !Objects.equals(extension, segmenter.extension)) {
+                // segments don't mix encodings
+                segmenter.flush(segments);
+                segmenter.discontinuity = true;
+            }
+            segmenter.started = true;
+            segmenter.extension = extension;
+            long offset = 0;
+            while (start + durationMillis > boundary) {
+                long end = Math.min(file.getLength(), Math.round((boundary - start) * file.getLength() / durationMillis));
+                if (end > offset) {
+                    segmenter.add(file, offset, end - offset, durationMillis);
+                    offset = end;
+                }
+                segmenter.flush(segments);
+                boundary += targetMillis;
+            }
+            if (offset < file.getLength()) {
+                segmenter.add(file, offset, file.getLength() - offset, durationMillis);
+            }
+            start += durationMillis;
+        }
+        segmenter.flush(segments);
+        double longest = segments.stream().mapToDouble(StoryPlaylist.Segment::getDuration).max().orElse(0);
+        String eTag = DigestUtils.md5DigestAsHex((audio.getETag() + ":" + targetMillis).getBytes(StandardCharsets.UTF_8));
+        return new StoryPlaylist(segments, (int) Math.ceil(longest), "\"" + eTag + "\"");
+    }
+
+    private static String indexKey(List<StoryAudioSegment> index) {
+        StringBuilder key = new StringBuilder();
+        for (StoryAudioSegment segment : index) {
+            key.append(segment.getElementId()).append(':').append(segment.getAudioEtag()).append(':').append(segment.getDurationMillis());
+            key.append(',');
+        }
+        return key.toString();
+    }
+
+    private static String extension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        String extension = dot < 0 ? null : filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return extension != null && extension.matches("[a-z0-9]{1,10}") ? extension : null;
+    }
+
+    /**
+     * The parts of the segment being cut.
+     */
+    private static final class Segmenter {
+
+        private final List<StoryPlaylist.Part> parts = new ArrayList<>();
+
+        private final StringBuilder identity = new StringBuilder();
+
+        private double durationMillis;
+
+        private String extension;
+
+        private boolean started;
+
+        private boolean discontinuity;
+
+        private void add(AudioFile file, long offset, long length, long fileDurationMillis) {
+            parts.add(new StoryPlaylist.Part(file, offset, length));
+            identity.append(identity.length() == 0 ? "" : ",").append(file.getETag()).append(':').append(offset).append(':').append(length);
+            durationMillis += fileDurationMillis * (double) length / file.getLength();
+        }
+
+        private void flush(List<StoryPlaylist.Segment> segments) {
+            if (parts.isEmpty()) {
+                return;
+            }
+            String name = DigestUtils.md5DigestAsHex(identity.toString().getBytes(StandardCharsets.UTF_8));
+            String filename = extension == null ? name : name + "." + extension;
+            segments.add(new StoryPlaylist.Segment(filename, parts, durationMillis / 1000, discontinuity));
+            parts.clear();
+            identity.setLength(0);
+            durationMillis = 0;
+            discontinuity = false;
+        }
+    }
+
+    private static final class CachedPlaylist {
+
+        private final String indexKey;
+
+        private final StoryPlaylist playlist;
+
+        private CachedPlaylist(String indexKey, StoryPlaylist playlist) {
+            this.indexKey = indexKey;
+            this.playlist = playlist;
+        }
+    }
+}
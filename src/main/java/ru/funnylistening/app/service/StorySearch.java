@@ -0,0 +1,106 @@
+package ru.funnylistening.app.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.web.util.HtmlUtils;
+import ru.funnylistening.app.service.dto.StorySearchHit;
+
+/**
+ * Full-text search of the stories, by name and by the text of their elements.
+ *
+ * The implementation is selected with the {@code application.search.engine} property.
+ */
+public interface StorySearch {
+    /**
+     * A word, as the {@code simple} text search configuration and pg_trgm see it: a run of letters and digits.
+     */
+    Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    /**
+     * Delimiters of the matching words in a highlighted text, from the Unicode private use area so that they can't
+     * appear in the text itself.
+     */
+    char MATCH_START = '\uE000';
+
+    char MATCH_END = '\uE001';
+
+    /**
+     * The most words of a snippet.
+     */
+    int SNIPPET_WORDS = 20;
+
+    /**
+     * Search the stories whose name, or the text of one of whose elements, has every word of a query.
+     *
+     * @param query the query, in the web search syntax: words, {@code "quoted phrases"}, {@code or} and {@code -excluded} words.
+     * @param pageable the pagination information; the hits are always best ranked first, whatever its sort.
+     * @return the page of hits.
+     */
+    Page<StorySearchHit> search(String query, Pageable pageable);
+
+    /**
+     * Search the stories whose name, or the text of one of whose elements, has words similar to those of a query,
+     * however misspelled, as told by the trigrams they have in common.
+     *
+     * @param query the query words.
+     * @param limit the most hits.
+     * @return the hits at least as similar as the configured threshold, most similar first.
+     */
+    List<StorySearchHit> searchSimilar(String query, int limit);
+
+    /**
+     * Turn a highlighted text into an HTML snippet, escaping the text and putting the matching words in {@code <mark>} elements.
+     *
+     * @param highlighted the text, with the matching words between {@link #MATCH_START} and {@link #MATCH_END}.
+     * @return the HTML snippet.
+     */
+    static String toSnippet(String highlighted) {
+        return HtmlUtils
+            .htmlEscape(highlighted, "UTF-8")
+            .replace(String.valueOf(MATCH_START), "<mark>")
+            .replace(String.valueOf(MATCH_END), "</mark>");
+    }
+
+    /**
+     * Highlight the matching words of a text in an HTML snippet of at most {@link #SNIPPET_WORDS} words, starting a
+     * little before the first of them.
+     *
+     * @param text the text.
+     * @param isMatch tells whether a word of the text matches.
+     * @return the HTML snippet.
+     */
+    static String highlight(String text, Predicate<String> isMatch) {
+        List<int[]> bounds = new ArrayList<>();
+        int first = -1;
+        Matcher matcher = WORD.matcher(text);
+        while (matcher.find()) {
+            if (first < 0 && isMatch.test(matcher.group())) {
+                first = bounds.size();
+            }
+            bounds.add(new int[] { matcher.start(), matcher.end() });
+        }
+        if (bounds.isEmpty()) {
+            return toSnippet(text);
+        }
+        int start = Math.max(0, Math.min(first - SNIPPET_WORDS / 4, bounds.size() - SNIPPET_WORDS));
+        int end = Math.min(bounds.size(), start + SNIPPET_WORDS);
+        StringBuilder highlighted = new StringBuilder();
+        int position = bounds.get(start)[0];
+        for (int i = start; i < end; i++) {
+            int[] word = bounds.get(i);
+            highlighted.append(text, position, word[0]);
+            if (isMatch.test(text.substring(word[0], word[1]))) {
+                highlighted.append(MATCH_START).append(text, word[0], word[1]).append(MATCH_END);
+            } else {
+                highlighted.append(text, word[0], word[1]);
+            }
+            position = word[1];
+        }
+        return toSnippet(highlighted.toString());
+    }
+}
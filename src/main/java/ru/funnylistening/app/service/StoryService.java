@@ -1,10 +1,12 @@
 package ru.funnylistening.app.service;
 
-import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import ru.funnylistening.app.domain.Story;
+import ru.funnylistening.app.service.dto.StoryView;
 
 /**
  * Service Interface for managing {@link Story}.
@@ -37,17 +39,10 @@ public interface StoryService {
     /**
      * Get all the stories.
      *
-     * @return the list of entities.
-     */
-    List<Story> findAll();
-
-    /**
-     * Get all the stories with eager load of many-to-many relationships.
-     *
      * @param pageable the pagination information.
      * @return the list of entities.
      */
-    Page<Story> findAllWithEagerRelationships(Pageable pageable);
+    Page<Story> findAll(Pageable pageable);
 
     /**
      * Get the "id" story.
@@ -57,6 +52,58 @@ public interface StoryService {
      */
     Optional<Story> findOne(Long id);
 
+    /**
+     * Get a page of story views, projected without loading the entities.
+     *
+     * @param pageable the pagination information.
+     * @param withElements whether to project the elements of the stories too.
+     * @return the page of views.
+     */
+    Page<StoryView> findAllViews(Pageable pageable, boolean withElements);
+
+    /**
+     * Get the slice of story views following the "afterId" story in id order, sought without skipping or counting the
+     * stories before it.
+     *
+     * @param afterId the id of the last story of the previous slice.
+     * @param size the maximum number of views.
+     * @param withElements whether to project the elements of the stories too.
+     * @return the slice of views.
+     */
+    Slice<StoryView> findViewsAfter(Long afterId, int size, boolean withElements);
+
+    /**
+     * Get the view of the "id" story, with its elements.
+     *
+     * @param id the id of the story.
+     * @return the view.
+     */
+    Optional<StoryView> findView(Long id);
+
+    /**
+     * Get the view of the "id" story serialized as JSON, from the cache when it didn't change since it was last read.
+     *
+     * @param id the id of the story.
+     * @return the serialized view and its validators.
+     */
+    Optional<StoryJson> findViewJson(Long id);
+
+    /**
+     * Export the views of all the stories with their elements in id order, one story at a time, reading them forward
+     * only so that memory use doesn't grow with the number of stories.
+     *
+     * @param consumer receives each view in turn.
+     */
+    void exportViews(Consumer<StoryView> consumer);
+
+    /**
+     * Get the validators of the list of stories, which change whenever any story changes.
+     *
+     * @param withElements whether the list includes the elements of the stories.
+     * @return the validators.
+     */
+    EntityTag findAllTag(boolean withElements);
+
     /**
      * Delete the "id" story.
      *
@@ -0,0 +1,49 @@
+package ru.funnylistening.app.service;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Trigrams of words, as pg_trgm makes them: the lowercased word is padded with two spaces before and one after, so
+ * that its first letters weigh more than its last ones, and cut in every three consecutive characters.
+ */
+public final class Trigrams {
+
+    private Trigrams() {}
+
+    /**
+     * Get the trigrams of a word.
+     *
+     * @param word a run of letters and digits.
+     * @return its distinct trigrams.
+     */
+    public static Set<String> of(String word) {
+        String padded = "  " + word.toLowerCase(Locale.ROOT) + " ";
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    /**
+     * Get the similarity of two words from their trigrams: the share of their trigrams they have in common.
+     *
+     * @param first the trigrams of a word.
+     * @param second the trigrams of the other word.
+     * @return the similarity, from {@code 0} for no trigram in common to {@code 1} for the same trigrams.
+     */
+    public static double similarity(Set<String> first, Set<String> second) {
+        if (first.isEmpty() || second.isEmpty()) {
+            return 0;
+        }
+        int common = 0;
+        for (String trigram : first) {
+            if (second.contains(trigram)) {
+                common++;
+            }
+        }
+        return (double) common / (first.size() + second.size() - common);
+    }
+}
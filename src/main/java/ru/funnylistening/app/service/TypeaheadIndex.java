@@ -0,0 +1,461 @@
+package ru.funnylistening.app.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.repository.ElementRepository;
+import ru.funnylistening.app.repository.StoryRepository;
+
+/**
+ * In-process prefix index of the words of the story names and element texts, completing a word being typed without
+ * any database access.
+ *
+ * The words are kept sorted in primitive arrays, with the number of names and texts each appears in, and are scanned
+ * from a binary search of the prefix. The words starting with one or two letters are too many to scan for each
+ * keystroke, so the most frequent of them are ranked once per build. The index is built at startup from a streaming
+ * scan; the changes committed since are kept in a small sorted map of count adjustments, merged into the arrays once
+ * it grows. Past the configured size, the rarest words are left out. Counts are approximate: a change committed while
+ * the index is rebuilt may be counted twice or not at all until the next rebuild.
+ */
+@Service
+public class TypeaheadIndex {
+
+    public static final String SIZE_METER_NAME = "typeahead.index.size";
+    public static final String WORDS_METER_NAME = "typeahead.index.words";
+    public static final String BUILD_METER_NAME = "typeahead.index.build";
+
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    /**
+     * Longer words are not indexed: nobody types them out for a completion.
+     */
+    private static final int MAX_WORD_LENGTH = 32;
+
+    /**
+     * Count adjustments kept before they are merged into the arrays.
+     */
+    private static final int MAX_ADJUSTMENTS = 4096;
+
+    /**
+     * Estimated bytes of an adjustment besides the characters of its word: the map node, the string and the count.
+     */
+    private static final int ADJUSTMENT_OVERHEAD = 96;
+
+    /**
+     * Prefixes up to this length have their most frequent words ranked when the arrays are built.
+     */
+    private static final int MAX_RANKED_PREFIX_LENGTH = 2;
+
+    /**
+     * Words ranked for each short prefix: the most completions asked for, with room for some pending adjustments.
+     */
+    private static final int RANKED_WORDS = 64;
+
+    private static final Comparator<Map.Entry<String, Integer>> MOST_FREQUENT_FIRST = Map.Entry
+        .<String, Integer>comparingByValue()
+        .reversed()
+        .thenComparing(Map.Entry.comparingByKey());
+
+    private final Logger log = LoggerFactory.getLogger(TypeaheadIndex.class);
+
+    private final StoryRepository storyRepository;
+
+    private final ElementRepository elementRepository;
+
+    private final long maxSize;
+
+    private final Timer buildTimer;
+
+    private volatile State state = new State(Words.EMPTY);
+
+    public TypeaheadIndex(
+        StoryRepository storyRepository,
+        ElementRepository elementRepository,
+        ApplicationProperties applicationProperties,
+        MeterRegistry registry
+    ) {
+        this.storyRepository = storyRepository;
+        this.elementRepository = elementRepository;
+        this.maxSize = applicationProperties.getTypeahead().getMaxSize();
+        this.buildTimer = Timer.builder(BUILD_METER_NAME).description("Time taken to build the typeahead index.").register(registry);
+        Gauge
+            .builder(SIZE_METER_NAME, this, index -> index.state.estimatedSize())
+            .baseUnit("bytes")
+            .description("Estimated bytes of the words of the typeahead index.")
+            .register(registry);
+        Gauge
+            .builder(WORDS_METER_NAME, this, index -> index.state.words.size())
+            .description("Words of the typeahead index, besides the pending adjustments.")
+            .register(registry);
+    }
+
+    /**
+     * Build the index from all the story names and element texts, replacing the current one.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.nanoTime();
+        Map<String, Integer> counts = new HashMap<>();
+        try (Stream<String> names = storyRepository.streamStoryNames(); Stream<String> texts = elementRepository.streamElementTexts()) {
+            Stream.concat(names, texts).forEach(text -> words(text).forEach(word -> counts.merge(word, 1, Integer::sum)));
+        }
+        Words words = Words.of(counts, maxSize);
+        synchronized (this) {
+            state = new State(words);
+        }
+        long elapsed = System.nanoTime() - start;
+        buildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Built typeahead index of {} words out of {} in {} ms", words.size(), counts.size(), elapsed / 1_000_000);
+    }
+
+    /**
+     * Complete the last word of what is being typed.
+     *
+     * @param prefix what is being typed.
+     * @param limit the most completions.
+     * @return the indexed words starting with the last word of the prefix, most frequent first.
+     */
+    public List<String> complete(String prefix, int limit) {
+        String last = null;
+        Matcher matcher = WORD.matcher(prefix);
+        while (matcher.find()) {
+            last = matcher.group();
+        }
+        if (last == null || last.length() > MAX_WORD_LENGTH || limit <= 0) {
+            return List.of();
+        }
+        return state.complete(last.toLowerCase(Locale.ROOT), limit);
+    }
+
+    /**
+     * Replace the words of a story name or element text once the current transaction is committed.
+     *
+     * @param previous the text before the change, or {@code null} if it was created.
+     * @param current the text after the change, or {@code null} if it was deleted.
+     */
+    public void replace(String previous, String current) {
+        Map<String, Integer> adjustments = new HashMap<>();
+        words(previous).forEach(word -> adjustments.merge(word, -1, Integer::sum));
+        words(current).forEach(word -> adjustments.merge(word, 1, Integer::sum));
+        adjustments.values().removeIf(adjustment -> adjustment == 0);
+        afterCommit(adjustments);
+    }
+
+    /**
+     * Add the words of new story names or element texts once the current transaction is committed.
+     *
+     * @param texts the texts created.
+     */
+    public void addAll(Collection<String> texts) {
+        Map<String, Integer> adjustments = new HashMap<>();
+        texts.forEach(text -> words(text).forEach(word -> adjustments.merge(word, 1, Integer::sum)));
+        afterCommit(adjustments);
+    }
+
+    private void afterCommit(Map<String, Integer> adjustments) {
+        if (adjustments.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        adjust(adjustments);
+                    }
+                }
+            );
+        } else {
+            adjust(adjustments);
+        }
+    }
+
+    private synchronized void adjust(Map<String, Integer> adjustments) {
+        State current = state;
+        adjustments.forEach((word, adjustment) -> current.adjustments.merge(word, adjustment, (a, b) -> a + b == 0 ? null : a + b));
+        if (current.adjustments.size() > MAX_ADJUSTMENTS) {
+            Map<String, Integer> counts = new HashMap<>();
+            for (int i = 0; i < current.words.size(); i++) {
+                counts.put(current.words.word(i), current.words.count(i));
+            }
+            current.adjustments.forEach((word, adjustment) -> counts.merge(word, adjustment, Integer::sum));
+            state = new State(Words.of(counts, maxSize));
+        }
+    }
+
+    /**
+     * The distinct words of a text, lowercased.
+     */
+    private static Set<String> words(String text) {
+        if (text == null) {
+            return Set.of();
+        }
+        Set<String> words = new HashSet<>();
+        Matcher matcher = WORD.matcher(text);
+        while (matcher.find()) {
+            if (matcher.end() - matcher.start() <= MAX_WORD_LENGTH) {
+                words.add(matcher.group().toLowerCase(Locale.ROOT));
+            }
+        }
+        return words;
+    }
+
+    /**
+     * The sorted words and the adjustments of their counts since.
+     */
+    private static final class State {
+
+        private final Words words;
+
+        private final ConcurrentSkipListMap<String, Integer> adjustments = new ConcurrentSkipListMap<>();
+
+        private State(Words words) {
+            this.words = words;
+        }
+
+        private long estimatedSize() {
+            long size = words.estimatedSize();
+            for (String word : adjustments.keySet()) {
+                size += ADJUSTMENT_OVERHEAD + 2L * word.length();
+            }
+            return size;
+        }
+
+        private List<String> complete(String prefix, int limit) {
+            NavigableMap<String, Integer> pending = adjustments.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+            Map<String, Integer> candidates = new HashMap<>();
+            for (Map.Entry<String, Integer> adjustment : pending.entrySet()) {
+                candidates.put(adjustment.getKey(), words.count(adjustment.getKey()) + adjustment.getValue());
+            }
+            // an adjustment moves at most one word out of the most frequent ones, so these many are enough
+            int from = words.lowerBound(prefix, false);
+            int to = words.lowerBound(prefix, true);
+            for (int i : words.mostFrequent(prefix, from, to, limit + candidates.size())) {
+                candidates.putIfAbsent(words.word(i), words.count(i));
+            }
+            List<Map.Entry<String, Integer>> completions = new ArrayList<>(candidates.entrySet());
+            completions.removeIf(completion -> completion.getValue() <= 0);
+            completions.sort(MOST_FREQUENT_FIRST);
+            List<String> result = new ArrayList<>(Math.min(limit, completions.size()));
+            for (int i = 0; i < limit && i < completions.size(); i++) {
+                result.add(completions.get(i).getKey());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Sorted words, with the characters of all of them in one array, the offset of each in another and their counts
+     * in a third, so that a million words cost three arrays rather than a million strings. The most frequent words of
+     * each short prefix are ranked up front, by count then alphabetically.
+     */
+    private static final class Words {
+
+        private static final Words EMPTY = new Words(new char[0], new int[] { 0 }, new int[0]);
+
+        private final char[] chars;
+
+        private final int[] offsets;
+
+        private final int[] counts;
+
+        private final Map<String, int[]> ranked = new HashMap<>();
+
+        private Words(char[] chars, int[] offsets, int[] counts) {
+            this.chars = chars;
+            this.offsets = offsets;
+            this.counts = counts;
+            for (int length = 1; length <= MAX_RANKED_PREFIX_LENGTH; length++) {
+                rank(length);
+            }
+        }
+
+        /**
+         * Rank the most frequent words of each prefix of a length, the words of a prefix being next to each other.
+         */
+        private void rank(int length) {
+            int i = 0;
+            while (i < size()) {
+                if (offsets[i + 1] - offsets[i] < length) {
+                    i++;
+                    continue;
+                }
+                String prefix = new String(chars, offsets[i], length);
+                int to = lowerBound(prefix, true);
+                int[] mostFrequent = scanMostFrequent(i, to, RANKED_WORDS);
+                ranked.put(
+                    prefix,
+                    Arrays
+                        .stream(mostFrequent)
+                        .boxed()
+                        .sorted(Comparator.<Integer>comparingInt(j -> counts[j]).reversed().thenComparingInt(j -> j))
+                        .mapToInt(Integer::intValue)
+                        .toArray()
+                );
+                i = to;
+            }
+        }
+
+        /**
+         * The words of positive count, the most frequent ones only if they don't all fit in the given size.
+         */
+        private static Words of(Map<String, Integer> counts, long maxSize) {
+            List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.size());
+            long size = 0;
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                if (entry.getValue() > 0) {
+                    entries.add(entry);
+                    size += estimatedSize(entry.getKey());
+                }
+            }
+            if (size > maxSize) {
+                entries.sort(MOST_FREQUENT_FIRST);
+                int kept = 0;
+                for (size = 0; kept < entries.size() && size + estimatedSize(entries.get(kept).getKey()) <= maxSize; kept++) {
+                    size += estimatedSize(entries.get(kept).getKey());
+                }
+                entries = entries.subList(0, kept);
+            }
+            entries.sort(Map.Entry.comparingByKey());
+            int length = 0;
+            for (Map.Entry<String, Integer> entry : entries) {
+                length += entry.getKey().length();
+            }
+            char[] chars = new char[length];
+            int[] offsets = new int[entries.size() + 1];
+            int[] wordCounts = new int[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                String word = entries.get(i).getKey();
+                word.getChars(0, word.length(), chars, offsets[i]);
+                offsets[i + 1] = offsets[i] + word.length();
+                wordCounts[i] = entries.get(i).getValue();
+            }
+            return new Words(chars, offsets, wordCounts);
+        }
+
+        private static long estimatedSize(String word) {
+            return 2L * word.length() + 2 * Integer.BYTES;
+        }
+
+        private long estimatedSize() {
+            return 2L * chars.length + (long) Integer.BYTES * (offsets.length + counts.length);
+        }
+
+        private int size() {
+            return counts.length;
+        }
+
+        private String word(int i) {
+            return new String(chars, offsets[i], offsets[i + 1] - offsets[i]);
+        }
+
+        private int count(int i) {
+            return counts[i];
+        }
+
+        /**
+         * The count of a word, {@code 0} if it isn't indexed.
+         */
+        private int count(String word) {
+            int i = lowerBound(word, false);
+            return i < size() && offsets[i + 1] - offsets[i] == word.length() && comparePrefix(i, word) == 0 ? counts[i] : 0;
+        }
+
+        /**
+         * The first word not before the prefix, or, when {@code after}, the first word after all those starting with it.
+         */
+        private int lowerBound(String prefix, boolean after) {
+            int low = 0;
+            int high = size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int comparison = comparePrefix(middle, prefix);
+                if (comparison < 0 || (after && comparison == 0)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Compare a word with a prefix: {@code 0} if it starts with it.
+         */
+        private int comparePrefix(int i, String prefix) {
+            int start = offsets[i];
+            int length = offsets[i + 1] - start;
+            int common = Math.min(length, prefix.length());
+            for (int j = 0; j < common; j++) {
+                int difference = chars[start + j] - prefix.charAt(j);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return length < prefix.length() ? -1 : 0;
+        }
+
+        /**
+         * The indexes of the most frequent words starting with a prefix, found in the ranked ones for a short prefix.
+         */
+        private int[] mostFrequent(String prefix, int from, int to, int limit) {
+            if (prefix.length() <= MAX_RANKED_PREFIX_LENGTH && limit <= RANKED_WORDS) {
+                int[] mostFrequent = ranked.getOrDefault(prefix, new int[0]);
+                return Arrays.copyOf(mostFrequent, Math.min(limit, mostFrequent.length));
+            }
+            return scanMostFrequent(from, to, limit);
+        }
+
+        /**
+         * The indexes of the most frequent words in a range, in no particular order; of equal counts, the first ones.
+         */
+        private int[] scanMostFrequent(int from, int to, int limit) {
+            if (to - from <= limit) {
+                int[] all = new int[to - from];
+                Arrays.setAll(all, i -> from + i);
+                return all;
+            }
+            // the least frequent at the head, the last of equal counts first
+            PriorityQueue<Integer> heap = new PriorityQueue<>(
+                limit,
+                Comparator.<Integer>comparingInt(i -> counts[i]).thenComparing(Comparator.reverseOrder())
+            );
+            for (int i = from; i < to; i++) {
+                if (heap.size() < limit) {
+                    heap.add(i);
+                } else if (counts[i] > counts[heap.peek()]) {
+                    heap.poll();
+                    heap.add(i);
+                }
+            }
+            return heap.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
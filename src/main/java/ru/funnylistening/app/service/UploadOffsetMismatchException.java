@@ -0,0 +1,17 @@
+package ru.funnylistening.app.service;
+
+public class UploadOffsetMismatchException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long currentOffset;
+
+    public UploadOffsetMismatchException(long currentOffset) {
+        super("Upload is at offset " + currentOffset);
+        this.currentOffset = currentOffset;
+    }
+
+    public long getCurrentOffset() {
+        return currentOffset;
+    }
+}
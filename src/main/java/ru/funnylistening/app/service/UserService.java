@@ -41,16 +41,20 @@ public class UserService {
 
     private final CacheManager cacheManager;
 
+    private final MailService mailService;
+
     public UserService(
         UserRepository userRepository,
         PasswordEncoder passwordEncoder,
         AuthorityRepository authorityRepository,
-        CacheManager cacheManager
+        CacheManager cacheManager,
+        MailService mailService
     ) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authorityRepository = authorityRepository;
         this.cacheManager = cacheManager;
+        this.mailService = mailService;
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -89,6 +93,7 @@ public class UserService {
                 user.setResetKey(RandomUtil.generateResetKey());
                 user.setResetDate(Instant.now());
                 this.clearUserCaches(user);
+                mailService.sendPasswordResetMail(user);
                 return user;
             });
     }
@@ -131,6 +136,7 @@ public class UserService {
         newUser.setAuthorities(authorities);
         userRepository.save(newUser);
         this.clearUserCaches(newUser);
+        mailService.sendActivationEmail(newUser);
         log.debug("Created Information for User: {}", newUser);
         return newUser;
     }
@@ -0,0 +1,96 @@
+package ru.funnylistening.app.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO representing the progress of a resumable element audio upload.
+ */
+public class AudioUploadDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String id;
+
+    private Long elementId;
+
+    private String filename;
+
+    private long offset;
+
+    private long length;
+
+    private boolean completed;
+
+    public AudioUploadDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public AudioUploadDTO(String id, Long elementId, String filename, long offset, long length) {
+        this.id = id;
+        this.elementId = elementId;
+        this.filename = filename;
+        this.offset = offset;
+        this.length = length;
+        this.completed = offset == length;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Long getElementId() {
+        return elementId;
+    }
+
+    public void setElementId(Long elementId) {
+        this.elementId = elementId;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "AudioUploadDTO{" +
+            "id='" + id + '\'' +
+            ", elementId=" + elementId +
+            ", filename='" + filename + '\'' +
+            ", offset=" + offset +
+            ", length=" + length +
+            "}";
+    }
+}
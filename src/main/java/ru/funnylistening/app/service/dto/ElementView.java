@@ -0,0 +1,88 @@
+package ru.funnylistening.app.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A read-only view of an {@link ru.funnylistening.app.domain.Element}, projected from the columns the UI displays.
+ *
+ * Its entire story is referenced by id only, so serializing it never touches a Hibernate proxy. Its version is the one
+ * to send back with an update of the element.
+ */
+public final class ElementView implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+
+    private final String elementText;
+
+    private final String elementAudioPath;
+
+    private final Long entireStoryId;
+
+    private final Long version;
+
+    public ElementView(Long id, String elementText, String elementAudioPath, Long entireStoryId, Long version) {
+        this.id = id;
+        this.elementText = elementText;
+        this.elementAudioPath = elementAudioPath;
+        this.entireStoryId = entireStoryId;
+        this.version = version;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getElementText() {
+        return elementText;
+    }
+
+    public String getElementAudioPath() {
+        return elementAudioPath;
+    }
+
+    public Long getEntireStoryId() {
+        return entireStoryId;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ElementView)) {
+            return false;
+        }
+        ElementView that = (ElementView) o;
+        return (
+            Objects.equals(id, that.id) &&
+            Objects.equals(elementText, that.elementText) &&
+            Objects.equals(elementAudioPath, that.elementAudioPath) &&
+            Objects.equals(entireStoryId, that.entireStoryId) &&
+            Objects.equals(version, that.version)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, elementText, elementAudioPath, entireStoryId, version);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ElementView{" +
+            "id=" + id +
+            ", elementText='" + elementText + '\'' +
+            ", elementAudioPath='" + elementAudioPath + '\'' +
+            ", entireStoryId=" + entireStoryId +
+            ", version=" + version +
+            "}";
+    }
+}
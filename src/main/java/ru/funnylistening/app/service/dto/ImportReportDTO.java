@@ -0,0 +1,96 @@
+package ru.funnylistening.app.service.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO reporting the outcome of a bulk import: how many rows were imported, and why each other row wasn't.
+ */
+public class ImportReportDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long imported;
+
+    private List<RowError> errors = new ArrayList<>();
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<RowError> errors) {
+        this.errors = errors;
+    }
+
+    public void addImported(long count) {
+        this.imported += count;
+    }
+
+    public void addError(long line, String message) {
+        this.errors.add(new RowError(line, message));
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ImportReportDTO{" +
+            "imported=" + imported +
+            ", errors=" + errors.size() +
+            "}";
+    }
+
+    /**
+     * A row that wasn't imported.
+     */
+    public static class RowError implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private long line;
+
+        private String message;
+
+        public RowError() {
+            // Empty constructor needed for Jackson.
+        }
+
+        public RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public void setLine(long line) {
+            this.line = line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+
+        // prettier-ignore
+        @Override
+        public String toString() {
+            return "RowError{" +
+                "line=" + line +
+                ", message='" + message + "'" +
+                "}";
+        }
+    }
+}
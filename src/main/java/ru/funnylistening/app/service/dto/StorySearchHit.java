@@ -0,0 +1,90 @@
+package ru.funnylistening.app.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A story matching a search query, with its best matching text: its name, or the text of one of its elements.
+ *
+ * The snippet is an HTML fragment of that text, escaped, with the matching words in {@code <mark>} elements. The
+ * element id is {@code null}, and left out of the JSON, when the best matching text is the name.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class StorySearchHit implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long storyId;
+
+    private final String storyName;
+
+    private final Long elementId;
+
+    private final double score;
+
+    private final String snippet;
+
+    public StorySearchHit(Long storyId, String storyName, Long elementId, double score, String snippet) {
+        this.storyId = storyId;
+        this.storyName = storyName;
+        this.elementId = elementId;
+        this.score = score;
+        this.snippet = snippet;
+    }
+
+    public Long getStoryId() {
+        return storyId;
+    }
+
+    public String getStoryName() {
+        return storyName;
+    }
+
+    public Long getElementId() {
+        return elementId;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StorySearchHit)) {
+            return false;
+        }
+        StorySearchHit that = (StorySearchHit) o;
+        return (
+            Objects.equals(storyId, that.storyId) &&
+            Objects.equals(storyName, that.storyName) &&
+            Objects.equals(elementId, that.elementId) &&
+            Double.compare(score, that.score) == 0 &&
+            Objects.equals(snippet, that.snippet)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(storyId, storyName, elementId, score, snippet);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StorySearchHit{" +
+            "storyId=" + storyId +
+            ", storyName='" + storyName + '\'' +
+            ", elementId=" + elementId +
+            ", score=" + score +
+            ", snippet='" + snippet + '\'' +
+            "}";
+    }
+}
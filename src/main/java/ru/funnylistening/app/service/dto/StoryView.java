@@ -0,0 +1,94 @@
+package ru.funnylistening.app.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A read-only view of a {@link ru.funnylistening.app.domain.Story}, projected from the columns the UI displays.
+ *
+ * Its elements are only projected when asked for; otherwise they are {@code null} and left out of the JSON. Its last
+ * modification date, the latest of the story and its elements, is a validator and isn't part of the JSON. Its version
+ * is the one to send back with an update of the story.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class StoryView implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+
+    private final String storyName;
+
+    private final Long version;
+
+    private final List<ElementView> elements;
+
+    @JsonIgnore
+    private final Instant lastModifiedDate;
+
+    public StoryView(Long id, String storyName, Long version, List<ElementView> elements, Instant lastModifiedDate) {
+        this.id = id;
+        this.storyName = storyName;
+        this.version = version;
+        this.elements = elements == null ? null : List.copyOf(elements);
+        this.lastModifiedDate = lastModifiedDate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getStoryName() {
+        return storyName;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public List<ElementView> getElements() {
+        return elements;
+    }
+
+    @JsonIgnore
+    public Instant getLastModifiedDate() {
+        return lastModifiedDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StoryView)) {
+            return false;
+        }
+        StoryView that = (StoryView) o;
+        return (
+            Objects.equals(id, that.id) &&
+            Objects.equals(storyName, that.storyName) &&
+            Objects.equals(version, that.version) &&
+            Objects.equals(elements, that.elements)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, storyName, version, elements);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StoryView{" +
+            "id=" + id +
+            ", storyName='" + storyName + '\'' +
+            ", version=" + version +
+            ", elements=" + elements +
+            "}";
+    }
+}
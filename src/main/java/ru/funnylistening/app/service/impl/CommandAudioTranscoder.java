@@ -0,0 +1,75 @@
+package ru.funnylistening.app.service.impl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.enumeration.AudioQuality;
+import ru.funnylistening.app.service.AudioTranscoder;
+
+/**
+ * {@link AudioTranscoder} running an external encoder, such as {@code ffmpeg}, configured with
+ * {@code application.audio.transcoding.command}.
+ */
+@Service
+@ConditionalOnProperty(prefix = "application.audio.transcoding", name = "encoder", havingValue = "command")
+public class CommandAudioTranscoder implements AudioTranscoder {
+
+    private final Logger log = LoggerFactory.getLogger(CommandAudioTranscoder.class);
+
+    private final ApplicationProperties.Audio.Transcoding properties;
+
+    public CommandAudioTranscoder(ApplicationProperties applicationProperties) {
+        this.properties = applicationProperties.getAudio().getTranscoding();
+    }
+
+    @Override
+    public String getExtension() {
+        return properties.getExtension();
+    }
+
+    @Override
+    public boolean transcode(Path source, AudioQuality quality, Path target) throws IOException {
+        String bitrate = Integer.toString(bitrate(quality));
+        List<String> command = properties
+            .getCommand()
+            .stream()
+            .map(argument ->
+                argument.replace("{input}", source.toString()).replace("{output}", target.toString()).replace("{bitrate}", bitrate)
+            )
+            .collect(Collectors.toList());
+        log.debug("Running encoder : {}", command);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            if (!process.waitFor(properties.getTimeoutMinutes(), TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+                throw new IOException("Encoder timed out on " + source);
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding " + source, e);
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException("Encoder exited with " + process.exitValue() + " on " + source);
+        }
+        return true;
+    }
+
+    private int bitrate(AudioQuality quality) {
+        switch (quality) {
+            case LOW:
+                return properties.getLowBitrate();
+            case MEDIUM:
+                return properties.getMediumBitrate();
+            default:
+                return properties.getHighBitrate();
+        }
+    }
+}
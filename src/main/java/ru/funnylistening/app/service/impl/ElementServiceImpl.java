@@ -1,14 +1,31 @@
 package ru.funnylistening.app.service.impl;
 
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import javax.persistence.Tuple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.funnylistening.app.domain.Element;
+import ru.funnylistening.app.domain.enumeration.AudioQuality;
 import ru.funnylistening.app.repository.ElementRepository;
+import ru.funnylistening.app.service.AudioBlobService;
+import ru.funnylistening.app.service.AudioFile;
+import ru.funnylistening.app.service.AudioRenditionService;
+import ru.funnylistening.app.service.AudioStore;
 import ru.funnylistening.app.service.ElementService;
+import ru.funnylistening.app.service.EntityTag;
+import ru.funnylistening.app.service.StoryAudioService;
+import ru.funnylistening.app.service.StoryJsonCache;
+import ru.funnylistening.app.service.TypeaheadIndex;
+import ru.funnylistening.app.service.dto.ElementView;
 
 /**
  * Service Implementation for managing {@link Element}.
@@ -21,20 +38,59 @@ public class ElementServiceImpl implements ElementService {
 
     private final ElementRepository elementRepository;
 
-    public ElementServiceImpl(ElementRepository elementRepository) {
+    private final AudioStore audioStore;
+
+    private final StoryAudioService storyAudioService;
+
+    private final AudioBlobService audioBlobService;
+
+    private final AudioRenditionService audioRenditionService;
+
+    private final StoryJsonCache storyJsonCache;
+
+    private final TypeaheadIndex typeaheadIndex;
+
+    public ElementServiceImpl(
+        ElementRepository elementRepository,
+        AudioStore audioStore,
+        StoryAudioService storyAudioService,
+        AudioBlobService audioBlobService,
+        AudioRenditionService audioRenditionService,
+        StoryJsonCache storyJsonCache,
+        TypeaheadIndex typeaheadIndex
+    ) {
         this.elementRepository = elementRepository;
+        this.audioStore = audioStore;
+        this.storyAudioService = storyAudioService;
+        this.audioBlobService = audioBlobService;
+        this.audioRenditionService = audioRenditionService;
+        this.storyJsonCache = storyJsonCache;
+        this.typeaheadIndex = typeaheadIndex;
     }
 
     @Override
     public Element save(Element element) {
         log.debug("Request to save Element : {}", element);
-        return elementRepository.save(element);
+        element.setElementAudioPath(audioBlobService.acquire(element.getElementAudioPath(), element.getId()));
+        Element result = elementRepository.save(element);
+        typeaheadIndex.replace(null, result.getElementText());
+        return result;
     }
 
     @Override
     public Element update(Element element) {
         log.debug("Request to update Element : {}", element);
-        return elementRepository.save(element);
+        String previousAudioPath = elementRepository.findAudioPathById(element.getId()).orElse(null);
+        if (!Objects.equals(previousAudioPath, element.getElementAudioPath())) {
+            element.setElementAudioPath(audioBlobService.acquire(element.getElementAudioPath(), element.getId()));
+            audioBlobService.release(previousAudioPath);
+        }
+        String previousElementText = elementRepository.findElementTextById(element.getId()).orElse(null);
+        Element result = elementRepository.save(element);
+        storyAudioService.rebuildForElement(result.getId());
+        storyJsonCache.evictForElement(result.getId());
+        typeaheadIndex.replace(previousElementText, result.getElementText());
+        return result;
     }
 
     @Override
@@ -45,15 +101,25 @@ public class ElementServiceImpl implements ElementService {
             .findById(element.getId())
             .map(existingElement -> {
                 if (element.getElementText() != null) {
+                    typeaheadIndex.replace(existingElement.getElementText(), element.getElementText());
                     existingElement.setElementText(element.getElementText());
                 }
-                if (element.getElementAudioPath() != null) {
-                    existingElement.setElementAudioPath(element.getElementAudioPath());
+                if (element.getElementAudioPath() != null && !element.getElementAudioPath().equals(existingElement.getElementAudioPath())) {
+                    String previousAudioPath = existingElement.getElementAudioPath();
+                    existingElement.setElementAudioPath(audioBlobService.acquire(element.getElementAudioPath(), existingElement.getId()));
+                    audioBlobService.release(previousAudioPath);
                 }
 
                 return existingElement;
             })
-            .map(elementRepository::save);
+            .map(elementRepository::save)
+            .map(result -> {
+                if (element.getElementAudioPath() != null) {
+                    storyAudioService.rebuildForElement(result.getId());
+                }
+                storyJsonCache.evictForElement(result.getId());
+                return result;
+            });
     }
 
     @Override
@@ -63,6 +129,31 @@ public class ElementServiceImpl implements ElementService {
         return elementRepository.findAll();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<ElementView> findAllViews() {
+        log.debug("Request to get all Element views");
+        return elementRepository.findAllViewRows().stream().map(ElementServiceImpl::toView).collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<ElementView> findViewsAfter(Long afterId, int size) {
+        log.debug("Request to get a slice of Element views after : {}", afterId);
+        // one more row tells whether there's a next slice
+        List<Tuple> rows = elementRepository.findViewRowsAfter(afterId, PageRequest.of(0, size + 1));
+        boolean hasNext = rows.size() > size;
+        List<ElementView> views = rows.stream().limit(size).map(ElementServiceImpl::toView).collect(Collectors.toList());
+        return new SliceImpl<>(views, PageRequest.of(0, size), hasNext);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ElementView> findView(Long id) {
+        log.debug("Request to get Element view : {}", id);
+        return elementRepository.findViewRowById(id).map(ElementServiceImpl::toView);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Optional<Element> findOne(Long id) {
@@ -70,9 +161,74 @@ public class ElementServiceImpl implements ElementService {
         return elementRepository.findById(id);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<AudioFile> findAudio(Long id) {
+        log.debug("Request to get audio of Element : {}", id);
+        return elementRepository.findById(id).map(Element::getElementAudioPath).flatMap(audioStore::find);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<AudioFile> findAudio(Long id, AudioQuality quality) {
+        log.debug("Request to get {} audio of Element : {}", quality, id);
+        if (quality == null) {
+            return findAudio(id);
+        }
+        return elementRepository
+            .findAudioPathById(id)
+            .flatMap(location -> audioRenditionService.findRendition(location, quality).or(() -> audioStore.find(location)));
+    }
+
+    @Override
+    public Optional<Element> attachAudio(Long id, Path file, String sha256, String filename) {
+        log.debug("Request to attach uploaded audio to Element : {}, {}", id, sha256);
+        return elementRepository
+            .findById(id)
+            .map(existingElement -> {
+                String previousAudioPath = existingElement.getElementAudioPath();
+                existingElement.setElementAudioPath(audioBlobService.acquireUpload(file, sha256, filename));
+                audioBlobService.release(previousAudioPath);
+                Element result = elementRepository.save(existingElement);
+                storyAudioService.rebuildForElement(result.getId());
+                storyJsonCache.evictForElement(result.getId());
+                return result;
+            });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<EntityTag> findTag(Long id) {
+        return elementRepository.findTagRowById(id).map(EntityTag::ofRow);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public EntityTag findAllTag() {
+        return EntityTag.ofSummary(elementRepository.findVersionSummary());
+    }
+
     @Override
     public void delete(Long id) {
         log.debug("Request to delete Element : {}", id);
+        String audioPath = elementRepository.findAudioPathById(id).orElse(null);
+        typeaheadIndex.replace(elementRepository.findElementTextById(id).orElse(null), null);
+        storyJsonCache.evictForElement(id);
         elementRepository.deleteById(id);
+        audioBlobService.release(audioPath);
+    }
+
+    /**
+     * Build an element view from a projected row with the {@code id}, {@code elementText}, {@code elementAudioPath},
+     * {@code entireStoryId} and {@code version} aliases.
+     */
+    static ElementView toView(Tuple row) {
+        return new ElementView(
+            row.get("id", Long.class),
+            row.get("elementText", String.class),
+            row.get("elementAudioPath", String.class),
+            row.get("entireStoryId", Long.class),
+            row.get("version", Long.class)
+        );
     }
 }
@@ -0,0 +1,276 @@
+package ru.funnylistening.app.service.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.service.StorySearch;
+import ru.funnylistening.app.service.StoryService;
+import ru.funnylistening.app.service.Trigrams;
+import ru.funnylistening.app.service.dto.ElementView;
+import ru.funnylistening.app.service.dto.StorySearchHit;
+import ru.funnylistening.app.service.dto.StoryView;
+
+/**
+ * {@link StorySearch} with an inverted index of the story names and element texts held by this instance, for
+ * development and tests without the full-text search of PostgreSQL.
+ *
+ * The index is rebuilt from all the stories by the first search following a change to a story or an element, as
+ * told by the entity tag of the stories with their elements. Words are lowercased runs of letters and digits, as
+ * with the {@code simple} configuration; a hit has every word of the query, and the query syntax beyond words is
+ * ignored. The words are themselves indexed by trigram, so that the words similar to a misspelled one are found
+ * without comparing it to all of them.
+ */
+@Service
+@ConditionalOnProperty(prefix = "application.search", name = "engine", havingValue = "memory")
+public class InMemoryStorySearch implements StorySearch {
+
+    private static final Comparator<StorySearchHit> BEST_FIRST = Comparator
+        .comparingDouble(StorySearchHit::getScore)
+        .reversed()
+        .thenComparing(StorySearchHit::getStoryId);
+
+    private final Logger log = LoggerFactory.getLogger(InMemoryStorySearch.class);
+
+    private final StoryService storyService;
+
+    private final double similarityThreshold;
+
+    private volatile Index index;
+
+    public InMemoryStorySearch(StoryService storyService, ApplicationProperties applicationProperties) {
+        this.storyService = storyService;
+        this.similarityThreshold = applicationProperties.getSearch().getSimilarityThreshold();
+    }
+
+    @Override
+    public Page<StorySearchHit> search(String query, Pageable pageable) {
+        log.debug("Request to search Stories : {}", query);
+        Set<String> words = words(query);
+        List<StorySearchHit> hits = words.isEmpty() ? List.of() : currentIndex().search(words);
+        int from = (int) Math.min(pageable.getOffset(), hits.size());
+        int to = Math.min(from + pageable.getPageSize(), hits.size());
+        return new PageImpl<>(hits.subList(from, to), pageable, hits.size());
+    }
+
+    @Override
+    public List<StorySearchHit> searchSimilar(String query, int limit) {
+        log.debug("Request to search Stories similar to : {}", query);
+        Set<String> words = words(query);
+        List<StorySearchHit> hits = words.isEmpty() ? List.of() : currentIndex().searchSimilar(words, similarityThreshold);
+        return hits.subList(0, Math.min(limit, hits.size()));
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        Matcher matcher = WORD.matcher(text);
+        while (matcher.find()) {
+            words.add(matcher.group().toLowerCase(Locale.ROOT));
+        }
+        return words;
+    }
+
+    private Index currentIndex() {
+        String eTag = storyService.findAllTag(true).getETag();
+        Index current = index;
+        if (current != null && current.eTag.equals(eTag)) {
+            return current;
+        }
+        synchronized (this) {
+            current = index;
+            if (current == null || !current.eTag.equals(eTag)) {
+                // a change made while building is indexed under the previous tag, and only causes one more rebuild
+                current = new Index(eTag);
+                storyService.exportViews(current::add);
+                log.debug("Indexed {} texts of Stories", current.texts.size());
+                index = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * The texts of the stories and of their elements, the texts in which each word appears, and the words in which
+     * each trigram appears.
+     */
+    private static final class Index {
+
+        private final String eTag;
+
+        private final List<Text> texts = new ArrayList<>();
+
+        private final Map<String, List<Text>> textsByWord = new HashMap<>();
+
+        private final Map<String, List<String>> wordsByTrigram = new HashMap<>();
+
+        private Index(String eTag) {
+            this.eTag = eTag;
+        }
+
+        private void add(StoryView story) {
+            add(new Text(story.getId(), story.getStoryName(), null, story.getStoryName()));
+            for (ElementView element : story.getElements()) {
+                add(new Text(story.getId(), story.getStoryName(), element.getId(), element.getElementText()));
+            }
+        }
+
+        private void add(Text text) {
+            if (text.words.isEmpty()) {
+                return;
+            }
+            texts.add(text);
+            for (String word : text.words) {
+                textsByWord
+                    .computeIfAbsent(
+                        word,
+                        key -> {
+                            Trigrams.of(key).forEach(trigram -> wordsByTrigram.computeIfAbsent(trigram, t -> new ArrayList<>()).add(key));
+                            return new ArrayList<>();
+                        }
+                    )
+                    .add(text);
+            }
+        }
+
+        private List<StorySearchHit> search(Set<String> words) {
+            List<Text> candidates = null;
+            for (String word : words) {
+                List<Text> withWord = textsByWord.get(word);
+                if (withWord == null) {
+                    return List.of();
+                }
+                if (candidates == null || withWord.size() < candidates.size()) {
+                    candidates = withWord;
+                }
+            }
+            Map<Long, StorySearchHit> best = new HashMap<>();
+            for (Text text : candidates) {
+                if (text.words.containsAll(words)) {
+                    int occurrences = 0;
+                    for (String word : words) {
+                        occurrences += text.occurrences.get(word);
+                    }
+                    double score = occurrences / (1 + Math.log(text.length));
+                    keepBest(best, text.hit(score, word -> words.contains(word.toLowerCase(Locale.ROOT))));
+                }
+            }
+            return sorted(best);
+        }
+
+        /**
+         * The texts whose words are, on average over the query words, as similar to them as the threshold, each query
+         * word counting for the most similar word of the text.
+         */
+        private List<StorySearchHit> searchSimilar(Set<String> words, double threshold) {
+            List<Map<String, Double>> similarWords = new ArrayList<>();
+            Set<String> allSimilarWords = new HashSet<>();
+            for (String word : words) {
+                Set<String> trigrams = Trigrams.of(word);
+                Set<String> candidates = new HashSet<>();
+                trigrams.forEach(trigram -> candidates.addAll(wordsByTrigram.getOrDefault(trigram, List.of())));
+                Map<String, Double> similar = new HashMap<>();
+                for (String candidate : candidates) {
+                    double similarity = Trigrams.similarity(trigrams, Trigrams.of(candidate));
+                    if (similarity >= threshold) {
+                        similar.put(candidate, similarity);
+                    }
+                }
+                similarWords.add(similar);
+                allSimilarWords.addAll(similar.keySet());
+            }
+
+            Map<Text, double[]> similarities = new HashMap<>();
+            for (int i = 0; i < similarWords.size(); i++) {
+                for (Map.Entry<String, Double> similar : similarWords.get(i).entrySet()) {
+                    for (Text text : textsByWord.get(similar.getKey())) {
+                        double[] bestByWord = similarities.computeIfAbsent(text, key -> new double[words.size()]);
+                        bestByWord[i] = Math.max(bestByWord[i], similar.getValue());
+                    }
+                }
+            }
+            Map<Long, StorySearchHit> best = new HashMap<>();
+            similarities.forEach((text, bestByWord) -> {
+                double score = 0;
+                for (double similarity : bestByWord) {
+                    score += similarity / bestByWord.length;
+                }
+                if (score >= threshold) {
+                    keepBest(best, text.hit(score, word -> allSimilarWords.contains(word.toLowerCase(Locale.ROOT))));
+                }
+            });
+            return sorted(best);
+        }
+
+        /**
+         * Keep the best hit of each story, its name first on a tie.
+         */
+        private static void keepBest(Map<Long, StorySearchHit> best, StorySearchHit hit) {
+            best.merge(
+                hit.getStoryId(),
+                hit,
+                (previous, next) ->
+                    next.getScore() > previous.getScore() ||
+                        (next.getScore() == previous.getScore() && previous.getElementId() != null && next.getElementId() == null)
+                        ? next
+                        : previous
+            );
+        }
+
+        private static List<StorySearchHit> sorted(Map<Long, StorySearchHit> best) {
+            List<StorySearchHit> hits = new ArrayList<>(best.values());
+            hits.sort(BEST_FIRST);
+            return hits;
+        }
+    }
+
+    /**
+     * A story name or element text, with its words and their occurrences.
+     */
+    private static final class Text {
+
+        private final Long storyId;
+
+        private final String storyName;
+
+        private final Long elementId;
+
+        private final String text;
+
+        private final Map<String, Integer> occurrences = new HashMap<>();
+
+        private final Set<String> words = occurrences.keySet();
+
+        private int length;
+
+        private Text(Long storyId, String storyName, Long elementId, String text) {
+            this.storyId = storyId;
+            this.storyName = storyName;
+            this.elementId = elementId;
+            this.text = text == null ? "" : text;
+            Matcher matcher = WORD.matcher(this.text);
+            while (matcher.find()) {
+                occurrences.merge(matcher.group().toLowerCase(Locale.ROOT), 1, Integer::sum);
+                length++;
+            }
+        }
+
+        private StorySearchHit hit(double score, Predicate<String> isMatch) {
+            return new StorySearchHit(storyId, storyName, elementId, score, StorySearch.highlight(text, isMatch));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ru.funnylistening.app.service.impl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.funnylistening.app.domain.enumeration.AudioQuality;
+import ru.funnylistening.app.service.AudioTranscoder;
+
+/**
+ * {@link AudioTranscoder} using only the Java sound API, so it needs no native binary.
+ *
+ * It reads the formats the JDK decodes (WAV, AIFF, AU) and writes WAV renditions with a lower sample rate, sample size
+ * and channel count. Compressed sources such as MP3 are left to the {@code command} encoder.
+ */
+@Service
+@ConditionalOnProperty(prefix = "application.audio.transcoding", name = "encoder", havingValue = "java", matchIfMissing = true)
+public class JavaSoundAudioTranscoder implements AudioTranscoder {
+
+    private final Logger log = LoggerFactory.getLogger(JavaSoundAudioTranscoder.class);
+
+    @Override
+    public String getExtension() {
+        return "wav";
+    }
+
+    @Override
+    public boolean transcode(Path source, AudioQuality quality, Path target) throws IOException {
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(source.toFile())) {
+            AudioFormat sourceFormat = in.getFormat();
+            AudioFormat targetFormat = targetFormat(sourceFormat, quality);
+            if (!AudioSystem.isConversionSupported(targetFormat, sourceFormat)) {
+                log.debug("Can't convert {} to {}", sourceFormat, targetFormat);
+                return false;
+            }
+            try (AudioInputStream converted = AudioSystem.getAudioInputStream(targetFormat, in)) {
+                AudioSystem.write(converted, AudioFileFormat.Type.WAVE, target.toFile());
+            }
+            return true;
+        } catch (UnsupportedAudioFileException e) {
+            log.debug("Unsupported audio file {} : {}", source, e.getMessage());
+            return false;
+        }
+    }
+
+    private static AudioFormat targetFormat(AudioFormat source, AudioQuality quality) {
+        float sampleRate;
+        int sampleSize;
+        int channels;
+        switch (quality) {
+            case LOW:
+                sampleRate = 8000f;
+                sampleSize = 8;
+                channels = 1;
+                break;
+            case MEDIUM:
+                sampleRate = 16000f;
+                sampleSize = 16;
+                channels = 1;
+                break;
+            default:
+                sampleRate = 22050f;
+                sampleSize = 16;
+                channels = 2;
+        }
+        // never upsample
+        if (source.getSampleRate() != AudioSystem.NOT_SPECIFIED) {
+            sampleRate = Math.min(sampleRate, source.getSampleRate());
+        }
+        if (source.getChannels() != AudioSystem.NOT_SPECIFIED) {
+            channels = Math.min(channels, source.getChannels());
+        }
+        // 8 bit WAV samples are unsigned
+        AudioFormat.Encoding encoding = sampleSize == 8 ? AudioFormat.Encoding.PCM_UNSIGNED : AudioFormat.Encoding.PCM_SIGNED;
+        return new AudioFormat(encoding, sampleRate, sampleSize, channels, channels * sampleSize / 8, sampleRate, false);
+    }
+}
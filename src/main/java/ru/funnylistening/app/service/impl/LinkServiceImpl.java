@@ -8,6 +8,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.funnylistening.app.domain.Link;
 import ru.funnylistening.app.repository.LinkRepository;
+import ru.funnylistening.app.service.EntityTag;
 import ru.funnylistening.app.service.LinkService;
 
 /**
@@ -67,6 +68,18 @@ public class LinkServiceImpl implements LinkService {
         return linkRepository.findById(id);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<EntityTag> findTag(Long id) {
+        return linkRepository.findTagRowById(id).map(EntityTag::ofRow);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public EntityTag findAllTag() {
+        return EntityTag.ofSummary(linkRepository.findVersionSummary());
+    }
+
     @Override
     public void delete(Long id) {
         log.debug("Request to delete Link : {}", id);
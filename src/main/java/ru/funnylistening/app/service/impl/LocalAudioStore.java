@@ -0,0 +1,130 @@
+package ru.funnylistening.app.service.impl;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.service.AudioFile;
+import ru.funnylistening.app.service.AudioStore;
+
+/**
+ * {@link AudioStore} reading audio files from a directory of the local file system.
+ *
+ * Blobs are kept under {@code blobs/<first two hash digits>/<hash>.<extension>}; since their content never changes,
+ * their entity tag is the content hash itself. Renditions are kept under
+ * {@code renditions/<first two hash digits>/<source hash>-<rendition>.<extension>}.
+ */
+@Service
+@ConditionalOnProperty(prefix = "application.audio", name = "store", havingValue = "local", matchIfMissing = true)
+public class LocalAudioStore implements AudioStore {
+
+    private static final String BLOB_DIRECTORY = "blobs";
+
+    private static final String RENDITION_DIRECTORY = "renditions";
+
+    private static final Pattern BLOB_LOCATION = Pattern.compile("^" + BLOB_DIRECTORY + "/[0-9a-f]{2}/([0-9a-f]{64})(\\.[A-Za-z0-9]+)?$");
+
+    private final Logger log = LoggerFactory.getLogger(LocalAudioStore.class);
+
+    private final Path root;
+
+    public LocalAudioStore(ApplicationProperties applicationProperties) {
+        this.root = Paths.get(applicationProperties.getAudio().getStoragePath()).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public Optional<AudioFile> find(String location) {
+        Optional<Path> resolved = resolve(location);
+        if (resolved.isEmpty()) {
+            return Optional.empty();
+        }
+        Path path = resolved.get();
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return Optional.empty();
+            }
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            String relative = root.relativize(path).toString().replace('\\', '/');
+            Matcher blob = BLOB_LOCATION.matcher(relative);
+            String eTag = blob.matches()
+                ? "\"" + blob.group(1) + "\""
+                : "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified) + "\"";
+            boolean immutable = blob.matches() || relative.startsWith(RENDITION_DIRECTORY + "/");
+            return Optional.of(new AudioFile(path, attributes.size(), lastModified, eTag, immutable));
+        } catch (IOException e) {
+            log.debug("Audio file not readable : {}", path);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public String blobLocation(String hash, String extension) {
+        String location = BLOB_DIRECTORY + "/" + hash.substring(0, 2) + "/" + hash;
+        return extension == null || extension.isEmpty() ? location : location + "." + extension;
+    }
+
+    @Override
+    public String renditionLocation(String hash, String rendition, String extension) {
+        String location = RENDITION_DIRECTORY + "/" + hash.substring(0, 2) + "/" + hash + "-" + rendition;
+        return extension == null || extension.isEmpty() ? location : location + "." + extension;
+    }
+
+    @Override
+    public void putBlob(String location, Path source, boolean move) throws IOException {
+        Path target = resolve(location).orElseThrow(() -> new IOException("Invalid blob location " + location));
+        if (Files.exists(target)) {
+            log.debug("Blob already stored : {}", location);
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        Path temporary = move ? source : Files.copy(source, Files.createTempFile(target.getParent(), "blob", ".tmp"), StandardCopyOption.REPLACE_EXISTING);
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target);
+        } catch (FileAlreadyExistsException e) {
+            // stored concurrently with the same content
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    @Override
+    public void delete(String location) throws IOException {
+        Optional<Path> path = resolve(location);
+        if (path.isPresent()) {
+            Files.deleteIfExists(path.get());
+        }
+    }
+
+    private Optional<Path> resolve(String location) {
+        if (location == null || location.isBlank()) {
+            return Optional.empty();
+        }
+        Path path;
+        try {
+            path = root.resolve(location.startsWith("/") ? location.substring(1) : location).normalize();
+        } catch (InvalidPathException e) {
+            log.debug("Invalid audio location : {}", location);
+            return Optional.empty();
+        }
+        if (!path.startsWith(root)) {
+            log.warn("Audio location outside of the store : {}", location);
+            return Optional.empty();
+        }
+        return Optional.of(path);
+    }
+}
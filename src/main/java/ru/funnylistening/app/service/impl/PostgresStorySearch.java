@@ -0,0 +1,102 @@
+package ru.funnylistening.app.service.impl;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.repository.StoryRepository;
+import ru.funnylistening.app.service.StorySearch;
+import ru.funnylistening.app.service.Trigrams;
+import ru.funnylistening.app.service.dto.StorySearchHit;
+
+/**
+ * {@link StorySearch} with the full-text search of PostgreSQL, over the search vectors the database keeps along the
+ * story names and element texts.
+ *
+ * Queries are parsed with {@code websearch_to_tsquery}, hits are ranked with {@code ts_rank} and only the hits of the
+ * page are highlighted with {@code ts_headline}, which reads the whole text. Similar words are looked up with the
+ * trigram indexes of pg_trgm, and highlighted here, since text search doesn't know about them.
+ */
+@Service
+@ConditionalOnProperty(prefix = "application.search", name = "engine", havingValue = "postgres", matchIfMissing = true)
+@Transactional(readOnly = true)
+public class PostgresStorySearch implements StorySearch {
+
+    private static final String HEADLINE_OPTIONS =
+        "StartSel=\"" + MATCH_START + "\", StopSel=\"" + MATCH_END + "\", MaxWords=" + SNIPPET_WORDS + ", MinWords=5";
+
+    private final Logger log = LoggerFactory.getLogger(PostgresStorySearch.class);
+
+    /**
+     * Texts of each kind ranked for every hit asked for, since several texts of a story make a single hit.
+     */
+    private static final int CANDIDATES_PER_HIT = 4;
+
+    private final StoryRepository storyRepository;
+
+    private final double similarityThreshold;
+
+    public PostgresStorySearch(StoryRepository storyRepository, ApplicationProperties applicationProperties) {
+        this.storyRepository = storyRepository;
+        this.similarityThreshold = applicationProperties.getSearch().getSimilarityThreshold();
+    }
+
+    @Override
+    public Page<StorySearchHit> search(String query, Pageable pageable) {
+        log.debug("Request to search Stories : {}", query);
+        // the hits are ordered by the query itself, a sort would be appended to it
+        Pageable unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        return storyRepository.searchRows(query, HEADLINE_OPTIONS, unsorted).map(PostgresStorySearch::toHit);
+    }
+
+    @Override
+    public List<StorySearchHit> searchSimilar(String query, int limit) {
+        log.debug("Request to search Stories similar to : {}", query);
+        storyRepository.setWordSimilarityThreshold(Double.toString(similarityThreshold));
+        List<Set<String>> queryTrigrams = WORD.matcher(query).results().map(word -> Trigrams.of(word.group())).collect(Collectors.toList());
+        return storyRepository
+            .findSimilarRows(query, limit * CANDIDATES_PER_HIT, limit)
+            .stream()
+            .map(row -> {
+                Number elementId = row.get("element_id", Number.class);
+                return new StorySearchHit(
+                    row.get("story_id", Number.class).longValue(),
+                    row.get("story_name", String.class),
+                    elementId == null ? null : elementId.longValue(),
+                    row.get("score", Number.class).doubleValue(),
+                    StorySearch.highlight(row.get("text", String.class), word -> isSimilar(Trigrams.of(word), queryTrigrams))
+                );
+            })
+            .collect(Collectors.toList());
+    }
+
+    private boolean isSimilar(Set<String> trigrams, List<Set<String>> queryTrigrams) {
+        for (Set<String> wordTrigrams : queryTrigrams) {
+            if (Trigrams.similarity(trigrams, wordTrigrams) >= similarityThreshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static StorySearchHit toHit(Tuple row) {
+        // native columns come with the JDBC types: bigint and real
+        Number elementId = row.get("element_id", Number.class);
+        return new StorySearchHit(
+            row.get("story_id", Number.class).longValue(),
+            row.get("story_name", String.class),
+            elementId == null ? null : elementId.longValue(),
+            row.get("score", Number.class).doubleValue(),
+            StorySearch.toSnippet(row.get("snippet", String.class))
+        );
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.funnylistening.app.domain.ReferalLink;
 import ru.funnylistening.app.repository.ReferalLinkRepository;
+import ru.funnylistening.app.service.EntityTag;
 import ru.funnylistening.app.service.ReferalLinkService;
 
 /**
@@ -67,6 +68,18 @@ public class ReferalLinkServiceImpl implements ReferalLinkService {
         return referalLinkRepository.findById(id);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<EntityTag> findTag(Long id) {
+        return referalLinkRepository.findTagRowById(id).map(EntityTag::ofRow);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public EntityTag findAllTag() {
+        return EntityTag.ofSummary(referalLinkRepository.findVersionSummary());
+    }
+
     @Override
     public void delete(Long id) {
         log.debug("Request to delete ReferalLink : {}", id);
@@ -1,16 +1,40 @@
 package ru.funnylistening.app.service.impl;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.funnylistening.app.domain.Story;
+import ru.funnylistening.app.repository.ElementRepository;
 import ru.funnylistening.app.repository.StoryRepository;
+import ru.funnylistening.app.service.EntityTag;
+import ru.funnylistening.app.service.StoryAudioService;
+import ru.funnylistening.app.service.StoryJson;
+import ru.funnylistening.app.service.StoryJsonCache;
 import ru.funnylistening.app.service.StoryService;
+import ru.funnylistening.app.service.TypeaheadIndex;
+import ru.funnylistening.app.service.dto.ElementView;
+import ru.funnylistening.app.service.dto.StoryView;
 
 /**
  * Service Implementation for managing {@link Story}.
@@ -23,20 +47,51 @@ public class StoryServiceImpl implements StoryService {
 
     private final StoryRepository storyRepository;
 
-    public StoryServiceImpl(StoryRepository storyRepository) {
+    private final ElementRepository elementRepository;
+
+    private final StoryAudioService storyAudioService;
+
+    private final StoryJsonCache storyJsonCache;
+
+    private final EntityManager entityManager;
+
+    private final TypeaheadIndex typeaheadIndex;
+
+    public StoryServiceImpl(
+        StoryRepository storyRepository,
+        ElementRepository elementRepository,
+        StoryAudioService storyAudioService,
+        StoryJsonCache storyJsonCache,
+        EntityManager entityManager,
+        TypeaheadIndex typeaheadIndex
+    ) {
         this.storyRepository = storyRepository;
+        this.elementRepository = elementRepository;
+        this.storyAudioService = storyAudioService;
+        this.storyJsonCache = storyJsonCache;
+        this.entityManager = entityManager;
+        this.typeaheadIndex = typeaheadIndex;
     }
 
     @Override
     public Story save(Story story) {
         log.debug("Request to save Story : {}", story);
-        return storyRepository.save(story);
+        Story result = storyRepository.save(story);
+        storyAudioService.rebuild(result.getId());
+        storyJsonCache.evict(result.getId());
+        typeaheadIndex.replace(null, result.getStoryName());
+        return result;
     }
 
     @Override
     public Story update(Story story) {
         log.debug("Request to update Story : {}", story);
-        return storyRepository.save(story);
+        String previousStoryName = storyRepository.findStoryNameById(story.getId()).orElse(null);
+        Story result = storyRepository.save(story);
+        storyAudioService.rebuild(result.getId());
+        storyJsonCache.evict(result.getId());
+        typeaheadIndex.replace(previousStoryName, result.getStoryName());
+        return result;
     }
 
     @Override
@@ -47,23 +102,24 @@ public class StoryServiceImpl implements StoryService {
             .findById(story.getId())
             .map(existingStory -> {
                 if (story.getStoryName() != null) {
+                    typeaheadIndex.replace(existingStory.getStoryName(), story.getStoryName());
                     existingStory.setStoryName(story.getStoryName());
                 }
 
                 return existingStory;
             })
-            .map(storyRepository::save);
+            .map(storyRepository::save)
+            .map(result -> {
+                storyJsonCache.evict(result.getId());
+                return result;
+            });
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<Story> findAll() {
+    public Page<Story> findAll(Pageable pageable) {
         log.debug("Request to get all Stories");
-        return storyRepository.findAll();
-    }
-
-    public Page<Story> findAllWithEagerRelationships(Pageable pageable) {
-        return storyRepository.findAllWithEagerRelationships(pageable);
+        return storyRepository.findAll(pageable);
     }
 
     @Override
@@ -73,9 +129,153 @@ public class StoryServiceImpl implements StoryService {
         return storyRepository.findOneWithEagerRelationships(id);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Page<StoryView> findAllViews(Pageable pageable, boolean withElements) {
+        log.debug("Request to get a page of Story views");
+        Page<Tuple> rows = storyRepository.findAllViewRows(pageable);
+        return new PageImpl<>(toViews(rows.getContent(), withElements), rows.getPageable(), rows.getTotalElements());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<StoryView> findViewsAfter(Long afterId, int size, boolean withElements) {
+        log.debug("Request to get a slice of Story views after : {}", afterId);
+        // one more row tells whether there's a next slice
+        List<Tuple> rows = storyRepository.findViewRowsAfter(afterId, PageRequest.of(0, size + 1));
+        boolean hasNext = rows.size() > size;
+        return new SliceImpl<>(toViews(hasNext ? rows.subList(0, size) : rows, withElements), PageRequest.of(0, size), hasNext);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<StoryView> findView(Long id) {
+        log.debug("Request to get Story view : {}", id);
+        return storyRepository
+            .findViewRowById(id)
+            .map(row -> {
+                Map<Long, Instant> lastModifiedDates = new HashMap<>();
+                List<ElementView> elements = findElementViews(Collections.singletonList(id), lastModifiedDates)
+                    .getOrDefault(id, Collections.emptyList());
+                return toView(row, elements, lastModifiedDates.get(id));
+            });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<StoryJson> findViewJson(Long id) {
+        log.debug("Request to get Story JSON : {}", id);
+        return storyJsonCache.get(id, () -> findView(id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportViews(Consumer<StoryView> consumer) {
+        log.debug("Request to export all Story views");
+        try (Stream<Tuple> rows = storyRepository.streamExportRows()) {
+            Tuple story = null;
+            List<ElementView> elements = new ArrayList<>();
+            Instant elementsLastModifiedDate = null;
+            long count = 0;
+            for (Iterator<Tuple> iterator = rows.iterator(); iterator.hasNext();) {
+                Tuple row = iterator.next();
+                if (story != null && !story.get("id", Long.class).equals(row.get("id", Long.class))) {
+                    consumer.accept(toView(story, elements, elementsLastModifiedDate));
+                    elements = new ArrayList<>();
+                    elementsLastModifiedDate = null;
+                }
+                story = row;
+                Long elementId = row.get("elementId", Long.class);
+                if (elementId != null) {
+                    elements.add(
+                        new ElementView(
+                            elementId,
+                            row.get("elementText", String.class),
+                            row.get("elementAudioPath", String.class),
+                            row.get("entireStoryId", Long.class),
+                            row.get("elementVersion", Long.class)
+                        )
+                    );
+                    elementsLastModifiedDate = latest(elementsLastModifiedDate, row.get("elementLastModifiedDate", Instant.class));
+                }
+                if (++count % StoryRepository.EXPORT_FETCH_SIZE == 0) {
+                    // nothing is read as an entity, but whatever the session picked up must not pile up either
+                    entityManager.clear();
+                }
+            }
+            if (story != null) {
+                consumer.accept(toView(story, elements, elementsLastModifiedDate));
+            }
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public EntityTag findAllTag(boolean withElements) {
+        EntityTag tag = EntityTag.ofSummary(storyRepository.findVersionSummary());
+        return withElements ? tag.and(EntityTag.ofSummary(elementRepository.findVersionSummary())) : tag;
+    }
+
     @Override
     public void delete(Long id) {
         log.debug("Request to delete Story : {}", id);
+        typeaheadIndex.replace(storyRepository.findStoryNameById(id).orElse(null), null);
+        storyJsonCache.evict(id);
+        storyAudioService.delete(id);
         storyRepository.deleteById(id);
     }
+
+    private List<StoryView> toViews(List<Tuple> rows, boolean withElements) {
+        if (!withElements) {
+            return rows.stream().map(row -> toView(row, null, null)).collect(Collectors.toList());
+        }
+        Map<Long, Instant> lastModifiedDates = new HashMap<>();
+        Map<Long, List<ElementView>> elements = findElementViews(
+            rows.stream().map(row -> row.get("id", Long.class)).collect(Collectors.toList()),
+            lastModifiedDates
+        );
+        return rows
+            .stream()
+            .map(row -> {
+                Long id = row.get("id", Long.class);
+                return toView(row, elements.getOrDefault(id, Collections.emptyList()), lastModifiedDates.get(id));
+            })
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * The element views of several stories, projected in a single query whatever the number of stories.
+     */
+    private Map<Long, List<ElementView>> findElementViews(Collection<Long> storyIds, Map<Long, Instant> lastModifiedDates) {
+        Map<Long, List<ElementView>> elements = new HashMap<>();
+        if (storyIds.isEmpty()) {
+            return elements;
+        }
+        for (Tuple row : storyRepository.findElementViewRowsByStoryIds(storyIds)) {
+            Long storyId = row.get("storyId", Long.class);
+            elements.computeIfAbsent(storyId, id -> new ArrayList<>()).add(ElementServiceImpl.toView(row));
+            Instant lastModifiedDate = row.get("lastModifiedDate", Instant.class);
+            if (lastModifiedDate != null) {
+                lastModifiedDates.merge(storyId, lastModifiedDate, StoryServiceImpl::latest);
+            }
+        }
+        return elements;
+    }
+
+    private static StoryView toView(Tuple row, List<ElementView> elements, Instant elementsLastModifiedDate) {
+        return new StoryView(
+            row.get("id", Long.class),
+            row.get("storyName", String.class),
+            row.get("version", Long.class),
+            elements,
+            latest(row.get("lastModifiedDate", Instant.class), elementsLastModifiedDate)
+        );
+    }
+
+    private static Instant latest(Instant first, Instant second) {
+        if (first == null) {
+            return second;
+        }
+        return second == null || first.isAfter(second) ? first : second;
+    }
 }
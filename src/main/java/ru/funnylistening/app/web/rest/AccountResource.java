@@ -11,7 +11,6 @@ import org.springframework.web.bind.annotation.*;
 import ru.funnylistening.app.domain.User;
 import ru.funnylistening.app.repository.UserRepository;
 import ru.funnylistening.app.security.SecurityUtils;
-import ru.funnylistening.app.service.MailService;
 import ru.funnylistening.app.service.UserService;
 import ru.funnylistening.app.service.dto.AdminUserDTO;
 import ru.funnylistening.app.service.dto.PasswordChangeDTO;
@@ -39,12 +38,9 @@ public class AccountResource {
 
     private final UserService userService;
 
-    private final MailService mailService;
-
-    public AccountResource(UserRepository userRepository, UserService userService, MailService mailService) {
+    public AccountResource(UserRepository userRepository, UserService userService) {
         this.userRepository = userRepository;
         this.userService = userService;
-        this.mailService = mailService;
     }
 
     /**
@@ -61,8 +57,7 @@ public class AccountResource {
         if (isPasswordLengthInvalid(managedUserVM.getPassword())) {
             throw new InvalidPasswordException();
         }
-        User user = userService.registerUser(managedUserVM, managedUserVM.getPassword());
-        mailService.sendActivationEmail(user);
+        userService.registerUser(managedUserVM, managedUserVM.getPassword());
     }
 
     /**
@@ -156,9 +151,7 @@ public class AccountResource {
     @PostMapping(path = "/account/reset-password/init")
     public void requestPasswordReset(@RequestBody String mail) {
         Optional<User> user = userService.requestPasswordReset(mail);
-        if (user.isPresent()) {
-            mailService.sendPasswordResetMail(user.get());
-        } else {
+        if (user.isEmpty()) {
             // Pretend the request has been successful to prevent checking which emails really exist
             // but log that an invalid attempt has been made
             log.warn("Password reset requested for non existing mail");
@@ -0,0 +1,388 @@
+package ru.funnylistening.app.web.rest;
+
+import io.undertow.io.BufferWritableOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.Optional;
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.funnylistening.app.service.AudioFile;
+import ru.funnylistening.app.service.MappedAudioCache;
+import ru.funnylistening.app.service.StoryAudio;
+
+/**
+ * Writes element and story audio to the response, honoring {@code Range}, {@code If-Range} and the conditional request headers.
+ *
+ * The body is written to the output stream of the container itself, under the wrappers of the filters, whose headers
+ * are committed first. Under Undertow, that stream is a {@link BufferWritableOutputStream}, and the files are sent with
+ * {@link BufferWritableOutputStream#transferFrom(FileChannel)}, which hands them to {@code sendfile} so their bytes are
+ * never copied into the heap. Other containers get them through {@link FileChannel#transferTo(long, long,
+ * WritableByteChannel)}, which copies them through a buffer per worker thread unless the stream is a channel. Hot files
+ * kept in the {@link MappedAudioCache} are sent straight from their mapping, without opening the file.
+ */
+@Component
+public class AudioResponseWriter {
+
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> TRANSFER_BUFFER = ThreadLocal.withInitial(() -> new byte[TRANSFER_BUFFER_SIZE]);
+
+    private final MappedAudioCache mappedAudioCache;
+
+    public AudioResponseWriter(MappedAudioCache mappedAudioCache) {
+        this.mappedAudioCache = mappedAudioCache;
+    }
+
+    public void write(AudioFile audio, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        write(
+            audio.getETag(),
+            audio.getLastModified(),
+            audio.getLength(),
+            audio.getFilename(),
+            request,
+            response,
+            (start, count, out) -> send(audio, start, count, out)
+        );
+    }
+
+    /**
+     * Write the stitched audio of a story, sending each element file in turn without re-encoding it.
+     */
+    public void write(StoryAudio audio, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        write(
+            audio.getETag(),
+            audio.getLastModified(),
+            audio.getLength(),
+            audio.getFiles().get(0).getFilename(),
+            request,
+            response,
+            (start, count, out) -> {
+                long position = start;
+                long remaining = count;
+                for (int index = audio.indexOf(position); remaining > 0; index++) {
+                    AudioFile file = audio.getFiles().get(index);
+                    long offsetInFile = position - audio.getOffset(index);
+                    long chunk = Math.min(remaining, file.getLength() - offsetInFile);
+                    if (chunk <= 0) {
+                        continue;
+                    }
+                    send(file, offsetInFile, chunk, out);
+                    position += chunk;
+                    remaining -= chunk;
+                }
+            }
+        );
+    }
+
+    private void write(
+        String eTag,
+        long lastModified,
+        long length,
+        String filename,
+        HttpServletRequest request,
+        HttpServletResponse response,
+        Body body
+    ) throws IOException {
+        if (new ServletWebRequest(request, response).checkNotModified(eTag, lastModified)) {
+            return;
+        }
+        long start = 0;
+        long end = length - 1;
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && isRangeApplicable(eTag, lastModified, request)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            // several ranges are answered with the whole representation, which RFC 7233 allows
+            if (ranges.size() == 1) {
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        response.setContentLengthLong(end - start + 1);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || length == 0) {
+            return;
+        }
+        body.write(start, end - start + 1, containerOutputStream(response));
+    }
+
+    /**
+     * Get the output stream of the container under the wrappers of a response, the wrappers' streams hiding the
+     * {@link BufferWritableOutputStream} of Undertow. The response is committed through the wrappers beforehand, so
+     * those adding headers on commit, such as the ones of Spring Security, still add them.
+     */
+    static OutputStream containerOutputStream(HttpServletResponse response) throws IOException {
+        ServletResponse unwrapped = response;
+        if (unwrapped instanceof ServletResponseWrapper) {
+            response.flushBuffer();
+            while (unwrapped instanceof ServletResponseWrapper) {
+                unwrapped = ((ServletResponseWrapper) unwrapped).getResponse();
+            }
+        }
+        return unwrapped.getOutputStream();
+    }
+
+    /**
+     * Copy {@code count} bytes of {@code file}, starting at {@code position}, to the response body, from its mapping
+     * when it is hot.
+     */
+    private void send(AudioFile file, long position, long count, OutputStream out) throws IOException {
+        Optional<ByteBuffer> mapped = mappedAudioCache.get(file);
+        if (mapped.isEmpty()) {
+            try (FileChannel channel = file.open()) {
+                transfer(channel, position, count, out);
+            }
+            return;
+        }
+        ByteBuffer range = mapped.get();
+        range.limit((int) (position + count)).position((int) position);
+        if (out instanceof BufferWritableOutputStream) {
+            // written to the connection from the mapping, with no copy into the heap
+            ((BufferWritableOutputStream) out).write(range);
+            return;
+        }
+        WritableByteChannel target = out instanceof WritableByteChannel ? (WritableByteChannel) out : new OutputStreamChannel(out);
+        while (range.hasRemaining()) {
+            target.write(range);
+        }
+    }
+
+    /**
+     * Copy {@code count} bytes of {@code channel}, starting at {@code position}, to the response body.
+     */
+    static void transfer(FileChannel channel, long position, long count, OutputStream out) throws IOException {
+        if (out instanceof BufferWritableOutputStream) {
+            ((BufferWritableOutputStream) out).transferFrom(new FileChannelRange(channel, position, count));
+            return;
+        }
+        WritableByteChannel target = out instanceof WritableByteChannel ? (WritableByteChannel) out : new OutputStreamChannel(out);
+        while (count > 0) {
+            long transferred = channel.transferTo(position, count, target);
+            if (transferred <= 0) {
+                throw new IOException("Audio file truncated at position " + position);
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    private static boolean isRangeApplicable(String eTag, long lastModified, HttpServletRequest request) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range requires a strong comparison
+            return ifRange.equals(eTag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void write(long start, long count, OutputStream out) throws IOException;
+    }
+
+    /**
+     * Adapts the servlet output stream to a channel, reusing one buffer per worker thread for direct buffers.
+     */
+    private static final class OutputStreamChannel implements WritableByteChannel {
+
+        private final OutputStream out;
+
+        private OutputStreamChannel(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int written = src.remaining();
+            if (src.hasArray()) {
+                out.write(src.array(), src.arrayOffset() + src.position(), written);
+                src.position(src.limit());
+                return written;
+            }
+            byte[] buffer = TRANSFER_BUFFER.get();
+            while (src.hasRemaining()) {
+                int chunk = Math.min(src.remaining(), buffer.length);
+                src.get(buffer, 0, chunk);
+                out.write(buffer, 0, chunk);
+            }
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // the container owns the response stream
+        }
+    }
+
+    /**
+     * A range of a file channel, for {@link BufferWritableOutputStream#transferFrom(FileChannel)}, which sends a channel
+     * from its position to its end. Its size is the end of the range, and its transfers are handed to the file channel,
+     * so {@code sendfile} is still used.
+     */
+    static final class FileChannelRange extends FileChannel {
+
+        private final FileChannel channel;
+
+        private final long end;
+
+        FileChannelRange(FileChannel channel, long position, long count) throws IOException {
+            this.channel = channel;
+            this.end = position + count;
+            channel.position(position);
+        }
+
+        @Override
+        public long size() {
+            return end;
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, Math.max(0, Math.min(count, end - position)), target);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return read(dst, channel.position(), true);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return read(dst, position, false);
+        }
+
+        private int read(ByteBuffer dst, long position, boolean advance) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            ByteBuffer limited = dst.duplicate();
+            limited.limit(limited.position() + (int) Math.min(limited.remaining(), end - position));
+            int read = channel.read(limited, position);
+            if (read > 0) {
+                dst.position(dst.position() + read);
+                if (advance) {
+                    channel.position(position + read);
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            long read = 0;
+            for (int i = offset; i < offset + length; i++) {
+                int chunk = read(dsts[i]);
+                if (chunk < 0) {
+                    return read == 0 ? -1 : read;
+                }
+                read += chunk;
+                if (dsts[i].hasRemaining()) {
+                    break;
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public FileChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() {
+            // the file channel is closed by its opener
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ru.funnylistening.app.web.rest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Optional;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import ru.funnylistening.app.service.AudioUploadService;
+import ru.funnylistening.app.service.UploadOffsetMismatchException;
+import ru.funnylistening.app.service.dto.AudioUploadDTO;
+import ru.funnylistening.app.web.rest.errors.BadRequestAlertException;
+
+/**
+ * REST controller for resumable uploads of {@link ru.funnylistening.app.domain.Element} audio.
+ *
+ * An upload is created with its total length, then its bytes are sent in order with {@code PATCH} requests carrying
+ * the {@code Upload-Offset} they start at. After an interruption, the client asks for the current offset and resumes
+ * from there. The audio is attached to the element when the last byte is received.
+ */
+@RestController
+@RequestMapping("/api")
+public class AudioUploadResource {
+
+    public static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    public static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final Logger log = LoggerFactory.getLogger(AudioUploadResource.class);
+
+    private static final String ENTITY_NAME = "element";
+
+    private final AudioUploadService audioUploadService;
+
+    public AudioUploadResource(AudioUploadService audioUploadService) {
+        this.audioUploadService = audioUploadService;
+    }
+
+    /**
+     * {@code POST  /elements/:id/audio/uploads} : Start an upload of audio for the "id" element.
+     *
+     * @param id the id of the element.
+     * @param length the total size of the audio in bytes.
+     * @param filename the name of the audio file.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new upload,
+     * or with status {@code 400 (Bad Request)} if the length is invalid, or with status {@code 404 (Not Found)}.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping("/elements/{id}/audio/uploads")
+    public ResponseEntity<AudioUploadDTO> createUpload(
+        @PathVariable Long id,
+        @RequestHeader(UPLOAD_LENGTH) long length,
+        @RequestParam(required = false) String filename
+    ) throws URISyntaxException {
+        log.debug("REST request to start an audio upload for Element : {}, {} bytes", id, length);
+        if (length <= 0 || length > audioUploadService.getMaxSize()) {
+            throw new BadRequestAlertException("Invalid upload length", ENTITY_NAME, "uploadlengthinvalid");
+        }
+        AudioUploadDTO result = audioUploadService
+            .create(id, length, filename)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        return ResponseEntity
+            .created(new URI("/api/elements/" + id + "/audio/uploads/" + result.getId()))
+            .header(UPLOAD_OFFSET, Long.toString(result.getOffset()))
+            .body(result);
+    }
+
+    /**
+     * {@code GET  /elements/:id/audio/uploads/:uploadId} : get the progress of an upload.
+     *
+     * @param id the id of the element.
+     * @param uploadId the id of the upload.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the upload, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/elements/{id}/audio/uploads/{uploadId}")
+    public ResponseEntity<AudioUploadDTO> getUpload(@PathVariable Long id, @PathVariable String uploadId) {
+        log.debug("REST request to get audio upload : {}", uploadId);
+        AudioUploadDTO result = forElement(id, audioUploadService.find(uploadId));
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).header(UPLOAD_OFFSET, Long.toString(result.getOffset())).body(result);
+    }
+
+    /**
+     * {@code PATCH  /elements/:id/audio/uploads/:uploadId} : append the request body to an upload.
+     *
+     * @param id the id of the element.
+     * @param uploadId the id of the upload.
+     * @param offset the number of bytes received so far, where the body starts.
+     * @param request the HTTP request, whose body is streamed to disk.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the upload,
+     * or with status {@code 409 (Conflict)} and the current offset if the offset is wrong, or with status {@code 404 (Not Found)}.
+     * @throws IOException if the body can't be received.
+     */
+    @PatchMapping(value = "/elements/{id}/audio/uploads/{uploadId}", consumes = { "application/offset+octet-stream", "application/octet-stream" })
+    public ResponseEntity<AudioUploadDTO> appendUpload(
+        @PathVariable Long id,
+        @PathVariable String uploadId,
+        @RequestHeader(UPLOAD_OFFSET) long offset,
+        HttpServletRequest request
+    ) throws IOException {
+        log.debug("REST request to append to audio upload : {} at {}", uploadId, offset);
+        forElement(id, audioUploadService.find(uploadId));
+        try {
+            AudioUploadDTO result = forElement(id, audioUploadService.append(uploadId, offset, request.getInputStream()));
+            return ResponseEntity.ok().header(UPLOAD_OFFSET, Long.toString(result.getOffset())).body(result);
+        } catch (UploadOffsetMismatchException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).header(UPLOAD_OFFSET, Long.toString(e.getCurrentOffset())).build();
+        }
+    }
+
+    /**
+     * {@code DELETE  /elements/:id/audio/uploads/:uploadId} : abort an upload.
+     *
+     * @param id the id of the element.
+     * @param uploadId the id of the upload.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}, or with status {@code 404 (Not Found)}.
+     */
+    @DeleteMapping("/elements/{id}/audio/uploads/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable Long id, @PathVariable String uploadId) {
+        log.debug("REST request to abort audio upload : {}", uploadId);
+        forElement(id, audioUploadService.find(uploadId));
+        audioUploadService.abort(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
+    private static AudioUploadDTO forElement(Long elementId, Optional<AudioUploadDTO> upload) {
+        return upload
+            .filter(found -> found.getElementId().equals(elementId))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+}
@@ -0,0 +1,68 @@
+package ru.funnylistening.app.web.rest;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.funnylistening.app.service.CatalogImportService;
+import ru.funnylistening.app.service.dto.ImportReportDTO;
+
+/**
+ * REST controller for bulk imports of {@link ru.funnylistening.app.domain.Story} and {@link ru.funnylistening.app.domain.Element}.
+ *
+ * The request body is streamed to the import, as {@code text/csv} or {@code application/x-ndjson}. Invalid rows are
+ * reported in the response with their line number, and don't prevent the valid ones from being imported.
+ */
+@RestController
+@RequestMapping("/api")
+public class CatalogImportResource {
+
+    private static final String CSV = "text/csv";
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final Logger log = LoggerFactory.getLogger(CatalogImportResource.class);
+
+    private final CatalogImportService catalogImportService;
+
+    public CatalogImportResource(CatalogImportService catalogImportService) {
+        this.catalogImportService = catalogImportService;
+    }
+
+    /**
+     * {@code POST  /stories/import} : import stories, with their elements when given as NDJSON.
+     *
+     * @param request the HTTP request, whose body is streamed to the import.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the import report.
+     * @throws IOException if the body can't be read.
+     */
+    @PostMapping(value = "/stories/import", consumes = { CSV, NDJSON })
+    public ResponseEntity<ImportReportDTO> importStories(HttpServletRequest request) throws IOException {
+        log.debug("REST request to import Stories");
+        ImportReportDTO result = catalogImportService.importStories(request.getInputStream(), format(request));
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * {@code POST  /elements/import} : import elements, adding them to existing stories when given a story id.
+     *
+     * @param request the HTTP request, whose body is streamed to the import.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the import report.
+     * @throws IOException if the body can't be read.
+     */
+    @PostMapping(value = "/elements/import", consumes = { CSV, NDJSON })
+    public ResponseEntity<ImportReportDTO> importElements(HttpServletRequest request) throws IOException {
+        log.debug("REST request to import Elements");
+        ImportReportDTO result = catalogImportService.importElements(request.getInputStream(), format(request));
+        return ResponseEntity.ok(result);
+    }
+
+    private static CatalogImportService.Format format(HttpServletRequest request) {
+        return MediaType.parseMediaType(CSV).isCompatibleWith(MediaType.parseMediaType(request.getContentType()))
+            ? CatalogImportService.Format.CSV
+            : CatalogImportService.Format.NDJSON;
+    }
+}
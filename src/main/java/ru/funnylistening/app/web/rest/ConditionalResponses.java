@@ -0,0 +1,25 @@
+package ru.funnylistening.app.web.rest;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Responses to {@code GET} requests whose validators are known before the representation is loaded, so that handlers
+ * answer {@code 304 (Not Modified)} with {@link org.springframework.web.context.request.WebRequest#checkNotModified(String, long)}
+ * before loading anything else.
+ */
+final class ConditionalResponses {
+
+    private ConditionalResponses() {}
+
+    /**
+     * A {@code 200 (OK)} response carrying the validators, which clients may store but must revalidate.
+     *
+     * @param eTag the quoted entity tag of the representation.
+     * @param lastModified its last modification date in milliseconds since the epoch, or {@code -1} if unknown.
+     */
+    static ResponseEntity.BodyBuilder ok(String eTag, long lastModified) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(CacheControl.noCache()).eTag(eTag);
+        return lastModified < 0 ? builder : builder.lastModified(lastModified);
+    }
+}
@@ -1,20 +1,36 @@
 package ru.funnylistening.app.web.rest;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import ru.funnylistening.app.domain.Element;
+import ru.funnylistening.app.domain.enumeration.AudioQuality;
 import ru.funnylistening.app.repository.ElementRepository;
+import ru.funnylistening.app.service.AudioFile;
+import ru.funnylistening.app.service.AudioPeaksService;
 import ru.funnylistening.app.service.ElementService;
+import ru.funnylistening.app.service.EntityTag;
+import ru.funnylistening.app.service.PeaksNotReadyException;
+import ru.funnylistening.app.service.dto.ElementView;
 import ru.funnylistening.app.web.rest.errors.BadRequestAlertException;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.ResponseUtil;
@@ -30,6 +46,10 @@ public class ElementResource {
 
     private static final String ENTITY_NAME = "element";
 
+    private static final String SAVE_DATA = "Save-Data";
+
+    private static final String ECT = "ECT";
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
@@ -37,9 +57,20 @@ public class ElementResource {
 
     private final ElementRepository elementRepository;
 
-    public ElementResource(ElementService elementService, ElementRepository elementRepository) {
+    private final AudioPeaksService audioPeaksService;
+
+    private final AudioResponseWriter audioResponseWriter;
+
+    public ElementResource(
+        ElementService elementService,
+        ElementRepository elementRepository,
+        AudioPeaksService audioPeaksService,
+        AudioResponseWriter audioResponseWriter
+    ) {
         this.elementService = elementService;
         this.elementRepository = elementRepository;
+        this.audioPeaksService = audioPeaksService;
+        this.audioResponseWriter = audioResponseWriter;
     }
 
     /**
@@ -68,7 +99,8 @@ public class ElementResource {
      * @param id the id of the element to save.
      * @param element the element to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated element,
-     * or with status {@code 400 (Bad Request)} if the element is not valid,
+     * or with status {@code 400 (Bad Request)} if the element is not valid or has no version,
+     * or with status {@code 409 (Conflict)} if the element was updated since its version was read,
      * or with status {@code 500 (Internal Server Error)} if the element couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
@@ -84,6 +116,9 @@ public class ElementResource {
         if (!Objects.equals(id, element.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        if (element.getVersion() == null) {
+            throw new BadRequestAlertException("A version is required", ENTITY_NAME, "versionnull");
+        }
 
         if (!elementRepository.existsById(id)) {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
@@ -135,25 +170,147 @@ public class ElementResource {
     /**
      * {@code GET  /elements} : get all the elements.
      *
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of elements in body.
+     * With {@code after}, only a slice of the elements in id order is returned: see {@link KeysetPagination}.
+     *
+     * @param after the cursor of the previous slice, or empty for the first slice.
+     * @param size the maximum number of elements of a slice.
+     * @param count whether to count the elements of a slice.
+     * @param webRequest the request, for the conditional headers.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of elements in body,
+     * or with status {@code 304 (Not Modified)} if no element changed, or with status {@code 400 (Bad Request)} if the cursor or size is invalid.
      */
     @GetMapping("/elements")
-    public List<Element> getAllElements() {
+    public ResponseEntity<List<ElementView>> getAllElements(
+        @RequestParam(required = false) String after,
+        @RequestParam(required = false, defaultValue = "20") int size,
+        @RequestParam(required = false, defaultValue = "false") boolean count,
+        WebRequest webRequest
+    ) {
         log.debug("REST request to get all Elements");
-        return elementService.findAll();
+        Long afterId = null;
+        if (after != null) {
+            afterId = KeysetPagination.afterId(after, ENTITY_NAME);
+            KeysetPagination.checkSize(size, ENTITY_NAME);
+        }
+        EntityTag tag = elementService.findAllTag();
+        if (webRequest.checkNotModified(tag.getETag(), tag.getLastModified())) {
+            return null;
+        }
+        if (afterId != null) {
+            Slice<ElementView> slice = elementService.findViewsAfter(afterId, size);
+            HttpHeaders headers = KeysetPagination.headers(
+                ServletUriComponentsBuilder.fromCurrentRequest(),
+                slice,
+                ElementView::getId,
+                count ? elementRepository.count() : null
+            );
+            return ConditionalResponses.ok(tag.getETag(), tag.getLastModified()).headers(headers).body(slice.getContent());
+        }
+        return ConditionalResponses.ok(tag.getETag(), tag.getLastModified()).body(elementService.findAllViews());
     }
 
     /**
      * {@code GET  /elements/:id} : get the "id" element.
      *
      * @param id the id of the element to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the element, or with status {@code 404 (Not Found)}.
+     * @param webRequest the request, for the conditional headers.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the element, or with status
+     * {@code 304 (Not Modified)}, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/elements/{id}")
-    public ResponseEntity<Element> getElement(@PathVariable Long id) {
+    public ResponseEntity<ElementView> getElement(@PathVariable Long id, WebRequest webRequest) {
         log.debug("REST request to get Element : {}", id);
-        Optional<Element> element = elementService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(element);
+        EntityTag tag = elementService.findTag(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (webRequest.checkNotModified(tag.getETag(), tag.getLastModified())) {
+            return null;
+        }
+        Optional<ElementView> element = elementService.findView(id);
+        return element
+            .map(view -> ConditionalResponses.ok(tag.getETag(), tag.getLastModified()).body(view))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * {@code GET  /elements/:id/audio} : stream the audio of the "id" element.
+     *
+     * Without an explicit {@code quality}, clients announcing {@code Save-Data} or a slow {@code ECT} get a lighter rendition.
+     * The original audio is served while the rendition isn't transcoded yet.
+     *
+     * @param id the id of the element whose audio to stream.
+     * @param quality the rendition to stream: {@code low}, {@code medium}, {@code high} or {@code original}.
+     * @param request the HTTP request, for the range, conditional and client hint headers.
+     * @param response the HTTP response the audio is written to, with status {@code 200 (OK)}, {@code 206 (Partial Content)},
+     * {@code 304 (Not Modified)} or {@code 416 (Range Not Satisfiable)}, or with status {@code 404 (Not Found)}.
+     * @throws IOException if the audio file can't be read.
+     */
+    @GetMapping("/elements/{id}/audio")
+    public void getElementAudio(
+        @PathVariable Long id,
+        @RequestParam(required = false) String quality,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) throws IOException {
+        log.debug("REST request to get audio of Element : {}, quality {}", id, quality);
+        AudioQuality rendition = quality != null ? parseQuality(quality) : qualityForClient(request);
+        if (quality == null) {
+            response.addHeader(HttpHeaders.VARY, SAVE_DATA + ", " + ECT);
+        }
+        AudioFile audio = elementService.findAudio(id, rendition).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        audioResponseWriter.write(audio, request, response);
+    }
+
+    /**
+     * {@code GET  /elements/:id/peaks} : get the waveform peaks of the audio of the "id" element.
+     *
+     * @param id the id of the element.
+     * @param request the HTTP request, for the conditional headers.
+     * @param response the HTTP response the peaks are written to in the audiowaveform binary format, with status
+     * {@code 200 (OK)} or {@code 304 (Not Modified)}, or with status {@code 202 (Accepted)} while they are computed,
+     * or with status {@code 404 (Not Found)}.
+     * @throws IOException if the peaks can't be read.
+     */
+    @GetMapping("/elements/{id}/peaks")
+    public void getElementPeaks(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.debug("REST request to get peaks of Element : {}", id);
+        AudioFile peaks;
+        try {
+            peaks = audioPeaksService.findPeaks(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        } catch (PeaksNotReadyException e) {
+            response.setStatus(HttpServletResponse.SC_ACCEPTED);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "2");
+            return;
+        }
+        audioResponseWriter.write(peaks, request, response);
+    }
+
+    private static AudioQuality parseQuality(String quality) {
+        if ("original".equalsIgnoreCase(quality)) {
+            return null;
+        }
+        try {
+            return AudioQuality.valueOf(quality.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Invalid audio quality", ENTITY_NAME, "qualityinvalid");
+        }
+    }
+
+    private static AudioQuality qualityForClient(HttpServletRequest request) {
+        if ("on".equalsIgnoreCase(request.getHeader(SAVE_DATA))) {
+            return AudioQuality.LOW;
+        }
+        String ect = request.getHeader(ECT);
+        if (ect == null) {
+            return null;
+        }
+        switch (ect.toLowerCase(Locale.ROOT)) {
+            case "slow-2g":
+            case "2g":
+                return AudioQuality.LOW;
+            case "3g":
+                return AudioQuality.MEDIUM;
+            default:
+                return null;
+        }
     }
 
     /**
@@ -0,0 +1,86 @@
+package ru.funnylistening.app.web.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Function;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+import ru.funnylistening.app.web.rest.errors.BadRequestAlertException;
+
+/**
+ * Keyset pagination of collections in id order, requested with {@code ?after=<cursor>&size=<size>}.
+ *
+ * A cursor is an opaque token for the id of the last entity of the previous slice, so that the next slice is sought
+ * through the primary key index instead of skipping the rows before it, and a deep slice costs the same as the first
+ * one. An empty cursor asks for the first slice. The link to the next slice is sent in the {@code Link} header, as for
+ * the classic pagination, and its cursor in {@value #NEXT_CURSOR_HEADER}. The total count is only sent when asked for.
+ */
+final class KeysetPagination {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    static final int MAX_SIZE = 2000;
+
+    private static final String CURSOR_PREFIX = "id:";
+
+    private KeysetPagination() {}
+
+    /**
+     * The id a cursor stands for.
+     *
+     * @param cursor the cursor of the previous slice, or empty for the first slice.
+     * @param entityName the name of the paginated entity, for the error.
+     * @return the id following which the slice starts.
+     * @throws BadRequestAlertException if the cursor isn't one.
+     */
+    static Long afterId(String cursor, String entityName) {
+        if (cursor.isEmpty()) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            if (decoded.startsWith(CURSOR_PREFIX)) {
+                return Long.valueOf(decoded.substring(CURSOR_PREFIX.length()));
+            }
+        } catch (IllegalArgumentException e) {
+            // not base64, or not an id
+        }
+        throw new BadRequestAlertException("Invalid cursor", entityName, "cursorinvalid");
+    }
+
+    static String cursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((CURSOR_PREFIX + id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static void checkSize(int size, String entityName) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new BadRequestAlertException("Invalid slice size", entityName, "sizeinvalid");
+        }
+    }
+
+    /**
+     * The headers of a slice: the link to the next one if there's one, and the total count if known.
+     *
+     * @param uriBuilder the builder of the current request URI.
+     * @param slice the slice.
+     * @param idOf the id of an entity of the slice.
+     * @param totalCount the total count of entities, or {@code null} if it wasn't asked for.
+     * @return the headers.
+     */
+    static <T> HttpHeaders headers(UriComponentsBuilder uriBuilder, Slice<T> slice, Function<T, Long> idOf, Long totalCount) {
+        HttpHeaders headers = new HttpHeaders();
+        if (totalCount != null) {
+            headers.add(TOTAL_COUNT_HEADER, Long.toString(totalCount));
+        }
+        if (slice.hasNext()) {
+            String next = cursor(idOf.apply(slice.getContent().get(slice.getNumberOfElements() - 1)));
+            headers.add(NEXT_CURSOR_HEADER, next);
+            String link = uriBuilder.replaceQueryParam("after", next).replaceQueryParam("size", slice.getSize()).toUriString();
+            headers.add(HttpHeaders.LINK, "<" + link + ">; rel=\"next\"");
+        }
+        return headers;
+    }
+}
@@ -10,10 +10,14 @@ import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 import ru.funnylistening.app.domain.Link;
 import ru.funnylistening.app.repository.LinkRepository;
+import ru.funnylistening.app.service.EntityTag;
 import ru.funnylistening.app.service.LinkService;
 import ru.funnylistening.app.web.rest.errors.BadRequestAlertException;
 import tech.jhipster.web.util.HeaderUtil;
@@ -68,7 +72,8 @@ public class LinkResource {
      * @param id the id of the link to save.
      * @param link the link to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated link,
-     * or with status {@code 400 (Bad Request)} if the link is not valid,
+     * or with status {@code 400 (Bad Request)} if the link is not valid or has no version,
+     * or with status {@code 409 (Conflict)} if the link was updated since its version was read,
      * or with status {@code 500 (Internal Server Error)} if the link couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
@@ -82,6 +87,9 @@ public class LinkResource {
         if (!Objects.equals(id, link.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        if (link.getVersion() == null) {
+            throw new BadRequestAlertException("A version is required", ENTITY_NAME, "versionnull");
+        }
 
         if (!linkRepository.existsById(id)) {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
@@ -133,25 +141,39 @@ public class LinkResource {
     /**
      * {@code GET  /links} : get all the links.
      *
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of links in body.
+     * @param webRequest the request, for the conditional headers.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of links in body,
+     * or with status {@code 304 (Not Modified)} if no link changed.
      */
     @GetMapping("/links")
-    public List<Link> getAllLinks() {
+    public ResponseEntity<List<Link>> getAllLinks(WebRequest webRequest) {
         log.debug("REST request to get all Links");
-        return linkService.findAll();
+        EntityTag tag = linkService.findAllTag();
+        if (webRequest.checkNotModified(tag.getETag(), tag.getLastModified())) {
+            return null;
+        }
+        return ConditionalResponses.ok(tag.getETag(), tag.getLastModified()).body(linkService.findAll());
     }
 
     /**
      * {@code GET  /links/:id} : get the "id" link.
      *
      * @param id the id of the link to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the link, or with status {@code 404 (Not Found)}.
+     * @param webRequest the request, for the conditional headers.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the link, or with status
+     * {@code 304 (Not Modified)}, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/links/{id}")
-    public ResponseEntity<Link> getLink(@PathVariable Long id) {
+    public ResponseEntity<Link> getLink(@PathVariable Long id, WebRequest webRequest) {
         log.debug("REST request to get Link : {}", id);
-        Optional<Link> link = linkService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(link);
+        EntityTag tag = linkService.findTag(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (webRequest.checkNotModified(tag.getETag(), tag.getLastModified())) {
+            return null;
+        }
+        return linkService
+            .findOne(id)
+            .map(link -> ConditionalResponses.ok(tag.getETag(), tag.getLastModified()).body(link))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
 
     /**
@@ -10,10 +10,14 @@ import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 import ru.funnylistening.app.domain.ReferalLink;
 import ru.funnylistening.app.repository.ReferalLinkRepository;
+import ru.funnylistening.app.service.EntityTag;
 import ru.funnylistening.app.service.ReferalLinkService;
 import ru.funnylistening.app.web.rest.errors.BadRequestAlertException;
 import tech.jhipster.web.util.HeaderUtil;
@@ -68,7 +72,8 @@ public class ReferalLinkResource {
      * @param id the id of the referalLink to save.
      * @param referalLink the referalLink to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated referalLink,
-     * or with status {@code 400 (Bad Request)} if the referalLink is not valid,
+     * or with status {@code 400 (Bad Request)} if the referalLink is not valid or has no version,
+     * or with status {@code 409 (Conflict)} if the referalLink was updated since its version was read,
      * or with status {@code 500 (Internal Server Error)} if the referalLink couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
@@ -84,6 +89,9 @@ public class ReferalLinkResource {
         if (!Objects.equals(id, referalLink.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        if (referalLink.getVersion() == null) {
+            throw new BadRequestAlertException("A version is required", ENTITY_NAME, "versionnull");
+        }
 
         if (!referalLinkRepository.existsById(id)) {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
@@ -135,25 +143,39 @@ public class ReferalLinkResource {
     /**
      * {@code GET  /referal-links} : get all the referalLinks.
      *
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of referalLinks in body.
+     * @param webRequest the request, for the conditional headers.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of referalLinks in body,
+     * or with status {@code 304 (Not Modified)} if no referal link changed.
      */
     @GetMapping("/referal-links")
-    public List<ReferalLink> getAllReferalLinks() {
+    public ResponseEntity<List<ReferalLink>> getAllReferalLinks(WebRequest webRequest) {
         log.debug("REST request to get all ReferalLinks");
-        return referalLinkService.findAll();
+        EntityTag tag = referalLinkService.findAllTag();
+        if (webRequest.checkNotModified(tag.getETag(), tag.getLastModified())) {
+            return null;
+        }
+        return ConditionalResponses.ok(tag.getETag(), tag.getLastModified()).body(referalLinkService.findAll());
     }
 
     /**
      * {@code GET  /referal-links/:id} : get the "id" referalLink.
      *
      * @param id the id of the referalLink to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the referalLink, or with status {@code 404 (Not Found)}.
+     * @param webRequest the request, for the conditional headers.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the referalLink, or with status
+     * {@code 304 (Not Modified)}, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/referal-links/{id}")
-    public ResponseEntity<ReferalLink> getReferalLink(@PathVariable Long id) {
+    public ResponseEntity<ReferalLink> getReferalLink(@PathVariable Long id, WebRequest webRequest) {
         log.debug("REST request to get ReferalLink : {}", id);
-        Optional<ReferalLink> referalLink = referalLinkService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(referalLink);
+        EntityTag tag = referalLinkService.findTag(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (webRequest.checkNotModified(tag.getETag(), tag.getLastModified())) {
+            return null;
+        }
+        return referalLinkService
+            .findOne(id)
+            .map(referalLink -> ConditionalResponses.ok(tag.getETag(), tag.getLastModified()).body(referalLink))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
 
     /**
@@ -1,22 +1,53 @@
 package ru.funnylistening.app.web.rest;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import ru.funnylistening.app.domain.Story;
+import ru.funnylistening.app.domain.StoryAudioSegment;
 import ru.funnylistening.app.repository.StoryRepository;
+import ru.funnylistening.app.service.AudioSegmentCache;
+import ru.funnylistening.app.service.EntityTag;
+import ru.funnylistening.app.service.StoryAudio;
+import ru.funnylistening.app.service.StoryAudioService;
+import ru.funnylistening.app.service.StoryJson;
+import ru.funnylistening.app.service.StoryPlaylist;
+import ru.funnylistening.app.service.StoryPlaylistService;
 import ru.funnylistening.app.service.StoryService;
+import ru.funnylistening.app.service.dto.StoryView;
 import ru.funnylistening.app.web.rest.errors.BadRequestAlertException;
 import tech.jhipster.web.util.HeaderUtil;
+import tech.jhipster.web.util.PaginationUtil;
 import tech.jhipster.web.util.ResponseUtil;
 
 /**
@@ -30,6 +61,18 @@ public class StoryResource {
 
     private static final String ENTITY_NAME = "story";
 
+    private static final MediaType MPEG_URL = MediaType.parseMediaType("application/vnd.apple.mpegurl");
+
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * Segments are named after their content, so they can be cached for as long as static resources, though only by
+     * the browser of the authenticated user: shared caches would serve them to anyone.
+     */
+    private static final String IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().getHeaderValue() + ", immutable";
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
@@ -37,9 +80,32 @@ public class StoryResource {
 
     private final StoryRepository storyRepository;
 
-    public StoryResource(StoryService storyService, StoryRepository storyRepository) {
+    private final StoryAudioService storyAudioService;
+
+    private final StoryPlaylistService storyPlaylistService;
+
+    private final AudioSegmentCache audioSegmentCache;
+
+    private final AudioResponseWriter audioResponseWriter;
+
+    private final ObjectMapper objectMapper;
+
+    public StoryResource(
+        StoryService storyService,
+        StoryRepository storyRepository,
+        StoryAudioService storyAudioService,
+        StoryPlaylistService storyPlaylistService,
+        AudioSegmentCache audioSegmentCache,
+        AudioResponseWriter audioResponseWriter,
+        ObjectMapper objectMapper
+    ) {
         this.storyService = storyService;
         this.storyRepository = storyRepository;
+        this.storyAudioService = storyAudioService;
+        this.storyPlaylistService = storyPlaylistService;
+        this.audioSegmentCache = audioSegmentCache;
+        this.audioResponseWriter = audioResponseWriter;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -68,7 +134,8 @@ public class StoryResource {
      * @param id the id of the story to save.
      * @param story the story to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated story,
-     * or with status {@code 400 (Bad Request)} if the story is not valid,
+     * or with status {@code 400 (Bad Request)} if the story is not valid or has no version,
+     * or with status {@code 409 (Conflict)} if the story was updated since its version was read,
      * or with status {@code 500 (Internal Server Error)} if the story couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
@@ -82,6 +149,9 @@ public class StoryResource {
         if (!Objects.equals(id, story.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        if (story.getVersion() == null) {
+            throw new BadRequestAlertException("A version is required", ENTITY_NAME, "versionnull");
+        }
 
         if (!storyRepository.existsById(id)) {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
@@ -133,26 +203,189 @@ public class StoryResource {
     /**
      * {@code GET  /stories} : get all the stories.
      *
+     * With {@code after}, the stories are sliced in id order from a cursor instead of paged: see {@link KeysetPagination}.
+     *
+     * @param pageable the pagination information; only its size applies to a slice.
      * @param eagerload flag to eager load entities from relationships (This is applicable for many-to-many).
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of stories in body.
+     * @param after the cursor of the previous slice, or empty for the first slice.
+     * @param count whether to count the stories of a slice; a page is always counted.
+     * @param webRequest the request, for the conditional headers.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of stories in body,
+     * or with status {@code 304 (Not Modified)} if no story changed, or with status {@code 400 (Bad Request)} if the cursor is invalid.
      */
     @GetMapping("/stories")
-    public List<Story> getAllStories(@RequestParam(required = false, defaultValue = "false") boolean eagerload) {
-        log.debug("REST request to get all Stories");
-        return storyService.findAll();
+    public ResponseEntity<List<StoryView>> getAllStories(
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(required = false, defaultValue = "false") boolean eagerload,
+        @RequestParam(required = false) String after,
+        @RequestParam(required = false, defaultValue = "false") boolean count,
+        WebRequest webRequest
+    ) {
+        log.debug("REST request to get a page of Stories");
+        Long afterId = after == null ? null : KeysetPagination.afterId(after, ENTITY_NAME);
+        EntityTag tag = storyService.findAllTag(eagerload);
+        if (webRequest.checkNotModified(tag.getETag(), tag.getLastModified())) {
+            return null;
+        }
+        if (afterId != null) {
+            Slice<StoryView> slice = storyService.findViewsAfter(afterId, pageable.getPageSize(), eagerload);
+            HttpHeaders headers = KeysetPagination.headers(
+                ServletUriComponentsBuilder.fromCurrentRequest(),
+                slice,
+                StoryView::getId,
+                count ? storyRepository.count() : null
+            );
+            return ConditionalResponses.ok(tag.getETag(), tag.getLastModified()).headers(headers).body(slice.getContent());
+        }
+        Page<StoryView> page = storyService.findAllViews(pageable, eagerload);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ConditionalResponses.ok(tag.getETag(), tag.getLastModified()).headers(headers).body(page.getContent());
+    }
+
+    /**
+     * {@code GET  /stories/export} : export all the stories with their elements, as one JSON object per line.
+     *
+     * The stories are streamed from the database to the response one at a time, so that memory use is the same
+     * whatever the size of the catalog.
+     *
+     * @param gzip whether to send the export as a gzip file rather than plain NDJSON.
+     * @param response the HTTP response the export is written to, with status {@code 200 (OK)}.
+     * @throws IOException if the export can't be written.
+     */
+    @GetMapping("/stories/export")
+    public void exportStories(@RequestParam(required = false, defaultValue = "false") boolean gzip, HttpServletResponse response)
+        throws IOException {
+        log.debug("REST request to export all Stories");
+        response.setContentType(gzip ? "application/gzip" : NDJSON.toString());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+        response.setHeader(
+            HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename(gzip ? "stories.ndjson.gz" : "stories.ndjson").build().toString()
+        );
+        OutputStream out = gzip ? new GZIPOutputStream(response.getOutputStream(), EXPORT_BUFFER_SIZE) : response.getOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // one document per line, rather than separated by spaces
+            generator.setRootValueSeparator(null);
+            storyService.exportViews(view -> {
+                try {
+                    generator.writeObject(view);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
     /**
      * {@code GET  /stories/:id} : get the "id" story.
      *
+     * The body is the story JSON as cached until the story or one of its elements changes, written without serializing it again.
+     *
+     * Its entity tag is the hash of that JSON, so a current client copy is confirmed without querying the database.
+     *
      * @param id the id of the story to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the story, or with status {@code 404 (Not Found)}.
+     * @param webRequest the request, for the conditional headers.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the story, or with status
+     * {@code 304 (Not Modified)}, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/stories/{id}")
-    public ResponseEntity<Story> getStory(@PathVariable Long id) {
+    public ResponseEntity<byte[]> getStory(@PathVariable Long id, WebRequest webRequest) {
         log.debug("REST request to get Story : {}", id);
-        Optional<Story> story = storyService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(story);
+        StoryJson json = storyService.findViewJson(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (webRequest.checkNotModified(json.getETag(), json.getLastModified())) {
+            return null;
+        }
+        return ConditionalResponses.ok(json.getETag(), json.getLastModified()).contentType(MediaType.APPLICATION_JSON).body(json.getBytes());
+    }
+
+    /**
+     * {@code GET  /stories/:id/audio} : stream the audio of all the elements of the "id" story, back to back.
+     *
+     * @param id the id of the story whose audio to stream.
+     * @param request the HTTP request, for the range and conditional headers.
+     * @param response the HTTP response the audio is written to, with status {@code 200 (OK)}, {@code 206 (Partial Content)},
+     * {@code 304 (Not Modified)} or {@code 416 (Range Not Satisfiable)}, or with status {@code 404 (Not Found)}.
+     * @throws IOException if an audio file can't be read.
+     */
+    @GetMapping("/stories/{id}/audio")
+    public void getStoryAudio(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.debug("REST request to get audio of Story : {}", id);
+        StoryAudio audio = storyAudioService.findStoryAudio(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        audioResponseWriter.write(audio, request, response);
+    }
+
+    /**
+     * {@code GET  /stories/:id/audio/segments} : get the segment index of the audio of the "id" story.
+     *
+     * @param id the id of the story.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the byte offsets and durations of the element audio
+     * in the story audio in body, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/stories/{id}/audio/segments")
+    public ResponseEntity<List<StoryAudioSegment>> getStoryAudioSegments(@PathVariable Long id) {
+        log.debug("REST request to get audio segments of Story : {}", id);
+        return ResponseUtil.wrapOrNotFound(storyAudioService.getIndex(id));
+    }
+
+    /**
+     * {@code GET  /stories/:id/audio/playlist.m3u8} : get the audio of the "id" story as an HLS media playlist.
+     *
+     * @param id the id of the story.
+     * @param webRequest the request, for the conditional headers.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the playlist in body, or with status
+     * {@code 304 (Not Modified)}, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/stories/{id}/audio/playlist.m3u8")
+    public ResponseEntity<String> getStoryAudioPlaylist(@PathVariable Long id, WebRequest webRequest) {
+        log.debug("REST request to get audio playlist of Story : {}", id);
+        StoryPlaylist playlist = storyPlaylistService.findPlaylist(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (webRequest.checkNotModified(playlist.getETag())) {
+            return null;
+        }
+        StringBuilder body = new StringBuilder()
+            .append("#EXTM3U\n")
+            .append("#EXT-X-VERSION:3\n")
+            .append("#EXT-X-PLAYLIST-TYPE:VOD\n")
+            .append("#EXT-X-TARGETDURATION:")
+            .append(Math.max(1, playlist.getTargetDuration()))
+            .append('\n')
+            .append("#EXT-X-MEDIA-SEQUENCE:0\n");
+        for (StoryPlaylist.Segment segment : playlist.getSegments()) {
+            if (segment.isDiscontinuity()) {
+                body.append("#EXT-X-DISCONTINUITY\n");
+            }
+            body.append(String.format(Locale.ROOT, "#EXTINF:%.3f,\n", segment.getDuration()));
+            body.append("hls/").append(segment.getName()).append('\n');
+        }
+        body.append("#EXT-X-ENDLIST\n");
+        return ResponseEntity.ok().contentType(MPEG_URL).cacheControl(CacheControl.noCache()).eTag(playlist.getETag()).body(body.toString());
+    }
+
+    /**
+     * {@code GET  /stories/:id/audio/hls/:name} : stream a segment of the audio playlist of the "id" story.
+     *
+     * @param id the id of the story.
+     * @param name the name of the segment, as listed in the playlist.
+     * @param request the HTTP request, for the range and conditional headers.
+     * @param response the HTTP response the segment is written to, or with status {@code 404 (Not Found)}.
+     * @throws IOException if the segment can't be read.
+     */
+    @GetMapping("/stories/{id}/audio/hls/{name:.+}")
+    public void getStoryAudioPlaylistSegment(
+        @PathVariable Long id,
+        @PathVariable String name,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) throws IOException {
+        log.debug("REST request to get audio segment {} of Story : {}", name, id);
+        StoryPlaylist.Segment segment = storyPlaylistService
+            .findSegment(id, name)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE);
+        audioSegmentCache.serve(segment, file -> audioResponseWriter.write(file, request, response));
     }
 
     /**
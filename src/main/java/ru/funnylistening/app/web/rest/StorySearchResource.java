@@ -0,0 +1,111 @@
+package ru.funnylistening.app.web.rest;
+
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import ru.funnylistening.app.service.StorySearch;
+import ru.funnylistening.app.service.TypeaheadIndex;
+import ru.funnylistening.app.service.dto.StorySearchHit;
+import ru.funnylistening.app.web.rest.errors.BadRequestAlertException;
+import tech.jhipster.web.util.PaginationUtil;
+
+/**
+ * REST controller for the full-text search of {@link ru.funnylistening.app.domain.Story}, by name and by the text of
+ * their elements, and for the completion of the words of a query as it is typed.
+ */
+@RestController
+@RequestMapping("/api")
+public class StorySearchResource {
+
+    private static final String ENTITY_NAME = "story";
+
+    /**
+     * The longest query searched; longer ones are rejected rather than truncated.
+     */
+    private static final int MAX_QUERY_LENGTH = 200;
+
+    /**
+     * The most completions, or similar hits, returned at once.
+     */
+    private static final int MAX_LIMIT = 50;
+
+    private final Logger log = LoggerFactory.getLogger(StorySearchResource.class);
+
+    private final StorySearch storySearch;
+
+    private final TypeaheadIndex typeaheadIndex;
+
+    public StorySearchResource(StorySearch storySearch, TypeaheadIndex typeaheadIndex) {
+        this.storySearch = storySearch;
+        this.typeaheadIndex = typeaheadIndex;
+    }
+
+    /**
+     * {@code GET  /stories/search?query=} : search the stories, best ranked first.
+     *
+     * @param query the query, in the web search syntax.
+     * @param pageable the pagination information.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of hits in body, or with status
+     * {@code 400 (Bad Request)} if the query is blank or too long.
+     */
+    @GetMapping("/stories/search")
+    public ResponseEntity<List<StorySearchHit>> searchStories(
+        @RequestParam String query,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable
+    ) {
+        log.debug("REST request to search Stories : {}", query);
+        if (query.isBlank() || query.length() > MAX_QUERY_LENGTH) {
+            throw new BadRequestAlertException("Invalid search query", ENTITY_NAME, "queryinvalid");
+        }
+        Page<StorySearchHit> page = storySearch.search(query, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
+    /**
+     * {@code GET  /stories/search/similar?query=} : search the stories with words similar to those of a query, however
+     * misspelled, the most similar first.
+     *
+     * @param query the query words.
+     * @param limit the most hits.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of hits in body, or with status
+     * {@code 400 (Bad Request)} if the query is blank or too long, or the limit is out of range.
+     */
+    @GetMapping("/stories/search/similar")
+    public ResponseEntity<List<StorySearchHit>> searchSimilarStories(
+        @RequestParam String query,
+        @RequestParam(defaultValue = "10") int limit
+    ) {
+        log.debug("REST request to search Stories similar to : {}", query);
+        if (query.isBlank() || query.length() > MAX_QUERY_LENGTH) {
+            throw new BadRequestAlertException("Invalid search query", ENTITY_NAME, "queryinvalid");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new BadRequestAlertException("Invalid hit limit", ENTITY_NAME, "limitinvalid");
+        }
+        return ResponseEntity.ok(storySearch.searchSimilar(query, limit));
+    }
+
+    /**
+     * {@code GET  /stories/typeahead?prefix=} : complete the last word of a query being typed, from the words of the
+     * story names and element texts, without any database access.
+     *
+     * @param prefix the query being typed.
+     * @param limit the most completions.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the completions in body, most frequent first,
+     * or with status {@code 400 (Bad Request)} if the limit is out of range.
+     */
+    @GetMapping("/stories/typeahead")
+    public ResponseEntity<List<String>> completeStories(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new BadRequestAlertException("Invalid completion limit", ENTITY_NAME, "limitinvalid");
+        }
+        return ResponseEntity.ok(typeaheadIndex.complete(prefix, limit));
+    }
+}
@@ -37,7 +37,7 @@ export const ElementDetail = () => {
           </dt>
           <dd>{elementEntity.elementAudioPath}</dd>
           <dt>Entire Story</dt>
-          <dd>{elementEntity.entireStory ? elementEntity.entireStory.id : ''}</dd>
+          <dd>{elementEntity.entireStoryId ? elementEntity.entireStoryId : ''}</dd>
         </dl>
         <Button tag={Link} to="/element" replace color="info" data-cy="entityDetailsBackButton">
           <FontAwesomeIcon icon="arrow-left" /> <span className="d-none d-md-inline">Back</span>
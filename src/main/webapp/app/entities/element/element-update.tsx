@@ -66,7 +66,7 @@ export const ElementUpdate = () => {
       ? {}
       : {
           ...elementEntity,
-          entireStory: elementEntity?.entireStory?.id,
+          entireStory: elementEntity?.entireStoryId,
         };
 
   return (
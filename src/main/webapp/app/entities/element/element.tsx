@@ -63,7 +63,7 @@ export const Element = () => {
                   </td>
                   <td>{element.elementText}</td>
                   <td>{element.elementAudioPath}</td>
-                  <td>{element.entireStory ? <Link to={`/story/${element.entireStory.id}`}>{element.entireStory.id}</Link> : ''}</td>
+                  <td>{element.entireStoryId ? <Link to={`/story/${element.entireStoryId}`}>{element.entireStoryId}</Link> : ''}</td>
                   <td className="text-end">
                     <div className="btn-group flex-btn-group-container">
                       <Button tag={Link} to={`/element/${element.id}`} color="info" size="sm" data-cy="entityDetailsButton">
@@ -193,6 +193,11 @@ describe('Entities reducer tests', () => {
       expect(store.getActions()[1]).toMatchObject(expectedActions[1]);
     });
 
+    it('fetches the list with the elements of the stories', async () => {
+      await store.dispatch(getEntities({}));
+      expect((axios.get as sinon.SinonStub).getCall(0).args[0]).toContain('eagerload=true');
+    });
+
     it('dispatches FETCH_STORY actions', async () => {
       const expectedActions = [
         {
@@ -18,8 +18,9 @@ const apiUrl = 'api/stories';
 
 // Actions
 
+// the list shows the elements of the stories, which the API only projects when asked to
 export const getEntities = createAsyncThunk('story/fetch_entity_list', async ({ page, size, sort }: IQueryParams) => {
-  const requestUrl = `${apiUrl}?cacheBuster=${new Date().getTime()}`;
+  const requestUrl = `${apiUrl}?${sort ? `page=${page}&size=${size}&sort=${sort}&` : ''}eagerload=true&cacheBuster=${new Date().getTime()}`;
   return axios.get<IStory[]>(requestUrl);
 });
 
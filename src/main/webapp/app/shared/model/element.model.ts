@@ -5,6 +5,7 @@ export interface IElement {
   elementText?: string;
   elementAudioPath?: string | null;
   entireStory?: IStory | null;
+  entireStoryId?: number | null;
   stories?: IStory[] | null;
 }
 
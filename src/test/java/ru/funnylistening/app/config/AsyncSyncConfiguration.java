@@ -13,4 +13,24 @@ public class AsyncSyncConfiguration {
     public Executor taskExecutor() {
         return new SyncTaskExecutor();
     }
+
+    @Bean(name = "transcodingExecutor")
+    public Executor transcodingExecutor() {
+        return new SyncTaskExecutor();
+    }
+
+    @Bean(name = "peaksExecutor")
+    public Executor peaksExecutor() {
+        return new SyncTaskExecutor();
+    }
+
+    @Bean(name = "passwordHashingExecutor")
+    public Executor passwordHashingExecutor() {
+        return new SyncTaskExecutor();
+    }
+
+    @Bean(name = "mailExecutor")
+    public Executor mailExecutor() {
+        return new SyncTaskExecutor();
+    }
 }
@@ -0,0 +1,23 @@
+package ru.funnylistening.app.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import ru.funnylistening.app.web.rest.TestUtil;
+
+class AudioBlobTest {
+
+    @Test
+    void equalsVerifier() throws Exception {
+        TestUtil.equalsVerifier(AudioBlob.class);
+        AudioBlob audioBlob1 = new AudioBlob();
+        audioBlob1.setId(1L);
+        AudioBlob audioBlob2 = new AudioBlob();
+        audioBlob2.setId(audioBlob1.getId());
+        assertThat(audioBlob1).isEqualTo(audioBlob2);
+        audioBlob2.setId(2L);
+        assertThat(audioBlob1).isNotEqualTo(audioBlob2);
+        audioBlob1.setId(null);
+        assertThat(audioBlob1).isNotEqualTo(audioBlob2);
+    }
+}
@@ -0,0 +1,23 @@
+package ru.funnylistening.app.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import ru.funnylistening.app.web.rest.TestUtil;
+
+class AudioRenditionTest {
+
+    @Test
+    void equalsVerifier() throws Exception {
+        TestUtil.equalsVerifier(AudioRendition.class);
+        AudioRendition audioRendition1 = new AudioRendition();
+        audioRendition1.setId(1L);
+        AudioRendition audioRendition2 = new AudioRendition();
+        audioRendition2.setId(audioRendition1.getId());
+        assertThat(audioRendition1).isEqualTo(audioRendition2);
+        audioRendition2.setId(2L);
+        assertThat(audioRendition1).isNotEqualTo(audioRendition2);
+        audioRendition1.setId(null);
+        assertThat(audioRendition1).isNotEqualTo(audioRendition2);
+    }
+}
@@ -0,0 +1,23 @@
+package ru.funnylistening.app.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import ru.funnylistening.app.web.rest.TestUtil;
+
+class StoryAudioSegmentTest {
+
+    @Test
+    void equalsVerifier() throws Exception {
+        TestUtil.equalsVerifier(StoryAudioSegment.class);
+        StoryAudioSegment storyAudioSegment1 = new StoryAudioSegment();
+        storyAudioSegment1.setId(1L);
+        StoryAudioSegment storyAudioSegment2 = new StoryAudioSegment();
+        storyAudioSegment2.setId(storyAudioSegment1.getId());
+        assertThat(storyAudioSegment1).isEqualTo(storyAudioSegment2);
+        storyAudioSegment2.setId(2L);
+        assertThat(storyAudioSegment1).isNotEqualTo(storyAudioSegment2);
+        storyAudioSegment1.setId(null);
+        assertThat(storyAudioSegment1).isNotEqualTo(storyAudioSegment2);
+    }
+}
@@ -0,0 +1,226 @@
+package ru.funnylistening.app.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Version;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.funnylistening.app.IntegrationTest;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.Element;
+import ru.funnylistening.app.domain.Story;
+
+/**
+ * Integration tests for the id generation of the entities with a sequence of their own.
+ */
+@IntegrationTest
+class EntityIdGenerationIT {
+
+    private static final int BENCHMARK_THREADS = 4;
+
+    private static final int BENCHMARK_ROWS_PER_THREAD = 5000;
+
+    private static final int BENCHMARK_BATCH_SIZE = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(EntityIdGenerationIT.class);
+
+    @Autowired
+    private StoryRepository storyRepository;
+
+    @Autowired
+    private ElementRepository elementRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Test
+    @Transactional
+    void storyIdsAreTakenFromTheStorySequenceARangeAtATime() {
+        Story first = storyRepository.saveAndFlush(new Story().storyName("first"));
+        Story second = storyRepository.saveAndFlush(new Story().storyName("second"));
+
+        // the first value fetched by this context is the first id of its range, and the second id needs no round trip
+        long lastValue = jdbcTemplate.queryForObject("select last_value from story_sequence", Long.class);
+        assertThat(first.getId()).isEqualTo(lastValue);
+        assertThat(second.getId()).isEqualTo(first.getId() + 1);
+    }
+
+    /**
+     * Compares inserts per second of stories and elements saved through their repositories by concurrent writers,
+     * with ids taken from the shared {@code sequence_generator} as the entities were mapped before, then from their
+     * own pooled-lo sequences with the configured allocation size. Every insert is rolled back. Run with
+     * {@code -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkInsertsPerSecond() throws Exception {
+        // warm up the connections and the statement caches
+        insertsPerSecond(false);
+        insertsPerSecond(true);
+
+        double shared = insertsPerSecond(false);
+        double perEntity = insertsPerSecond(true);
+        log.info(
+            "Inserts/s with the shared sequence: {}, with per entity sequences of allocation size {}: {} ({}x)",
+            Math.round(shared),
+            applicationProperties.getId().getAllocationSize(),
+            Math.round(perEntity),
+            String.format("%.2f", perEntity / shared)
+        );
+        assertThat(perEntity).isPositive();
+    }
+
+    private double insertsPerSecond(boolean perEntitySequences) throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(BENCHMARK_THREADS);
+        List<Future<?>> writers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int thread = 0; thread < BENCHMARK_THREADS; thread++) {
+            boolean stories = thread % 2 == 0;
+            Runnable writer;
+            if (perEntitySequences && stories) {
+                writer = () -> saveAll(storyRepository, row -> new Story().storyName("benchmark " + row), Story::getId, ids);
+            } else if (perEntitySequences) {
+                writer = () -> saveAll(elementRepository, row -> new Element().elementText("benchmark " + row), Element::getId, ids);
+            } else if (stories) {
+                writer = () -> saveAll(repository(SharedSequenceStory.class), SharedSequenceStory::new, SharedSequenceStory::getId, ids);
+            } else {
+                writer =
+                    () -> saveAll(repository(SharedSequenceElement.class), SharedSequenceElement::new, SharedSequenceElement::getId, ids);
+            }
+            writers.add(executor.submit(writer));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        assertThat(ids).hasSize(BENCHMARK_THREADS * BENCHMARK_ROWS_PER_THREAD);
+        return BENCHMARK_THREADS * BENCHMARK_ROWS_PER_THREAD / (elapsed / 1e9);
+    }
+
+    private <T> JpaRepository<T, Long> repository(Class<T> entityClass) {
+        return new SimpleJpaRepository<>(entityClass, em);
+    }
+
+    private <T> void saveAll(JpaRepository<T, Long> repository, IntFunction<T> entity, Function<T, Long> id, Set<Long> ids) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (int row = 0; row < BENCHMARK_ROWS_PER_THREAD; row += BENCHMARK_BATCH_SIZE) {
+                List<T> batch = new ArrayList<>(BENCHMARK_BATCH_SIZE);
+                for (int i = row; i < row + BENCHMARK_BATCH_SIZE; i++) {
+                    batch.add(entity.apply(i));
+                }
+                repository.saveAll(batch).forEach(saved -> ids.add(id.apply(saved)));
+                repository.flush();
+                em.clear();
+            }
+            status.setRollbackOnly();
+        });
+    }
+
+    /**
+     * A story mapped as all the entities were before they had a sequence of their own.
+     */
+    @Entity
+    @Table(name = "story")
+    static class SharedSequenceStory {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+        @SequenceGenerator(name = "sequenceGenerator")
+        @Column(name = "id")
+        private Long id;
+
+        @Column(name = "story_name", nullable = false)
+        private String storyName;
+
+        @Version
+        @Column(name = "version", nullable = false)
+        private Long version;
+
+        @Column(name = "last_modified_date", nullable = false)
+        private Instant lastModifiedDate = Instant.now();
+
+        SharedSequenceStory() {}
+
+        SharedSequenceStory(int row) {
+            this.storyName = "benchmark " + row;
+        }
+
+        Long getId() {
+            return id;
+        }
+    }
+
+    /**
+     * An element mapped as all the entities were before they had a sequence of their own.
+     */
+    @Entity
+    @Table(name = "element")
+    static class SharedSequenceElement {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+        @SequenceGenerator(name = "sequenceGenerator")
+        @Column(name = "id")
+        private Long id;
+
+        @Column(name = "element_text", nullable = false)
+        private String elementText;
+
+        @Version
+        @Column(name = "version", nullable = false)
+        private Long version;
+
+        @Column(name = "last_modified_date", nullable = false)
+        private Instant lastModifiedDate = Instant.now();
+
+        SharedSequenceElement() {}
+
+        SharedSequenceElement(int row) {
+            this.elementText = "benchmark " + row;
+        }
+
+        Long getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ru.funnylistening.app.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import ru.funnylistening.app.IntegrationTest;
+import ru.funnylistening.app.domain.Element;
+import ru.funnylistening.app.domain.Story;
+
+/**
+ * Integration tests for the loading of the bag relationships of stories by {@link StoryBagRelationshipLoader}.
+ */
+@IntegrationTest
+class StoryBagRelationshipLoaderIT {
+
+    @Autowired
+    private StoryRepository storyRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    private Story createStory(String name) {
+        Element first = new Element().elementText(name + " first");
+        Element second = new Element().elementText(name + " second");
+        Element entire = new Element().elementText(name + " entire");
+        em.persist(first);
+        em.persist(second);
+        Story story = new Story().storyName(name).addElements(first).addElements(second);
+        em.persist(story);
+        em.persist(entire.entireStory(story));
+        return story;
+    }
+
+    @Test
+    @Transactional
+    void testBagsAreLoadedOnManagedStories() {
+        Long id = createStory("loaded").getId();
+        em.flush();
+        em.clear();
+
+        Story story = storyRepository.findOneWithEagerRelationships(id).orElseThrow();
+
+        assertThat(em.contains(story)).isTrue();
+        assertThat(Hibernate.isInitialized(story.getElements())).isTrue();
+        assertThat(Hibernate.isInitialized(story.getEntireStoryElements())).isTrue();
+        assertThat(story.getElements()).extracting(Element::getElementText).containsExactly("loaded first", "loaded second");
+        assertThat(story.getEntireStoryElements()).extracting(Element::getElementText).containsExactly("loaded entire");
+    }
+
+    @Test
+    @Transactional
+    void testChangesToLoadedStoriesAreFlushed() {
+        Long id = createStory("changed").getId();
+        em.flush();
+        em.clear();
+
+        Story story = storyRepository.findOneWithEagerRelationships(id).orElseThrow();
+        story.setStoryName("changed again");
+        story.removeElements(story.getElements().iterator().next());
+        em.flush();
+        em.clear();
+
+        Story reloaded = storyRepository.findOneWithEagerRelationships(id).orElseThrow();
+        assertThat(reloaded.getStoryName()).isEqualTo("changed again");
+        // the elements following a removed one move up
+        assertThat(reloaded.getElements()).extracting(Element::getElementText).containsExactly("changed second");
+    }
+}
@@ -0,0 +1,110 @@
+package ru.funnylistening.app.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+class BoundedPasswordEncoderTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private MeterRegistry meterRegistry;
+
+    private ThreadPoolTaskExecutor executor;
+
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.initialize();
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+        PasswordEncoder blocking = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                if ("block".contentEquals(rawPassword)) {
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return bcrypt.encode(rawPassword);
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return bcrypt.matches(rawPassword, encodedPassword);
+            }
+
+            @Override
+            public boolean upgradeEncoding(String encodedPassword) {
+                return bcrypt.upgradeEncoding(encodedPassword);
+            }
+        };
+        passwordEncoder = new BoundedPasswordEncoder(blocking, executor, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void testEncodeAndMatchesAreTimed() {
+        String encoded = passwordEncoder.encode("test");
+
+        assertThat(passwordEncoder.matches("test", encoded)).isTrue();
+        assertThat(passwordEncoder.matches("other", encoded)).isFalse();
+        assertThat(meterRegistry.get(BoundedPasswordEncoder.HASH_METER_NAME).tag("operation", "encode").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(BoundedPasswordEncoder.HASH_METER_NAME).tag("operation", "matches").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get(BoundedPasswordEncoder.QUEUE_WAIT_METER_NAME).timer().count()).isEqualTo(3);
+        assertThat(meterRegistry.get(BoundedPasswordEncoder.QUEUED_METER_NAME).gauge().value()).isZero();
+    }
+
+    @Test
+    void testPasswordsBeyondTheQueueAreRejected() throws Exception {
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> passwordEncoder.encode("block"));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> waiting = CompletableFuture.supplyAsync(() -> passwordEncoder.encode("test"));
+        while (executor.getThreadPoolExecutor().getQueue().isEmpty()) {
+            Thread.onSpinWait();
+        }
+
+        assertThat(meterRegistry.get(BoundedPasswordEncoder.QUEUED_METER_NAME).gauge().value()).isEqualTo(1);
+        assertThatThrownBy(() -> passwordEncoder.encode("test")).isInstanceOf(PasswordHashingRejectedException.class);
+        assertThat(meterRegistry.get(BoundedPasswordEncoder.REJECTED_METER_NAME).counter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(passwordEncoder.matches("block", running.get(10, TimeUnit.SECONDS))).isTrue();
+        assertThat(passwordEncoder.matches("test", waiting.get(10, TimeUnit.SECONDS))).isTrue();
+        assertThat(meterRegistry.get(BoundedPasswordEncoder.QUEUED_METER_NAME).gauge().value()).isZero();
+    }
+
+    @Test
+    void testWeakerHashesAreUpgraded() {
+        BoundedPasswordEncoder strongerEncoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(5), executor, new SimpleMeterRegistry());
+
+        assertThat(strongerEncoder.upgradeEncoding(passwordEncoder.encode("test"))).isTrue();
+        assertThat(strongerEncoder.upgradeEncoding(strongerEncoder.encode("test"))).isFalse();
+    }
+}
@@ -0,0 +1,42 @@
+package ru.funnylistening.app.security.jwt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import ru.funnylistening.app.security.AuthoritiesConstants;
+
+class AuthorityRegistryTest {
+
+    private final AuthorityRegistry authorityRegistry = new AuthorityRegistry();
+
+    @Test
+    void testClaimIsParsedInOrder() {
+        List<GrantedAuthority> authorities = authorityRegistry.get(" ROLE_B,,ROLE_A ,");
+
+        assertThat(authorities).containsExactly(new SimpleGrantedAuthority("ROLE_B"), new SimpleGrantedAuthority("ROLE_A"));
+        assertThat(authorityRegistry.get("")).isEmpty();
+    }
+
+    @Test
+    void testSameClaimGetsTheSameImmutableAuthorities() {
+        List<GrantedAuthority> authorities = authorityRegistry.get(AuthoritiesConstants.ADMIN + "," + AuthoritiesConstants.USER);
+
+        assertThat(authorityRegistry.get(new String(AuthoritiesConstants.ADMIN + "," + AuthoritiesConstants.USER))).isSameAs(authorities);
+        assertThat(authorityRegistry.get(AuthoritiesConstants.USER + "," + AuthoritiesConstants.ADMIN).get(1)).isSameAs(authorities.get(0));
+        assertThatThrownBy(() -> authorities.add(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS)))
+            .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void testRegistryStaysBounded() {
+        for (int i = 0; i < 2 * AuthorityRegistry.MAX_SIZE; i++) {
+            assertThat(authorityRegistry.get("ROLE_" + i)).containsExactly(new SimpleGrantedAuthority("ROLE_" + i));
+        }
+
+        assertThat(authorityRegistry.size()).isEqualTo(AuthorityRegistry.MAX_SIZE);
+    }
+}
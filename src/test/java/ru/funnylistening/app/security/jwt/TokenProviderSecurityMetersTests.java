@@ -20,6 +20,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.util.ReflectionTestUtils;
+import ru.funnylistening.app.config.ApplicationProperties;
 import ru.funnylistening.app.management.SecurityMetersService;
 import ru.funnylistening.app.security.AuthoritiesConstants;
 import tech.jhipster.config.JHipsterProperties;
@@ -28,6 +29,7 @@ class TokenProviderSecurityMetersTests {
 
     private static final long ONE_MINUTE = 60000;
     private static final String INVALID_TOKENS_METER_EXPECTED_NAME = "security.authentication.invalid-tokens";
+    private static final String TOKEN_CACHE_METER_EXPECTED_NAME = "security.authentication.token-cache.requests";
 
     private MeterRegistry meterRegistry;
 
@@ -43,7 +45,7 @@ class TokenProviderSecurityMetersTests {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(meterRegistry);
 
-        tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(), securityMetersService);
         Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret));
 
         ReflectionTestUtils.setField(tokenProvider, "key", key);
@@ -107,6 +109,32 @@ class TokenProviderSecurityMetersTests {
         assertThat(meterRegistry.get(INVALID_TOKENS_METER_EXPECTED_NAME).tag("cause", "malformed").counter().count()).isEqualTo(1);
     }
 
+    @Test
+    void testTokenCacheHitAndMissCount() {
+        assertThat(meterRegistry.get(TOKEN_CACHE_METER_EXPECTED_NAME).tag("result", "miss").counter().count()).isZero();
+        assertThat(meterRegistry.get(TOKEN_CACHE_METER_EXPECTED_NAME).tag("result", "hit").counter().count()).isZero();
+
+        String validToken = createValidToken();
+
+        tokenProvider.authenticate(validToken);
+        tokenProvider.authenticate(validToken);
+        tokenProvider.authenticate(validToken);
+
+        assertThat(meterRegistry.get(TOKEN_CACHE_METER_EXPECTED_NAME).tag("result", "miss").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(TOKEN_CACHE_METER_EXPECTED_NAME).tag("result", "hit").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void testInvalidTokenIsNotCached() {
+        String malformedToken = createMalformedToken();
+
+        tokenProvider.authenticate(malformedToken);
+        tokenProvider.authenticate(malformedToken);
+
+        assertThat(meterRegistry.get(INVALID_TOKENS_METER_EXPECTED_NAME).tag("cause", "malformed").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get(TOKEN_CACHE_METER_EXPECTED_NAME).tag("result", "miss").counter().count()).isZero();
+    }
+
     private String createValidToken() {
         Authentication authentication = createAuthentication();
 
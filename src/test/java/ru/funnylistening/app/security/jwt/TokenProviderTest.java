@@ -2,21 +2,32 @@ package ru.funnylistening.app.security.jwt;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.test.util.ReflectionTestUtils;
+import ru.funnylistening.app.config.ApplicationProperties;
 import ru.funnylistening.app.management.SecurityMetersService;
 import ru.funnylistening.app.security.AuthoritiesConstants;
 import tech.jhipster.config.JHipsterProperties;
@@ -25,6 +36,10 @@ class TokenProviderTest {
 
     private static final long ONE_MINUTE = 60000;
 
+    private static final int BENCHMARK_REQUESTS = 100_000;
+
+    private final Logger log = LoggerFactory.getLogger(TokenProviderTest.class);
+
     private Key key;
     private TokenProvider tokenProvider;
 
@@ -36,7 +51,7 @@ class TokenProviderTest {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(new SimpleMeterRegistry());
 
-        tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(), securityMetersService);
         key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret));
 
         ReflectionTestUtils.setField(tokenProvider, "key", key);
@@ -88,6 +103,175 @@ class TokenProviderTest {
         assertThat(isTokenValid).isFalse();
     }
 
+    @Test
+    void testAuthenticateReturnsTheAuthenticationOfTheToken() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        Authentication first = tokenProvider.authenticate(token).orElseThrow();
+        Authentication second = tokenProvider.authenticate(token).orElseThrow();
+
+        assertThat(first.getName()).isEqualTo("anonymous");
+        assertThat(first.getCredentials()).isEqualTo(token);
+        assertThat(first.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly(AuthoritiesConstants.ANONYMOUS);
+        assertThat(second.getPrincipal()).isSameAs(first.getPrincipal());
+        assertThat(second.getAuthorities()).isEqualTo(first.getAuthorities());
+    }
+
+    @Test
+    void testAuthenticateReturnsEmptyWhenJWTisInvalid() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(tokenProvider.authenticate(token.substring(1))).isEmpty();
+        assertThat(tokenProvider.authenticate(createTokenWithDifferentSignature())).isEmpty();
+    }
+
+    @Test
+    void testAuthenticateParsesEveryTimeWhenTheCacheIsDisabled() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSecurity().setTokenCacheSize(0);
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties
+            .getSecurity()
+            .getAuthentication()
+            .getJwt()
+            .setBase64Secret("fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8");
+        TokenProvider tokenProvider = new TokenProvider(
+            jHipsterProperties,
+            applicationProperties,
+            new SecurityMetersService(new SimpleMeterRegistry())
+        );
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        Authentication first = tokenProvider.authenticate(token).orElseThrow();
+        Authentication second = tokenProvider.authenticate(token).orElseThrow();
+
+        assertThat(second.getPrincipal()).isNotSameAs(first.getPrincipal()).isEqualTo(first.getPrincipal());
+    }
+
+    @Test
+    void testTokenCacheDoesNotServeExpiredTokens() {
+        TokenAuthenticationCache cache = new TokenAuthenticationCache(10);
+        ByteBuffer key = TokenAuthenticationCache.key("token");
+        TokenPrincipal principal = new TokenPrincipal("anonymous", List.of());
+
+        cache.put(key, principal, 1000, 0);
+
+        assertThat(cache.get(key, 999)).isSameAs(principal);
+        assertThat(cache.get(key, 1000)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void testTokenCacheStaysBounded() {
+        TokenAuthenticationCache cache = new TokenAuthenticationCache(32);
+        TokenPrincipal principal = new TokenPrincipal("anonymous", List.of());
+
+        cache.put(TokenAuthenticationCache.key("expired"), principal, 1000, 0);
+        for (int i = 0; i < 100; i++) {
+            cache.put(TokenAuthenticationCache.key("token" + i), principal, 2000, 1000);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(32);
+        assertThat(cache.get(TokenAuthenticationCache.key("token99"), 1000)).isSameAs(principal);
+    }
+
+    /**
+     * Compares the time per request of validating then parsing the token again to get its authentication, as was
+     * done, with authenticating it from the cache of validated tokens. Run with {@code -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkAuthenticationPerRequest() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        // warm up both paths
+        nanosPerRequest(token, false);
+        nanosPerRequest(token, true);
+
+        double uncached = nanosPerRequest(token, false);
+        double cached = nanosPerRequest(token, true);
+        log.info(
+            "Authentication per request: {} ns validating and parsing the token, {} ns from the cache ({}x)",
+            Math.round(uncached),
+            Math.round(cached),
+            String.format("%.1f", uncached / cached)
+        );
+        assertThat(cached).isLessThan(uncached);
+    }
+
+    private double nanosPerRequest(String token, boolean cached) {
+        Set<Object> principals = new HashSet<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_REQUESTS; i++) {
+            Authentication authentication = cached
+                ? tokenProvider.authenticate(token).orElseThrow()
+                : tokenProvider.validateToken(token) ? tokenProvider.getAuthentication(token) : null;
+            principals.add(authentication.getPrincipal());
+        }
+        long elapsed = System.nanoTime() - start;
+        assertThat(principals).isNotEmpty();
+        return (double) elapsed / BENCHMARK_REQUESTS;
+    }
+
+    @Test
+    void testTokensWithTheSameAuthoritiesShareThem() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        String otherToken = tokenProvider.createToken(createAuthentication(), true);
+
+        Authentication authentication = tokenProvider.getAuthentication(token);
+        Authentication otherAuthentication = tokenProvider.getAuthentication(otherToken);
+
+        assertThat(otherAuthentication.getAuthorities()).isSameAs(authentication.getAuthorities());
+        assertThat(((UserDetails) otherAuthentication.getPrincipal()).getAuthorities()).isSameAs(authentication.getAuthorities());
+    }
+
+    /**
+     * Measures the bytes allocated per request to build the authentication of parsed claims, splitting the
+     * {@code auth} claim into new authorities copied by the principal and the authentication, as was done, and with the
+     * authorities of the claim shared from the registry, as a JMH run with {@code -prof gc} would. Run with
+     * {@code -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkAllocationPerRequest() {
+        String token = tokenProvider.createToken(createAdminAuthentication(), false);
+        Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+        // warm up both paths
+        bytesPerRequest(() -> splitAuthentication(claims, token));
+        bytesPerRequest(() -> tokenProvider.getAuthentication(claims, token));
+
+        double split = bytesPerRequest(() -> splitAuthentication(claims, token));
+        double shared = bytesPerRequest(() -> tokenProvider.getAuthentication(claims, token));
+        log.info(
+            "Allocation per request: {} B splitting the auth claim, {} B sharing its authorities",
+            Math.round(split),
+            Math.round(shared)
+        );
+        assertThat(shared).isLessThan(split);
+    }
+
+    private static Authentication splitAuthentication(Claims claims, String token) {
+        Collection<? extends GrantedAuthority> authorities = Arrays
+            .stream(claims.get("auth").toString().split(","))
+            .filter(auth -> !auth.trim().isEmpty())
+            .map(SimpleGrantedAuthority::new)
+            .collect(Collectors.toList());
+        User principal = new User(claims.getSubject(), "", authorities);
+        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    }
+
+    private double bytesPerRequest(Supplier<Authentication> authentication) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Set<Object> principals = new HashSet<>();
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < BENCHMARK_REQUESTS; i++) {
+            principals.add(authentication.get().getPrincipal());
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - start;
+        assertThat(principals).isNotEmpty();
+        return (double) allocated / BENCHMARK_REQUESTS;
+    }
+
     @Test
     void testKeyIsSetFromSecretWhenSecretIsNotEmpty() {
         final String secret = "NwskoUmKHZtzGRKJKVjsJF7BtQMMxNWi";
@@ -96,7 +280,7 @@ class TokenProviderTest {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(new SimpleMeterRegistry());
 
-        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(), securityMetersService);
 
         Key key = (Key) ReflectionTestUtils.getField(tokenProvider, "key");
         assertThat(key).isNotNull().isEqualTo(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)));
@@ -110,7 +294,7 @@ class TokenProviderTest {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(new SimpleMeterRegistry());
 
-        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(), securityMetersService);
 
         Key key = (Key) ReflectionTestUtils.getField(tokenProvider, "key");
         assertThat(key).isNotNull().isEqualTo(Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret)));
@@ -122,6 +306,14 @@ class TokenProviderTest {
         return new UsernamePasswordAuthenticationToken("anonymous", "anonymous", authorities);
     }
 
+    private Authentication createAdminAuthentication() {
+        return new UsernamePasswordAuthenticationToken(
+            "admin",
+            "admin",
+            List.of(new SimpleGrantedAuthority(AuthoritiesConstants.ADMIN), new SimpleGrantedAuthority(AuthoritiesConstants.USER))
+        );
+    }
+
     private String createUnsupportedToken() {
         return Jwts.builder().setPayload("payload").signWith(key, SignatureAlgorithm.HS512).compact();
     }
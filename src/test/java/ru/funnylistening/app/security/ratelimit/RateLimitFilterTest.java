@@ -0,0 +1,263 @@
+package ru.funnylistening.app.security.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+import ru.funnylistening.app.config.ApplicationProperties;
+
+class RateLimitFilterTest {
+
+    private static final int BENCHMARK_REQUESTS = 1_000_000;
+
+    private final Logger log = LoggerFactory.getLogger(RateLimitFilterTest.class);
+
+    private ApplicationProperties.Security.RateLimit properties;
+
+    private RateLimitFilter rateLimitFilter;
+
+    @BeforeEach
+    public void setup() {
+        properties = new ApplicationProperties.Security.RateLimit();
+        ApplicationProperties.Security.RateLimit.Endpoint authenticate = new ApplicationProperties.Security.RateLimit.Endpoint();
+        authenticate.setPath("/api/authenticate");
+        authenticate.setLoginField("username");
+        authenticate.getPerIp().setCapacity(10);
+        authenticate.getPerIp().setRefillPerMinute(10);
+        authenticate.getPerLogin().setCapacity(2);
+        authenticate.getPerLogin().setRefillPerMinute(1);
+        properties.getEndpoints().put("authenticate", authenticate);
+        ApplicationProperties.Security.RateLimit.Endpoint resetPasswordInit = new ApplicationProperties.Security.RateLimit.Endpoint();
+        resetPasswordInit.setPath("/api/account/reset-password/init");
+        resetPasswordInit.getPerIp().setCapacity(1);
+        resetPasswordInit.getPerIp().setRefillPerMinute(1);
+        properties.getEndpoints().put("reset-password-init", resetPasswordInit);
+        rateLimitFilter = new RateLimitFilter(new RateLimiter(properties, new SimpleMeterRegistry(), System::nanoTime));
+    }
+
+    @Test
+    void testRequestsBeyondTheLimitOfTheLoginAreRefused() throws Exception {
+        assertThat(authenticate("10.0.0.1", "{\"username\":\"Admin\",\"password\":\"admin\"}").getStatus())
+            .isEqualTo(HttpStatus.OK.value());
+        assertThat(authenticate("10.0.0.2", "{\"password\":\"admin\",\"username\":\"admin\"}").getStatus())
+            .isEqualTo(HttpStatus.OK.value());
+
+        MockHttpServletResponse response = authenticate("10.0.0.3", "{\"username\":\"admin\",\"password\":\"admin\"}");
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("60");
+        assertThat(authenticate("10.0.0.3", "{\"username\":\"user\",\"password\":\"user\"}").getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void testBodyIsReplayedToTheEndpoint() throws Exception {
+        String body = "{\"rememberMe\":true,\"username\":\"admin\",\"password\":\"admin\"}";
+        MockHttpServletRequest request = request("/api/authenticate", "10.0.0.1", body);
+        MockFilterChain filterChain = new MockFilterChain();
+
+        rateLimitFilter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertThat(StreamUtils.copyToString(filterChain.getRequest().getInputStream(), StandardCharsets.UTF_8)).isEqualTo(body);
+    }
+
+    @Test
+    void testLoginIsReadFromAChunkedBody() throws Exception {
+        String body = "{\"username\":\"admin\",\"password\":\"admin\"}";
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            rateLimitFilter.doFilter(chunkedRequest("/api/authenticate", "10.0.0." + i, body), response, new MockFilterChain());
+            assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        }
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(chunkedRequest("/api/authenticate", "10.0.0.3", body), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    @Test
+    void testLargerBodiesAreRefused() throws Exception {
+        String body = "{\"username\":\"admin\",\"password\":\"admin\"" + " ".repeat(RateLimitFilter.MAX_BODY_SIZE) + "}";
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain filterChain = new MockFilterChain();
+
+        rateLimitFilter.doFilter(chunkedRequest("/api/authenticate", "10.0.0.1", body), response, filterChain);
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE.value());
+        assertThat(filterChain.getRequest()).isNull();
+
+        response = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(request("/api/authenticate", "10.0.0.1", body), response, new MockFilterChain());
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE.value());
+    }
+
+    @Test
+    void testBodiesWithoutALoginShareTheLimitOfTheUnknownLogin() throws Exception {
+        assertThat(authenticate("10.0.0.1", "{\"password\":\"admin\"}").getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(authenticate("10.0.0.2", "not json").getStatus()).isEqualTo(HttpStatus.OK.value());
+
+        assertThat(authenticate("10.0.0.3", "{\"username\":1}").getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(authenticate("10.0.0.3", "{\"username\":\"admin\",\"password\":\"admin\"}").getStatus())
+            .isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void testReadListenerIsNotifiedOfTheReplayedBody() throws Exception {
+        String body = "{\"username\":\"admin\",\"password\":\"admin\"}";
+        MockFilterChain filterChain = new MockFilterChain();
+        rateLimitFilter.doFilter(request("/api/authenticate", "10.0.0.1", body), new MockHttpServletResponse(), filterChain);
+        ServletInputStream input = filterChain.getRequest().getInputStream();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        AtomicBoolean allDataRead = new AtomicBoolean();
+
+        input.setReadListener(
+            new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    byte[] buffer = new byte[16];
+                    while (input.isReady() && !input.isFinished()) {
+                        int length = input.read(buffer);
+                        if (length > 0) {
+                            read.write(buffer, 0, length);
+                        }
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    allDataRead.set(true);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    throw new AssertionError(t);
+                }
+            }
+        );
+
+        assertThat(read.toString(StandardCharsets.UTF_8)).isEqualTo(body);
+        assertThat(allDataRead).isTrue();
+    }
+
+    @Test
+    void testOtherRequestsAreNotLimited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = request("/api/account/reset-password/finish", "10.0.0.1", "{}");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            rateLimitFilter.doFilter(request, response, new MockFilterChain());
+            assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        }
+        MockHttpServletRequest get = request("/api/account/reset-password/init", "10.0.0.1", "");
+        get.setMethod("GET");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(get, response, new MockFilterChain());
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void testRequestsBeyondTheLimitOfTheClientAreRefused() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(request("/api/account/reset-password/init", "10.0.0.1", "a@example.com"), response, new MockFilterChain());
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+
+        response = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(request("/api/account/reset-password/init", "10.0.0.1", "b@example.com"), response, new MockFilterChain());
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    @Test
+    void testLoginIsReadFromTheBody() {
+        byte[] json = "{\"password\":{\"nested\":[1]},\"username\":\" Admin \"}".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(RateLimitFilter.readLogin(json, "username")).isEqualTo("admin");
+        assertThat(RateLimitFilter.readLogin(json, "login")).isNull();
+        assertThat(RateLimitFilter.readLogin("not json".getBytes(StandardCharsets.UTF_8), "username")).isNull();
+        assertThat(RateLimitFilter.readLogin("User@Example.com".getBytes(StandardCharsets.UTF_8), "")).isEqualTo("user@example.com");
+    }
+
+    /**
+     * Measures the time per request taken by the filter on an allowed request, spread over many clients, which should
+     * be under a microsecond. Run with {@code -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkOverheadPerRequest() throws Exception {
+        ApplicationProperties.Security.RateLimit.Endpoint authenticate = properties.getEndpoints().get("authenticate");
+        authenticate.getPerIp().setCapacity(Integer.MAX_VALUE);
+        authenticate.getPerIp().setRefillPerMinute(Integer.MAX_VALUE);
+        RateLimiter rateLimiter = new RateLimiter(properties, new SimpleMeterRegistry(), System::nanoTime);
+        RateLimiter.Endpoint endpoint = rateLimiter.findEndpoint("/api/authenticate");
+        String[] clients = new String[1024];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = "10.0." + (i / 256) + "." + (i % 256);
+        }
+        // warm up
+        nanosPerRequest(rateLimiter, endpoint, clients);
+
+        double nanos = nanosPerRequest(rateLimiter, endpoint, clients);
+        log.info("Rate limit overhead per request: {} ns", String.format("%.1f", nanos));
+        assertThat(nanos).isLessThan(1000);
+    }
+
+    private double nanosPerRequest(RateLimiter rateLimiter, RateLimiter.Endpoint endpoint, String[] clients) {
+        long start = System.nanoTime();
+        long waits = 0;
+        for (int i = 0; i < BENCHMARK_REQUESTS; i++) {
+            if (rateLimiter.findEndpoint("/api/authenticate") == endpoint) {
+                waits += rateLimiter.acquire(endpoint, clients[i & (clients.length - 1)], null);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        assertThat(waits).isZero();
+        return (double) elapsed / BENCHMARK_REQUESTS;
+    }
+
+    private MockHttpServletResponse authenticate(String ip, String body) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(request("/api/authenticate", ip, body), response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest chunkedRequest(String uri, String ip, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri) {
+            @Override
+            public int getContentLength() {
+                return -1;
+            }
+
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.setRemoteAddr(ip);
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private static MockHttpServletRequest request(String uri, String ip, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.setRemoteAddr(ip);
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
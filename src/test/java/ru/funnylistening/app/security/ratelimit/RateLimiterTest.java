@@ -0,0 +1,135 @@
+package ru.funnylistening.app.security.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.funnylistening.app.config.ApplicationProperties;
+
+class RateLimiterTest {
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(1000 * ONE_SECOND);
+
+    private ApplicationProperties.Security.RateLimit properties;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        properties = new ApplicationProperties.Security.RateLimit();
+        ApplicationProperties.Security.RateLimit.Endpoint authenticate = new ApplicationProperties.Security.RateLimit.Endpoint();
+        authenticate.setPath("/api/authenticate");
+        authenticate.setLoginField("username");
+        authenticate.getPerIp().setCapacity(3);
+        authenticate.getPerIp().setRefillPerMinute(60);
+        authenticate.getPerLogin().setCapacity(2);
+        authenticate.getPerLogin().setRefillPerMinute(30);
+        properties.getEndpoints().put("authenticate", authenticate);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private RateLimiter rateLimiter() {
+        return new RateLimiter(properties, meterRegistry, now::get);
+    }
+
+    @Test
+    void testOnlyTheConfiguredEndpointsAreLimited() {
+        RateLimiter rateLimiter = rateLimiter();
+
+        assertThat(rateLimiter.findEndpoint("/api/authenticate")).isNotNull();
+        assertThat(rateLimiter.findEndpoint("/api/account")).isNull();
+
+        properties.setEnabled(false);
+        assertThat(rateLimiter().findEndpoint("/api/authenticate")).isNull();
+    }
+
+    @Test
+    void testBurstIsAllowedThenRequestsAtTheRefillRate() {
+        RateLimiter rateLimiter = rateLimiter();
+        RateLimiter.Endpoint endpoint = rateLimiter.findEndpoint("/api/authenticate");
+
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.1", null)).isZero();
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.1", null)).isZero();
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.1", null)).isZero();
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.1", null)).isEqualTo(ONE_SECOND);
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.2", null)).isZero();
+
+        now.addAndGet(ONE_SECOND);
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.1", null)).isZero();
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.1", null)).isEqualTo(ONE_SECOND);
+
+        assertThat(meterRegistry.get(RateLimiter.REQUESTS_METER_NAME).tag("result", "allowed").counter().count()).isEqualTo(5);
+        assertThat(meterRegistry.get(RateLimiter.REQUESTS_METER_NAME).tag("result", "rejected").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void testLoginIsLimitedWhateverTheClient() {
+        RateLimiter rateLimiter = rateLimiter();
+        RateLimiter.Endpoint endpoint = rateLimiter.findEndpoint("/api/authenticate");
+
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.1", "admin")).isZero();
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.2", "admin")).isZero();
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.3", "admin")).isEqualTo(2 * ONE_SECOND);
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.3", "user")).isZero();
+    }
+
+    @Test
+    void testFullBucketsAreDropped() {
+        RateLimiter rateLimiter = rateLimiter();
+        RateLimiter.Endpoint endpoint = rateLimiter.findEndpoint("/api/authenticate");
+        rateLimiter.acquire(endpoint, "10.0.0.1", "admin");
+        rateLimiter.acquire(endpoint, "10.0.0.1", "admin");
+        rateLimiter.acquire(endpoint, "10.0.0.2", null);
+        assertThat(rateLimiter.bucketCount()).isEqualTo(3);
+        assertThat(meterRegistry.get(RateLimiter.BUCKETS_METER_NAME).gauge().value()).isEqualTo(3);
+
+        now.addAndGet(ONE_SECOND);
+        rateLimiter.expireBuckets();
+        // the bucket of the second client is full again, the one of the first client a second later
+        assertThat(rateLimiter.bucketCount()).isEqualTo(2);
+
+        now.addAndGet(ONE_SECOND);
+        rateLimiter.expireBuckets();
+        assertThat(rateLimiter.bucketCount()).isEqualTo(1);
+
+        now.addAndGet(2 * ONE_SECOND);
+        rateLimiter.expireBuckets();
+        assertThat(rateLimiter.bucketCount()).isZero();
+    }
+
+    @Test
+    void testBucketsBeyondTheMaximumEvictTheFullest() {
+        properties.setMaxBuckets(2);
+        RateLimiter rateLimiter = rateLimiter();
+        RateLimiter.Endpoint endpoint = rateLimiter.findEndpoint("/api/authenticate");
+        for (int i = 0; i < 3; i++) {
+            assertThat(rateLimiter.acquire(endpoint, "10.0.0.1", null)).isZero();
+        }
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.2", null)).isZero();
+
+        // a flood of new clients evicts the buckets of its own requests, never the one of the limited client
+        for (int client = 3; client < 100; client++) {
+            assertThat(rateLimiter.acquire(endpoint, "10.0.0." + client, null)).isZero();
+        }
+
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.1", null)).isEqualTo(ONE_SECOND);
+        assertThat(rateLimiter.acquire(endpoint, "10.0.0.100", null)).isZero();
+        assertThat(rateLimiter.bucketCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testLimitsAreGauges() {
+        rateLimiter();
+
+        assertThat(meterRegistry.get(RateLimiter.CAPACITY_METER_NAME).tag("endpoint", "authenticate").tag("key", "ip").gauge().value())
+            .isEqualTo(3);
+        assertThat(meterRegistry.get(RateLimiter.REFILL_METER_NAME).tag("endpoint", "authenticate").tag("key", "login").gauge().value())
+            .isEqualTo(30);
+    }
+}
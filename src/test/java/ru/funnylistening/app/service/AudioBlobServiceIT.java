@@ -0,0 +1,122 @@
+package ru.funnylistening.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.funnylistening.app.IntegrationTest;
+import ru.funnylistening.app.domain.AudioBlob;
+import ru.funnylistening.app.repository.AudioBlobRepository;
+
+/**
+ * Integration tests for the storing of audio blobs by {@link AudioBlobService}.
+ */
+@IntegrationTest
+class AudioBlobServiceIT {
+
+    private static final Path UPLOADS = Paths.get("target/test-audio-uploads");
+
+    @Autowired
+    private AudioBlobService audioBlobService;
+
+    @Autowired
+    private AudioBlobRepository audioBlobRepository;
+
+    @Autowired
+    private AudioStore audioStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private byte[] content;
+
+    private String sha256;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        content = ("recording " + System.nanoTime()).getBytes(StandardCharsets.US_ASCII);
+        sha256 = AudioBlobService.toHex(MessageDigest.getInstance("SHA-256").digest(content));
+        Files.createDirectories(UPLOADS);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        audioBlobRepository
+            .findAll()
+            .stream()
+            .filter(blob -> blob.getSha256().equals(sha256))
+            .map(AudioBlob::getLocation)
+            .forEach(location -> transactionTemplate.executeWithoutResult(status -> audioBlobService.release(location)));
+    }
+
+    private Path upload() throws Exception {
+        return Files.write(Files.createTempFile(UPLOADS, "upload", ".part"), content);
+    }
+
+    @Test
+    void testRolledBackStoreDeletesItsFile() throws Exception {
+        Path upload = upload();
+
+        String location = transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return audioBlobService.acquireUpload(upload, sha256, "take.mp3");
+        });
+
+        assertThat(audioBlobRepository.existsBySha256(sha256)).isFalse();
+        assertThat(audioStore.find(location)).isEmpty();
+    }
+
+    @Test
+    void testConcurrentStoresOfTheSameContentKeepTheCommittedFile() throws Exception {
+        Path first = upload();
+        Path second = upload();
+        CountDownLatch firstStored = new CountDownLatch(1);
+        CountDownLatch rollBackFirst = new CountDownLatch(1);
+
+        CompletableFuture<String> rolledBack = CompletableFuture.supplyAsync(() ->
+            transactionTemplate.execute(status -> {
+                status.setRollbackOnly();
+                String location = audioBlobService.acquireUpload(first, sha256, "take.mp3");
+                firstStored.countDown();
+                try {
+                    rollBackFirst.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return location;
+            })
+        );
+        assertThat(firstStored.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> committed = CompletableFuture.supplyAsync(() ->
+            transactionTemplate.execute(status -> audioBlobService.acquireUpload(second, sha256, "take.mp3"))
+        );
+        // the second store waits for the content, locked by the first one until it rolls back
+        Thread.sleep(500);
+        assertThat(committed).isNotDone();
+        rollBackFirst.countDown();
+
+        String location = committed.get(10, TimeUnit.SECONDS);
+        assertThat(rolledBack.get(10, TimeUnit.SECONDS)).isEqualTo(location);
+        assertThat(audioBlobRepository.findAll())
+            .filteredOn(blob -> blob.getSha256().equals(sha256))
+            .singleElement()
+            .satisfies(blob -> assertThat(blob.getReferenceCount()).isEqualTo(1));
+        assertThat(audioStore.find(location)).isPresent();
+        assertThat(Files.readAllBytes(audioStore.find(location).orElseThrow().getPath())).isEqualTo(content);
+    }
+}
@@ -0,0 +1,101 @@
+package ru.funnylistening.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.enumeration.AudioQuality;
+import ru.funnylistening.app.repository.AudioBlobRepository;
+import ru.funnylistening.app.repository.ElementRepository;
+
+class AudioPeaksServiceTest {
+
+    private static final Long ELEMENT_ID = 1L;
+
+    private static final String LOCATION = "take.mp3";
+
+    private static final String SHA256 = "0123456789abcdef";
+
+    @TempDir
+    Path directory;
+
+    private AudioStore audioStore;
+
+    private AudioTranscoder audioTranscoder;
+
+    private AudioPeaksService audioPeaksService;
+
+    private Path mp3;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        // not audio the JDK decodes
+        mp3 = Files.write(directory.resolve(LOCATION), new byte[] { 'I', 'D', '3', 4, 0, 0, 0, 0, 0, 0 });
+        ElementRepository elementRepository = mock(ElementRepository.class);
+        when(elementRepository.findAudioPathById(ELEMENT_ID)).thenReturn(Optional.of(LOCATION));
+        AudioBlobRepository audioBlobRepository = mock(AudioBlobRepository.class);
+        when(audioBlobRepository.findSha256ByLocation(LOCATION)).thenReturn(Optional.of(SHA256));
+        audioStore = mock(AudioStore.class);
+        when(audioStore.renditionLocation(SHA256, "peaks", "dat")).thenReturn(SHA256 + "-peaks.dat");
+        when(audioStore.find(LOCATION)).thenReturn(Optional.of(new AudioFile(mp3, Files.size(mp3), 0, "\"" + SHA256 + "\"", true)));
+        audioTranscoder = mock(AudioTranscoder.class);
+        audioPeaksService =
+            new AudioPeaksService(
+                elementRepository,
+                audioBlobRepository,
+                audioStore,
+                audioTranscoder,
+                Runnable::run,
+                new ApplicationProperties()
+            );
+    }
+
+    @Test
+    void testAudioTheJdkCantDecodeIsTranscodedFirst() throws Exception {
+        when(audioTranscoder.getExtension()).thenReturn("wav");
+        when(audioTranscoder.transcode(eq(mp3), eq(AudioQuality.HIGH), any()))
+            .thenAnswer(invocation -> {
+                AudioFormat format = new AudioFormat(22050f, 16, 1, true, false);
+                byte[] samples = new byte[22050 * format.getFrameSize()];
+                try (AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(samples), format, 22050)) {
+                    AudioSystem.write(in, AudioFileFormat.Type.WAVE, invocation.getArgument(2, Path.class).toFile());
+                }
+                return true;
+            });
+
+        byte[] peaks = audioPeaksService.compute(mp3).orElseThrow();
+
+        ByteBuffer dat = ByteBuffer.wrap(peaks).order(ByteOrder.LITTLE_ENDIAN);
+        assertThat(dat.getInt()).as("version").isEqualTo(1);
+        assertThat(dat.getInt()).as("flags").isEqualTo(1);
+        assertThat(dat.getInt()).as("sample rate").isEqualTo(22050);
+    }
+
+    @Test
+    void testAudioNotDecodedAfterTranscodingHasNoPeaksAndIsNotTriedAgain() throws Exception {
+        // the renditions of the default command encoder
+        when(audioTranscoder.getExtension()).thenReturn("mp3");
+
+        assertThat(audioPeaksService.findPeaks(ELEMENT_ID)).isEmpty();
+        assertThat(audioPeaksService.findPeaks(ELEMENT_ID)).isEmpty();
+
+        verify(audioTranscoder, never()).transcode(any(), any(), any());
+        verify(audioStore, times(1)).find(LOCATION);
+        verify(audioStore, never()).putBlob(any(), any(), anyBoolean());
+    }
+}
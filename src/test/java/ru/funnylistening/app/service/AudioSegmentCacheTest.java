@@ -0,0 +1,74 @@
+package ru.funnylistening.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.funnylistening.app.config.ApplicationProperties;
+
+class AudioSegmentCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private AudioSegmentCache audioSegmentCache;
+
+    private AudioFile source;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudio().getHls().setCachePath(directory.resolve("cache").toString());
+        applicationProperties.getAudio().getHls().setMaxCacheSize(10);
+        audioSegmentCache = new AudioSegmentCache(applicationProperties);
+        audioSegmentCache.loadCache();
+        Path path = Files.write(directory.resolve("source.mp3"), "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII));
+        source = new AudioFile(path, 20, 0, "\"source\"", true);
+    }
+
+    @Test
+    void testSegmentIsCutFromItsParts() throws Exception {
+        StoryPlaylist.Segment segment = segment("0123456789abcdef0123456789abcdef.mp3", 8, 2, 10, 3);
+        StringBuilder read = new StringBuilder();
+
+        audioSegmentCache.serve(segment, file -> read.append(Files.readString(file.getPath(), StandardCharsets.US_ASCII)));
+
+        assertThat(read).hasToString("89abc");
+    }
+
+    @Test
+    void testSegmentEvictedWhileServedIsKeptUntilServed() throws Exception {
+        StoryPlaylist.Segment first = segment("00000000000000000000000000000001.mp3", 0, 10);
+        StoryPlaylist.Segment second = segment("00000000000000000000000000000002.mp3", 10, 10);
+        Path firstFile = directory.resolve("cache").resolve(first.getName());
+
+        audioSegmentCache.serve(
+            first,
+            file -> {
+                // cutting the second segment evicts the first one while it is served
+                audioSegmentCache.serve(second, other -> assertThat(Files.exists(firstFile)).isTrue());
+                assertThat(Files.readString(file.getPath(), StandardCharsets.US_ASCII)).isEqualTo("0123456789");
+            }
+        );
+
+        assertThat(Files.exists(firstFile)).isFalse();
+        audioSegmentCache.serve(
+            first,
+            file -> assertThat(Files.readString(file.getPath(), StandardCharsets.US_ASCII)).isEqualTo("0123456789")
+        );
+    }
+
+    private StoryPlaylist.Segment segment(String name, long... ranges) {
+        List<StoryPlaylist.Part> parts = new ArrayList<>();
+        for (int i = 0; i < ranges.length; i += 2) {
+            parts.add(new StoryPlaylist.Part(source, ranges[i], ranges[i + 1]));
+        }
+        return new StoryPlaylist.Segment(name, parts, 1, false);
+    }
+}
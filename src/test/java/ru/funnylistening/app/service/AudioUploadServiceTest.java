@@ -0,0 +1,132 @@
+package ru.funnylistening.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.Element;
+import ru.funnylistening.app.repository.ElementRepository;
+import ru.funnylistening.app.service.dto.AudioUploadDTO;
+
+/**
+ * Unit tests for {@link AudioUploadService}.
+ */
+class AudioUploadServiceTest {
+
+    private static final Long ELEMENT_ID = 1L;
+
+    private static final byte[] AUDIO = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path directory;
+
+    private ElementService elementService;
+
+    private AudioUploadService audioUploadService;
+
+    @BeforeEach
+    public void setup() {
+        ElementRepository elementRepository = mock(ElementRepository.class);
+        when(elementRepository.existsById(ELEMENT_ID)).thenReturn(true);
+        elementService = mock(ElementService.class);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudio().getUpload().setPath(directory.toString());
+        audioUploadService = new AudioUploadService(elementRepository, elementService, applicationProperties);
+    }
+
+    @Test
+    void testProgressIsReadWhileAChunkIsReceived() throws Exception {
+        when(elementService.attachAudio(eq(ELEMENT_ID), any(), any(), any())).thenReturn(Optional.of(new Element()));
+        String id = audioUploadService.create(ELEMENT_ID, AUDIO.length, "take.mp3").orElseThrow().getId();
+        CountDownLatch firstBytesRead = new CountDownLatch(1);
+        CountDownLatch sendTheRest = new CountDownLatch(1);
+        InputStream slowBody = new InputStream() {
+            private int position;
+
+            @Override
+            public int read() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (position == 4) {
+                    firstBytesRead.countDown();
+                    try {
+                        sendTheRest.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (position == AUDIO.length) {
+                    return -1;
+                }
+                int read = Math.min(length, position < 4 ? 4 - position : AUDIO.length - position);
+                System.arraycopy(AUDIO, position, buffer, offset, read);
+                position += read;
+                return read;
+            }
+        };
+
+        CompletableFuture<AudioUploadDTO> appended = CompletableFuture.supplyAsync(() -> {
+            try {
+                return audioUploadService.append(id, 0, slowBody).orElseThrow();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        assertThat(firstBytesRead.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // the progress isn't blocked by the chunk being received, and no other chunk is taken meanwhile
+        assertThat(audioUploadService.find(id).orElseThrow().getOffset()).isEqualTo(4);
+        assertThatThrownBy(() -> audioUploadService.append(id, 4, new ByteArrayInputStream(AUDIO, 4, 6)))
+            .isInstanceOf(UploadOffsetMismatchException.class);
+
+        sendTheRest.countDown();
+        assertThat(appended.get(10, TimeUnit.SECONDS).isCompleted()).isTrue();
+        assertThat(audioUploadService.find(id)).isEmpty();
+    }
+
+    @Test
+    void testUploadIsKeptWhenTheAudioCantBeAttached() throws Exception {
+        when(elementService.attachAudio(eq(ELEMENT_ID), any(), any(), any()))
+            .thenThrow(new IllegalStateException("database down"))
+            .thenReturn(Optional.of(new Element()));
+        String id = audioUploadService.create(ELEMENT_ID, AUDIO.length, "take.mp3").orElseThrow().getId();
+        Path part = directory.resolve(id + ".part");
+
+        assertThatThrownBy(() -> audioUploadService.append(id, 0, new ByteArrayInputStream(AUDIO)))
+            .isInstanceOf(IllegalStateException.class);
+
+        assertThat(part).hasBinaryContent(AUDIO);
+        assertThat(audioUploadService.find(id).orElseThrow().getOffset()).isEqualTo(AUDIO.length);
+
+        // completed again by an empty chunk at its end
+        assertThat(audioUploadService.append(id, AUDIO.length, new ByteArrayInputStream(new byte[0])).orElseThrow().isCompleted())
+            .isTrue();
+
+        String sha256 = AudioBlobService.toHex(MessageDigest.getInstance("SHA-256").digest(AUDIO));
+        verify(elementService, times(2)).attachAudio(ELEMENT_ID, part, sha256, "take.mp3");
+        assertThat(Files.exists(part)).isFalse();
+        assertThat(audioUploadService.find(id)).isEmpty();
+    }
+}
@@ -0,0 +1,201 @@
+package ru.funnylistening.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Properties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import ru.funnylistening.app.IntegrationTest;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.OutgoingMail;
+import ru.funnylistening.app.domain.enumeration.MailStatus;
+import ru.funnylistening.app.repository.OutgoingMailRepository;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * Integration tests for {@link MailDeliveryService}, sending to an in-process SMTP server.
+ */
+@IntegrationTest
+class MailDeliveryServiceIT {
+
+    private static final String REJECTED_RECIPIENT = "rejected@example.com";
+
+    @Autowired
+    private OutgoingMailService outgoingMailService;
+
+    @Autowired
+    private OutgoingMailRepository outgoingMailRepository;
+
+    @Autowired
+    private JHipsterProperties jHipsterProperties;
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private SmtpServerStub smtpServer;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        outgoingMailRepository.deleteAll();
+        applicationProperties = new ApplicationProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        smtpServer = new SmtpServerStub(REJECTED_RECIPIENT);
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        smtpServer.close();
+        outgoingMailRepository.deleteAll();
+    }
+
+    private MailDeliveryService mailDeliveryService() {
+        JavaMailSenderImpl javaMailSender = new JavaMailSenderImpl();
+        javaMailSender.setHost("127.0.0.1");
+        javaMailSender.setPort(smtpServer.getPort());
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.localhost", "localhost");
+        properties.setProperty("mail.smtp.connectiontimeout", "5000");
+        properties.setProperty("mail.smtp.timeout", "5000");
+        javaMailSender.setJavaMailProperties(properties);
+        return new MailDeliveryService(
+            outgoingMailService,
+            javaMailSender,
+            new SyncTaskExecutor(),
+            jHipsterProperties,
+            applicationProperties,
+            meterRegistry
+        );
+    }
+
+    private void enqueue(String to) {
+        outgoingMailService.enqueue(to, "testSubject", "testContent", false, false);
+    }
+
+    @Test
+    void testQueuedMailsAreSentOverOneConnection() {
+        enqueue("john.doe@example.com");
+        enqueue("jane.doe@example.com");
+        enqueue("jim.doe@example.com");
+
+        mailDeliveryService().sendPending();
+
+        assertThat(smtpServer.getMessages()).hasSize(3);
+        assertThat(smtpServer.getMessages().get(0)).contains("To: john.doe@example.com").contains("testContent");
+        assertThat(smtpServer.getConnections()).isEqualTo(1);
+        assertThat(outgoingMailRepository.count()).isZero();
+        assertThat(meterRegistry.get(MailDeliveryService.MAILS_METER_NAME).tag("result", "sent").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get(MailDeliveryService.SEND_METER_NAME).timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(MailDeliveryService.DELIVERY_METER_NAME).timer().count()).isEqualTo(3);
+        assertThat(meterRegistry.get(MailDeliveryService.QUEUED_METER_NAME).gauge().value()).isZero();
+    }
+
+    @Test
+    void testQueuedMailsAreCountedBeforeTheNextRun() {
+        MailDeliveryService mailDeliveryService = mailDeliveryService();
+        mailDeliveryService.sendPending();
+
+        enqueue("john.doe@example.com");
+        enqueue("jane.doe@example.com");
+
+        assertThat(meterRegistry.get(MailDeliveryService.QUEUED_METER_NAME).gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void testOutboxIsDrainedBatchAfterBatch() {
+        applicationProperties.getMail().setBatchSize(2);
+        for (int i = 0; i < 5; i++) {
+            enqueue("john.doe+" + i + "@example.com");
+        }
+
+        mailDeliveryService().sendPending();
+
+        assertThat(smtpServer.getMessages()).hasSize(5);
+        assertThat(smtpServer.getConnections()).isEqualTo(3);
+        assertThat(outgoingMailRepository.count()).isZero();
+    }
+
+    @Test
+    void testRejectedMailIsSentAgainLater() {
+        MailDeliveryService mailDeliveryService = mailDeliveryService();
+        enqueue("john.doe@example.com");
+        enqueue(REJECTED_RECIPIENT);
+        enqueue("jane.doe@example.com");
+
+        mailDeliveryService.sendPending();
+
+        assertThat(smtpServer.getMessages()).hasSize(2);
+        assertThat(smtpServer.getConnections()).isEqualTo(1);
+        OutgoingMail rejected = outgoingMailRepository.findAll().get(0);
+        assertThat(rejected.getRecipient()).isEqualTo(REJECTED_RECIPIENT);
+        assertThat(rejected.getStatus()).isEqualTo(MailStatus.PENDING);
+        assertThat(rejected.getAttempts()).isEqualTo(1);
+        assertThat(rejected.getNextAttemptDate()).isAfter(Instant.now().plusSeconds(20));
+        assertThat(meterRegistry.get(MailDeliveryService.MAILS_METER_NAME).tag("result", "retried").counter().count()).isEqualTo(1);
+
+        // not due yet
+        mailDeliveryService.sendPending();
+        assertThat(smtpServer.getConnections()).isEqualTo(1);
+
+        outgoingMailRepository.save(rejected.nextAttemptDate(Instant.now().minusSeconds(1)));
+        mailDeliveryService.sendPending();
+
+        assertThat(smtpServer.getConnections()).isEqualTo(2);
+        rejected = outgoingMailRepository.findById(rejected.getId()).orElseThrow();
+        assertThat(rejected.getAttempts()).isEqualTo(2);
+        // the delay is doubled
+        assertThat(rejected.getNextAttemptDate()).isAfter(Instant.now().plusSeconds(50));
+    }
+
+    @Test
+    void testMailsAreKeptWhileTheServerIsDown() throws Exception {
+        smtpServer.close();
+        enqueue("john.doe@example.com");
+        enqueue("jane.doe@example.com");
+
+        mailDeliveryService().sendPending();
+
+        assertThat(outgoingMailRepository.findAll())
+            .hasSize(2)
+            .allSatisfy(mail -> {
+                assertThat(mail.getStatus()).isEqualTo(MailStatus.PENDING);
+                assertThat(mail.getAttempts()).isEqualTo(1);
+            });
+        assertThat(meterRegistry.get(MailDeliveryService.MAILS_METER_NAME).tag("result", "retried").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get(MailDeliveryService.QUEUED_METER_NAME).gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void testMailIsFailedAfterTheLastAttempt() throws Exception {
+        smtpServer.close();
+        enqueue("john.doe@example.com");
+        OutgoingMail mail = outgoingMailRepository.findAll().get(0);
+        outgoingMailRepository.save(mail.attempts(applicationProperties.getMail().getMaxAttempts() - 1));
+
+        mailDeliveryService().sendPending();
+
+        mail = outgoingMailRepository.findById(mail.getId()).orElseThrow();
+        assertThat(mail.getStatus()).isEqualTo(MailStatus.FAILED);
+        assertThat(meterRegistry.get(MailDeliveryService.MAILS_METER_NAME).tag("result", "failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testAbandonedMailIsSentAgain() {
+        enqueue("john.doe@example.com");
+        OutgoingMail mail = outgoingMailRepository.findAll().get(0);
+        outgoingMailRepository.save(mail.status(MailStatus.SENDING).updatedDate(Instant.now().minus(1, ChronoUnit.DAYS)));
+
+        mailDeliveryService().sendPending();
+
+        assertThat(smtpServer.getMessages()).hasSize(1);
+        assertThat(outgoingMailRepository.count()).isZero();
+    }
+}
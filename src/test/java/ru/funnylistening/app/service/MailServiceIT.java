@@ -11,6 +11,10 @@ import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -21,15 +25,16 @@ import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import ru.funnylistening.app.IntegrationTest;
 import ru.funnylistening.app.config.Constants;
+import ru.funnylistening.app.domain.OutgoingMail;
 import ru.funnylistening.app.domain.User;
+import ru.funnylistening.app.domain.enumeration.MailStatus;
+import ru.funnylistening.app.repository.OutgoingMailRepository;
 import tech.jhipster.config.JHipsterProperties;
 
 /**
@@ -50,23 +55,43 @@ class MailServiceIT {
     @MockBean
     private JavaMailSender javaMailSender;
 
-    @Captor
-    private ArgumentCaptor<MimeMessage> messageCaptor;
-
     @Autowired
     private MailService mailService;
 
+    @Autowired
+    private MailDeliveryService mailDeliveryService;
+
+    @Autowired
+    private OutgoingMailRepository outgoingMailRepository;
+
+    private final List<MimeMessage> sentMessages = new ArrayList<>();
+
     @BeforeEach
     public void setup() {
-        doNothing().when(javaMailSender).send(any(MimeMessage.class));
-        when(javaMailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+        outgoingMailRepository.deleteAll();
+        doAnswer(invocation -> sentMessages.addAll(Arrays.asList((MimeMessage[]) invocation.getRawArguments()[0])))
+            .when(javaMailSender)
+            .send((MimeMessage[]) any());
+        when(javaMailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((Session) null));
+    }
+
+    @Test
+    void testSendEmailIsQueued() {
+        mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, false);
+        verifyNoInteractions(javaMailSender);
+        List<OutgoingMail> mails = outgoingMailRepository.findAll();
+        assertThat(mails).hasSize(1);
+        assertThat(mails.get(0).getRecipient()).isEqualTo("john.doe@example.com");
+        assertThat(mails.get(0).getStatus()).isEqualTo(MailStatus.PENDING);
+
+        sendPendingMessage();
+        assertThat(outgoingMailRepository.count()).isZero();
     }
 
     @Test
     void testSendEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, false);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = sendPendingMessage();
         assertThat(message.getSubject()).isEqualTo("testSubject");
         assertThat(message.getAllRecipients()[0]).hasToString("john.doe@example.com");
         assertThat(message.getFrom()[0]).hasToString(jHipsterProperties.getMail().getFrom());
@@ -78,8 +103,7 @@ class MailServiceIT {
     @Test
     void testSendHtmlEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, true);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = sendPendingMessage();
         assertThat(message.getSubject()).isEqualTo("testSubject");
         assertThat(message.getAllRecipients()[0]).hasToString("john.doe@example.com");
         assertThat(message.getFrom()[0]).hasToString(jHipsterProperties.getMail().getFrom());
@@ -91,8 +115,7 @@ class MailServiceIT {
     @Test
     void testSendMultipartEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", true, false);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = sendPendingMessage();
         MimeMultipart mp = (MimeMultipart) message.getContent();
         MimeBodyPart part = (MimeBodyPart) ((MimeMultipart) mp.getBodyPart(0).getContent()).getBodyPart(0);
         ByteArrayOutputStream aos = new ByteArrayOutputStream();
@@ -108,8 +131,7 @@ class MailServiceIT {
     @Test
     void testSendMultipartHtmlEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", true, true);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = sendPendingMessage();
         MimeMultipart mp = (MimeMultipart) message.getContent();
         MimeBodyPart part = (MimeBodyPart) ((MimeMultipart) mp.getBodyPart(0).getContent()).getBodyPart(0);
         ByteArrayOutputStream aos = new ByteArrayOutputStream();
@@ -129,8 +151,7 @@ class MailServiceIT {
         user.setLogin("john");
         user.setEmail("john.doe@example.com");
         mailService.sendEmailFromTemplate(user, "mail/testEmail", "email.test.title");
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = sendPendingMessage();
         assertThat(message.getSubject()).isEqualTo("test title");
         assertThat(message.getAllRecipients()[0]).hasToString(user.getEmail());
         assertThat(message.getFrom()[0]).hasToString(jHipsterProperties.getMail().getFrom());
@@ -145,8 +166,7 @@ class MailServiceIT {
         user.setLogin("john");
         user.setEmail("john.doe@example.com");
         mailService.sendActivationEmail(user);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = sendPendingMessage();
         assertThat(message.getAllRecipients()[0]).hasToString(user.getEmail());
         assertThat(message.getFrom()[0]).hasToString(jHipsterProperties.getMail().getFrom());
         assertThat(message.getContent().toString()).isNotEmpty();
@@ -160,8 +180,7 @@ class MailServiceIT {
         user.setLogin("john");
         user.setEmail("john.doe@example.com");
         mailService.sendCreationEmail(user);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = sendPendingMessage();
         assertThat(message.getAllRecipients()[0]).hasToString(user.getEmail());
         assertThat(message.getFrom()[0]).hasToString(jHipsterProperties.getMail().getFrom());
         assertThat(message.getContent().toString()).isNotEmpty();
@@ -175,8 +194,7 @@ class MailServiceIT {
         user.setLogin("john");
         user.setEmail("john.doe@example.com");
         mailService.sendPasswordResetMail(user);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = sendPendingMessage();
         assertThat(message.getAllRecipients()[0]).hasToString(user.getEmail());
         assertThat(message.getFrom()[0]).hasToString(jHipsterProperties.getMail().getFrom());
         assertThat(message.getContent().toString()).isNotEmpty();
@@ -185,12 +203,18 @@ class MailServiceIT {
 
     @Test
     void testSendEmailWithException() {
-        doThrow(MailSendException.class).when(javaMailSender).send(any(MimeMessage.class));
+        doThrow(new MailSendException("Mail server connection failed")).when(javaMailSender).send((MimeMessage[]) any());
         try {
             mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, false);
+            mailDeliveryService.sendPending();
         } catch (Exception e) {
             fail("Exception shouldn't have been thrown");
         }
+        List<OutgoingMail> mails = outgoingMailRepository.findAll();
+        assertThat(mails).hasSize(1);
+        assertThat(mails.get(0).getStatus()).isEqualTo(MailStatus.PENDING);
+        assertThat(mails.get(0).getAttempts()).isEqualTo(1);
+        assertThat(mails.get(0).getNextAttemptDate()).isAfter(Instant.now());
     }
 
     @Test
@@ -201,8 +225,7 @@ class MailServiceIT {
         for (String langKey : languages) {
             user.setLangKey(langKey);
             mailService.sendEmailFromTemplate(user, "mail/testEmail", "email.test.title");
-            verify(javaMailSender, atLeastOnce()).send(messageCaptor.capture());
-            MimeMessage message = messageCaptor.getValue();
+            MimeMessage message = sendPendingMessage();
 
             String propertyFilePath = "i18n/messages_" + getJavaLocale(langKey) + ".properties";
             URL resource = this.getClass().getClassLoader().getResource(propertyFilePath);
@@ -217,6 +240,12 @@ class MailServiceIT {
         }
     }
 
+    private MimeMessage sendPendingMessage() {
+        mailDeliveryService.sendPending();
+        assertThat(sentMessages).hasSize(1);
+        return sentMessages.remove(0);
+    }
+
     /**
      * Convert a lang key to the Java locale.
      */
@@ -0,0 +1,111 @@
+package ru.funnylistening.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.funnylistening.app.config.ApplicationProperties;
+
+class MappedAudioCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private MeterRegistry meterRegistry;
+
+    private MappedAudioCache mappedAudioCache;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudio().getMappedCache().setMaxSize(16);
+        applicationProperties.getAudio().getMappedCache().setAdmissionRequests(2);
+        meterRegistry = new SimpleMeterRegistry();
+        mappedAudioCache = new MappedAudioCache(applicationProperties, meterRegistry);
+    }
+
+    @Test
+    void testFileIsMappedOnceRequestedEnough() throws Exception {
+        AudioFile audio = audioFile("first", "0123456789", true);
+
+        assertThat(mappedAudioCache.get(audio)).isEmpty();
+        assertThat(mappedAudioCache.get(audio)).hasValueSatisfying(buffer -> assertThat(content(buffer)).isEqualTo("0123456789"));
+        assertThat(mappedAudioCache.get(audio)).hasValueSatisfying(buffer -> assertThat(content(buffer)).isEqualTo("0123456789"));
+
+        assertThat(requests("hit")).isEqualTo(1);
+        assertThat(requests("miss")).isEqualTo(2);
+        assertThat(meterRegistry.get(MappedAudioCache.SIZE_METER_NAME).gauge().value()).isEqualTo(10);
+    }
+
+    @Test
+    void testLeastRecentlyServedFileIsEvicted() throws Exception {
+        AudioFile first = audioFile("first", "0123456789", true);
+        AudioFile second = audioFile("second", "abcdefghij", true);
+        mappedAudioCache.get(first);
+        mappedAudioCache.get(first);
+        mappedAudioCache.get(second);
+
+        // mapping the second file goes over the size limit
+        assertThat(mappedAudioCache.get(second)).isPresent();
+
+        assertThat(meterRegistry.get(MappedAudioCache.EVICTIONS_METER_NAME).counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(MappedAudioCache.SIZE_METER_NAME).gauge().value()).isEqualTo(10);
+        assertThat(mappedAudioCache.get(second)).isPresent();
+        assertThat(requests("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void testRecentlyServedFileIsKept() throws Exception {
+        AudioFile first = audioFile("first", "01234", true);
+        AudioFile second = audioFile("second", "abcde", true);
+        AudioFile third = audioFile("third", "ABCDE", true);
+        for (AudioFile audio : new AudioFile[] { first, second, third, first }) {
+            mappedAudioCache.get(audio);
+            mappedAudioCache.get(audio);
+        }
+
+        AudioFile fourth = audioFile("fourth", "56789", true);
+        mappedAudioCache.get(fourth);
+        assertThat(mappedAudioCache.get(fourth)).isPresent();
+
+        // the second file is the least recently served, the first one was served again since it was mapped
+        double hits = requests("hit");
+        assertThat(mappedAudioCache.get(first)).isPresent();
+        assertThat(mappedAudioCache.get(third)).isPresent();
+        assertThat(requests("hit")).isEqualTo(hits + 2);
+        mappedAudioCache.get(second);
+        assertThat(requests("hit")).isEqualTo(hits + 2);
+    }
+
+    @Test
+    void testMutableFileIsNeverMapped() throws Exception {
+        AudioFile audio = audioFile("mutable", "0123456789", false);
+
+        assertThat(mappedAudioCache.get(audio)).isEmpty();
+        assertThat(mappedAudioCache.get(audio)).isEmpty();
+        assertThat(mappedAudioCache.get(audio)).isEmpty();
+    }
+
+    private AudioFile audioFile(String name, String content, boolean immutable) throws IOException {
+        Path path = Files.write(directory.resolve(name + ".mp3"), content.getBytes(StandardCharsets.US_ASCII));
+        return new AudioFile(path, content.length(), Files.getLastModifiedTime(path).toMillis(), "\"" + name + "\"", immutable);
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get(MappedAudioCache.REQUESTS_METER_NAME).tag(MappedAudioCache.REQUESTS_METER_RESULT_DIMENSION, result).counter().count();
+    }
+
+    private static String content(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.funnylistening.app.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An SMTP server on the loopback address speaking just enough of the protocol for JavaMail, which keeps the messages
+ * it receives and rejects the configured recipients.
+ */
+class SmtpServerStub implements Closeable {
+
+    private final ServerSocket serverSocket;
+
+    private final Set<String> rejectedRecipients;
+
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    SmtpServerStub(String... rejectedRecipients) throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.rejectedRecipients = Set.of(rejectedRecipients);
+        Thread thread = new Thread(this::serve, "smtp-server-stub");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    List<String> getMessages() {
+        return messages;
+    }
+
+    int getConnections() {
+        return connections.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void serve() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                connections.incrementAndGet();
+                converse(socket);
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void converse(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+        reply(out, "220 localhost ESMTP");
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            String command = line.toUpperCase(Locale.ROOT);
+            if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                reply(out, "250 localhost");
+            } else if (command.startsWith("RCPT TO:")) {
+                String recipient = line.substring("RCPT TO:".length()).trim().replaceAll("[<>]", "");
+                reply(out, rejectedRecipients.contains(recipient) ? "550 No such user" : "250 OK");
+            } else if (command.equals("DATA")) {
+                reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                StringBuilder message = new StringBuilder();
+                for (String data = in.readLine(); data != null && !data.equals("."); data = in.readLine()) {
+                    message.append(data).append('\n');
+                }
+                messages.add(message.toString());
+                reply(out, "250 OK");
+            } else if (command.equals("QUIT")) {
+                reply(out, "221 Bye");
+                return;
+            } else if (command.startsWith("MAIL FROM:") || command.equals("RSET") || command.equals("NOOP")) {
+                reply(out, "250 OK");
+            } else {
+                reply(out, "502 Command not implemented");
+            }
+        }
+    }
+
+    private static void reply(Writer out, String reply) throws IOException {
+        out.write(reply);
+        out.write("\r\n");
+        out.flush();
+    }
+}
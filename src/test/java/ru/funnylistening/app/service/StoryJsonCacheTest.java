@@ -0,0 +1,87 @@
+package ru.funnylistening.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.repository.StoryRepository;
+import ru.funnylistening.app.service.dto.StoryView;
+
+class StoryJsonCacheTest {
+
+    private MeterRegistry meterRegistry;
+
+    private StoryJsonCache storyJsonCache;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getStory().setJsonCacheMaxSize(1024);
+        meterRegistry = new SimpleMeterRegistry();
+        storyJsonCache = new StoryJsonCache(mock(StoryRepository.class), new ObjectMapper(), applicationProperties, meterRegistry);
+    }
+
+    @Test
+    void testStoryIsServedFromItsJsonUntilEvicted() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Optional<StoryView>> loader = () -> Optional.of(story(1L, "Night shift " + loads.incrementAndGet()));
+
+        assertThat(json(storyJsonCache.get(1L, loader))).contains("Night shift 1");
+        assertThat(json(storyJsonCache.get(1L, loader))).contains("Night shift 1");
+        storyJsonCache.evict(1L);
+        assertThat(json(storyJsonCache.get(1L, loader))).contains("Night shift 2");
+
+        assertThat(loads).hasValue(2);
+        assertThat(requests("hit")).isEqualTo(1);
+        assertThat(requests("miss")).isEqualTo(2);
+    }
+
+    @Test
+    void testStoryChangedWhileLoadedIsNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Optional<StoryView>> changedWhileLoaded = () -> {
+            Optional<StoryView> view = Optional.of(story(1L, "Night shift " + loads.incrementAndGet()));
+            storyJsonCache.evict(1L);
+            return view;
+        };
+        storyJsonCache.get(1L, changedWhileLoaded);
+
+        assertThat(json(storyJsonCache.get(1L, () -> Optional.of(story(1L, "Day shift"))))).contains("Day shift");
+    }
+
+    @Test
+    void testOtherStoriesStayCachedAfterAnEviction() {
+        storyJsonCache.get(1L, () -> Optional.of(story(1L, "Night shift")));
+        storyJsonCache.get(2L, () -> Optional.of(story(2L, "Day shift")));
+
+        storyJsonCache.evict(1L);
+
+        assertThat(json(storyJsonCache.get(2L, () -> Optional.of(story(2L, "Reloaded"))))).contains("Day shift");
+    }
+
+    private static StoryView story(Long id, String storyName) {
+        return new StoryView(id, storyName, 0L, List.of(), null);
+    }
+
+    private static String json(Optional<StoryJson> json) {
+        return new String(json.orElseThrow().getBytes(), StandardCharsets.UTF_8);
+    }
+
+    private double requests(String result) {
+        return meterRegistry
+            .get(StoryJsonCache.REQUESTS_METER_NAME)
+            .tag(StoryJsonCache.REQUESTS_METER_RESULT_DIMENSION, result)
+            .counter()
+            .count();
+    }
+}
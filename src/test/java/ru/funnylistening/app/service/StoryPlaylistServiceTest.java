@@ -0,0 +1,88 @@
+package ru.funnylistening.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.StoryAudioSegment;
+import ru.funnylistening.app.repository.StoryAudioSegmentRepository;
+
+class StoryPlaylistServiceTest {
+
+    private static final Long STORY_ID = 1L;
+
+    @TempDir
+    Path directory;
+
+    private StoryAudioService storyAudioService;
+
+    private StoryPlaylistService storyPlaylistService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        List<AudioFile> files = List.of(audioFile("first.mp3", 150), audioFile("second.mp3", 150), audioFile("third.wav", 100));
+        List<StoryAudioSegment> index = List.of(
+            indexed(1L, files.get(0), 15000),
+            indexed(2L, files.get(1), 15000),
+            indexed(3L, files.get(2), 5000)
+        );
+        storyAudioService = mock(StoryAudioService.class);
+        StoryAudio audio = new StoryAudio(files, new long[] { 0, 150, 300 }, new long[] { 15000, 15000, 5000 });
+        when(storyAudioService.findStoryAudio(STORY_ID)).thenReturn(Optional.of(audio));
+        StoryAudioSegmentRepository storyAudioSegmentRepository = mock(StoryAudioSegmentRepository.class);
+        when(storyAudioSegmentRepository.findAllByStoryId(STORY_ID)).thenReturn(index);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudio().getHls().setSegmentDuration(10);
+        storyPlaylistService = new StoryPlaylistService(storyAudioService, storyAudioSegmentRepository, applicationProperties);
+    }
+
+    @Test
+    void testStoryIsCutEverySegmentDurationAcrossElements() {
+        StoryPlaylist playlist = storyPlaylistService.findPlaylist(STORY_ID).orElseThrow();
+
+        assertThat(playlist.getSegments()).extracting(StoryPlaylist.Segment::getDuration).containsExactly(10.0, 10.0, 10.0, 5.0);
+        assertThat(playlist.getSegments()).extracting(StoryPlaylist.Segment::getLength).containsExactly(100L, 100L, 100L, 100L);
+        assertThat(parts(playlist.getSegments().get(1))).containsExactly("first.mp3:100:50", "second.mp3:0:50");
+        // an element of another format starts a segment of its own
+        assertThat(parts(playlist.getSegments().get(2))).containsExactly("second.mp3:50:100");
+        assertThat(playlist.getSegments()).extracting(StoryPlaylist.Segment::isDiscontinuity).containsExactly(false, false, false, true);
+        assertThat(playlist.getSegments().get(3).getName()).endsWith(".wav");
+        assertThat(playlist.getTargetDuration()).isEqualTo(10);
+    }
+
+    @Test
+    void testSegmentIsFoundInTheCachedPlaylist() {
+        StoryPlaylist playlist = storyPlaylistService.findPlaylist(STORY_ID).orElseThrow();
+        StoryPlaylist.Segment segment = playlist.getSegments().get(1);
+
+        assertThat(storyPlaylistService.findSegment(STORY_ID, segment.getName())).containsSame(segment);
+        assertThat(storyPlaylistService.findSegment(STORY_ID, "0123456789abcdef0123456789abcdef.mp3")).isEmpty();
+
+        verify(storyAudioService, times(1)).findStoryAudio(STORY_ID);
+    }
+
+    private AudioFile audioFile(String name, int length) throws Exception {
+        Path path = Files.write(directory.resolve(name), new byte[length]);
+        return new AudioFile(path, length, 0, "\"" + name + "\"", true);
+    }
+
+    private static StoryAudioSegment indexed(Long elementId, AudioFile file, long durationMillis) {
+        return new StoryAudioSegment().elementId(elementId).audioEtag(file.getETag()).durationMillis(durationMillis);
+    }
+
+    private static List<String> parts(StoryPlaylist.Segment segment) {
+        return segment
+            .getParts()
+            .stream()
+            .map(part -> part.getSource().getFilename() + ":" + part.getOffset() + ":" + part.getLength())
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,196 @@
+package ru.funnylistening.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.repository.ElementRepository;
+import ru.funnylistening.app.repository.StoryRepository;
+
+class TypeaheadIndexTest {
+
+    private static final int BENCHMARK_COMPLETIONS = 100_000;
+
+    private final Logger log = LoggerFactory.getLogger(TypeaheadIndexTest.class);
+
+    private final List<String> storyNames = new ArrayList<>();
+
+    private final List<String> elementTexts = new ArrayList<>();
+
+    private ApplicationProperties applicationProperties;
+
+    private StoryRepository storyRepository;
+
+    private ElementRepository elementRepository;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        storyRepository = mock(StoryRepository.class);
+        elementRepository = mock(ElementRepository.class);
+        when(storyRepository.streamStoryNames()).thenAnswer(invocation -> storyNames.stream());
+        when(elementRepository.streamElementTexts()).thenAnswer(invocation -> elementTexts.stream());
+        meterRegistry = new SimpleMeterRegistry();
+
+        storyNames.add("The Lighthouse keeper");
+        storyNames.add("Light rain");
+        elementTexts.add("A light in the lighthouse, a light on the sea");
+        elementTexts.add("Lightning struck");
+    }
+
+    @Test
+    void testLastWordIsCompletedMostFrequentFirst() {
+        TypeaheadIndex typeaheadIndex = builtIndex();
+
+        assertThat(typeaheadIndex.complete("the LIG", 10)).containsExactly("light", "lighthouse", "lightning");
+        assertThat(typeaheadIndex.complete("lig", 1)).containsExactly("light");
+        assertThat(typeaheadIndex.complete("lighthouse k", 10)).containsExactly("keeper");
+        assertThat(typeaheadIndex.complete("lightx", 10)).isEmpty();
+        assertThat(typeaheadIndex.complete(" ", 10)).isEmpty();
+    }
+
+    @Test
+    void testChangesAreCompletedWithoutRebuild() {
+        TypeaheadIndex typeaheadIndex = builtIndex();
+
+        typeaheadIndex.replace("Lightning struck", "Lights out");
+        typeaheadIndex.addAll(List.of("Lights on", "Lighthouses"));
+
+        assertThat(typeaheadIndex.complete("light", 10)).containsExactly("light", "lighthouse", "lights", "lighthouses");
+        verify(storyRepository, times(1)).streamStoryNames();
+    }
+
+    @Test
+    void testAdjustmentsAreMergedOnceMany() {
+        TypeaheadIndex typeaheadIndex = builtIndex();
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            texts.add("word" + i);
+        }
+
+        typeaheadIndex.addAll(texts);
+
+        assertThat(meterRegistry.get(TypeaheadIndex.WORDS_METER_NAME).gauge().value()).isGreaterThanOrEqualTo(5000);
+        assertThat(typeaheadIndex.complete("word4999", 10)).containsExactly("word4999");
+        assertThat(typeaheadIndex.complete("lighth", 10)).containsExactly("lighthouse");
+    }
+
+    @Test
+    void testRarestWordsAreLeftOutBeyondTheMaxSize() {
+        // room for "light" and "lighthouse" only, of the three words found in two texts
+        long maxSize = 2 * "light".length() + 2 * Integer.BYTES + 2 * "lighthouse".length() + 2 * Integer.BYTES;
+        applicationProperties.getTypeahead().setMaxSize(maxSize);
+        TypeaheadIndex typeaheadIndex = builtIndex();
+
+        assertThat(typeaheadIndex.complete("l", 10)).containsExactly("light", "lighthouse");
+        assertThat(typeaheadIndex.complete("t", 10)).isEmpty();
+        assertThat(meterRegistry.get(TypeaheadIndex.SIZE_METER_NAME).gauge().value()).isLessThanOrEqualTo(maxSize + Integer.BYTES);
+        assertThat(meterRegistry.get(TypeaheadIndex.BUILD_METER_NAME).timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testShortPrefixesAreCompletedLikeLongOnesOverARealisticVocabulary() {
+        Map<String, Integer> counts = vocabulary(50_000);
+        TypeaheadIndex typeaheadIndex = builtIndex();
+
+        for (String prefix : List.of("a", "q", "th", "zz", "tha", "b")) {
+            assertThat(typeaheadIndex.complete(prefix, 10)).as(prefix).isEqualTo(mostFrequent(counts, prefix, 10));
+            assertThat(typeaheadIndex.complete(prefix, 50)).as(prefix).isEqualTo(mostFrequent(counts, prefix, 50));
+        }
+
+        // pending adjustments are ranked along with the ranked words
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            texts.add("aardvark");
+        }
+        typeaheadIndex.addAll(texts);
+        counts.merge("aardvark", texts.size(), Integer::sum);
+        assertThat(typeaheadIndex.complete("a", 10)).containsExactlyElementsOf(mostFrequent(counts, "a", 10)).startsWith("aardvark");
+    }
+
+    /**
+     * Measures the time taken to complete one or two letters over a million words, which should be well under a
+     * microsecond as it doesn't depend on the words starting with them. Run with {@code -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkShortPrefixCompletion() {
+        vocabulary(1_000_000);
+        TypeaheadIndex typeaheadIndex = builtIndex();
+        String[] prefixes = { "a", "e", "s", "th", "st", "re" };
+        // warm up
+        nanosPerCompletion(typeaheadIndex, prefixes);
+
+        double nanos = nanosPerCompletion(typeaheadIndex, prefixes);
+        log.info("Typeahead completion of a short prefix: {} ns", String.format("%.1f", nanos));
+        assertThat(nanos).isLessThan(10_000);
+    }
+
+    private double nanosPerCompletion(TypeaheadIndex typeaheadIndex, String[] prefixes) {
+        long start = System.nanoTime();
+        long completions = 0;
+        for (int i = 0; i < BENCHMARK_COMPLETIONS; i++) {
+            completions += typeaheadIndex.complete(prefixes[i % prefixes.length], 10).size();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertThat(completions).isEqualTo(10L * BENCHMARK_COMPLETIONS);
+        return (double) elapsed / BENCHMARK_COMPLETIONS;
+    }
+
+    /**
+     * Add element texts of random words with Zipf-like counts, the k-th word in about one text in k.
+     *
+     * @return the count of each word.
+     */
+    private Map<String, Integer> vocabulary(int size) {
+        storyNames.clear();
+        elementTexts.clear();
+        Random random = new Random(42);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int k = 1; counts.size() < size; k++) {
+            StringBuilder word = new StringBuilder();
+            for (int length = 3 + random.nextInt(8); word.length() < length; ) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            int count = Math.max(1, 2000 / k);
+            if (counts.putIfAbsent(word.toString(), count) == null) {
+                for (int i = 0; i < count; i++) {
+                    elementTexts.add(word.toString());
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static List<String> mostFrequent(Map<String, Integer> counts, String prefix, int limit) {
+        return counts
+            .entrySet()
+            .stream()
+            .filter(entry -> entry.getKey().startsWith(prefix))
+            .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .limit(limit)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+    }
+
+    private TypeaheadIndex builtIndex() {
+        TypeaheadIndex typeaheadIndex = new TypeaheadIndex(storyRepository, elementRepository, applicationProperties, meterRegistry);
+        typeaheadIndex.rebuild();
+        return typeaheadIndex;
+    }
+}
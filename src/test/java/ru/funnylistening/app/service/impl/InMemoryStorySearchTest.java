@@ -0,0 +1,112 @@
+package ru.funnylistening.app.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.service.EntityTag;
+import ru.funnylistening.app.service.StoryService;
+import ru.funnylistening.app.service.dto.ElementView;
+import ru.funnylistening.app.service.dto.StorySearchHit;
+import ru.funnylistening.app.service.dto.StoryView;
+
+class InMemoryStorySearchTest {
+
+    private final List<StoryView> stories = new ArrayList<>();
+
+    private StoryService storyService;
+
+    private InMemoryStorySearch storySearch;
+
+    private long version;
+
+    @BeforeEach
+    public void setup() {
+        storyService = mock(StoryService.class);
+        when(storyService.findAllTag(anyBoolean())).thenAnswer(invocation -> EntityTag.of(version, Instant.EPOCH));
+        doAnswer(invocation -> {
+                Consumer<StoryView> consumer = invocation.getArgument(0);
+                stories.forEach(consumer);
+                return null;
+            })
+            .when(storyService)
+            .exportViews(any());
+        storySearch = new InMemoryStorySearch(storyService, new ApplicationProperties());
+
+        stories.add(story(1L, "The Zanzibar lighthouse"));
+        stories.add(
+            story(2L, "Night shift", new ElementView(20L, "A keeper walked to Zanzibar & back, twice to Zanzibar", null, null, 0L))
+        );
+        stories.add(story(3L, "Zanzibar without the keeper"));
+    }
+
+    @Test
+    void testStoriesHaveEveryWordOfTheQuery() {
+        Page<StorySearchHit> page = storySearch.search("zanzibar Keeper", PageRequest.of(0, 10));
+
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(page.getContent()).extracting(StorySearchHit::getStoryId).containsExactlyInAnyOrder(2L, 3L);
+        StorySearchHit byElement = page.getContent().stream().filter(hit -> hit.getStoryId() == 2L).findFirst().orElseThrow();
+        assertThat(byElement.getElementId()).isEqualTo(20L);
+        assertThat(byElement.getSnippet())
+            .isEqualTo("A <mark>keeper</mark> walked to <mark>Zanzibar</mark> &amp; back, twice to <mark>Zanzibar</mark>");
+    }
+
+    @Test
+    void testHitsArePagedBestFirst() {
+        Page<StorySearchHit> first = storySearch.search("zanzibar", PageRequest.of(0, 2));
+        Page<StorySearchHit> second = storySearch.search("zanzibar", PageRequest.of(1, 2));
+
+        assertThat(first.getTotalElements()).isEqualTo(3);
+        assertThat(first.getContent()).hasSize(2);
+        assertThat(first.getContent().get(0).getScore()).isGreaterThanOrEqualTo(first.getContent().get(1).getScore());
+        assertThat(first.getContent().get(1).getScore()).isGreaterThanOrEqualTo(second.getContent().get(0).getScore());
+        assertThat(first.getContent().get(0).getStoryId()).isEqualTo(2L);
+    }
+
+    @Test
+    void testIndexIsRebuiltOnlyOnceStoriesChanged() {
+        assertThat(storySearch.search("lighthouse", PageRequest.of(0, 10)).getContent()).hasSize(1);
+        assertThat(storySearch.search("lantern", PageRequest.of(0, 10)).getContent()).isEmpty();
+        verify(storyService, times(1)).exportViews(any());
+
+        stories.add(story(4L, "The lantern"));
+        version++;
+
+        assertThat(storySearch.search("lantern", PageRequest.of(0, 10)).getContent())
+            .extracting(StorySearchHit::getSnippet)
+            .containsExactly("The <mark>lantern</mark>");
+        verify(storyService, times(2)).exportViews(any());
+    }
+
+    @Test
+    void testMisspelledWordsHaveSimilarHits() {
+        List<StorySearchHit> hits = storySearch.searchSimilar("zanzibr lighthose", 10);
+
+        assertThat(hits).extracting(StorySearchHit::getStoryId).startsWith(1L);
+        assertThat(hits.get(0).getSnippet()).isEqualTo("The <mark>Zanzibar</mark> <mark>lighthouse</mark>");
+        assertThat(hits).allSatisfy(hit -> assertThat(hit.getScore()).isGreaterThanOrEqualTo(0.5));
+        assertThat(storySearch.searchSimilar("zanzibr", 1)).hasSize(1);
+        assertThat(storySearch.searchSimilar("qwerty", 10)).isEmpty();
+    }
+
+    @Test
+    void testQueryWithoutWordsHasNoHits() {
+        assertThat(storySearch.search(" -- ", PageRequest.of(0, 10)).getContent()).isEmpty();
+        verify(storyService, never()).exportViews(any());
+    }
+
+    private static StoryView story(Long id, String storyName, ElementView... elements) {
+        return new StoryView(id, storyName, 0L, List.of(elements), Instant.EPOCH);
+    }
+}
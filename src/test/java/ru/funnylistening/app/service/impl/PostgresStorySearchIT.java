@@ -0,0 +1,159 @@
+package ru.funnylistening.app.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.funnylistening.app.IntegrationTest;
+import ru.funnylistening.app.service.StorySearch;
+
+/**
+ * Load benchmark of the search of similar stories with the trigram indexes of PostgreSQL.
+ */
+@IntegrationTest
+class PostgresStorySearchIT {
+
+    private static final int ELEMENTS_PER_STORY = 10;
+
+    private static final int WORDS_PER_TEXT = 8;
+
+    private static final int VOCABULARY_SIZE = 50_000;
+
+    private static final int STORIES_PER_BATCH = 1000;
+
+    private static final int WARM_UP_QUERIES = 200;
+
+    private static final int MEASURED_QUERIES = 2000;
+
+    private static final int LIMIT = 10;
+
+    private final Logger log = LoggerFactory.getLogger(PostgresStorySearchIT.class);
+
+    @Autowired
+    private StorySearch storySearch;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Measures the latency of similar searches for misspelled words of a catalog of {@code -Dbenchmark.elements}
+     * elements, one million by default, checking the 99th percentile against {@code -Dbenchmark.p99-millis}, 20 by
+     * default. The catalog is rolled back. Run with {@code -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkSimilarSearchLatency() {
+        int elements = Integer.getInteger("benchmark.elements", 1_000_000);
+        long p99Budget = Long.getLong("benchmark.p99-millis", 20);
+        Random random = new Random(42);
+        List<String> vocabulary = new ArrayList<>(VOCABULARY_SIZE);
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            vocabulary.add(word(random));
+        }
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            long start = System.nanoTime();
+            insertCatalog(elements / ELEMENTS_PER_STORY, vocabulary, random);
+            jdbcTemplate.execute("analyze story, element, rel_story__elements");
+            log.info("Inserted {} elements in {} s", elements, (System.nanoTime() - start) / 1_000_000_000);
+
+            for (int i = 0; i < WARM_UP_QUERIES; i++) {
+                storySearch.searchSimilar(misspelled(vocabulary, random), LIMIT);
+            }
+            long[] latencies = new long[MEASURED_QUERIES];
+            int hits = 0;
+            for (int i = 0; i < MEASURED_QUERIES; i++) {
+                String query = misspelled(vocabulary, random);
+                long queryStart = System.nanoTime();
+                hits += storySearch.searchSimilar(query, LIMIT).size();
+                latencies[i] = System.nanoTime() - queryStart;
+            }
+            Arrays.sort(latencies);
+            double p50 = latencies[MEASURED_QUERIES / 2] / 1e6;
+            double p99 = latencies[MEASURED_QUERIES * 99 / 100] / 1e6;
+            log.info(
+                "Similar search over {} elements: p50 {} ms, p99 {} ms, {} hits per query",
+                elements,
+                String.format("%.2f", p50),
+                String.format("%.2f", p99),
+                String.format("%.1f", (double) hits / MEASURED_QUERIES)
+            );
+            status.setRollbackOnly();
+
+            assertThat(hits).isPositive();
+            assertThat(p99).isLessThan(p99Budget);
+        });
+    }
+
+    private void insertCatalog(int stories, List<String> vocabulary, Random random) {
+        String sql =
+            "with story_row as (insert into story (id, story_name) values (nextval('story_sequence'), ?) returning id)," +
+            " element_rows as (insert into element (id, element_text)" +
+            " select nextval('element_sequence'), element_text from unnest(?) as element_text returning id)" +
+            " insert into rel_story__elements (story_id, elements_id, elements_order)" +
+            " select story_row.id, element_rows.id, row_number() over (order by element_rows.id) - 1 from story_row, element_rows";
+        for (int from = 0; from < stories; from += STORIES_PER_BATCH) {
+            int batchSize = Math.min(STORIES_PER_BATCH, stories - from);
+            jdbcTemplate.batchUpdate(
+                sql,
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int index) throws SQLException {
+                        statement.setString(1, text(vocabulary, random, 3));
+                        String[] texts = new String[ELEMENTS_PER_STORY];
+                        for (int i = 0; i < texts.length; i++) {
+                            texts[i] = text(vocabulary, random, WORDS_PER_TEXT);
+                        }
+                        statement.setArray(2, statement.getConnection().createArrayOf("text", texts));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return batchSize;
+                    }
+                }
+            );
+        }
+    }
+
+    private static String text(List<String> vocabulary, Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(i == 0 ? "" : " ").append(vocabulary.get(random.nextInt(vocabulary.size())));
+        }
+        return text.toString();
+    }
+
+    /**
+     * A word of the vocabulary with one letter replaced, as a learner would misspell it.
+     */
+    private static String misspelled(List<String> vocabulary, Random random) {
+        char[] word = vocabulary.get(random.nextInt(vocabulary.size())).toCharArray();
+        word[1 + random.nextInt(word.length - 1)] = (char) ('a' + random.nextInt(26));
+        return new String(word);
+    }
+
+    private static String word(Random random) {
+        char[] word = new char[5 + random.nextInt(6)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+}
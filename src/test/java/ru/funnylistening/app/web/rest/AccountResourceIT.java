@@ -18,8 +18,10 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 import ru.funnylistening.app.IntegrationTest;
 import ru.funnylistening.app.config.Constants;
+import ru.funnylistening.app.domain.OutgoingMail;
 import ru.funnylistening.app.domain.User;
 import ru.funnylistening.app.repository.AuthorityRepository;
+import ru.funnylistening.app.repository.OutgoingMailRepository;
 import ru.funnylistening.app.repository.UserRepository;
 import ru.funnylistening.app.security.AuthoritiesConstants;
 import ru.funnylistening.app.service.UserService;
@@ -48,6 +50,9 @@ class AccountResourceIT {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private OutgoingMailRepository outgoingMailRepository;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
@@ -132,6 +137,7 @@ class AccountResourceIT {
             .andExpect(status().isCreated());
 
         assertThat(userRepository.findOneByLogin("test-register-valid")).isPresent();
+        assertThat(outgoingMailRepository.findAll()).extracting(OutgoingMail::getRecipient).contains("test-register-valid@example.com");
     }
 
     @Test
@@ -665,6 +671,8 @@ class AccountResourceIT {
         restAccountMockMvc
             .perform(post("/api/account/reset-password/init").content("password-reset@example.com"))
             .andExpect(status().isOk());
+
+        assertThat(outgoingMailRepository.findAll()).extracting(OutgoingMail::getRecipient).contains("password-reset@example.com");
     }
 
     @Test
@@ -0,0 +1,148 @@
+package ru.funnylistening.app.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.undertow.io.BufferWritableOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.funnylistening.app.service.AudioFile;
+import ru.funnylistening.app.service.MappedAudioCache;
+
+/**
+ * Unit tests for {@link AudioResponseWriter}.
+ */
+class AudioResponseWriterTest {
+
+    private static final byte[] AUDIO = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path directory;
+
+    private AudioFile audio;
+
+    private MappedAudioCache mappedAudioCache;
+
+    private AudioResponseWriter audioResponseWriter;
+
+    private SendfileOutputStream out;
+
+    private MockHttpServletResponse containerResponse;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        Path path = Files.write(directory.resolve("take.mp3"), AUDIO);
+        audio = new AudioFile(path, AUDIO.length, Files.getLastModifiedTime(path).toMillis(), "\"take\"");
+        mappedAudioCache = mock(MappedAudioCache.class);
+        when(mappedAudioCache.get(any())).thenReturn(Optional.empty());
+        audioResponseWriter = new AudioResponseWriter(mappedAudioCache);
+        out = new SendfileOutputStream();
+        containerResponse =
+            new MockHttpServletResponse() {
+                @Override
+                public ServletOutputStream getOutputStream() {
+                    return out;
+                }
+            };
+    }
+
+    @Test
+    void testRangeIsSentFromTheFileUnderTheWrappers() throws Exception {
+        audioResponseWriter.write(audio, rangeRequest(), new HttpServletResponseWrapper(containerResponse));
+
+        assertThat(containerResponse.isCommitted()).isTrue();
+        assertThat(containerResponse.getStatus()).isEqualTo(206);
+        assertThat(out.transfers).isEqualTo(1);
+        assertThat(out.sent.toString(StandardCharsets.US_ASCII)).isEqualTo("2345");
+    }
+
+    @Test
+    void testRangeIsWrittenFromTheMapping() throws Exception {
+        when(mappedAudioCache.get(audio)).thenReturn(Optional.of(ByteBuffer.allocateDirect(AUDIO.length).put(AUDIO).flip()));
+
+        audioResponseWriter.write(audio, rangeRequest(), new HttpServletResponseWrapper(containerResponse));
+
+        assertThat(out.transfers).isZero();
+        assertThat(out.bufferWrites).isEqualTo(1);
+        assertThat(out.sent.toString(StandardCharsets.US_ASCII)).isEqualTo("2345");
+    }
+
+    private static MockHttpServletRequest rangeRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/elements/1/audio");
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        return request;
+    }
+
+    /**
+     * The output stream of Undertow, sending the files with {@code sendfile} and the buffers as they are, and failing on
+     * any copy of their bytes through the stream.
+     */
+    private static final class SendfileOutputStream extends ServletOutputStream implements BufferWritableOutputStream {
+
+        private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+
+        private int transfers;
+
+        private int bufferWrites;
+
+        @Override
+        public void transferFrom(FileChannel source) throws IOException {
+            transfers++;
+            long position = source.position();
+            long count = source.size() - position;
+            WritableByteChannel target = Channels.newChannel(sent);
+            while (count > 0) {
+                long transferred = source.transferTo(position, count, target);
+                position += transferred;
+                count -= transferred;
+            }
+        }
+
+        @Override
+        public void write(ByteBuffer[] buffers) throws IOException {
+            for (ByteBuffer buffer : buffers) {
+                write(buffer);
+            }
+        }
+
+        @Override
+        public void write(ByteBuffer byteBuffer) throws IOException {
+            bufferWrites++;
+            Channels.newChannel(sent).write(byteBuffer);
+        }
+
+        @Override
+        public void write(int b) {
+            throw new AssertionError("copied");
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
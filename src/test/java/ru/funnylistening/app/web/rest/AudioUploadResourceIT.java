@@ -0,0 +1,135 @@
+package ru.funnylistening.app.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import ru.funnylistening.app.IntegrationTest;
+import ru.funnylistening.app.domain.Element;
+import ru.funnylistening.app.repository.ElementRepository;
+import ru.funnylistening.app.service.dto.AudioUploadDTO;
+
+/**
+ * Integration tests for the {@link AudioUploadResource} REST controller.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+class AudioUploadResourceIT {
+
+    private static final String UPLOADS_API_URL = "/api/elements/{id}/audio/uploads";
+    private static final String UPLOAD_API_URL = UPLOADS_API_URL + "/{uploadId}";
+
+    private static final String OFFSET_OCTET_STREAM = "application/offset+octet-stream";
+
+    @Autowired
+    private ElementRepository elementRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc restAudioUploadMockMvc;
+
+    private Element element;
+
+    @BeforeEach
+    public void initTest() {
+        element = ElementResourceIT.createEntity(em);
+    }
+
+    @Test
+    @Transactional
+    void uploadAudioInChunks() throws Exception {
+        elementRepository.saveAndFlush(element);
+        byte[] audio = ("chunked recording " + System.nanoTime()).getBytes(StandardCharsets.US_ASCII);
+
+        // Start the upload
+        String created = restAudioUploadMockMvc
+            .perform(post(UPLOADS_API_URL, element.getId()).header(AudioUploadResource.UPLOAD_LENGTH, audio.length).param("filename", "take.mp3"))
+            .andExpect(status().isCreated())
+            .andExpect(header().string(AudioUploadResource.UPLOAD_OFFSET, "0"))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        String uploadId = objectMapper.readValue(created, AudioUploadDTO.class).getId();
+
+        // Send the first chunk
+        restAudioUploadMockMvc
+            .perform(
+                patch(UPLOAD_API_URL, element.getId(), uploadId)
+                    .header(AudioUploadResource.UPLOAD_OFFSET, 0)
+                    .contentType(OFFSET_OCTET_STREAM)
+                    .content(Arrays.copyOfRange(audio, 0, 5))
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().string(AudioUploadResource.UPLOAD_OFFSET, "5"))
+            .andExpect(jsonPath("$.completed").value(false));
+
+        // A chunk at the wrong offset is rejected with the offset to resume from
+        restAudioUploadMockMvc
+            .perform(
+                patch(UPLOAD_API_URL, element.getId(), uploadId)
+                    .header(AudioUploadResource.UPLOAD_OFFSET, 0)
+                    .contentType(OFFSET_OCTET_STREAM)
+                    .content(Arrays.copyOfRange(audio, 0, 5))
+            )
+            .andExpect(status().isConflict())
+            .andExpect(header().string(AudioUploadResource.UPLOAD_OFFSET, "5"));
+        restAudioUploadMockMvc
+            .perform(get(UPLOAD_API_URL, element.getId(), uploadId))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.offset").value(5));
+
+        // Send the rest, which attaches the audio to the element
+        restAudioUploadMockMvc
+            .perform(
+                patch(UPLOAD_API_URL, element.getId(), uploadId)
+                    .header(AudioUploadResource.UPLOAD_OFFSET, 5)
+                    .contentType(OFFSET_OCTET_STREAM)
+                    .content(Arrays.copyOfRange(audio, 5, audio.length))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.completed").value(true));
+
+        Element uploaded = elementRepository.findById(element.getId()).orElseThrow();
+        assertThat(uploaded.getElementAudioPath()).startsWith("blobs/").endsWith(".mp3");
+        restAudioUploadMockMvc
+            .perform(get("/api/elements/{id}/audio", element.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(audio));
+        restAudioUploadMockMvc.perform(get(UPLOAD_API_URL, element.getId(), uploadId)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    void uploadForNonExistingElement() throws Exception {
+        restAudioUploadMockMvc
+            .perform(post(UPLOADS_API_URL, Long.MAX_VALUE).header(AudioUploadResource.UPLOAD_LENGTH, 10))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    void uploadWithInvalidLength() throws Exception {
+        elementRepository.saveAndFlush(element);
+
+        restAudioUploadMockMvc
+            .perform(post(UPLOADS_API_URL, element.getId()).header(AudioUploadResource.UPLOAD_LENGTH, 0))
+            .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,130 @@
+package ru.funnylistening.app.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import ru.funnylistening.app.IntegrationTest;
+import ru.funnylistening.app.domain.Element;
+import ru.funnylistening.app.domain.Story;
+import ru.funnylistening.app.repository.ElementRepository;
+import ru.funnylistening.app.repository.StoryRepository;
+import ru.funnylistening.app.service.AudioBlobService;
+
+/**
+ * Integration tests for the {@link CatalogImportResource} REST controller.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+class CatalogImportResourceIT {
+
+    @Autowired
+    private StoryRepository storyRepository;
+
+    @Autowired
+    private ElementRepository elementRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private MockMvc restCatalogImportMockMvc;
+
+    @SpyBean
+    private AudioBlobService audioBlobService;
+
+    @Test
+    @Transactional
+    void importElementsFromCsv() throws Exception {
+        Story story = storyRepository.saveAndFlush(StoryResourceIT.createEntity(em));
+        int databaseSizeBeforeImport = elementRepository.findAll().size();
+
+        String csv =
+            "id;element_text;element_audio_path;story_id\n" +
+            "1;Market Beauty;feed Licensed efficient;" + story.getId() + "\n" +
+            "2;;Congo AGP;\n" +
+            "3;\"Streets; quoted\";;\n" +
+            "4;Orphan;;" + (story.getId() + 1_000_000) + "\n";
+
+        restCatalogImportMockMvc
+            .perform(post("/api/elements/import").contentType("text/csv").content(csv.getBytes(StandardCharsets.UTF_8)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(2))
+            .andExpect(jsonPath("$.errors.length()").value(2))
+            .andExpect(jsonPath("$.errors[0].line").value(3))
+            .andExpect(jsonPath("$.errors[1].line").value(5));
+
+        em.clear();
+        List<Element> elements = elementRepository.findAll();
+        assertThat(elements).hasSize(databaseSizeBeforeImport + 2);
+        assertThat(elements).extracting(Element::getElementText).contains("Market Beauty", "Streets; quoted");
+        assertThat(elementRepository.findAllByStoryId(story.getId())).extracting(Element::getElementText).containsExactly("Market Beauty");
+    }
+
+    @Test
+    @Transactional
+    void importStoriesFromNdjson() throws Exception {
+        int databaseSizeBeforeImport = storyRepository.findAll().size();
+
+        String ndjson =
+            "{\"id\":1,\"storyName\":\"Monitored composite\",\"elements\":[{\"elementText\":\"One\"},{\"elementText\":\"Two\"}]}\n" +
+            "{\"storyName\":\"Iowa Implementation sky\"}\n" +
+            "{\"storyName\":\n" +
+            "{\"storyName\":\"Broken\",\"elements\":[{\"elementAudioPath\":\"no text\"}]}\n";
+
+        restCatalogImportMockMvc
+            .perform(post("/api/stories/import").contentType("application/x-ndjson").content(ndjson.getBytes(StandardCharsets.UTF_8)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(2))
+            .andExpect(jsonPath("$.errors[*].line").value(contains(3, 4)));
+
+        em.clear();
+        List<Story> stories = storyRepository.findAll();
+        assertThat(stories).hasSize(databaseSizeBeforeImport + 2);
+        Story imported = stories.stream().filter(story -> "Monitored composite".equals(story.getStoryName())).findFirst().orElseThrow();
+        assertThat(elementRepository.findAllByStoryId(imported.getId())).extracting(Element::getElementText).containsExactly("One", "Two");
+    }
+
+    @Test
+    @Transactional
+    void importElementsWithAudioThatCantBeStored() throws Exception {
+        doThrow(new UncheckedIOException("Can't store audio broken.mp3", new IOException("Input/output error")))
+            .when(audioBlobService)
+            .acquire(eq("broken.mp3"), isNull());
+        int databaseSizeBeforeImport = elementRepository.findAll().size();
+
+        String csv = "element_text;element_audio_path
+" + "Broken;broken.mp3
+" + "Fine;
+";
+
+        restCatalogImportMockMvc
+            .perform(post("/api/elements/import").contentType("text/csv").content(csv.getBytes(StandardCharsets.UTF_8)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(1))
+            .andExpect(jsonPath("$.errors.length()").value(1))
+            .andExpect(jsonPath("$.errors[0].line").value(2));
+
+        em.clear();
+        List<Element> elements = elementRepository.findAll();
+        assertThat(elements).hasSize(databaseSizeBeforeImport + 1);
+        assertThat(elements).extracting(Element::getElementText).contains("Fine").doesNotContain("Broken");
+    }
+}
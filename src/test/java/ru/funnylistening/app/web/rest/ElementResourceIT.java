@@ -1,25 +1,46 @@
 package ru.funnylistening.app.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.persistence.EntityManager;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 import ru.funnylistening.app.IntegrationTest;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.AudioBlob;
 import ru.funnylistening.app.domain.Element;
+import ru.funnylistening.app.domain.Story;
+import ru.funnylistening.app.domain.enumeration.AudioQuality;
+import ru.funnylistening.app.domain.enumeration.TranscodingStatus;
+import ru.funnylistening.app.repository.AudioBlobRepository;
+import ru.funnylistening.app.repository.AudioRenditionRepository;
 import ru.funnylistening.app.repository.ElementRepository;
+import ru.funnylistening.app.service.AudioTranscodingService;
 
 /**
  * Integration tests for the {@link ElementResource} REST controller.
@@ -44,6 +65,18 @@ class ElementResourceIT {
     @Autowired
     private ElementRepository elementRepository;
 
+    @Autowired
+    private AudioBlobRepository audioBlobRepository;
+
+    @Autowired
+    private AudioRenditionRepository audioRenditionRepository;
+
+    @Autowired
+    private AudioTranscodingService audioTranscodingService;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Autowired
     private EntityManager em;
 
@@ -147,6 +180,28 @@ class ElementResourceIT {
             .andExpect(jsonPath("$.[*].elementAudioPath").value(hasItem(DEFAULT_ELEMENT_AUDIO_PATH)));
     }
 
+    @Test
+    @Transactional
+    void getAllElementsAfterCursor() throws Exception {
+        // Initialize the database
+        elementRepository.saveAndFlush(element);
+        Element second = elementRepository.saveAndFlush(createEntity(em));
+
+        // Get the first slice, then the next one
+        restElementMockMvc
+            .perform(get(ENTITY_API_URL + "?after={after}&size=1", KeysetPagination.cursor(element.getId() - 1)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(element.getId().intValue()))
+            .andExpect(header().string(KeysetPagination.NEXT_CURSOR_HEADER, KeysetPagination.cursor(element.getId())));
+        restElementMockMvc
+            .perform(get(ENTITY_API_URL + "?after={after}&size=1", KeysetPagination.cursor(element.getId())))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].id").value(second.getId().intValue()));
+
+        restElementMockMvc.perform(get(ENTITY_API_URL + "?after=&size=0")).andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     void getElement() throws Exception {
@@ -163,6 +218,45 @@ class ElementResourceIT {
             .andExpect(jsonPath("$.elementAudioPath").value(DEFAULT_ELEMENT_AUDIO_PATH));
     }
 
+    @Test
+    @Transactional
+    void getElementWithEntireStory() throws Exception {
+        // Initialize the database
+        Story story = StoryResourceIT.createEntity(em);
+        em.persist(story);
+        element.setEntireStory(story);
+        elementRepository.saveAndFlush(element);
+        em.clear();
+
+        // Get the element, referencing its story by id only
+        restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID, element.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(element.getId().intValue()))
+            .andExpect(jsonPath("$.entireStoryId").value(story.getId().intValue()))
+            .andExpect(jsonPath("$.entireStory").doesNotExist());
+    }
+
+    @Test
+    @Transactional
+    void getElementNotModified() throws Exception {
+        // Initialize the database
+        elementRepository.saveAndFlush(element);
+
+        String eTag = restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID, element.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+        restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID, element.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+    }
+
     @Test
     @Transactional
     void getNonExistingElement() throws Exception {
@@ -170,6 +264,239 @@ class ElementResourceIT {
         restElementMockMvc.perform(get(ENTITY_API_URL_ID, Long.MAX_VALUE)).andExpect(status().isNotFound());
     }
 
+    @Test
+    @Transactional
+    void getElementAudio() throws Exception {
+        // Initialize the audio store and the database
+        Path audioFile = Paths.get(applicationProperties.getAudio().getStoragePath()).resolve("element-audio-" + count.incrementAndGet() + ".mp3");
+        Files.createDirectories(audioFile.getParent());
+        Files.write(audioFile, "0123456789".getBytes(StandardCharsets.US_ASCII));
+        element.setElementAudioPath(audioFile.getFileName().toString());
+        elementRepository.saveAndFlush(element);
+
+        // Get the whole audio
+        String eTag = restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", element.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+            .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+            .andExpect(content().contentType("audio/mpeg"))
+            .andExpect(content().string("0123456789"))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        assertThat(eTag).isNotNull();
+
+        // Get a range of the audio
+        restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", element.getId()).header(HttpHeaders.RANGE, "bytes=2-5").header(HttpHeaders.IF_RANGE, eTag))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+            .andExpect(content().string("2345"));
+
+        // A stale If-Range gets the whole audio
+        restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", element.getId()).header(HttpHeaders.RANGE, "bytes=2-5").header(HttpHeaders.IF_RANGE, "\"stale\""))
+            .andExpect(status().isOk())
+            .andExpect(content().string("0123456789"));
+
+        // An unsatisfiable range is rejected
+        restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", element.getId()).header(HttpHeaders.RANGE, "bytes=20-"))
+            .andExpect(status().isRequestedRangeNotSatisfiable())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+
+        // A current validator is not modified
+        restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", element.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @Transactional
+    void createElementsWithIdenticalAudioShareOneBlob() throws Exception {
+        // Two recordings with the same content under different paths
+        Path audioDirectory = Paths.get(applicationProperties.getAudio().getStoragePath());
+        Files.createDirectories(audioDirectory);
+        Path firstFile = audioDirectory.resolve("duplicate-audio-" + count.incrementAndGet() + ".mp3");
+        Path secondFile = audioDirectory.resolve("duplicate-audio-" + count.incrementAndGet() + ".mp3");
+        String content = "same recording " + count.incrementAndGet();
+        Files.write(firstFile, content.getBytes(StandardCharsets.US_ASCII));
+        Files.write(secondFile, content.getBytes(StandardCharsets.US_ASCII));
+
+        Element first = createEntity(em).elementAudioPath(firstFile.getFileName().toString());
+        Element second = createEntity(em).elementAudioPath(secondFile.getFileName().toString());
+        restElementMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(first)))
+            .andExpect(status().isCreated());
+        restElementMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(second)))
+            .andExpect(status().isCreated());
+
+        // Both elements reference the same blob
+        List<Element> elementList = elementRepository.findAll();
+        Element firstCreated = elementList.get(elementList.size() - 2);
+        Element secondCreated = elementList.get(elementList.size() - 1);
+        assertThat(firstCreated.getElementAudioPath()).startsWith("blobs/").isEqualTo(secondCreated.getElementAudioPath());
+        AudioBlob blob = audioBlobRepository.findOneByLocation(firstCreated.getElementAudioPath()).orElseThrow();
+        assertThat(blob.getReferenceCount()).isEqualTo(2);
+        assertThat(blob.getByteSize()).isEqualTo(content.length());
+
+        // The blob ETag is the content hash
+        restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", firstCreated.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + blob.getSha256() + "\""));
+
+        // Deleting the elements releases the blob
+        restElementMockMvc.perform(delete(ENTITY_API_URL_ID, firstCreated.getId())).andExpect(status().isNoContent());
+        assertThat(audioBlobRepository.findOneByLocation(blob.getLocation())).hasValueSatisfying(b -> assertThat(b.getReferenceCount()).isEqualTo(1));
+        restElementMockMvc.perform(delete(ENTITY_API_URL_ID, secondCreated.getId())).andExpect(status().isNoContent());
+        assertThat(audioBlobRepository.findOneByLocation(blob.getLocation())).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    void getElementAudioRendition() throws Exception {
+        // One second of PCM, which the Java encoder can transcode
+        Path audioFile = createPcmAudio();
+        element.setElementAudioPath(audioFile.getFileName().toString());
+        restElementMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(element)))
+            .andExpect(status().isCreated());
+        List<Element> elementList = elementRepository.findAll();
+        Element created = elementList.get(elementList.size() - 1);
+        long originalLength = Files.size(audioFile);
+
+        // Until transcoded, the original audio is served
+        restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", created.getId()).param("quality", "low"))
+            .andExpect(status().isOk())
+            .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, originalLength));
+
+        // Transcode every queued rendition
+        for (int run = 0; run < AudioQuality.values().length; run++) {
+            audioTranscodingService.transcodePending();
+        }
+        AudioBlob blob = audioBlobRepository.findOneByLocation(created.getElementAudioPath()).orElseThrow();
+        assertThat(audioRenditionRepository.findAllByBlob(blob))
+            .hasSize(AudioQuality.values().length)
+            .allSatisfy(rendition -> assertThat(rendition.getStatus()).isEqualTo(TranscodingStatus.DONE));
+
+        // Slow clients get a smaller rendition, others the original
+        long lowLength = restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", created.getId()).header("Save-Data", "on"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.VARY, containsString("Save-Data")))
+            .andReturn()
+            .getResponse()
+            .getContentLengthLong();
+        assertThat(lowLength).isLessThan(originalLength);
+        long mediumLength = restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", created.getId()).header("ECT", "3g"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentLengthLong();
+        assertThat(mediumLength).isGreaterThan(lowLength).isLessThan(originalLength);
+        restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", created.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, originalLength));
+        restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", created.getId()).param("quality", "loud"))
+            .andExpect(status().isBadRequest());
+
+        // Deleting the element deletes the renditions with the blob
+        restElementMockMvc.perform(delete(ENTITY_API_URL_ID, created.getId())).andExpect(status().isNoContent());
+        assertThat(audioRenditionRepository.findAllByBlob(blob)).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    void getElementPeaks() throws Exception {
+        element.setElementAudioPath(createPcmAudio().getFileName().toString());
+        restElementMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(element)))
+            .andExpect(status().isCreated());
+        List<Element> elementList = elementRepository.findAll();
+        Element created = elementList.get(elementList.size() - 1);
+        AudioBlob blob = audioBlobRepository.findOneByLocation(created.getElementAudioPath()).orElseThrow();
+
+        // The peaks are computed on the first request, keyed by the audio content
+        String eTag = "\"" + blob.getSha256() + "-peaks\"";
+        byte[] peaks = restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/peaks", created.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, eTag))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+        ByteBuffer dat = ByteBuffer.wrap(peaks).order(ByteOrder.LITTLE_ENDIAN);
+        assertThat(dat.getInt()).as("version").isEqualTo(1);
+        assertThat(dat.getInt()).as("flags").isEqualTo(1);
+        assertThat(dat.getInt()).as("sample rate").isEqualTo(44100);
+        int samplesPerPixel = dat.getInt();
+        int length = dat.getInt();
+        assertThat(length).isEqualTo((44100 + samplesPerPixel - 1) / samplesPerPixel);
+        assertThat(peaks).hasSize(20 + 2 * length);
+
+        restElementMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/peaks", created.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @Transactional
+    void getNonExistingElementPeaks() throws Exception {
+        // The element audio isn't a stored blob
+        elementRepository.saveAndFlush(element);
+
+        restElementMockMvc.perform(get(ENTITY_API_URL_ID + "/peaks", element.getId())).andExpect(status().isNotFound());
+        restElementMockMvc.perform(get(ENTITY_API_URL_ID + "/peaks", Long.MAX_VALUE)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    void getUndecodableElementPeaks() throws Exception {
+        // MP3 isn't decoded by the JDK, nor by the java encoder the peaks would be transcoded with
+        Path audioFile = Paths.get(applicationProperties.getAudio().getStoragePath()).resolve("mp3-audio-" + count.incrementAndGet() + ".mp3");
+        Files.createDirectories(audioFile.getParent());
+        Files.write(audioFile, new byte[] { 'I', 'D', '3', 4, 0, 0, 0, 0, 0, 0 });
+        element.setElementAudioPath(audioFile.getFileName().toString());
+        restElementMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(element)))
+            .andExpect(status().isCreated());
+        List<Element> elementList = elementRepository.findAll();
+        Element created = elementList.get(elementList.size() - 1);
+
+        restElementMockMvc.perform(get(ENTITY_API_URL_ID + "/peaks", created.getId())).andExpect(status().isNotFound());
+        // remembered as undecodable rather than computed again
+        restElementMockMvc.perform(get(ENTITY_API_URL_ID + "/peaks", created.getId())).andExpect(status().isNotFound());
+    }
+
+    private Path createPcmAudio() throws Exception {
+        Path audioFile = Paths.get(applicationProperties.getAudio().getStoragePath()).resolve("pcm-audio-" + count.incrementAndGet() + ".wav");
+        Files.createDirectories(audioFile.getParent());
+        AudioFormat format = new AudioFormat(44100f, 16, 2, true, false);
+        byte[] samples = new byte[44100 * format.getFrameSize()];
+        random.nextBytes(samples);
+        try (AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(samples), format, 44100)) {
+            AudioSystem.write(in, AudioFileFormat.Type.WAVE, audioFile.toFile());
+        }
+        return audioFile;
+    }
+
+    @Test
+    @Transactional
+    void getNonExistingElementAudio() throws Exception {
+        // The element exists but its audio file doesn't
+        elementRepository.saveAndFlush(element);
+
+        restElementMockMvc.perform(get(ENTITY_API_URL_ID + "/audio", element.getId())).andExpect(status().isNotFound());
+        restElementMockMvc.perform(get(ENTITY_API_URL_ID + "/audio", Long.MAX_VALUE)).andExpect(status().isNotFound());
+    }
+
     @Test
     @Transactional
     void putExistingElement() throws Exception {
@@ -13,6 +13,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -157,6 +158,52 @@ class LinkResourceIT {
             .andExpect(jsonPath("$.linkText").value(DEFAULT_LINK_TEXT));
     }
 
+    @Test
+    @Transactional
+    void getAllLinksNotModified() throws Exception {
+        // Initialize the database
+        linkRepository.saveAndFlush(link);
+
+        String eTag = restLinkMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+        // The list didn't change
+        restLinkMockMvc.perform(get(ENTITY_API_URL).header(HttpHeaders.IF_NONE_MATCH, eTag)).andExpect(status().isNotModified());
+
+        // Updating a link changes the list validator
+        link.setLinkText(UPDATED_LINK_TEXT);
+        linkRepository.saveAndFlush(link);
+        restLinkMockMvc
+            .perform(get(ENTITY_API_URL).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].linkText").value(hasItem(UPDATED_LINK_TEXT)));
+    }
+
+    @Test
+    @Transactional
+    void getLinkNotModified() throws Exception {
+        // Initialize the database
+        linkRepository.saveAndFlush(link);
+
+        String eTag = restLinkMockMvc
+            .perform(get(ENTITY_API_URL_ID, link.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+        restLinkMockMvc
+            .perform(get(ENTITY_API_URL_ID, link.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+    }
+
     @Test
     @Transactional
     void getNonExistingLink() throws Exception {
@@ -193,6 +240,60 @@ class LinkResourceIT {
         assertThat(testLink.getLinkText()).isEqualTo(UPDATED_LINK_TEXT);
     }
 
+    @Test
+    @Transactional
+    void putStaleLink() throws Exception {
+        // Initialize the database
+        linkRepository.saveAndFlush(link);
+
+        int databaseSizeBeforeUpdate = linkRepository.findAll().size();
+
+        // Update the link from a version that was updated meanwhile
+        Link staleLink = linkRepository.findById(link.getId()).get();
+        em.detach(staleLink);
+        staleLink.linkText(UPDATED_LINK_TEXT);
+        Link concurrentLink = linkRepository.findById(link.getId()).get();
+        concurrentLink.linkText(DEFAULT_LINK_TEXT + DEFAULT_LINK_TEXT);
+        linkRepository.saveAndFlush(concurrentLink);
+
+        restLinkMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, staleLink.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(staleLink))
+            )
+            .andExpect(status().isConflict());
+
+        // Validate the Link in the database
+        List<Link> linkList = linkRepository.findAll();
+        assertThat(linkList).hasSize(databaseSizeBeforeUpdate);
+        Link testLink = linkList.get(linkList.size() - 1);
+        assertThat(testLink.getLinkText()).isEqualTo(DEFAULT_LINK_TEXT + DEFAULT_LINK_TEXT);
+    }
+
+    @Test
+    @Transactional
+    void putLinkWithoutVersion() throws Exception {
+        // Initialize the database
+        linkRepository.saveAndFlush(link);
+
+        Link updatedLink = linkRepository.findById(link.getId()).get();
+        em.detach(updatedLink);
+        updatedLink.linkText(UPDATED_LINK_TEXT);
+        updatedLink.setVersion(null);
+
+        // Without a version, the update can't be checked against concurrent ones
+        restLinkMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, updatedLink.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedLink))
+            )
+            .andExpect(status().isBadRequest());
+
+        assertThat(linkRepository.findById(link.getId()).get().getLinkText()).isEqualTo(DEFAULT_LINK_TEXT);
+    }
+
     @Test
     @Transactional
     void putNonExistingLink() throws Exception {
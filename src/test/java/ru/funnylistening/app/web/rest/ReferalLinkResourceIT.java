@@ -13,6 +13,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -157,6 +158,34 @@ class ReferalLinkResourceIT {
             .andExpect(jsonPath("$.linkText").value(DEFAULT_LINK_TEXT));
     }
 
+    @Test
+    @Transactional
+    void getReferalLinkNotModified() throws Exception {
+        // Initialize the database
+        referalLinkRepository.saveAndFlush(referalLink);
+
+        String eTag = restReferalLinkMockMvc
+            .perform(get(ENTITY_API_URL_ID, referalLink.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+        restReferalLinkMockMvc
+            .perform(get(ENTITY_API_URL_ID, referalLink.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+
+        // Updating the referal link changes its validator
+        referalLink.setLinkText(UPDATED_LINK_TEXT);
+        referalLinkRepository.saveAndFlush(referalLink);
+        restReferalLinkMockMvc
+            .perform(get(ENTITY_API_URL_ID, referalLink.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.linkText").value(UPDATED_LINK_TEXT));
+    }
+
     @Test
     @Transactional
     void getNonExistingReferalLink() throws Exception {
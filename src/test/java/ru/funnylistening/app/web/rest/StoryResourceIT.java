@@ -1,15 +1,28 @@
 package ru.funnylistening.app.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 import javax.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,14 +33,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 import ru.funnylistening.app.IntegrationTest;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.domain.Element;
 import ru.funnylistening.app.domain.Story;
+import ru.funnylistening.app.repository.StoryAudioSegmentRepository;
 import ru.funnylistening.app.repository.StoryRepository;
+import ru.funnylistening.app.service.StoryAudioIndexJob;
 import ru.funnylistening.app.service.StoryService;
 
 /**
@@ -57,6 +75,18 @@ class StoryResourceIT {
     @Mock
     private StoryService storyServiceMock;
 
+    @Autowired
+    private StoryService storyService;
+
+    @Autowired
+    private StoryAudioSegmentRepository storyAudioSegmentRepository;
+
+    @Autowired
+    private StoryAudioIndexJob storyAudioIndexJob;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Autowired
     private EntityManager em;
 
@@ -158,21 +188,108 @@ class StoryResourceIT {
             .andExpect(jsonPath("$.[*].storyName").value(hasItem(DEFAULT_STORY_NAME)));
     }
 
+    @Test
+    @Transactional
+    void getAllStoriesWithEagerRelationships() throws Exception {
+        // Initialize the database
+        Element element = ElementResourceIT.createEntity(em);
+        em.persist(element);
+        story.addElements(element);
+        storyRepository.saveAndFlush(story);
+        em.clear();
+
+        // Get a page of stories with their elements
+        restStoryMockMvc
+            .perform(get(ENTITY_API_URL + "?eagerload=true&sort=id,desc&size=5"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(header().exists("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(story.getId().intValue())))
+            .andExpect(jsonPath("$.[0].elements.[*].id").value(hasItem(element.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    void getAllStoriesAfterCursor() throws Exception {
+        // Initialize the database
+        storyRepository.saveAndFlush(story);
+        Story second = storyRepository.saveAndFlush(createEntity(em));
+        Story third = storyRepository.saveAndFlush(createEntity(em));
+
+        // Get the slice following the story before the first one
+        restStoryMockMvc
+            .perform(get(ENTITY_API_URL + "?after={after}&size=2&count=true", KeysetPagination.cursor(story.getId() - 1)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(story.getId().intValue(), second.getId().intValue())))
+            .andExpect(header().string(KeysetPagination.NEXT_CURSOR_HEADER, KeysetPagination.cursor(second.getId())))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andExpect(header().exists("X-Total-Count"));
+
+        // Get the next slice, without counting
+        restStoryMockMvc
+            .perform(get(ENTITY_API_URL + "?after={after}&size=2", KeysetPagination.cursor(second.getId())))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].id").value(third.getId().intValue()))
+            .andExpect(header().doesNotExist("X-Total-Count"));
+    }
+
+    @Test
+    @Transactional
+    void getAllStoriesWithInvalidCursor() throws Exception {
+        restStoryMockMvc.perform(get(ENTITY_API_URL + "?after=not-a-cursor")).andExpect(status().isBadRequest());
+    }
+
     @SuppressWarnings({ "unchecked" })
     void getAllStoriesWithEagerRelationshipsIsEnabled() throws Exception {
-        when(storyServiceMock.findAllWithEagerRelationships(any())).thenReturn(new PageImpl(new ArrayList<>()));
+        when(storyServiceMock.findAllViews(any(), anyBoolean())).thenReturn(new PageImpl(new ArrayList<>()));
 
         restStoryMockMvc.perform(get(ENTITY_API_URL + "?eagerload=true")).andExpect(status().isOk());
 
-        verify(storyServiceMock, times(1)).findAllWithEagerRelationships(any());
+        verify(storyServiceMock, times(1)).findAllViews(any(), eq(true));
     }
 
     @SuppressWarnings({ "unchecked" })
     void getAllStoriesWithEagerRelationshipsIsNotEnabled() throws Exception {
-        when(storyServiceMock.findAllWithEagerRelationships(any())).thenReturn(new PageImpl(new ArrayList<>()));
+        when(storyServiceMock.findAllViews(any(), anyBoolean())).thenReturn(new PageImpl(new ArrayList<>()));
 
         restStoryMockMvc.perform(get(ENTITY_API_URL + "?eagerload=false")).andExpect(status().isOk());
-        verify(storyRepositoryMock, times(1)).findAll(any(Pageable.class));
+        verify(storyServiceMock, times(1)).findAllViews(any(), eq(false));
+    }
+
+    @Test
+    @Transactional
+    void exportStories() throws Exception {
+        // Initialize the database
+        Element element = ElementResourceIT.createEntity(em);
+        em.persist(element);
+        story.addElements(element);
+        storyRepository.saveAndFlush(story);
+        Story other = storyRepository.saveAndFlush(createEntity(em));
+        em.clear();
+
+        // Export all the stories
+        String export = restStoryMockMvc
+            .perform(get(ENTITY_API_URL + "/export"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        assertThat(export.split("\n"))
+            .anyMatch(line -> line.startsWith("{\"id\":" + story.getId() + ",") && line.contains("\"elements\":[{\"id\":" + element.getId() + ","))
+            .anyMatch(line -> line.startsWith("{\"id\":" + other.getId() + ",") && line.endsWith("\"elements\":[]}"));
+
+        // Export them gzipped
+        byte[] gzipped = restStoryMockMvc
+            .perform(get(ENTITY_API_URL + "/export?gzip=true"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("stories.ndjson.gz")))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(export);
+        }
     }
 
     @Test
@@ -190,6 +307,58 @@ class StoryResourceIT {
             .andExpect(jsonPath("$.storyName").value(DEFAULT_STORY_NAME));
     }
 
+    @Test
+    @Transactional
+    void getStoryAfterElementUpdate() throws Exception {
+        // Initialize the database
+        Element element = ElementResourceIT.createEntity(em);
+        em.persist(element);
+        story.addElements(element);
+        storyRepository.saveAndFlush(story);
+
+        restStoryMockMvc
+            .perform(get(ENTITY_API_URL_ID, story.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.elements.[0].elementText").value(element.getElementText()));
+
+        // Update a member element, which must invalidate the cached story JSON
+        Element updatedElement = new Element().elementText("updated text");
+        updatedElement.setId(element.getId());
+        restStoryMockMvc
+            .perform(
+                patch("/api/elements/{id}", element.getId())
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(updatedElement))
+            )
+            .andExpect(status().isOk());
+
+        restStoryMockMvc
+            .perform(get(ENTITY_API_URL_ID, story.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.elements.[0].elementText").value("updated text"));
+    }
+
+    @Test
+    @Transactional
+    void getStoryNotModified() throws Exception {
+        // Initialize the database
+        storyRepository.saveAndFlush(story);
+
+        String eTag = restStoryMockMvc
+            .perform(get(ENTITY_API_URL_ID, story.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+        restStoryMockMvc
+            .perform(get(ENTITY_API_URL_ID, story.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+    }
+
     @Test
     @Transactional
     void getNonExistingStory() throws Exception {
@@ -197,6 +366,129 @@ class StoryResourceIT {
         restStoryMockMvc.perform(get(ENTITY_API_URL_ID, Long.MAX_VALUE)).andExpect(status().isNotFound());
     }
 
+    @Test
+    @Transactional
+    void getStoryAudio() throws Exception {
+        // Initialize the audio store and the database
+        Path audioDirectory = Paths.get(applicationProperties.getAudio().getStoragePath());
+        Files.createDirectories(audioDirectory);
+        Element first = createElementWithAudio(audioDirectory, "01234");
+        Element second = createElementWithAudio(audioDirectory, "56789");
+        story.addElements(first).addElements(second);
+        storyService.save(story);
+
+        // The segment index maps each element to its place in the story audio
+        restStoryMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio/segments", story.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].elementId").value(contains(first.getId().intValue(), second.getId().intValue())))
+            .andExpect(jsonPath("$.[*].byteOffset").value(contains(0, 5)));
+
+        // Get the whole story audio
+        restStoryMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", story.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andExpect(content().string("0123456789"));
+
+        // Get a range spanning both elements
+        restStoryMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", story.getId()).header(HttpHeaders.RANGE, "bytes=3-6"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 3-6/10"))
+            .andExpect(content().string("3456"));
+    }
+
+    @Test
+    @Transactional
+    void getStoryAudioWithoutIndex() throws Exception {
+        // Initialize the audio store and the database, the elements in another order than their ids, without index
+        Path audioDirectory = Paths.get(applicationProperties.getAudio().getStoragePath());
+        Files.createDirectories(audioDirectory);
+        Element first = createElementWithAudio(audioDirectory, "01234");
+        Element second = createElementWithAudio(audioDirectory, "56789");
+        story.addElements(second).addElements(first);
+        storyRepository.saveAndFlush(story);
+
+        // The story audio is stitched in story order from its current elements, and nothing is written on the way
+        restStoryMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio", story.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().string("5678901234"));
+        assertThat(storyAudioSegmentRepository.findAllByStoryId(story.getId())).isEmpty();
+
+        // The index is rebuilt in the background
+        storyAudioIndexJob.rebuildStale();
+        assertThat(storyAudioSegmentRepository.findAllByStoryId(story.getId()))
+            .extracting(segment -> segment.getElementId())
+            .containsExactly(second.getId(), first.getId());
+    }
+
+    @Test
+    @Transactional
+    void getNonExistingStoryAudio() throws Exception {
+        restStoryMockMvc.perform(get(ENTITY_API_URL_ID + "/audio", Long.MAX_VALUE)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    void getStoryAudioPlaylist() throws Exception {
+        // Initialize the audio store and the database
+        Path audioDirectory = Paths.get(applicationProperties.getAudio().getStoragePath());
+        Files.createDirectories(audioDirectory);
+        story.addElements(createElementWithAudio(audioDirectory, "01234")).addElements(createElementWithAudio(audioDirectory, "56789"));
+        storyService.save(story);
+
+        // The story is cut across its elements, shorter together than a segment
+        MvcResult result = restStoryMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio/playlist.m3u8", story.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("application/vnd.apple.mpegurl"))
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andExpect(content().string(startsWith("#EXTM3U\n")))
+            .andExpect(content().string(not(containsString("#EXT-X-DISCONTINUITY\n"))))
+            .andExpect(content().string(endsWith("#EXT-X-ENDLIST\n")))
+            .andReturn();
+        List<String> segments = Arrays
+            .stream(result.getResponse().getContentAsString().split("\n"))
+            .filter(line -> !line.startsWith("#"))
+            .collect(Collectors.toList());
+        assertThat(segments).singleElement().satisfies(segment -> assertThat(segment).startsWith("hls/").endsWith(".mp3"));
+
+        // An unchanged playlist isn't sent again
+        restStoryMockMvc
+            .perform(
+                get(ENTITY_API_URL_ID + "/audio/playlist.m3u8", story.getId())
+                    .header(HttpHeaders.IF_NONE_MATCH, result.getResponse().getHeader(HttpHeaders.ETAG))
+            )
+            .andExpect(status().isNotModified());
+
+        // Segments are generated on their first request, then served from the cache, as immutable resources
+        for (int request = 0; request < 2; request++) {
+            restStoryMockMvc
+                .perform(get(ENTITY_API_URL_ID + "/audio/" + segments.get(0), story.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("private")))
+                .andExpect(content().string("0123456789"));
+        }
+        // A cached segment isn't served for a story that doesn't list it
+        Story other = storyRepository.saveAndFlush(createEntity(em));
+        restStoryMockMvc.perform(get(ENTITY_API_URL_ID + "/audio/" + segments.get(0), other.getId())).andExpect(status().isNotFound());
+        restStoryMockMvc.perform(get(ENTITY_API_URL_ID + "/audio/" + segments.get(0), Long.MAX_VALUE)).andExpect(status().isNotFound());
+        restStoryMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/audio/hls/{name}", story.getId(), "0123456789abcdef0123456789abcdef.mp3"))
+            .andExpect(status().isNotFound());
+    }
+
+    private Element createElementWithAudio(Path audioDirectory, String content) throws Exception {
+        Path audioFile = audioDirectory.resolve("story-audio-" + count.incrementAndGet() + ".mp3");
+        Files.write(audioFile, content.getBytes(StandardCharsets.US_ASCII));
+        Element element = ElementResourceIT.createEntity(em).elementAudioPath(audioFile.getFileName().toString());
+        em.persist(element);
+        return element;
+    }
+
     @Test
     @Transactional
     void putExistingStory() throws Exception {
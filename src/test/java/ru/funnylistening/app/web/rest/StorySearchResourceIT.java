@@ -0,0 +1,111 @@
+package ru.funnylistening.app.web.rest;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import ru.funnylistening.app.IntegrationTest;
+import ru.funnylistening.app.domain.Element;
+import ru.funnylistening.app.domain.Story;
+import ru.funnylistening.app.repository.StoryRepository;
+import ru.funnylistening.app.service.TypeaheadIndex;
+
+/**
+ * Integration tests for the {@link StorySearchResource} REST controller.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+class StorySearchResourceIT {
+
+    private static final String ENTITY_API_URL = "/api/stories/search";
+
+    @Autowired
+    private StoryRepository storyRepository;
+
+    @Autowired
+    private TypeaheadIndex typeaheadIndex;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private MockMvc restStorySearchMockMvc;
+
+    @Test
+    @Transactional
+    void searchStoriesByNameAndElementText() throws Exception {
+        Story byName = storyRepository.saveAndFlush(new Story().storyName("The Zanzibar lighthouse"));
+        Element element = new Element().elementText("A keeper walked to Zanzibar & back, twice to Zanzibar");
+        em.persist(element);
+        Story byElement = storyRepository.saveAndFlush(new Story().storyName("Night shift").addElements(element));
+        Story both = storyRepository.saveAndFlush(new Story().storyName("Zanzibar without the keeper"));
+        storyRepository.saveAndFlush(new Story().storyName("Zanzibar alone"));
+
+        restStorySearchMockMvc
+            .perform(get(ENTITY_API_URL + "?query=zanzibar keeper&size=5"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(jsonPath("$.[*].storyId").value(containsInAnyOrder(byElement.getId().intValue(), both.getId().intValue())))
+            .andExpect(jsonPath("$.[?(@.storyId == %d)].elementId", byElement.getId()).value(element.getId().intValue()))
+            .andExpect(jsonPath("$.[?(@.storyId == %d)].snippet", byElement.getId()).value(hasItem(containsString("<mark>keeper</mark>"))))
+            .andExpect(jsonPath("$.[?(@.storyId == %d)].snippet", byElement.getId()).value(hasItem(containsString("&amp;"))))
+            .andExpect(jsonPath("$.[?(@.storyId == %d)].elementId", both.getId()).isEmpty());
+
+        restStorySearchMockMvc
+            .perform(get(ENTITY_API_URL + "?query=lighthouse"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].storyId").value(byName.getId().intValue()))
+            .andExpect(jsonPath("$.[0].snippet").value(containsString("<mark>lighthouse</mark>")));
+    }
+
+    @Test
+    @Transactional
+    void searchStoriesWithBlankQuery() throws Exception {
+        restStorySearchMockMvc.perform(get(ENTITY_API_URL + "?query= ")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void searchSimilarStories() throws Exception {
+        Story story = storyRepository.saveAndFlush(new Story().storyName("The Zanzibar lighthouse"));
+
+        restStorySearchMockMvc
+            .perform(get(ENTITY_API_URL + "/similar?query=zanzibr lighthose&limit=5"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].storyId").value(hasItem(story.getId().intValue())))
+            .andExpect(jsonPath("$.[?(@.storyId == %d)].snippet", story.getId()).value(hasItem(containsString("<mark>lighthouse</mark>"))));
+
+        restStorySearchMockMvc.perform(get(ENTITY_API_URL + "/similar?query=zanzibr&limit=100")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void completeStories() throws Exception {
+        storyRepository.saveAndFlush(new Story().storyName("Quixotic quokkas"));
+        Element element = new Element().elementText("A quokka, then another quokka");
+        em.persist(element);
+        em.flush();
+        typeaheadIndex.rebuild();
+
+        restStorySearchMockMvc
+            .perform(get("/api/stories/typeahead?prefix=happy QUO&limit=2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").value(contains("quokka", "quokkas")));
+
+        restStorySearchMockMvc.perform(get("/api/stories/typeahead?prefix=quo&limit=0")).andExpect(status().isBadRequest());
+    }
+}
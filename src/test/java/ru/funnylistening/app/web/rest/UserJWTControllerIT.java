@@ -1,5 +1,6 @@
 package ru.funnylistening.app.web.rest;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.emptyString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
@@ -13,6 +14,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
@@ -84,6 +86,30 @@ class UserJWTControllerIT {
             .andExpect(header().string("Authorization", not(is(emptyString()))));
     }
 
+    @Test
+    @Transactional
+    void testAuthorizeUpgradesAWeakerPasswordHash() throws Exception {
+        User user = new User();
+        user.setLogin("user-jwt-controller-weak-hash");
+        user.setEmail("user-jwt-controller-weak-hash@example.com");
+        user.setActivated(true);
+        user.setPassword(new BCryptPasswordEncoder(4).encode("test"));
+
+        userRepository.saveAndFlush(user);
+        assertThat(passwordEncoder.upgradeEncoding(user.getPassword())).isTrue();
+
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-weak-hash");
+        login.setPassword("test");
+        mockMvc
+            .perform(post("/api/authenticate").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(login)))
+            .andExpect(status().isOk());
+
+        User upgradedUser = userRepository.findOneByLogin("user-jwt-controller-weak-hash").orElseThrow();
+        assertThat(passwordEncoder.upgradeEncoding(upgradedUser.getPassword())).isFalse();
+        assertThat(passwordEncoder.matches("test", upgradedUser.getPassword())).isTrue();
+    }
+
     @Test
     void testAuthorizeFails() throws Exception {
         LoginVM login = new LoginVM();
@@ -1,5 +1,6 @@
 package ru.funnylistening.app.web.rest.errors;
 
+import java.util.concurrent.RejectedExecutionException;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.springframework.dao.ConcurrencyFailureException;
@@ -7,6 +8,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.web.bind.annotation.*;
+import ru.funnylistening.app.security.PasswordHashingRejectedException;
 
 @RestController
 @RequestMapping("/api/exception-translator-test")
@@ -17,6 +19,11 @@ public class ExceptionTranslatorTestController {
         throw new ConcurrencyFailureException("test concurrency failure");
     }
 
+    @GetMapping("/password-hashing-rejected")
+    public void passwordHashingRejected() {
+        throw new PasswordHashingRejectedException(new RejectedExecutionException("test password hashing rejected"));
+    }
+
     @PostMapping("/method-argument")
     public void methodArgument(@Valid @RequestBody TestDTO testDTO) {}
 
@@ -0,0 +1,114 @@
+package ru.funnylistening.app.repository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of the inserts per second of rows whose ids are taken from a sequence with the pooled-lo optimizer,
+ * batched as Hibernate does: an allocation size of {@code 1} costs a round trip per id, as the shared
+ * {@code sequence_generator} did, where the default of {@code 50} costs one per fifty ids.
+ *
+ * It needs a PostgreSQL database, the development one unless given with {@code -p url=... -p username=...}, in which
+ * it only creates a temporary sequence and table.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class SequenceAllocationBenchmark {
+
+    /**
+     * As {@code hibernate.jdbc.batch_size}.
+     */
+    private static final int BATCH_SIZE = 25;
+
+    @Param({ "1", "50" })
+    public int allocationSize;
+
+    @Param("jdbc:postgresql://localhost:5432/FunnyListening")
+    public String url;
+
+    @Param("FunnyListening")
+    public String username;
+
+    @Param("")
+    public String password;
+
+    private Connection connection;
+
+    private PreparedStatement nextValue;
+
+    private PreparedStatement insert;
+
+    private long nextId;
+
+    private long lastId;
+
+    private int batched;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection(url, username, password);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create temporary sequence benchmark_sequence start with 1 increment by " + allocationSize);
+            statement.execute("create temporary table benchmark_story (id bigint primary key, story_name varchar(255) not null)");
+        }
+        nextValue = connection.prepareStatement("select nextval('benchmark_sequence')");
+        insert = connection.prepareStatement("insert into benchmark_story (id, story_name) values (?, ?)");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        if (batched > 0) {
+            insert.executeBatch();
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public long insert() throws SQLException {
+        long id = nextId();
+        insert.setLong(1, id);
+        insert.setString(2, "benchmark " + id);
+        insert.addBatch();
+        if (++batched == BATCH_SIZE) {
+            insert.executeBatch();
+            batched = 0;
+        }
+        return id;
+    }
+
+    /**
+     * The next id of the range reserved by the last value read, reading another once it is used up.
+     */
+    private long nextId() throws SQLException {
+        if (nextId == lastId) {
+            try (ResultSet resultSet = nextValue.executeQuery()) {
+                resultSet.next();
+                nextId = resultSet.getLong(1);
+            }
+            lastId = nextId + allocationSize;
+        }
+        return nextId++;
+    }
+}
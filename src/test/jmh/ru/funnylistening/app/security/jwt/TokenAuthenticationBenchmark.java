@@ -0,0 +1,82 @@
+package ru.funnylistening.app.security.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.management.SecurityMetersService;
+import ru.funnylistening.app.security.AuthoritiesConstants;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * JMH benchmark of the authentication of a request by its token: validating then parsing the token again, as the
+ * {@code JWTFilter} did, parsing it once, and authenticating it from the cache of validated tokens.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenAuthenticationBenchmark {
+
+    static final String BASE64_SECRET = "fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8";
+
+    private TokenProvider tokenProvider;
+
+    private TokenProvider uncachedTokenProvider;
+
+    private String token;
+
+    @Setup
+    public void setup() {
+        tokenProvider = tokenProvider(new ApplicationProperties());
+        ApplicationProperties uncached = new ApplicationProperties();
+        uncached.getSecurity().setTokenCacheSize(0);
+        uncachedTokenProvider = tokenProvider(uncached);
+        token = tokenProvider.createToken(authentication(AuthoritiesConstants.USER), false);
+    }
+
+    @Benchmark
+    public Authentication validateThenParse() {
+        return tokenProvider.validateToken(token) ? tokenProvider.getAuthentication(token) : null;
+    }
+
+    @Benchmark
+    public Authentication parseOnce() {
+        return uncachedTokenProvider.authenticate(token).orElseThrow();
+    }
+
+    @Benchmark
+    public Authentication authenticateFromCache() {
+        return tokenProvider.authenticate(token).orElseThrow();
+    }
+
+    static TokenProvider tokenProvider(ApplicationProperties applicationProperties) {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(BASE64_SECRET);
+        return new TokenProvider(jHipsterProperties, applicationProperties, new SecurityMetersService(new SimpleMeterRegistry()));
+    }
+
+    static Authentication authentication(String... authorities) {
+        return new UsernamePasswordAuthenticationToken(
+            "anonymous",
+            "anonymous",
+            Arrays.stream(authorities).map(SimpleGrantedAuthority::new).collect(Collectors.toList())
+        );
+    }
+}
@@ -0,0 +1,77 @@
+package ru.funnylistening.app.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.security.AuthoritiesConstants;
+
+/**
+ * JMH benchmark of the authentication built from parsed claims: splitting the {@code auth} claim into new authorities
+ * copied by the principal and the authentication, as was done, against sharing the authorities of the claim from the
+ * registry. Its point is the allocation per operation, to be run with {@code -prof gc}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenPrincipalBenchmark {
+
+    private TokenProvider tokenProvider;
+
+    private String token;
+
+    private Claims claims;
+
+    @Setup
+    public void setup() {
+        tokenProvider = TokenAuthenticationBenchmark.tokenProvider(new ApplicationProperties());
+        Authentication admin = TokenAuthenticationBenchmark.authentication(AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER);
+        token = tokenProvider.createToken(admin, false);
+        claims =
+            Jwts
+                .parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(TokenAuthenticationBenchmark.BASE64_SECRET)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    @Benchmark
+    public Authentication splitAuthorities() {
+        Collection<? extends GrantedAuthority> authorities = Arrays
+            .stream(claims.get("auth").toString().split(","))
+            .filter(auth -> !auth.trim().isEmpty())
+            .map(SimpleGrantedAuthority::new)
+            .collect(Collectors.toList());
+        User principal = new User(claims.getSubject(), "", authorities);
+        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    }
+
+    @Benchmark
+    public Authentication sharedAuthorities() {
+        return tokenProvider.getAuthentication(claims, token);
+    }
+}
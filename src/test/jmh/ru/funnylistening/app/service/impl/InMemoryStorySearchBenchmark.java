@@ -0,0 +1,129 @@
+package ru.funnylistening.app.service.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.funnylistening.app.config.ApplicationProperties;
+import ru.funnylistening.app.service.EntityTag;
+import ru.funnylistening.app.service.StoryService;
+import ru.funnylistening.app.service.dto.ElementView;
+import ru.funnylistening.app.service.dto.StorySearchHit;
+import ru.funnylistening.app.service.dto.StoryView;
+
+/**
+ * JMH benchmark of the latency of the search of similar stories with the trigram index of {@link InMemoryStorySearch},
+ * for misspelled words of a catalog of random words, sampled so that its 99th percentile is reported.
+ *
+ * The catalog is the one of the load benchmark of {@code PostgresStorySearchIT}: the 20 ms budget of the 99th
+ * percentile is for one million elements, with {@code -p elements=1000000}.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class InMemoryStorySearchBenchmark {
+
+    private static final int ELEMENTS_PER_STORY = 10;
+
+    private static final int WORDS_PER_TEXT = 8;
+
+    private static final int VOCABULARY_SIZE = 50_000;
+
+    private static final int QUERIES = 1024;
+
+    private static final int LIMIT = 10;
+
+    @Param("100000")
+    public int elements;
+
+    private InMemoryStorySearch storySearch;
+
+    private final String[] queries = new String[QUERIES];
+
+    private int query;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        List<String> vocabulary = new ArrayList<>(VOCABULARY_SIZE);
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            vocabulary.add(word(random));
+        }
+        List<StoryView> stories = new ArrayList<>();
+        long elementId = 0;
+        for (long storyId = 0; storyId < elements / ELEMENTS_PER_STORY; storyId++) {
+            List<ElementView> storyElements = new ArrayList<>(ELEMENTS_PER_STORY);
+            for (int i = 0; i < ELEMENTS_PER_STORY; i++) {
+                storyElements.add(new ElementView(elementId++, text(vocabulary, random, WORDS_PER_TEXT), null, null, 0L));
+            }
+            stories.add(new StoryView(storyId, text(vocabulary, random, 3), 0L, storyElements, Instant.EPOCH));
+        }
+
+        StoryService storyService = mock(StoryService.class);
+        when(storyService.findAllTag(anyBoolean())).thenReturn(EntityTag.of(0L, Instant.EPOCH));
+        doAnswer(invocation -> {
+                Consumer<StoryView> consumer = invocation.getArgument(0);
+                stories.forEach(consumer);
+                return null;
+            })
+            .when(storyService)
+            .exportViews(any());
+        storySearch = new InMemoryStorySearch(storyService, new ApplicationProperties());
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = misspelled(vocabulary, random);
+        }
+        // build the index
+        storySearch.searchSimilar(queries[0], LIMIT);
+    }
+
+    @Benchmark
+    public List<StorySearchHit> searchSimilar() {
+        query = (query + 1) % QUERIES;
+        return storySearch.searchSimilar(queries[query], LIMIT);
+    }
+
+    private static String text(List<String> vocabulary, Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(i == 0 ? "" : " ").append(vocabulary.get(random.nextInt(vocabulary.size())));
+        }
+        return text.toString();
+    }
+
+    /**
+     * A word of the vocabulary with one letter replaced, as a learner would misspell it.
+     */
+    private static String misspelled(List<String> vocabulary, Random random) {
+        char[] word = vocabulary.get(random.nextInt(vocabulary.size())).toCharArray();
+        word[1 + random.nextInt(word.length - 1)] = (char) ('a' + random.nextInt(26));
+        return new String(word);
+    }
+
+    private static String word(Random random) {
+        char[] word = new char[5 + random.nextInt(6)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+}